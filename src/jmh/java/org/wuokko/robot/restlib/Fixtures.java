@@ -0,0 +1,115 @@
+package org.wuokko.robot.restlib;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Generates the JSON documents for the benchmarks.
+ *
+ * The documents are built from a fixed seed, so every run measures the same
+ * content without any files or network access.
+ */
+public final class Fixtures {
+
+    private static final long SEED = 42;
+
+    private static final String[] TAGS = { "new", "sale", "outlet", "eco", "limited", "bundle" };
+
+    private Fixtures() {
+    }
+
+    /**
+     * Generated document with its amount of items.
+     */
+    public static class Fixture {
+
+        public final String json;
+
+        public final int items;
+
+        Fixture(String json, int items) {
+            this.json = json;
+            this.items = items;
+        }
+    }
+
+    /**
+     * Generates a document of about the given size, ie.
+     * `{"meta":{...},"items":[{"id":0,"name":"item-0","price":1.5,"tags":[...]},...]}`.
+     */
+    public static Fixture generate(int sizeKb) {
+
+        long size = sizeKb * 1024L;
+
+        Random random = new Random(SEED);
+
+        StringBuilder json = new StringBuilder((int) Math.min(size + 1024, Integer.MAX_VALUE));
+
+        json.append("{\"meta\":{\"seed\":").append(SEED).append(",\"size\":").append(sizeKb).append("},\"items\":[");
+
+        int items = 0;
+
+        while (json.length() < size || items == 0) {
+            if (items > 0) {
+                json.append(',');
+            }
+
+            json.append("{\"id\":").append(items)
+                    .append(",\"name\":\"item-").append(items)
+                    .append("\",\"price\":").append(String.format(Locale.ROOT, "%.2f", random.nextDouble() * 100))
+                    .append(",\"available\":").append(random.nextBoolean())
+                    .append(",\"tags\":[\"").append(TAGS[random.nextInt(TAGS.length)])
+                    .append("\",\"").append(TAGS[random.nextInt(TAGS.length)])
+                    .append("\"]}");
+
+            items++;
+        }
+
+        json.append("]}");
+
+        return new Fixture(json.toString(), items);
+    }
+
+    /**
+     * Returns the document with the price of the item in the middle changed.
+     */
+    public static String withDifference(String json) {
+
+        int price = json.indexOf("\"price\":", json.length() / 2) + "\"price\":".length();
+        int end = json.indexOf(',', price);
+
+        return json.substring(0, price) + "-1" + json.substring(end);
+    }
+
+    /**
+     * Writes the document into a temporary file, deleted when the JVM exits.
+     */
+    public static File write(String json) throws IOException {
+        File file = File.createTempFile("fixture", ".json");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, json, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    /**
+     * Writes a properties file for a library under benchmark.
+     */
+    public static String properties(String... keysAndValues) throws IOException {
+        StringBuilder properties = new StringBuilder();
+
+        for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+            properties.append(keysAndValues[i]).append(" = ").append(keysAndValues[i + 1]).append('\n');
+        }
+
+        File file = File.createTempFile("benchmark", ".properties");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, properties.toString(), StandardCharsets.ISO_8859_1);
+        return file.getAbsolutePath();
+    }
+
+}
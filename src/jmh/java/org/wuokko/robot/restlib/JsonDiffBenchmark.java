@@ -0,0 +1,93 @@
+package org.wuokko.robot.restlib;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wuokko.robot.restlib.diff.DiffResult;
+import org.wuokko.robot.restlib.util.JsonBackend;
+import org.wuokko.robot.restlib.util.RobotLog;
+
+/**
+ * Measures {@link JsonDiff#compare(String, String)}, parsing included, and
+ * the comparison of already parsed documents, on equal documents and on
+ * documents differing by one value in the middle, with each `json.provider`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx6g" })
+public class JsonDiffBenchmark {
+
+    @Param({ "1", "1024", "102400" })
+    public int sizeKb;
+
+    @Param({ "json-smart", "json-smart-strict", "jackson" })
+    public String provider;
+
+    private JsonDiff diff;
+
+    private String from;
+
+    private String equal;
+
+    private String changed;
+
+    private Object fromJson;
+
+    private Object equalJson;
+
+    private Object changedJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        RobotLog.setLevel(RobotLog.Level.NONE);
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(JsonBackend.KEY_JSON_PROVIDER, provider);
+
+        diff = new JsonDiff(config);
+
+        from = Fixtures.generate(sizeKb).json;
+        equal = new String(from.toCharArray());
+        changed = Fixtures.withDifference(from);
+
+        fromJson = diff.parse(from);
+        equalJson = diff.parse(equal);
+        changedJson = diff.parse(changed);
+    }
+
+    @Benchmark
+    public boolean compareEqual() {
+        return diff.compare(from, equal);
+    }
+
+    @Benchmark
+    public boolean compareDiffering() {
+        return diff.compare(from, changed);
+    }
+
+    @Benchmark
+    public DiffResult diffParsedEqual() {
+        return diff.diff(fromJson, equalJson);
+    }
+
+    @Benchmark
+    public DiffResult diffParsedDiffering() {
+        return diff.diff(fromJson, changedJson);
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.wuokko.robot.restlib;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wuokko.robot.restlib.Fixtures.Fixture;
+import org.wuokko.robot.restlib.util.DocumentCache;
+import org.wuokko.robot.restlib.util.JsonBackend;
+import org.wuokko.robot.restlib.util.RobotLog;
+
+/**
+ * Measures the JsonPath keywords on generated documents.
+ *
+ * Inline sources are parsed on every call, because the document cache is
+ * turned off. File sources are parsed once into the fixture cache, so they
+ * measure only the path evaluation. Each `json.provider` is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx6g" })
+public class JsonPathBenchmark {
+
+    @Param({ "1", "1024", "102400" })
+    public int sizeKb;
+
+    @Param({ "inline", "file" })
+    public String source;
+
+    @Param({ "json-smart", "json-smart-strict", "jackson" })
+    public String provider;
+
+    private JsonPathLibrary library;
+
+    private String input;
+
+    private int items;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        RobotLog.setLevel(RobotLog.Level.NONE);
+
+        library = new JsonPathLibrary(Fixtures.properties(DocumentCache.KEY_DOCUMENT_CACHE_SIZE, "0", JsonBackend.KEY_JSON_PROVIDER, provider));
+
+        Fixture fixture = Fixtures.generate(sizeKb);
+
+        input = "file".equals(source) ? Fixtures.write(fixture.json).toURI().toString() : fixture.json;
+        items = fixture.items;
+    }
+
+    @Benchmark
+    public Object findJsonElement() throws Exception {
+        return library.findJsonElement(input, "$.items[0].name");
+    }
+
+    @Benchmark
+    public boolean jsonShouldHaveElementCount() throws Exception {
+        return library.jsonShouldHaveElementCount(input, "$.items[*]", items);
+    }
+
+}
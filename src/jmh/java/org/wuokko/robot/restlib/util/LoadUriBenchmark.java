@@ -0,0 +1,108 @@
+package org.wuokko.robot.restlib.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wuokko.robot.restlib.Fixtures;
+import org.wuokko.robot.restlib.JsonPathLibrary;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Measures {@link RequestUtil#loadURI} and `Find Json Element` against an
+ * HTTP stub running in the benchmark JVM, so the results do not depend on the
+ * network. `parseFromStream` only affects `Find Json Element`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx6g" })
+public class LoadUriBenchmark {
+
+    @Param({ "1", "1024", "102400" })
+    public int sizeKb;
+
+    @Param({ "true", "false" })
+    public boolean parseFromStream;
+
+    private HttpServer server;
+
+    private RequestUtil requestUtil;
+
+    private JsonPathLibrary library;
+
+    private URI uri;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        RobotLog.setLevel(RobotLog.Level.NONE);
+
+        final byte[] body = Fixtures.generate(sizeKb).json.getBytes(StandardCharsets.UTF_8);
+
+        // The stub writes the headers and the body separately, without this
+        // every response would wait for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/fixture", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+
+                try (OutputStream response = exchange.getResponseBody()) {
+                    response.write(body);
+                }
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4, new DaemonThreadFactory("benchmark-stub")));
+        server.start();
+
+        uri = new URI("http://localhost:" + server.getAddress().getPort() + "/fixture");
+
+        requestUtil = new RequestUtil(new PropertiesConfiguration());
+        library = new JsonPathLibrary(Fixtures.properties(DocumentCache.KEY_DOCUMENT_CACHE_SIZE, "0",
+                RequestUtil.KEY_PARSE_FROM_STREAM, String.valueOf(parseFromStream)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Benchmark
+    public String loadURI() {
+        return requestUtil.loadURI(uri, "GET", null, null);
+    }
+
+    @Benchmark
+    public Object findJsonElement() throws Exception {
+        return library.findJsonElement(uri.toString(), "$.items[0].name");
+    }
+
+}
@@ -1,7 +1,50 @@
 package org.wuokko.robot.restlib;
 
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import org.wuokko.robot.restlib.diff.DiffMode;
+import org.wuokko.robot.restlib.diff.DiffResult;
+import org.wuokko.robot.restlib.exception.JsonNotValidException;
+
 public interface Diff {
 
     public boolean compare(String fromObject, String toObject);
-    
+
+    /**
+     * Compares the documents and returns all the differences, up to the
+     * configured maximum.
+     */
+    public DiffResult diff(String fromObject, String toObject);
+
+    /**
+     * Compares the documents in the given mode instead of the default one.
+     */
+    public DiffResult diff(String fromObject, String toObject, DiffMode mode);
+
+    /**
+     * Parses a document for the comparison. Can be called from several
+     * threads at the same time.
+     */
+    public Object parse(String json) throws JsonNotValidException;
+
+    /**
+     * Parses a UTF-8 encoded document from the stream, the same way as
+     * {@link #parse(String)}.
+     */
+    public Object parse(InputStream json) throws JsonNotValidException;
+
+    /**
+     * Parses a document from the stream encoded with the charset, or with
+     * UTF-8 if the charset is null.
+     */
+    public Object parse(InputStream json, Charset charset) throws JsonNotValidException;
+
+    /**
+     * Compares documents returned by {@link #parse(String)}.
+     */
+    public DiffResult diff(Object fromJson, Object toJson);
+
+    public DiffResult diff(Object fromJson, Object toJson, DiffMode mode);
+
 }
@@ -1,158 +1,561 @@
 package org.wuokko.robot.restlib;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
-import net.minidev.json.JSONArray;
-import net.minidev.json.JSONObject;
 import net.minidev.json.parser.JSONParser;
 import net.minidev.json.parser.ParseException;
 
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.lang3.StringUtils;
+import org.wuokko.robot.restlib.diff.CanonicalHash;
+import org.wuokko.robot.restlib.diff.DiffMode;
+import org.wuokko.robot.restlib.diff.DiffPath;
+import org.wuokko.robot.restlib.diff.DiffResult;
+import org.wuokko.robot.restlib.diff.Difference;
+import org.wuokko.robot.restlib.diff.Difference.Type;
+import org.wuokko.robot.restlib.diff.HashedNode;
+import org.wuokko.robot.restlib.diff.HashingJacksonReader;
+import org.wuokko.robot.restlib.diff.HashingReader;
+import org.wuokko.robot.restlib.exception.JsonNotValidException;
+import org.wuokko.robot.restlib.util.JacksonReader;
+import org.wuokko.robot.restlib.util.JsonBackend;
+import org.wuokko.robot.restlib.util.RobotLog;
+import org.wuokko.robot.restlib.util.Utf8Reader;
+
+/**
+ * Compares two JSON documents and reports the differences with JSON Pointer
+ * paths.
+ *
+ * By default the keys of the `from` objects must be found from the `to`
+ * objects, but extra keys in `to` are allowed, and arrays are compared by
+ * position. See {@link DiffMode} for the strict and order-insensitive modes,
+ * the default mode is set with `diff.mode`. The comparison stops after
+ * `diff.max.differences` differences (0 means no limit).
+ *
+ * The documents are parsed with the {@link HashingReader}, or with the
+ * {@link HashingJacksonReader} when `json.provider` is `jackson`, so every object
+ * and array carries the {@link CanonicalHash} of its contents. Documents with
+ * equal hashes are reported equal without walking them, and branches with
+ * equal hashes are skipped, so the walk only descends into the branches that
+ * differ. Numbers are compared by their exact value (1 equals 1.0), like
+ * they are hashed. Equal hashes are trusted, so two documents built to
+ * collide on purpose would be reported equal.
+ *
+ * An instance can be shared between threads: its settings do not change after
+ * construction and every document is parsed with a parser of its own.
+ */
 public class JsonDiff implements Diff {
 
-    private JSONParser parser = new JSONParser(JSONParser.MODE_PERMISSIVE);
+    public static final String KEY_MAX_DIFFERENCES = "diff.max.differences";
+
+    public static final String KEY_MODE = "diff.mode";
+
+    public static final int DEFAULT_MAX_DIFFERENCES = 100;
+
+    private final int maxDifferences;
+
+    private final DiffMode mode;
+
+    private final JsonBackend backend;
+
+    public JsonDiff() {
+        this(null);
+    }
+
+    public JsonDiff(Configuration config) {
+
+        int maxDifferences = DEFAULT_MAX_DIFFERENCES;
+        DiffMode mode = DiffMode.DEFAULT;
+
+        if (config != null) {
+
+            if (config.containsKey(KEY_MAX_DIFFERENCES)) {
+                maxDifferences = config.getInt(KEY_MAX_DIFFERENCES);
+                System.out.println("[Robot-Rest-Lib] Set diff max differences to '" + maxDifferences + "'");
+            }
+
+            if (config.containsKey(KEY_MODE)) {
+                // The flags are comma separated, so read the whole list
+                mode = DiffMode.parse(StringUtils.join(config.getStringArray(KEY_MODE), ","));
+                System.out.println("[Robot-Rest-Lib] Set diff mode to '" + mode + "'");
+            }
+        }
+
+        this.maxDifferences = maxDifferences;
+        this.mode = mode;
+        this.backend = JsonBackend.of(config);
+    }
+
+    public DiffMode getMode() {
+        return mode;
+    }
+
+    public int getMaxDifferences() {
+        return maxDifferences;
+    }
+
+    public JsonBackend getBackend() {
+        return backend;
+    }
 
-    protected JSONObject loadJSON(String json) {
+    protected Object loadJSON(String json) {
 
-        JSONObject jsonObject = null;
+        Object jsonObject = null;
         try {
-            jsonObject = (JSONObject) this.parser.parse(json);
-        } catch (ParseException e) {
-            System.out.println("*ERROR* Could not parse JSON!");
+            jsonObject = parse(json);
+        } catch (JsonNotValidException e) {
+            RobotLog.error("Could not parse JSON!");
         }
 
         return jsonObject;
     }
 
+    /**
+     * Parses the JSON with a new parser of the configured {@link JsonBackend},
+     * because the parsers are not thread safe.
+     */
+    @Override
+    public Object parse(String json) throws JsonNotValidException {
+        try {
+            if (backend == JsonBackend.JACKSON) {
+                return new HashingJacksonReader().read(JacksonReader.createParser(json));
+            }
+            return new JSONParser(backend.getParserMode()).parse(json, new HashingReader());
+        } catch (ParseException e) {
+            throw new JsonNotValidException("Could not parse JSON: " + e.getMessage());
+        } catch (IOException e) {
+            throw new JsonNotValidException("Could not parse JSON: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Object parse(InputStream json) throws JsonNotValidException {
+        return parse(json, null);
+    }
+
+    @Override
+    public Object parse(InputStream json, Charset charset) throws JsonNotValidException {
+        try {
+            if (backend == JsonBackend.JACKSON) {
+                return new HashingJacksonReader().read(JacksonReader.createParser(json, charset));
+            }
+            return new JSONParser(backend.getParserMode()).parse(Utf8Reader.open(json, charset), new HashingReader());
+        } catch (ParseException e) {
+            throw new JsonNotValidException("Could not parse JSON: " + e.getMessage());
+        } catch (IOException e) {
+            throw new JsonNotValidException("Could not parse JSON: " + e.getMessage());
+        }
+    }
+
     @Override
     public boolean compare(String fromObject, String toObject) {
-        
+
         boolean equal = true;
-        
+
         if(fromObject != null && toObject != null) {
-            
-            JSONObject fromJson = loadJSON(fromObject);
-            JSONObject toJson = loadJSON(toObject);
-            
-            equal = compareObjects(fromJson, toJson, "");
+            equal = diff(fromObject, toObject).isEqual();
         } else {
-            System.out.println("*ERROR* Either from: " + fromObject + " or to: " + toObject + "  was null");
+            RobotLog.error("Either from: {} or to: {}  was null", fromObject, toObject);
             equal = false;
         }
-        
-        
+
         return equal;
-        
+
+    }
+
+    @Override
+    public DiffResult diff(String fromObject, String toObject) {
+        return diff(fromObject, toObject, mode);
+    }
+
+    @Override
+    public DiffResult diff(String fromObject, String toObject, DiffMode diffMode) {
+        if (fromObject != null && fromObject.equals(toObject)) {
+            return new DiffResult(maxDifferences);
+        }
+        return diff(loadJSON(fromObject), loadJSON(toObject), diffMode);
+    }
+
+    /**
+     * Compares the parsed documents.
+     */
+    @Override
+    public DiffResult diff(Object fromJson, Object toJson) {
+        return diff(fromJson, toJson, mode);
     }
-    
+
+    @Override
+    public DiffResult diff(Object fromJson, Object toJson, DiffMode diffMode) {
+        DiffResult result = new DiffResult(maxDifferences);
+
+        if (hashesEqual(fromJson, toJson, diffMode)) {
+            RobotLog.debug("Documents have equal hashes");
+            return result;
+        }
+
+        compareValues(fromJson, toJson, new DiffPath(), result, diffMode);
+
+        if (!result.isEqual() && RobotLog.isEnabled(RobotLog.Level.ERROR)) {
+            RobotLog.error("Found {} differences:\n{}", result.getDifferences().size(), result.getReport());
+        }
+
+        return result;
+    }
+
     protected boolean compareObjects(Object fromObject, Object toObject, String path) {
+        DiffResult result = new DiffResult(maxDifferences);
+        compareValues(fromObject, toObject, new DiffPath(path), result, mode);
+        return result.isEqual();
+    }
 
-        boolean equal = true;
+    protected boolean compareJsonObjects(Map<String, Object> fromJson, Map<String, Object> toJson, String path) {
+        DiffResult result = new DiffResult(maxDifferences);
+        compareJsonObjects(fromJson, toJson, new DiffPath(path), result, mode);
+        return result.isEqual();
+    }
 
-        if (fromObject != null && toObject != null) {
-
-            if (fromObject.getClass().equals(toObject.getClass())) {
-
-                if (fromObject instanceof JSONObject) {
-                    equal = compareJsonObjects((JSONObject) fromObject, (JSONObject) toObject, path);
-                } else if (fromObject instanceof JSONArray) {
-                    equal = compareJsonArrays((JSONArray) fromObject, (JSONArray) toObject, path);
-                } else if (fromObject instanceof String) {
-                    equal = compareBasicObjects(String.valueOf(fromObject), String.valueOf(toObject), path);
-                } else if (fromObject instanceof Boolean) {
-                    equal = compareBasicObjects((Boolean) fromObject, (Boolean) toObject, path);
-                } else if (fromObject instanceof Long) {
-                    equal = compareBasicObjects((Long) fromObject, (Long) toObject, path);
-                } else if (fromObject instanceof Double) {
-                    equal = compareBasicObjects((Double) fromObject, (Double) toObject, path);
-                } else if (fromObject instanceof Integer) {
-                    equal = compareBasicObjects((Integer) fromObject, (Integer) toObject, path);
-                } else {
-                    System.out.println("*ERROR* Object was unsupported type " + fromObject.getClass().getName());
-                    equal = false;
-                }
-            } else {
-                System.out.println("*ERROR* The types differ to: " + fromObject.getClass().getName() + " (" + fromObject + ") from: " + toObject.getClass().getName() + " (" + toObject + ")");
-                equal = false;
-            }
-        }  else if(fromObject == null && toObject == null) {
-            System.out.println("*DEBUG* Both to and from were null");
-        } else {
-            System.out.println("*ERROR* There was null (path " + path + ") value from: " + fromObject + " to: " + toObject);
-            equal = false;
+    protected boolean compareJsonArrays(List<Object> fromJson, List<Object> toJson, String path) {
+        DiffResult result = new DiffResult(maxDifferences);
+        compareJsonArrays(fromJson, toJson, new DiffPath(path), result, mode);
+        return result.isEqual();
+    }
+
+    protected boolean compareBasicObjects(Object fromObject, Object toObject, String path) {
+        if (fromObject instanceof Number && toObject instanceof Number && fromObject.getClass() != toObject.getClass()) {
+            return compareNumbers((Number) fromObject, (Number) toObject);
         }
+        return fromObject.equals(toObject);
+    }
 
-        return equal;
+    /**
+     * Compares numbers of different types by value. The parser returns
+     * integers as Integer, Long or BigInteger and decimals as Double or
+     * BigDecimal depending on the size.
+     */
+    private boolean compareNumbers(Number fromNumber, Number toNumber) {
+        try {
+            return new BigDecimal(fromNumber.toString()).compareTo(new BigDecimal(toNumber.toString())) == 0;
+        } catch (NumberFormatException e) {
+            // NaN and Infinity
+            return fromNumber.doubleValue() == toNumber.doubleValue();
+        }
     }
 
-    protected boolean compareJsonObjects(JSONObject fromJson, JSONObject toJson, String key2) {
+    /**
+     * Checks if both values were hashed while parsing and have equal hashes.
+     * In the order-insensitive mode the hashes ignore the order of the arrays.
+     * Outside the strict mode different hashes do not prove a difference,
+     * because extra keys in `to` are allowed, so only equal hashes are used.
+     */
+    private boolean hashesEqual(Object fromObject, Object toObject, DiffMode diffMode) {
+        return fromObject instanceof HashedNode && toObject instanceof HashedNode
+                && ((HashedNode) fromObject).getHash(diffMode.isIgnoreArrayOrder()) == ((HashedNode) toObject).getHash(diffMode.isIgnoreArrayOrder());
+    }
 
-        boolean equal = true;
+    @SuppressWarnings("unchecked")
+    private void compareValues(Object fromObject, Object toObject, DiffPath path, DiffResult result, DiffMode diffMode) {
+
+        if (fromObject == toObject || hashesEqual(fromObject, toObject, diffMode)) {
+            return;
+        }
+
+        JsonType fromType = JsonType.of(fromObject);
+
+        if (fromType != JsonType.of(toObject)) {
+            result.add(new Difference(Type.TYPE_CHANGED, path.toPointer(), fromObject, toObject));
+        } else if (fromType == JsonType.OBJECT) {
+            compareJsonObjects((Map<String, Object>) fromObject, (Map<String, Object>) toObject, path, result, diffMode);
+        } else if (fromType == JsonType.ARRAY && diffMode.isIgnoreArrayOrder()) {
+            compareUnorderedArrays((List<Object>) fromObject, (List<Object>) toObject, path, result, diffMode);
+        } else if (fromType == JsonType.ARRAY) {
+            compareJsonArrays((List<Object>) fromObject, (List<Object>) toObject, path, result, diffMode);
+        } else if (!compareBasicObjects(fromObject, toObject, null)) {
+            result.add(new Difference(Type.CHANGED, path.toPointer(), fromObject, toObject));
+        }
+    }
+
+    private void compareJsonObjects(Map<String, Object> fromJson, Map<String, Object> toJson, DiffPath path, DiffResult result, DiffMode diffMode) {
 
         for (Entry<String, Object> entry : fromJson.entrySet()) {
-            String path = key2 + " -> " + entry.getKey();
 
-            if (!toJson.containsKey(entry.getKey())) {
-                System.out.println("*ERROR* toJson does not contain key '" + path + "'");
+            if (result.isFull()) {
+                return;
+            }
+
+            String key = entry.getKey();
+
+            path.push(key);
 
-                equal = false;
-                break;
+            Object toObject = toJson.get(key);
 
+            if (toObject == null && !toJson.containsKey(key)) {
+                result.add(new Difference(Type.REMOVED, path.toPointer(), entry.getValue(), null));
             } else {
+                compareValues(entry.getValue(), toObject, path, result, diffMode);
+            }
 
-                Object fromObject = fromJson.get(entry.getKey());
-                Object toObject = toJson.get(entry.getKey());
+            path.pop();
+        }
+
+        if (diffMode.isStrict()) {
+            for (Entry<String, Object> entry : toJson.entrySet()) {
 
-                equal = compareObjects(fromObject, toObject, path);
-                
-                if(!equal) {
-                	break;
+                if (result.isFull()) {
+                    return;
+                }
+
+                if (!fromJson.containsKey(entry.getKey())) {
+                    path.push(entry.getKey());
+                    result.add(new Difference(Type.ADDED, path.toPointer(), null, entry.getValue()));
+                    path.pop();
                 }
             }
+        }
+    }
+
+    private void compareJsonArrays(List<Object> fromJson, List<Object> toJson, DiffPath path, DiffResult result, DiffMode diffMode) {
+
+        int common = Math.min(fromJson.size(), toJson.size());
 
+        for (int i = 0; i < common && !result.isFull(); i++) {
+            path.push(i);
+            compareValues(fromJson.get(i), toJson.get(i), path, result, diffMode);
+            path.pop();
         }
 
-        return equal;
+        for (int i = common; i < fromJson.size() && !result.isFull(); i++) {
+            path.push(i);
+            result.add(new Difference(Type.REMOVED, path.toPointer(), fromJson.get(i), null));
+            path.pop();
+        }
 
+        for (int i = common; i < toJson.size() && !result.isFull(); i++) {
+            path.push(i);
+            result.add(new Difference(Type.ADDED, path.toPointer(), null, toJson.get(i)));
+            path.pop();
+        }
     }
 
-    protected boolean compareJsonArrays(JSONArray fromJson, JSONArray toJson, String path) {
+    /**
+     * Compares the arrays as multisets. The `to` elements are grouped by
+     * their canonical hash, and each `from` element is matched against the
+     * elements with the same hash, which takes linear time when the elements
+     * are mostly equal.
+     *
+     * Outside the strict mode a `from` element also matches a `to` element
+     * that has extra keys. Such elements have different hashes, so the
+     * elements left unmatched by the hash are matched again by a hash that
+     * ignores the extra keys, see {@link #matchWithExtraKeys}.
+     *
+     * Unmatched elements are reported as REMOVED with their `from` index and
+     * ADDED with their `to` index.
+     */
+    private void compareUnorderedArrays(List<Object> fromJson, List<Object> toJson, DiffPath path, DiffResult result, DiffMode diffMode) {
 
-        boolean equal = true;
-        
-        if (fromJson.size() != toJson.size()) {
-            System.out.println("*ERROR* The array sizes differ from: " + fromJson.size() + " to: " + toJson.size());
-            equal = false;
+        Map<Long, LinkedList<Integer>> buckets = new HashMap<Long, LinkedList<Integer>>(toJson.size() * 2);
+
+        for (int i = 0; i < toJson.size(); i++) {
+            Long hash = CanonicalHash.hash(toJson.get(i), true);
+
+            LinkedList<Integer> bucket = buckets.get(hash);
+
+            if (bucket == null) {
+                bucket = new LinkedList<Integer>();
+                buckets.put(hash, bucket);
+            }
+
+            bucket.add(i);
         }
 
+        boolean[] matched = new boolean[toJson.size()];
+
+        List<Integer> unmatched = new ArrayList<Integer>();
+
         for (int i = 0; i < fromJson.size(); i++) {
             Object fromObject = fromJson.get(i);
-            if (toJson.size() > i) {
-                Object toObject = toJson.get(i);
-                equal = compareObjects(fromObject, toObject, path + " -> array");
 
-            } else {
-                System.out.println("*ERROR* Ran out of values from toArray from value: " + fromObject);
-                equal = false;
-                break;
+            LinkedList<Integer> bucket = buckets.get(CanonicalHash.hash(fromObject, true));
+
+            if (!matchFirst(fromObject, toJson, bucket, matched, diffMode)) {
+                unmatched.add(i);
             }
         }
 
-        return equal;
+        if (!diffMode.isStrict() && !unmatched.isEmpty()) {
+            unmatched = matchWithExtraKeys(fromJson, toJson, unmatched, matched, diffMode);
+        }
+
+        for (Integer i : unmatched) {
+            if (result.isFull()) {
+                return;
+            }
+            path.push(i);
+            result.add(new Difference(Type.REMOVED, path.toPointer(), fromJson.get(i), null));
+            path.pop();
+        }
+
+        for (int i = 0; i < matched.length && !result.isFull(); i++) {
+            if (!matched[i]) {
+                path.push(i);
+                result.add(new Difference(Type.ADDED, path.toPointer(), null, toJson.get(i)));
+                path.pop();
+            }
+        }
     }
 
-    protected boolean compareBasicObjects(Object fromString, Object toString, String key) {
-        
-        boolean equal = true;
-        
-        if (fromString.equals(toString)) {
-            System.out.println("*DEBUG* The values matched for key '" + key + "'");
-        } else {
-            System.out.println("*ERROR* The values for key " + key + " did not match \nfrom: " + fromString + " \nto: " + toString);
-            equal = false;
+    /**
+     * Matches the unmatched `from` elements against the unmatched `to`
+     * elements that may have extra keys, and returns the `from` elements
+     * still unmatched.
+     *
+     * The `from` objects are grouped by their keys. For each group, the `to`
+     * elements are bucketed by {@link CanonicalHash#projectedHash} on those
+     * keys, which ignores the extra keys, and only the elements in the same
+     * bucket are compared. Arrays are bucketed by their size in the same way,
+     * and other values have no extra keys to ignore. This takes linear time
+     * for each group of keys, unless many elements share the values of all
+     * their top level keys and differ only inside nested objects or arrays.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Integer> matchWithExtraKeys(List<Object> fromJson, List<Object> toJson, List<Integer> unmatched, boolean[] matched, DiffMode diffMode) {
+
+        // The arrays are in the group without keys
+        Map<Set<String>, List<Integer>> groups = new LinkedHashMap<Set<String>, List<Integer>>();
+
+        List<Integer> stillUnmatched = new ArrayList<Integer>();
+
+        for (Integer i : unmatched) {
+            Object fromObject = fromJson.get(i);
+
+            if (!(fromObject instanceof Map) && !(fromObject instanceof List)) {
+                stillUnmatched.add(i);
+                continue;
+            }
+
+            Set<String> keys = fromObject instanceof Map ? new HashSet<String>(((Map<String, Object>) fromObject).keySet()) : null;
+
+            List<Integer> group = groups.get(keys);
+
+            if (group == null) {
+                group = new ArrayList<Integer>();
+                groups.put(keys, group);
+            }
+
+            group.add(i);
+        }
+
+        for (Entry<Set<String>, List<Integer>> group : groups.entrySet()) {
+
+            Map<Long, LinkedList<Integer>> buckets = new HashMap<Long, LinkedList<Integer>>();
+
+            for (int j = 0; j < matched.length; j++) {
+                Long hash = matched[j] ? null : shapeHash(toJson.get(j), group.getKey());
+
+                if (hash != null) {
+                    LinkedList<Integer> bucket = buckets.get(hash);
+
+                    if (bucket == null) {
+                        bucket = new LinkedList<Integer>();
+                        buckets.put(hash, bucket);
+                    }
+
+                    bucket.add(j);
+                }
+            }
+
+            for (Integer i : group.getValue()) {
+                Object fromObject = fromJson.get(i);
+
+                if (!matchFirst(fromObject, toJson, buckets.get(shapeHash(fromObject, group.getKey())), matched, diffMode)) {
+                    stillUnmatched.add(i);
+                }
+            }
+        }
+
+        Collections.sort(stillUnmatched);
+
+        return stillUnmatched;
+    }
+
+    /**
+     * Hash of an object projected onto the keys, or of an array by its size
+     * when the keys are null. Null if the value can not match.
+     */
+    private static Long shapeHash(Object value, Set<String> keys) {
+        if (keys != null) {
+            return CanonicalHash.projectedHash(value, keys);
+        }
+        return value instanceof List ? CanonicalHash.shallowHash(value) : null;
+    }
+
+    /**
+     * Finds the first `to` element from the candidates that equals the
+     * `from` element, marks it matched and removes it from the candidates.
+     */
+    private boolean matchFirst(Object fromObject, List<Object> toJson, List<Integer> candidates, boolean[] matched, DiffMode diffMode) {
+
+        if (candidates == null) {
+            return false;
+        }
+
+        Iterator<Integer> iterator = candidates.iterator();
+
+        while (iterator.hasNext()) {
+            int candidate = iterator.next();
+
+            if (!matched[candidate] && matches(fromObject, toJson.get(candidate), diffMode)) {
+                matched[candidate] = true;
+                iterator.remove();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean matches(Object fromObject, Object toObject, DiffMode diffMode) {
+        DiffResult result = new DiffResult(1);
+        compareValues(fromObject, toObject, new DiffPath(), result, diffMode);
+        return result.isEqual();
+    }
+
+    /**
+     * JSON types of the parsed values. Values of other classes are compared
+     * with equals.
+     */
+    enum JsonType {
+        NULL, OBJECT, ARRAY, STRING, NUMBER, BOOLEAN, OTHER;
+
+        static JsonType of(Object value) {
+            if (value == null) {
+                return NULL;
+            } else if (value instanceof Map) {
+                return OBJECT;
+            } else if (value instanceof List) {
+                return ARRAY;
+            } else if (value instanceof String) {
+                return STRING;
+            } else if (value instanceof Number) {
+                return NUMBER;
+            } else if (value instanceof Boolean) {
+                return BOOLEAN;
+            }
+            return OTHER;
         }
-        
-        return equal;
-                
     }
 
 }
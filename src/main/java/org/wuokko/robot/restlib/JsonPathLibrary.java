@@ -1,18 +1,64 @@
 package org.wuokko.robot.restlib;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 
-import org.apache.commons.collections.CollectionUtils;
+import org.HdrHistogram.Histogram;
 import org.apache.commons.configuration.Configuration;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.robotframework.javalib.annotation.RobotKeyword;
 import org.robotframework.javalib.annotation.RobotKeywords;
+import org.wuokko.robot.restlib.diff.DiffMode;
+import org.wuokko.robot.restlib.diff.DiffResult;
 import org.wuokko.robot.restlib.exception.JsonElementNotFoundException;
 import org.wuokko.robot.restlib.exception.JsonNotEqualException;
 import org.wuokko.robot.restlib.exception.JsonNotValidException;
+import org.wuokko.robot.restlib.exception.LoadThresholdException;
+import org.wuokko.robot.restlib.exception.ResponseTimeException;
+import org.wuokko.robot.restlib.load.LoadGenerator;
+import org.wuokko.robot.restlib.load.LoadResult;
+import org.wuokko.robot.restlib.load.LoadSettings;
+import org.wuokko.robot.restlib.metrics.LatencyMetrics;
+import org.wuokko.robot.restlib.metrics.Phase;
+import org.wuokko.robot.restlib.stream.ElementCount;
+import org.wuokko.robot.restlib.stream.StreamingEvaluator;
+import org.wuokko.robot.restlib.stream.StreamingPath;
+import org.wuokko.robot.restlib.stream.StreamingResult;
+import org.wuokko.robot.restlib.util.BatchResult;
+import org.wuokko.robot.restlib.util.BatchRunner;
+import org.wuokko.robot.restlib.util.DocumentCache;
+import org.wuokko.robot.restlib.util.FixtureCache;
+import org.wuokko.robot.restlib.util.JsonBackend;
+import org.wuokko.robot.restlib.util.JsonPathCache;
+import org.wuokko.robot.restlib.util.JsonValues;
 import org.wuokko.robot.restlib.util.PropertiesUtil;
 import org.wuokko.robot.restlib.util.RequestUtil;
+import org.wuokko.robot.restlib.util.RobotLog;
+import org.wuokko.robot.restlib.util.SourceFetcher;
+import org.wuokko.robot.restlib.util.SourceHandler;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.PathNotFoundException;
 
@@ -36,27 +82,207 @@ import com.jayway.jsonpath.PathNotFoundException;
  * 
  * mvn robotframework:run -Duse.uri.cache=true
  * 
+ * The responses are cached by the method, URI, request body and content type.
+ * Only the methods listed in `uri.cache.methods` are cached. The entries expire
+ * after `uri.cache.ttl` milliseconds and the least recently used entries are
+ * evicted when the cached bodies take more than `uri.cache.max.bytes`. See
+ * `Get Uri Cache Statistics`.
+ * 
+ * Cached responses with an ETag or Last-Modified header are revalidated with
+ * a conditional request (If-None-Match / If-Modified-Since). When the server
+ * answers 304 Not Modified, the cached body is used. Set `uri.cache.revalidate`
+ * to false to use the cached responses without asking the server.
+ * 
+ * With `uri.cache.disk.mode` set to `read-through`, the responses are also
+ * kept in the `uri.cache.disk.dir` directory between suite runs, compressed
+ * and with their validators. In the `replay-only` mode the responses are only
+ * read from the directory, and requests without a stored response fail
+ * without being sent. Stored responses expire after `uri.cache.disk.ttl`
+ * milliseconds, and the oldest are removed when the directory takes more than
+ * `uri.cache.disk.max.bytes`.
+ * 
  * = Properties =
  * 
  * Also you can use properties file to set few options. The file named
  * 'robot-rest-lib.properties' is looked from the classpath. The options are:
  * 
  *  | *Property* | *Type* | *Default* |
- *  | connection.timeout | int | 1000 |
+ *  | connection.timeout | int | 5000 |
  *  | use.uri.cache | boolean | false |
+ *  | parse.from.stream | boolean | true |
+ *  | request.max.pending | int | 1000 (0 is no limit) |
+ *  | json.provider | json-smart, json-smart-strict or jackson | json-smart |
+ *  | document.cache.size | int | 20 |
+ *  | document.cache.max.length | long | 52428800 |
+ *  | jsonpath.cache.size | int | 1000 |
+ *  | fixture.cache.size | int | 10 |
+ *  | uri.cache.methods | comma separated list | GET |
+ *  | uri.cache.ttl | long (ms) | 0 (no expiry) |
+ *  | uri.cache.max.bytes | long | 67108864 |
+ *  | uri.cache.revalidate | boolean | true |
+ *  | uri.cache.disk.mode | off, read-through or replay-only | off |
+ *  | uri.cache.disk.dir | directory | ~/.robot-rest-lib/cache |
+ *  | uri.cache.disk.ttl | long (ms) | 0 (no expiry) |
+ *  | uri.cache.disk.max.bytes | long | 1073741824 |
+ *  | diff.max.differences | int | 100 (0 is no limit) |
+ *  | diff.mode | comma separated list of ignore_order, strict | (empty) |
+ *  | fetch.executor | virtual, cached, fixed or direct | virtual |
+ *  | fetch.threads | int (for fixed) | 4 |
+ *  | fetch.timeout | long (ms) | 0 (no limit) |
+ *  | batch.max.concurrency | int | 10 |
+ *  | load.duration | long (ms) | 10000 |
+ *  | load.rate | double (requests/s) | 0 (no target rate) |
+ *  | load.workers | int | 10 |
+ *  | load.max.<statistic>, load.min.<statistic> | double | (no threshold) |
+ *  | http.max.connections | int | 200 |
+ *  | http.max.connections.per.route | int | 20 |
+ *  | http.keep.alive | long (ms) | 30000 |
+ *  | http.tcp.nodelay | boolean | true |
+ *  | http.idle.timeout | long (ms) | 60000 (0 is no eviction) |
+ *  | http.connect.timeout | int (ms) | connection.timeout |
+ *  | http.socket.timeout | int (ms) | connection.timeout |
+ *  | http.request.timeout | int (ms) | connection.timeout |
+ *  | log.level | TRACE, DEBUG, INFO, WARN, ERROR or NONE | INFO |
+ *  | log.max.length | int | 2000 (0 is no limit) |
+ * 
+ * Messages below `log.level` are not written to the log at all, so set it to
+ * DEBUG to see the requests and the responses. Logged response bodies and
+ * other long values are cut to `log.max.length` characters.
+ * 
+ * The properties are settings of the library instance, except `log.level`,
+ * `log.max.length`, `jsonpath.cache.size` and `fixture.cache.size`. The log
+ * and the JsonPath and fixture caches are shared by the whole JVM, so the
+ * last library created sets them for every instance.
+ * 
+ * Parsed JSON documents are cached by their content, so several keywords
+ * reading the same source parse it only once. The cache keeps at most
+ * `document.cache.size` documents and `document.cache.max.length` characters
+ * of JSON in total.
+ * 
+ * Files given as `file` URIs are memory mapped and parsed as UTF-8 straight
+ * from the mapped bytes. The parsed files are cached for the whole JVM as long
+ * as their modification time and size do not change, so large fixture files
+ * are parsed only once. The cache keeps the `fixture.cache.size` most recently
+ * used files, 0 disables it.
+ * 
+ * JSON is parsed with the `json.provider` parser of the library instance. The
+ * default `json-smart` is permissive: it accepts single quotes, unquoted strings
+ * and comments. `json-smart-strict` and `jackson` accept only standard JSON,
+ * and `jackson` allocates the least while parsing. The parsers read the
+ * documents into the same kinds of values, so the keywords work the same with
+ * each of them.
+ * 
+ * Compiled JsonPath expressions are cached for the whole JVM. The cache keeps
+ * the `jsonpath.cache.size` most recently used paths. Use `Precompile Json Paths`
+ * to compile the paths in advance.
+ * 
+ * = HTTP connections =
+ * 
+ * The requests are sent with a pooled HTTP client that keeps the connections
+ * open between keywords. Libraries with the same `http.*` settings share the
+ * pool. `http.keep.alive` is used when the server does not send a Keep-Alive
+ * header, and connections idle longer than `http.idle.timeout` are closed in
+ * the background. `http.request.timeout` limits the wait for a free pooled
+ * connection. See `Get Http Pool Statistics`.
+ * 
+ * `Start Request` sends a request with a non-blocking client and returns
+ * right away, so a test can send many requests at the same time and check
+ * them after `Wait For Responses`. `Discard Pending Responses` cancels the
+ * requests that were not waited for, and at most `request.max.pending` of
+ * them are kept.
+ * 
+ * = Batches =
+ * 
+ * `Json Elements Should Match In Batch` checks the same paths from many sources
+ * with a bounded pool of threads and fails once with a report of all the failed
+ * sources.
+ * 
+ * = Load =
+ * 
+ * `Run Load` sends the same request repeatedly for `load.duration` and reports the
+ * throughput, error rate and latency percentiles. With `load.rate` the requests are
+ * sent on a fixed schedule and their latency includes the time they waited for a
+ * free worker, so a stalled server cannot hide its delays by slowing down the load.
+ * The thresholds `load.max.<statistic>` and `load.min.<statistic>` fail the keyword,
+ * for example `load.max.p95=200` or `load.min.throughput=50`.
+ * 
+ * = Latency =
+ * 
+ * Every request is timed by phase: waiting for a pooled connection, connecting,
+ * waiting for the first byte, reading the body, parsing and evaluating JsonPath.
+ * The times are kept in histograms per method and host for the whole JVM. Use
+ * `Get Latency Statistics` to check them and `Export Latency Statistics` in suite
+ * teardown to save them. `Response Time Should Be Less Than` and
+ * `P95 Response Time Should Be Below` check the last request or a group of
+ * requests started with `Set Latency Group`.
+ * 
+ * = Comparisons =
+ * 
+ * The comparison keywords read the `from` and `to` sources concurrently and
+ * parse each one as soon as it has been read, so comparing two hosts takes
+ * about as long as the slower of them. `fetch.executor` selects the threads:
+ * virtual threads when the JVM supports them, otherwise a pool of threads.
+ * Use `direct` to read the sources one after another. A source that fails,
+ * is empty or does not finish within `fetch.timeout` is named in the error.
+ * 
+ * = Large responses =
+ * 
+ * `Find Json Element From Stream` and `Find Json Elements From Stream` read the
+ * source as a stream of tokens instead of loading it into memory, and stop
+ * reading when the rest of the source cannot match. They support a subset of
+ * JsonPath, see `Find Json Element From Stream`.
+ * 
+ * `Json Should Have Element Count`, `Json Should Have At Least Element Count`
+ * and `Json Should Have At Most Element Count` count the elements from the
+ * stream without building them, and stop reading when the result is known.
+ * 
+ * The other keywords parse HTTP responses straight from the response bytes,
+ * decoded with the charset of the response, without building a string of the
+ * body. Exact match comparisons and responses that go through the URI cache
+ * are read as strings. This is on by default.
+ * 
+ * The responses parsed from the stream are hashed from their bytes and go
+ * through the document cache like the strings, so a response that has not
+ * changed is parsed only once.
  * 
  */
 @RobotKeywords
 public class JsonPathLibrary {
 
-    private Diff diff = new JsonDiff();
+    private Diff diff;
 
     private static final String DEFAULT_PROPERTIES_FILE = "robot-rest-lib.properties";
 
+    private static final String FROM = "from";
+
+    private static final String JSON = "json";
+
+    private static final String CSV = "csv";
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private static final String TO = "to";
+
+    private static final String FIXTURE_DOCUMENT = "document";
+
+    private static final String FIXTURE_DIFF = "diff";
+
     private Configuration config;
+
+    private JsonBackend backend;
     
     private RequestUtil requestUtil;
     
+    private DocumentCache documentCache;
+    
+    private SourceFetcher fetcher;
+    
+    private BatchRunner batchRunner;
+    
+    private LoadGenerator loadGenerator;
+    
     /**
      * Default constructor with no arguments.
      * 
@@ -71,7 +297,20 @@ public class JsonPathLibrary {
      */
     public JsonPathLibrary(String propertiesFile) {
     	config = PropertiesUtil.loadProperties(propertiesFile);
+    	// The log and the JsonPath and fixture caches are shared by the JVM
+    	RobotLog.configure(config);
+    	backend = JsonBackend.of(config);
+    	if (config != null && config.containsKey(JsonBackend.KEY_JSON_PROVIDER)) {
+    	    System.out.println("[Robot-Rest-Lib] Set JSON provider to '" + backend + "'");
+    	}
     	requestUtil = new RequestUtil(config);
+    	diff = new JsonDiff(config);
+    	documentCache = new DocumentCache(config);
+    	fetcher = new SourceFetcher(config);
+    	batchRunner = new BatchRunner(config);
+    	loadGenerator = new LoadGenerator();
+    	JsonPathCache.configure(config);
+    	FixtureCache.configure(config);
     }
     
     @RobotKeyword
@@ -117,10 +356,10 @@ public class JsonPathLibrary {
         String found = String.valueOf(findJsonElement(source, jsonPath, method, data, contentType));
 
         if (found.equals(value)) {
-            System.out.println("*DEBUG* The values '" + found + "' and '" + value + "' did match");
+            RobotLog.debug("The values '{}' and '{}' did match", found, value);
             match = true;
         } else {
-            System.out.println("*ERROR* The values '" + found + "' and '" + value + "' did not match");
+            RobotLog.error("The values '{}' and '{}' did not match", found, value);
             throw new JsonNotEqualException("The found value did not match, found '" + found + "', expected '" + value + "'");
         }
 
@@ -167,7 +406,8 @@ public class JsonPathLibrary {
      * specifies whether exact string match should be used or diffing by the
      * JSON objects ie. the order of the attributes does not matter.
      * 
-     * `from` and `to` can be either URI or the actual JSON content.
+     * `from` and `to` can be either URI or the actual JSON content. The
+     * sources are read at the same time, see `Comparisons`.
      * 
      * You can add optional method (ie GET, POST, PUT), data or content type as parameters.
      * Method defaults to GET.
@@ -180,37 +420,281 @@ public class JsonPathLibrary {
      */
     @RobotKeyword
     public boolean jsonShouldBeEqual(String from, String to, boolean useExactMatch, String method, String data, String contentType) throws Exception {
-        System.out.println("*DEBUG* Comparing JSON sources");
+        return compareSources(from, to, useExactMatch, null, method, data, contentType);
+    }
+
+    @RobotKeyword
+    public boolean jsonShouldBeEqualWithMode(String from, String to, String mode) throws Exception {
+        return jsonShouldBeEqualWithMode(from, to, mode, "GET");
+    }
+
+    @RobotKeyword
+    public boolean jsonShouldBeEqualWithMode(String from, String to, String mode, String method) throws Exception {
+        return jsonShouldBeEqualWithMode(from, to, mode, method, null);
+    }
+
+    @RobotKeyword
+    public boolean jsonShouldBeEqualWithMode(String from, String to, String mode, String method, String data) throws Exception {
+        return jsonShouldBeEqualWithMode(from, to, mode, method, data, null);
+    }
+
+    /**
+     * Checks if the given JSON contents are equal like `Json Should Be Equal`, using the given
+     * comparison `mode`. The mode is a comma separated list of the flags:
+     * 
+     * | *Flag* | *Description* |
+     * | ignore_order | Arrays are compared as multisets, the order of the elements does not matter |
+     * | strict | Keys found only from the `to` objects are reported as differences |
+     * 
+     * Without the flags (ie. an empty mode) the keys of `from` must be found from `to`, but
+     * extra keys in `to` are allowed, and arrays are compared by position. The default mode
+     * for the other keywords can be set with the `diff.mode` property.
+     * 
+     * The order-insensitive mode matches the array elements by hashing them, so it is fast
+     * also for large arrays.
+     * 
+     * `from` and `to` can be either URI or the actual JSON content.
+     * 
+     * You can add optional method (ie GET, POST, PUT), data or content type as parameters.
+     * Method defaults to GET.
+     * 
+     * Example:
+     * | Json Should Be Equal With Mode | { ids: [ 1, 2, 3 ] } | { ids: [ 3, 1, 2 ] } | ignore_order |
+     * | Json Should Be Equal With Mode | http://example.com/test.json | http://foobar.com/test.json | ignore_order,strict |
+     * | Json Should Be Equal With Mode | http://example.com/test.json | http://foobar.com/test.json | strict | POST | {hello: world} | application/json |
+     */
+    @RobotKeyword
+    public boolean jsonShouldBeEqualWithMode(String from, String to, String mode, String method, String data, String contentType) throws Exception {
+        return compareSources(from, to, false, DiffMode.parse(mode), method, data, contentType);
+    }
+
+    private boolean compareSources(String from, String to, boolean useExactMatch, DiffMode mode, String method, String data, String contentType) throws Exception {
+        RobotLog.debug("Comparing JSON sources");
 
         boolean equal = false;
 
-        String fromJson = requestUtil.readSource(from, method, data, contentType);
-        String toJson = requestUtil.readSource(to, method, data, contentType);
-        
-        if (StringUtils.isNotBlank(fromJson) && StringUtils.isNotBlank(toJson)) {
-            if (useExactMatch) {
-                if (fromJson.equals(toJson)) {
-                    System.out.println("*DEBUG* JSON strings are equal by exact compare");
-                    equal = true;
-                } else {
-                    System.out.println("*ERROR* JSON strings are NOT equal by exact compare");
-                    equal = false;
-                    throw new JsonNotEqualException("JSON strings are NOT equal by exact compare");
-                }
+        Map<String, LoadedSource> sources = readSources(from, to, !useExactMatch, method, data, contentType);
+
+        LoadedSource fromSource = sources.get(FROM);
+        LoadedSource toSource = sources.get(TO);
+
+        if (useExactMatch) {
+            if (fromSource.json.equals(toSource.json)) {
+                RobotLog.debug("JSON strings are equal by exact compare");
+                equal = true;
             } else {
-                equal = diff.compare(fromJson, toJson);
-                if (!equal) {
-                    throw new JsonNotEqualException("JSON strings are NOT equal by compare");
-                }
+                RobotLog.error("JSON strings are NOT equal by exact compare");
+                equal = false;
+                throw new JsonNotEqualException("JSON strings are NOT equal by exact compare");
             }
         } else {
-            System.out.println("*ERROR* Either from or to JSON was empty");
-            throw new JsonNotValidException("One of the JSON strings is empty");
+            DiffResult result = mode != null ? diff.diff(fromSource.parsed, toSource.parsed, mode) : diff.diff(fromSource.parsed, toSource.parsed);
+            equal = result.isEqual();
+            if (!equal) {
+                throw new JsonNotEqualException("JSON strings are NOT equal by compare:\n" + result.getReport());
+            }
         }
 
         return equal;
     }
 
+    /**
+     * Reads the `from` and `to` sources concurrently and parses them in the
+     * reading threads if `parse` is set. Throws SourceReadException if reading
+     * a source failed or timed out, and JsonNotValidException if a source was
+     * empty or could not be parsed, naming the sources in both cases.
+     */
+    private Map<String, LoadedSource> readSources(String from, String to, boolean parse, String method, String data, String contentType) throws Exception {
+
+        Map<String, Callable<LoadedSource>> tasks = new LinkedHashMap<String, Callable<LoadedSource>>();
+        tasks.put(FROM, new SourceLoader(from, parse, method, data, contentType));
+        tasks.put(TO, new SourceLoader(to, parse, method, data, contentType));
+
+        Map<String, LoadedSource> sources = fetcher.fetchAll(tasks);
+
+        List<String> invalid = new ArrayList<String>();
+
+        for (Entry<String, LoadedSource> source : sources.entrySet()) {
+            if (source.getValue().error != null) {
+                invalid.add("'" + source.getKey() + "' " + source.getValue().error);
+            }
+        }
+
+        if (!invalid.isEmpty()) {
+            RobotLog.error("Either from or to JSON was empty or invalid: {}", invalid);
+            throw new JsonNotValidException("One of the JSON strings is empty or invalid: " + StringUtils.join(invalid, ", "));
+        }
+
+        return sources;
+    }
+
+    /**
+     * Source read (and parsed) by a {@link SourceLoader}. The error tells why
+     * the source can not be compared.
+     */
+    private static class LoadedSource {
+
+        String json;
+
+        Object parsed;
+
+        String error;
+    }
+
+    private class SourceLoader implements Callable<LoadedSource> {
+
+        private final String source;
+
+        private final boolean parse;
+
+        private final String method;
+
+        private final String data;
+
+        private final String contentType;
+
+        SourceLoader(String source, boolean parse, String method, String data, String contentType) {
+            this.source = source;
+            this.parse = parse;
+            this.method = method;
+            this.data = data;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public LoadedSource call() throws Exception {
+            LoadedSource loaded = new LoadedSource();
+
+            File file = parse ? requestUtil.getFile(source) : null;
+
+            final DiffParser parser = new DiffParser(LatencyMetrics.keyOfSource(method, source));
+
+            if (file != null && file.length() > 0) {
+                try {
+                    loaded.parsed = FixtureCache.get(file, FIXTURE_DIFF + ":" + backend, parser);
+                } catch (JsonNotValidException e) {
+                    loaded.error = "is not valid: " + e.getMessage();
+                }
+
+                return loaded;
+            }
+
+            if (parse && requestUtil.isParsedFromStream(source, method)) {
+                LoadedSource streamed = requestUtil.streamSource(source, method, data, contentType, new SourceHandler<LoadedSource>() {
+
+                    @Override
+                    public LoadedSource handle(InputStream stream, Charset charset) throws IOException {
+                        LoadedSource loaded = new LoadedSource();
+
+                        try {
+                            loaded.parsed = parser.parse(new CloseShieldInputStream(stream), charset);
+
+                            if (loaded.parsed == null) {
+                                loaded.error = "is empty";
+                            }
+                        } catch (JsonNotValidException e) {
+                            loaded.error = "is not valid: " + e.getMessage();
+                        }
+
+                        skipRest(stream);
+
+                        return loaded;
+                    }
+                });
+
+                if (streamed != null) {
+                    return streamed;
+                }
+            }
+
+            loaded.json = requestUtil.readSource(source, method, data, contentType);
+
+            if (StringUtils.isBlank(loaded.json)) {
+                loaded.error = "is empty";
+            } else if (parse) {
+                try {
+                    long start = System.nanoTime();
+                    loaded.parsed = diff.parse(loaded.json);
+                    LatencyMetrics.recordSince(parser.key, Phase.PARSE, start);
+                } catch (JsonNotValidException e) {
+                    loaded.error = "is not valid: " + e.getMessage();
+                }
+            }
+
+            return loaded;
+        }
+    }
+
+    /**
+     * Parses a diff document from the bytes of a file or a response, recording
+     * the time under the latency key of the source.
+     */
+    private class DiffParser implements FixtureCache.Parser<Object> {
+
+        private final String key;
+
+        DiffParser(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public Object parse(InputStream json) throws JsonNotValidException {
+            return parse(json, null);
+        }
+
+        public Object parse(InputStream json, Charset charset) throws JsonNotValidException {
+            long start = System.nanoTime();
+
+            try {
+                return diff.parse(json, charset);
+            } finally {
+                LatencyMetrics.recordSince(key, Phase.PARSE, start);
+            }
+        }
+    }
+
+    @RobotKeyword
+    public List<Map<String, Object>> getJsonDifferences(String from, String to) throws Exception {
+        return getJsonDifferences(from, to, "GET");
+    }
+    
+    @RobotKeyword
+    public List<Map<String, Object>> getJsonDifferences(String from, String to, String method) throws Exception {
+        return getJsonDifferences(from, to, method, null);
+    }
+    
+    @RobotKeyword
+    public List<Map<String, Object>> getJsonDifferences(String from, String to, String method, String data) throws Exception {
+        return getJsonDifferences(from, to, method, data, null);
+    }
+    
+    /**
+     * Compares the given JSON contents like `Json Should Be Equal` and returns the differences
+     * as a list of dictionaries with keys `type`, `path`, `from` and `to`. The type is one of
+     * ADDED, REMOVED, CHANGED or TYPE_CHANGED and the path is a JSON Pointer, ie. `/store/book/0/price`.
+     * An empty list means the contents are equal.
+     * 
+     * At most `diff.max.differences` differences are returned.
+     * 
+     * `from` and `to` can be either URI or the actual JSON content.
+     * 
+     * You can add optional method (ie GET, POST, PUT), data or content type as parameters.
+     * Method defaults to GET.
+     * 
+     * Example:
+     * | ${differences} | Get Json Differences | http://example.com/test.json | http://foobar.com/test.json |
+     * | Length Should Be | ${differences} | 1 |
+     * | Should Be Equal | ${differences[0]['path']} | /store/book/0/price |
+     */
+    @RobotKeyword
+    public List<Map<String, Object>> getJsonDifferences(String from, String to, String method, String data, String contentType) throws Exception {
+        RobotLog.debug("Finding differences of JSON sources");
+
+        Map<String, LoadedSource> sources = readSources(from, to, true, method, data, contentType);
+
+        return diff.diff(sources.get(FROM).parsed, sources.get(TO).parsed).toMaps();
+    }
+
     @RobotKeyword
     public Object findJsonElement(String source, String jsonPath) throws Exception {
     	return findJsonElement(source, jsonPath, "GET");
@@ -242,14 +726,16 @@ public class JsonPathLibrary {
      */
     @RobotKeyword
     public Object findJsonElement(String source, String jsonPath, String method, String data, String contentType) throws Exception {
-        System.out.println("*DEBUG* Reading jsonPath: " + jsonPath);
+        RobotLog.debug("Reading jsonPath: {}", jsonPath);
+
+        String key = LatencyMetrics.keyOfSource(method, source);
 
-        String json = requestUtil.readSource(source, method, data, contentType);
+        DocumentContext document = readDocument(source, method, data, contentType, key);
 
         Object value;
 
         try {
-            value = JsonPath.read(json, jsonPath);
+            value = read(document, jsonPath, key);
         } catch (PathNotFoundException e) {
             throw new JsonElementNotFoundException("Path '" + jsonPath + "' was not found in JSON");
         }
@@ -257,20 +743,27 @@ public class JsonPathLibrary {
         return value;
     }
     
-    public List<Object> findJsonElementList(String source, String jsonPath) throws Exception {
-    	return findJsonElementList(source, jsonPath, "GET");
+    @RobotKeyword
+    public Map<String, Object> findJsonElements(String source, List<String> jsonPaths) throws Exception {
+        return findJsonElements(source, jsonPaths, "GET");
     }
     
-    public List<Object> findJsonElementList(String source, String jsonPath, String method) throws Exception {
-    	return findJsonElementList(source, jsonPath, method, null);
+    @RobotKeyword
+    public Map<String, Object> findJsonElements(String source, List<String> jsonPaths, String method) throws Exception {
+        return findJsonElements(source, jsonPaths, method, null);
     }
     
-    public List<Object> findJsonElementList(String source, String jsonPath, String method, String data) throws Exception {
-    	return findJsonElementList(source, jsonPath, method, data, null);
+    @RobotKeyword
+    public Map<String, Object> findJsonElements(String source, List<String> jsonPaths, String method, String data) throws Exception {
+        return findJsonElements(source, jsonPaths, method, data, null);
     }
-
+    
     /**
-     * Find JSON element list by `jsonPath` from the `source` and return its value if found.
+     * Find JSON elements by all the `jsonPaths` from the `source` and return them as a dictionary
+     * from the path to the found value.
+     * 
+     * The source is read and parsed only once for all the paths. If some of the paths are not found,
+     * the keyword fails listing all of them.
      * 
      * `source` can be either URI or the actual JSON content.
      * 
@@ -278,45 +771,48 @@ public class JsonPathLibrary {
      * Method defaults to GET.
      * 
      * Example:
-     * | Find Json Element | http://example.com/test.json | $.foo[*] |
-     * | Find Json Element | {element: [ {param:hello}, {foo:bar} ] } | $.element[*] |
-     * | Find Json Element | {element: [ {param:hello}, {foo:bar} ] } | $.element[*] | POST | {hello: world} | application/json |
+     * | @{paths} | Create List | $.element.foo | $.element.param |
+     * | ${values} | Find Json Elements | {element: { param:hello, foo:bar } } | ${paths} |
+     * | Should Be Equal | ${values['$.element.foo']} | bar |
+     * | ${values} | Find Json Elements | http://example.com/test.json | ${paths} | POST | {hello: world} | application/json |
      * 
      */
     @RobotKeyword
-    public List<Object> findJsonElementList(String source, String jsonPath, String method, String data, String contentType) throws Exception {
-        System.out.println("*DEBUG* Reading jsonPath: " + jsonPath);
+    public Map<String, Object> findJsonElements(String source, List<String> jsonPaths, String method, String data, String contentType) throws Exception {
+        RobotLog.debug("Reading {} jsonPaths", jsonPaths.size());
 
-        String json = requestUtil.readSource(source, method, data, contentType);
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
 
-        List<Object> elements;
+        List<String> missing = readElements(source, jsonPaths, method, data, contentType, values);
 
-        try {
-            elements = JsonPath.read(json, jsonPath);
-        } catch (PathNotFoundException e) {
-            throw new JsonElementNotFoundException("Path '" + jsonPath + "' was not found in JSON");
+        if (!missing.isEmpty()) {
+            throw new JsonElementNotFoundException("Paths " + missing + " were not found in JSON");
         }
 
-        return elements;
+        return values;
     }
 
     @RobotKeyword
-    public boolean jsonShouldHaveElementCount(String source, String jsonPath, Integer count) throws Exception {
-    	return jsonShouldHaveElementCount(source, jsonPath, count, "GET");
+    public boolean jsonElementsShouldMatch(String source, Map<String, Object> expectedValues) throws Exception {
+        return jsonElementsShouldMatch(source, expectedValues, "GET");
     }
     
     @RobotKeyword
-    public boolean jsonShouldHaveElementCount(String source, String jsonPath, Integer count, String method) throws Exception {
-    	return jsonShouldHaveElementCount(source, jsonPath, count, method, null);
+    public boolean jsonElementsShouldMatch(String source, Map<String, Object> expectedValues, String method) throws Exception {
+        return jsonElementsShouldMatch(source, expectedValues, method, null);
     }
     
     @RobotKeyword
-    public boolean jsonShouldHaveElementCount(String source, String jsonPath, Integer count, String method, String data) throws Exception {
-    	return jsonShouldHaveElementCount(source, jsonPath, count, method, data, null);
+    public boolean jsonElementsShouldMatch(String source, Map<String, Object> expectedValues, String method, String data) throws Exception {
+        return jsonElementsShouldMatch(source, expectedValues, method, data, null);
     }
     
     /**
-     * Find JSON element by `jsonPath` from the `source` and check if the amount of found elements matches the given `count`.
+     * Checks that the values found by the paths match the expected values. `expectedValues` is a
+     * dictionary from the JsonPath to the expected value.
+     * 
+     * The source is read and parsed only once for all the paths. All the paths are checked before
+     * failing, so the error lists every mismatch and missing path.
      * 
      * `source` can be either URI or the actual JSON content.
      * 
@@ -324,61 +820,1198 @@ public class JsonPathLibrary {
      * Method defaults to GET.
      * 
      * Example:
-     * | Json Should Have Element Count | http://example.com/test.json | $.foo[*] | 3 |
-     * | Json Should Have Element Count | {element: [ {param:hello}, {foo:bar} ] } | $.element[*] | 2 |
-     * | Json Should Have Element Count | {element: [ {param:hello}, {foo:bar} ] } | $.element[*] | 2 | POST | {hello: world} | application/json |
+     * | &{expected} | Create Dictionary | $.element.foo=bar | $.element.param=hello |
+     * | Json Elements Should Match | {element: { param:hello, foo:bar } } | ${expected} |
+     * | Json Elements Should Match | http://example.com/test.json | ${expected} | POST | {hello: world} | application/json |
      * 
      */
-    @SuppressWarnings("unchecked")
     @RobotKeyword
-    public boolean jsonShouldHaveElementCount(String source, String jsonPath, Integer count, String method, String data, String contentType) throws Exception {
-        boolean match = false;
+    public boolean jsonElementsShouldMatch(String source, Map<String, Object> expectedValues, String method, String data, String contentType) throws Exception {
 
-        System.out.println("*DEBUG* Reading jsonPath: " + jsonPath);
+        if (expectedValues == null) {
+            throw new IllegalArgumentException("Given values were null");
+        }
 
-        String json = requestUtil.readSource(source, method, data, contentType);
+        List<String> errors = matchElements(source, expectedValues, method, data, contentType);
 
-        List<Object> elements = null;
+        if (!errors.isEmpty()) {
+            RobotLog.error("{} of {} values did not match", errors.size(), expectedValues.size());
+            throw new JsonNotEqualException(errors.size() + " of " + expectedValues.size() + " values did not match: " + StringUtils.join(errors, "; "));
+        }
 
-        Object object = null;
+        return true;
+    }
 
-        try {
+    /**
+     * Reads the source once and compares the values of all the paths. Returns
+     * the mismatches and missing paths.
+     */
+    private List<String> matchElements(String source, Map<String, Object> expectedValues, String method, String data, String contentType) throws Exception {
 
-            object = JsonPath.read(json, jsonPath);
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
 
-        } catch (PathNotFoundException e) {
-            throw new JsonElementNotFoundException("Path '" + jsonPath + "' was not found in JSON");
+        List<String> errors = new ArrayList<String>();
+
+        for (String path : readElements(source, expectedValues.keySet(), method, data, contentType, values)) {
+            errors.add("'" + path + "' was not found");
         }
-        if (object != null) {
-            // TODO: Find a way to do this without suppressing the warning
-            if (object instanceof List<?>) {
-                elements = (List<Object>) object;
-                if (CollectionUtils.isNotEmpty(elements)) {
-                    match = (elements.size() == count);
 
-                    if (!match) {
-                        System.out.println("*ERROR* Element counts did not match. Expected '" + count + "', got '" + elements.size() + "'");
-                        throw new JsonNotEqualException("Element counts did not match. Expected '" + count + "', got '" + elements.size() + "'");
-                    }
+        for (Entry<String, Object> entry : values.entrySet()) {
+            String found = String.valueOf(entry.getValue());
+            String expected = String.valueOf(expectedValues.get(entry.getKey()));
 
-                } else {
-                    // In practice, it's impossible to end here.
-                    System.out.println("*ERROR* Could not find elements from '" + jsonPath + "'");
-                    throw new JsonElementNotFoundException("Could not find elements from '" + jsonPath + "'");
-                }
-            } else if (count == 1) {
-                System.out.println("*DEBUG* Found 1 item as expected from '" + jsonPath + "'");
-                match = true;
+            if (found.equals(expected)) {
+                RobotLog.debug("The values '{}' and '{}' did match for '{}'", found, expected, entry.getKey());
             } else {
-                System.out.println("*ERROR* Found 1 item, but expected '" + count + "'");
-                throw new JsonElementNotFoundException("Found 1 item, but expected '" + count + "'");
+                errors.add("'" + entry.getKey() + "' found '" + found + "', expected '" + expected + "'");
             }
-        } else {
-            System.out.println("*ERROR* Could not find elements from '" + jsonPath + "'");
-            throw new JsonElementNotFoundException("Could not find elements from '" + jsonPath + "'");
         }
 
-        return match;
+        return errors;
+    }
+
+    @RobotKeyword
+    public List<Map<String, Object>> jsonElementsShouldMatchInBatch(List<String> sources, Map<String, Object> expectedValues) throws Exception {
+        return jsonElementsShouldMatchInBatch(sources, expectedValues, batchRunner.getMaxConcurrency());
+    }
+
+    @RobotKeyword
+    public List<Map<String, Object>> jsonElementsShouldMatchInBatch(List<String> sources, Map<String, Object> expectedValues, Integer maxConcurrency) throws Exception {
+        return jsonElementsShouldMatchInBatch(sources, expectedValues, maxConcurrency, "GET");
+    }
+
+    @RobotKeyword
+    public List<Map<String, Object>> jsonElementsShouldMatchInBatch(List<String> sources, Map<String, Object> expectedValues, Integer maxConcurrency, String method) throws Exception {
+        return jsonElementsShouldMatchInBatch(sources, expectedValues, maxConcurrency, method, null);
+    }
+
+    @RobotKeyword
+    public List<Map<String, Object>> jsonElementsShouldMatchInBatch(List<String> sources, Map<String, Object> expectedValues, Integer maxConcurrency, String method, String data) throws Exception {
+        return jsonElementsShouldMatchInBatch(sources, expectedValues, maxConcurrency, method, data, null);
+    }
+
+    /**
+     * Checks the values like `Json Elements Should Match` from many sources at the same
+     * time. At most `maxConcurrency` sources are read at once, by default
+     * `batch.max.concurrency`.
+     * 
+     * Every source is checked before failing, and the error lists each failed source with
+     * its mismatches. When all the sources match, the keyword returns a list of dictionaries
+     * with keys `source`, `status` (PASS or FAIL), `time` (ms) and `message`, in the order
+     * of the sources. The same table is logged in both cases.
+     * 
+     * You can add optional method (ie GET, POST, PUT), data or content type as parameters.
+     * Method defaults to GET.
+     * 
+     * Example:
+     * | @{sources} | Create List | http://host1.example.com/health | http://host2.example.com/health |
+     * | &{expected} | Create Dictionary | $.status=UP | $.version=1.2 |
+     * | Json Elements Should Match In Batch | ${sources} | ${expected} |
+     * | ${results} | Json Elements Should Match In Batch | ${sources} | ${expected} | 20 |
+     */
+    @RobotKeyword
+    public List<Map<String, Object>> jsonElementsShouldMatchInBatch(List<String> sources, final Map<String, Object> expectedValues, Integer maxConcurrency, final String method, final String data, final String contentType) throws Exception {
+
+        if (sources == null || expectedValues == null) {
+            throw new IllegalArgumentException("Given sources or values were null");
+        }
+
+        RobotLog.debug("Checking {} paths from {} sources", expectedValues.size(), sources.size());
+
+        List<BatchResult> results = batchRunner.run(sources, maxConcurrency != null ? maxConcurrency : batchRunner.getMaxConcurrency(), new BatchRunner.Check() {
+
+            @Override
+            public void check(String source) throws Exception {
+                List<String> errors = matchElements(source, expectedValues, method, data, contentType);
+
+                if (!errors.isEmpty()) {
+                    throw new JsonNotEqualException(StringUtils.join(errors, "; "));
+                }
+            }
+        });
+
+        String report = BatchRunner.report(results);
+
+        List<Map<String, Object>> table = new ArrayList<Map<String, Object>>();
+
+        boolean passed = true;
+
+        for (BatchResult result : results) {
+            table.add(result.toMap());
+            passed &= result.isPassed();
+        }
+
+        if (!passed) {
+            RobotLog.error(report);
+            throw new JsonNotEqualException(report);
+        }
+
+        RobotLog.info(report);
+
+        return table;
+    }
+
+    @RobotKeyword
+    public List<Map<String, Object>> jsonElementsShouldMatchInBatchFromFile(String file, Map<String, Object> expectedValues) throws Exception {
+        return jsonElementsShouldMatchInBatch(readSourcesFile(file), expectedValues);
+    }
+
+    @RobotKeyword
+    public List<Map<String, Object>> jsonElementsShouldMatchInBatchFromFile(String file, Map<String, Object> expectedValues, Integer maxConcurrency) throws Exception {
+        return jsonElementsShouldMatchInBatch(readSourcesFile(file), expectedValues, maxConcurrency);
+    }
+
+    @RobotKeyword
+    public List<Map<String, Object>> jsonElementsShouldMatchInBatchFromFile(String file, Map<String, Object> expectedValues, Integer maxConcurrency, String method) throws Exception {
+        return jsonElementsShouldMatchInBatch(readSourcesFile(file), expectedValues, maxConcurrency, method);
+    }
+
+    @RobotKeyword
+    public List<Map<String, Object>> jsonElementsShouldMatchInBatchFromFile(String file, Map<String, Object> expectedValues, Integer maxConcurrency, String method, String data) throws Exception {
+        return jsonElementsShouldMatchInBatch(readSourcesFile(file), expectedValues, maxConcurrency, method, data);
+    }
+
+    /**
+     * Like `Json Elements Should Match In Batch`, but the sources are read from a file with
+     * one URL per line. Empty lines and lines starting with # are skipped.
+     * 
+     * Example:
+     * | &{expected} | Create Dictionary | $.status=UP |
+     * | Json Elements Should Match In Batch From File | endpoints.txt | ${expected} | 20 |
+     */
+    @RobotKeyword
+    public List<Map<String, Object>> jsonElementsShouldMatchInBatchFromFile(String file, Map<String, Object> expectedValues, Integer maxConcurrency, String method, String data, String contentType) throws Exception {
+        return jsonElementsShouldMatchInBatch(readSourcesFile(file), expectedValues, maxConcurrency, method, data, contentType);
+    }
+
+    private List<String> readSourcesFile(String file) throws IOException {
+        RobotLog.debug("Reading sources from file: {}", file);
+
+        List<String> sources = new ArrayList<String>();
+
+        for (String line : FileUtils.readLines(new File(file), "UTF-8")) {
+            if (StringUtils.isNotBlank(line) && !line.trim().startsWith("#")) {
+                sources.add(line.trim());
+            }
+        }
+
+        return sources;
+    }
+
+    /**
+     * Reads the source once and finds all the paths from it. The found values are put into
+     * `values` and the paths that were not found are returned.
+     */
+    private List<String> readElements(String source, Collection<String> jsonPaths, String method, String data, String contentType, Map<String, Object> values) throws Exception {
+
+        String key = LatencyMetrics.keyOfSource(method, source);
+
+        DocumentContext document = readDocument(source, method, data, contentType, key);
+
+        List<String> missing = new ArrayList<String>();
+
+        for (String jsonPath : jsonPaths) {
+            try {
+                values.put(jsonPath, read(document, jsonPath, key));
+            } catch (PathNotFoundException e) {
+                missing.add(jsonPath);
+            }
+        }
+
+        return missing;
+    }
+    
+    /**
+     * Reads and parses the source. Files are parsed straight from the mapped
+     * file through the fixture cache and HTTP responses from the response
+     * stream when possible, other sources with the document cache.
+     */
+    private DocumentContext readDocument(String source, String method, String data, String contentType, String key) throws IOException, JsonNotValidException {
+
+        File file = requestUtil.getFile(source);
+
+        if (file != null) {
+            return FixtureCache.get(file, FIXTURE_DOCUMENT + ":" + backend, new DocumentParser(key));
+        }
+
+        if (requestUtil.isParsedFromStream(source, method)) {
+            DocumentContext document = requestUtil.streamSource(source, method, data, contentType, new DocumentParser(key));
+
+            if (document != null) {
+                return document;
+            }
+        }
+
+        return parse(requestUtil.readSource(source, method, data, contentType), key);
+    }
+
+    /**
+     * Reads the whitespace left after the parsed document, so the connection
+     * is not aborted and can be reused. The parser closes the stream it reads,
+     * so it is given a stream shielded from closing.
+     */
+    private static void skipRest(InputStream stream) throws IOException {
+        IOUtils.copy(stream, NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+
+    /**
+     * Keeps the bytes of a response read from the stream, so it can be parsed
+     * again without sending the request again.
+     */
+    private static class BufferedBody {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private Charset charset;
+
+        InputStream record(InputStream stream, Charset charset) {
+            this.charset = charset;
+            return new TeeInputStream(stream, bytes);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes.toByteArray(), charset != null ? charset : StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Parses a JsonPath document from the bytes of a file or a response,
+     * recording the time under the latency key of the source.
+     */
+    private class DocumentParser implements FixtureCache.Parser<DocumentContext>, SourceHandler<DocumentContext> {
+
+        private final String key;
+
+        DocumentParser(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public DocumentContext parse(InputStream json) {
+            return parse(json, null);
+        }
+
+        private DocumentContext parse(InputStream json, Charset charset) {
+            long start = System.nanoTime();
+
+            try {
+                return JsonPath.parse(backend.parse(json, charset), backend.getConfiguration());
+            } finally {
+                LatencyMetrics.recordSince(key, Phase.PARSE, start);
+            }
+        }
+
+        /**
+         * Reads the response into bytes and parses them with the document
+         * cache, so the same response is parsed only once.
+         */
+        @Override
+        public DocumentContext handle(InputStream stream, Charset charset) throws IOException {
+            byte[] json = IOUtils.toByteArray(stream);
+
+            long start = System.nanoTime();
+
+            try {
+                return documentCache.parse(json, charset);
+            } finally {
+                LatencyMetrics.recordSince(key, Phase.PARSE, start);
+            }
+        }
+    }
+
+    /**
+     * Parses the JSON with the document cache, recording the time under the
+     * latency key of the source.
+     */
+    private DocumentContext parse(String json, String key) {
+        long start = System.nanoTime();
+
+        try {
+            return documentCache.parse(json);
+        } finally {
+            LatencyMetrics.recordSince(key, Phase.PARSE, start);
+        }
+    }
+
+    /**
+     * Reads a copy of the value, because the document may be shared through
+     * the document or the fixture cache.
+     */
+    private <T> T read(DocumentContext document, String jsonPath, String key) {
+        return JsonValues.copy(this.<T> readShared(document, jsonPath, key));
+    }
+
+    /**
+     * Reads the value of the document itself, which must not be modified or
+     * returned to the tests.
+     */
+    private <T> T readShared(DocumentContext document, String jsonPath, String key) {
+        long start = System.nanoTime();
+
+        try {
+            return document.read(JsonPathCache.compile(jsonPath));
+        } finally {
+            LatencyMetrics.recordSince(key, Phase.EVALUATE, start);
+        }
+    }
+
+    @RobotKeyword
+    public Object findJsonElementFromStream(String source, String jsonPath) throws Exception {
+        return findJsonElementFromStream(source, jsonPath, "GET");
+    }
+    
+    @RobotKeyword
+    public Object findJsonElementFromStream(String source, String jsonPath, String method) throws Exception {
+        return findJsonElementFromStream(source, jsonPath, method, null);
+    }
+    
+    @RobotKeyword
+    public Object findJsonElementFromStream(String source, String jsonPath, String method, String data) throws Exception {
+        return findJsonElementFromStream(source, jsonPath, method, data, null);
+    }
+    
+    /**
+     * Find JSON element by `jsonPath` from the `source` like `Find Json Element`, but without
+     * reading the whole source into memory. Use this for very large responses.
+     * 
+     * The source is parsed as a stream and only the found values are kept in memory. Reading
+     * stops as soon as the rest of the source cannot match, so a definite path near the start
+     * of a large response is found without downloading all of it. The URI cache is not used.
+     * 
+     * Only a subset of JsonPath is supported: properties, array indexes, wildcards (`[*]` and `.*`)
+     * and simple filters such as `[?(@.price < 10)]` or `[?(@.isbn)]`. Deep scans (`..`), negative
+     * indexes, slices, unions and functions fail with an error. String values in the source must
+     * be quoted.
+     * 
+     * `source` can be either URI or the actual JSON content.
+     * 
+     * You can add optional method (ie GET, POST, PUT), data or content type as parameters.
+     * Method defaults to GET.
+     * 
+     * Example:
+     * | Find Json Element From Stream | http://example.com/export.json | $.meta.total |
+     * | Find Json Element From Stream | file:///tmp/export.json | $.items[?(@.id == 42)].name |
+     * | Find Json Element From Stream | http://example.com/export | $.items[0] | POST | {hello: world} | application/json |
+     * 
+     */
+    @RobotKeyword
+    public Object findJsonElementFromStream(String source, String jsonPath, String method, String data, String contentType) throws Exception {
+        RobotLog.debug("Streaming jsonPath: {}", jsonPath);
+
+        StreamingResult result = streamElements(source, Arrays.asList(jsonPath), method, data, contentType);
+
+        if (!result.isFound(0)) {
+            throw new JsonElementNotFoundException("Path '" + jsonPath + "' was not found in JSON");
+        }
+
+        return result.getValue(0);
+    }
+    
+    @RobotKeyword
+    public Map<String, Object> findJsonElementsFromStream(String source, List<String> jsonPaths) throws Exception {
+        return findJsonElementsFromStream(source, jsonPaths, "GET");
+    }
+    
+    @RobotKeyword
+    public Map<String, Object> findJsonElementsFromStream(String source, List<String> jsonPaths, String method) throws Exception {
+        return findJsonElementsFromStream(source, jsonPaths, method, null);
+    }
+    
+    @RobotKeyword
+    public Map<String, Object> findJsonElementsFromStream(String source, List<String> jsonPaths, String method, String data) throws Exception {
+        return findJsonElementsFromStream(source, jsonPaths, method, data, null);
+    }
+    
+    /**
+     * Find JSON elements by all the `jsonPaths` from the `source` in a single pass over the
+     * stream and return them as a dictionary from the path to the found value. See
+     * `Find Json Element From Stream` for the supported paths and `Find Json Elements` for
+     * the returned values.
+     * 
+     * `source` can be either URI or the actual JSON content.
+     * 
+     * You can add optional method (ie GET, POST, PUT), data or content type as parameters.
+     * Method defaults to GET.
+     * 
+     * Example:
+     * | @{paths} | Create List | $.meta.total | $.items[0].id |
+     * | ${values} | Find Json Elements From Stream | http://example.com/export.json | ${paths} |
+     * | Should Be Equal As Integers | ${values['$.meta.total']} | 100000 |
+     * 
+     */
+    @RobotKeyword
+    public Map<String, Object> findJsonElementsFromStream(String source, List<String> jsonPaths, String method, String data, String contentType) throws Exception {
+        RobotLog.debug("Streaming {} jsonPaths", jsonPaths.size());
+
+        StreamingResult result = streamElements(source, jsonPaths, method, data, contentType);
+
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+
+        List<String> missing = new ArrayList<String>();
+
+        for (int i = 0; i < jsonPaths.size(); i++) {
+            if (result.isFound(i)) {
+                values.put(jsonPaths.get(i), result.getValue(i));
+            } else {
+                missing.add(jsonPaths.get(i));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            throw new JsonElementNotFoundException("Paths " + missing + " were not found in JSON");
+        }
+
+        return values;
+    }
+
+    private StreamingResult streamElements(String source, Collection<String> jsonPaths, String method, String data, String contentType) throws Exception {
+
+        final StreamingEvaluator evaluator = new StreamingEvaluator(jsonPaths);
+
+        StreamingResult result = requestUtil.streamSource(source, method, data, contentType, new SourceHandler<StreamingResult>() {
+
+            @Override
+            public StreamingResult handle(InputStream stream, Charset charset) throws IOException {
+                return evaluator.evaluate(stream, charset);
+            }
+        });
+
+        if (result == null) {
+            throw new JsonNotValidException("Could not read JSON from the source");
+        }
+
+        if (result.isStoppedEarly()) {
+            RobotLog.debug("Stopped reading the source after all the paths were found");
+        }
+
+        return result;
+    }
+
+    public List<Object> findJsonElementList(String source, String jsonPath) throws Exception {
+    	return findJsonElementList(source, jsonPath, "GET");
+    }
+    
+    public List<Object> findJsonElementList(String source, String jsonPath, String method) throws Exception {
+    	return findJsonElementList(source, jsonPath, method, null);
+    }
+    
+    public List<Object> findJsonElementList(String source, String jsonPath, String method, String data) throws Exception {
+    	return findJsonElementList(source, jsonPath, method, data, null);
+    }
+
+    /**
+     * Find JSON element list by `jsonPath` from the `source` and return its value if found.
+     * 
+     * `source` can be either URI or the actual JSON content.
+     * 
+     * You can add optional method (ie GET, POST, PUT), data or content type as parameters.
+     * Method defaults to GET.
+     * 
+     * Example:
+     * | Find Json Element | http://example.com/test.json | $.foo[*] |
+     * | Find Json Element | {element: [ {param:hello}, {foo:bar} ] } | $.element[*] |
+     * | Find Json Element | {element: [ {param:hello}, {foo:bar} ] } | $.element[*] | POST | {hello: world} | application/json |
+     * 
+     */
+    @RobotKeyword
+    public List<Object> findJsonElementList(String source, String jsonPath, String method, String data, String contentType) throws Exception {
+        RobotLog.debug("Reading jsonPath: {}", jsonPath);
+
+        String key = LatencyMetrics.keyOfSource(method, source);
+
+        DocumentContext document = readDocument(source, method, data, contentType, key);
+
+        List<Object> elements;
+
+        try {
+            elements = read(document, jsonPath, key);
+        } catch (PathNotFoundException e) {
+            throw new JsonElementNotFoundException("Path '" + jsonPath + "' was not found in JSON");
+        }
+
+        return elements;
+    }
+
+    @RobotKeyword
+    public boolean jsonShouldHaveElementCount(String source, String jsonPath, Integer count) throws Exception {
+    	return jsonShouldHaveElementCount(source, jsonPath, count, "GET");
+    }
+    
+    @RobotKeyword
+    public boolean jsonShouldHaveElementCount(String source, String jsonPath, Integer count, String method) throws Exception {
+    	return jsonShouldHaveElementCount(source, jsonPath, count, method, null);
+    }
+    
+    @RobotKeyword
+    public boolean jsonShouldHaveElementCount(String source, String jsonPath, Integer count, String method, String data) throws Exception {
+    	return jsonShouldHaveElementCount(source, jsonPath, count, method, data, null);
+    }
+    
+    /**
+     * Find JSON element by `jsonPath` from the `source` and check if the amount of found elements matches the given `count`.
+     * 
+     * The elements are counted from the stream of the source without building them, and reading
+     * stops as soon as there are more elements than expected. Paths that are not supported by
+     * `Find Json Element From Stream` and sources that are not valid for the streaming parser
+     * are read with JsonPath instead.
+     * 
+     * `source` can be either URI or the actual JSON content.
+     * 
+     * You can add optional method (ie GET, POST, PUT), data or content type as parameters.
+     * Method defaults to GET.
+     * 
+     * Example:
+     * | Json Should Have Element Count | http://example.com/test.json | $.foo[*] | 3 |
+     * | Json Should Have Element Count | {element: [ {param:hello}, {foo:bar} ] } | $.element[*] | 2 |
+     * | Json Should Have Element Count | {element: [ {param:hello}, {foo:bar} ] } | $.element[*] | 2 | POST | {hello: world} | application/json |
+     * 
+     */
+    @RobotKeyword
+    public boolean jsonShouldHaveElementCount(String source, String jsonPath, Integer count, String method, String data, String contentType) throws Exception {
+        RobotLog.debug("Counting jsonPath: {}", jsonPath);
+
+        ElementCount elements = countElements(source, jsonPath, count + 1, method, data, contentType);
+
+        if (!elements.isFound()) {
+            throw new JsonElementNotFoundException("Path '" + jsonPath + "' was not found in JSON");
+        } else if (elements.getCount() == 0) {
+            RobotLog.error("Could not find elements from '{}'", jsonPath);
+            throw new JsonElementNotFoundException("Could not find elements from '" + jsonPath + "'");
+        } else if (elements.isSingle()) {
+            if (count != 1) {
+                RobotLog.error("Found 1 item, but expected '{}'", count);
+                throw new JsonElementNotFoundException("Found 1 item, but expected '" + count + "'");
+            }
+            RobotLog.debug("Found 1 item as expected from '{}'", jsonPath);
+        } else if (elements.getCount() != count) {
+            RobotLog.error("Element counts did not match. Expected '{}', got '{}'", count, elements);
+            throw new JsonNotEqualException("Element counts did not match. Expected '" + count + "', got '" + elements + "'");
+        }
+
+        return true;
+    }
+
+    @RobotKeyword
+    public boolean jsonShouldHaveAtLeastElementCount(String source, String jsonPath, Integer count) throws Exception {
+        return jsonShouldHaveAtLeastElementCount(source, jsonPath, count, "GET");
+    }
+    
+    @RobotKeyword
+    public boolean jsonShouldHaveAtLeastElementCount(String source, String jsonPath, Integer count, String method) throws Exception {
+        return jsonShouldHaveAtLeastElementCount(source, jsonPath, count, method, null);
+    }
+    
+    @RobotKeyword
+    public boolean jsonShouldHaveAtLeastElementCount(String source, String jsonPath, Integer count, String method, String data) throws Exception {
+        return jsonShouldHaveAtLeastElementCount(source, jsonPath, count, method, data, null);
+    }
+    
+    /**
+     * Checks that the `jsonPath` finds at least `count` elements from the `source`. Reading stops
+     * as soon as `count` elements have been found. See `Json Should Have Element Count`.
+     * 
+     * `source` can be either URI or the actual JSON content.
+     * 
+     * You can add optional method (ie GET, POST, PUT), data or content type as parameters.
+     * Method defaults to GET.
+     * 
+     * Example:
+     * | Json Should Have At Least Element Count | http://example.com/items?page=1 | $.items[*] | 50 |
+     * | Json Should Have At Least Element Count | {element: [ {param:hello}, {foo:bar} ] } | $.element[*] | 1 |
+     * 
+     */
+    @RobotKeyword
+    public boolean jsonShouldHaveAtLeastElementCount(String source, String jsonPath, Integer count, String method, String data, String contentType) throws Exception {
+        RobotLog.debug("Counting at least {} elements from jsonPath: {}", count, jsonPath);
+
+        ElementCount elements = countElements(source, jsonPath, count, method, data, contentType);
+
+        if (!elements.isFound()) {
+            throw new JsonElementNotFoundException("Path '" + jsonPath + "' was not found in JSON");
+        } else if (elements.getCount() < count) {
+            RobotLog.error("Expected at least '{}' elements, got '{}'", count, elements);
+            throw new JsonNotEqualException("Expected at least '" + count + "' elements, got '" + elements + "'");
+        }
+
+        return true;
+    }
+
+    @RobotKeyword
+    public boolean jsonShouldHaveAtMostElementCount(String source, String jsonPath, Integer count) throws Exception {
+        return jsonShouldHaveAtMostElementCount(source, jsonPath, count, "GET");
+    }
+    
+    @RobotKeyword
+    public boolean jsonShouldHaveAtMostElementCount(String source, String jsonPath, Integer count, String method) throws Exception {
+        return jsonShouldHaveAtMostElementCount(source, jsonPath, count, method, null);
+    }
+    
+    @RobotKeyword
+    public boolean jsonShouldHaveAtMostElementCount(String source, String jsonPath, Integer count, String method, String data) throws Exception {
+        return jsonShouldHaveAtMostElementCount(source, jsonPath, count, method, data, null);
+    }
+    
+    /**
+     * Checks that the `jsonPath` finds at most `count` elements from the `source`. Reading stops
+     * as soon as there are more than `count` elements. A path that finds no elements passes, but
+     * a definite path that does not exist fails. See `Json Should Have Element Count`.
+     * 
+     * `source` can be either URI or the actual JSON content.
+     * 
+     * You can add optional method (ie GET, POST, PUT), data or content type as parameters.
+     * Method defaults to GET.
+     * 
+     * Example:
+     * | Json Should Have At Most Element Count | http://example.com/items?page=1 | $.items[*] | 100 |
+     * | Json Should Have At Most Element Count | {element: [ {param:hello}, {foo:bar} ] } | $.element[*] | 2 |
+     * 
+     */
+    @RobotKeyword
+    public boolean jsonShouldHaveAtMostElementCount(String source, String jsonPath, Integer count, String method, String data, String contentType) throws Exception {
+        RobotLog.debug("Counting at most {} elements from jsonPath: {}", count, jsonPath);
+
+        ElementCount elements = countElements(source, jsonPath, count + 1, method, data, contentType);
+
+        if (!elements.isFound()) {
+            throw new JsonElementNotFoundException("Path '" + jsonPath + "' was not found in JSON");
+        } else if (elements.getCount() > count) {
+            RobotLog.error("Expected at most '{}' elements, got '{}'", count, elements);
+            throw new JsonNotEqualException("Expected at most '" + count + "' elements, got '" + elements + "'");
+        }
+
+        return true;
+    }
+
+    /**
+     * Counts the elements found by the path, stopping at the limit. The elements are counted
+     * from the stream when possible, otherwise the source is read and parsed with JsonPath.
+     */
+    private ElementCount countElements(String source, String jsonPath, long limit, String method, String data, String contentType) throws Exception {
+
+        String key = LatencyMetrics.keyOfSource(method, source);
+
+        if (StreamingPath.isSupported(jsonPath)) {
+
+            final StreamingEvaluator evaluator = new StreamingEvaluator(StreamingPath.compile(jsonPath));
+
+            final long countLimit = limit;
+
+            // Only GET requests are sent again for JsonPath, the others are kept
+            final BufferedBody body = "GET".equalsIgnoreCase(method) ? null : new BufferedBody();
+
+            StreamingResult result = null;
+
+            try {
+                result = requestUtil.streamSource(source, method, data, contentType, new SourceHandler<StreamingResult>() {
+
+                    @Override
+                    public StreamingResult handle(InputStream stream, Charset charset) throws IOException {
+                        if (body == null) {
+                            return evaluator.count(stream, charset, countLimit);
+                        }
+
+                        InputStream tee = body.record(stream, charset);
+
+                        try {
+                            return evaluator.count(tee, charset, countLimit);
+                        } catch (JsonProcessingException e) {
+                            skipRest(tee);
+                            throw e;
+                        }
+                    }
+                });
+            } catch (JsonProcessingException e) {
+                RobotLog.debug("Could not stream the source, reading it with JsonPath: {}", e.getOriginalMessage());
+
+                if (body != null) {
+                    return countElements(parse(body.toString(), key), jsonPath, key);
+                }
+            }
+
+            if (result != null) {
+                return result.getElementCount(0);
+            }
+        }
+
+        return countElements(readDocument(source, method, data, contentType, key), jsonPath, key);
+    }
+
+    private ElementCount countElements(DocumentContext document, String jsonPath, String key) {
+
+        try {
+            return ElementCount.of(readShared(document, jsonPath, key));
+        } catch (PathNotFoundException e) {
+            return ElementCount.notFound();
+        }
+    }
+
+    /**
+     * Compiles the given JsonPath expressions into the path cache and returns the amount of compiled paths.
+     * 
+     * Use in suite setup to find invalid paths before the tests are run. All the paths are
+     * compiled before failing, so the error lists every invalid path.
+     * 
+     * Example:
+     * | Precompile Json Paths | $.store.book[*].author | $.store.bicycle.color |
+     * | Precompile Json Paths | @{paths} |
+     */
+    @RobotKeyword
+    public int precompileJsonPaths(String[] jsonPaths) throws Exception {
+        RobotLog.debug("Precompiling {} paths", jsonPaths.length);
+
+        return JsonPathCache.precompile(Arrays.asList(jsonPaths));
+    }
+
+    /**
+     * Compiles the JsonPath expressions from the given file into the path cache and returns the
+     * amount of compiled paths. The file is read as UTF-8 and it should have one path per line.
+     * Empty lines and lines starting with # are skipped.
+     * 
+     * Example:
+     * | Precompile Json Paths From File | ${CURDIR}/paths.txt |
+     */
+    @RobotKeyword
+    public int precompileJsonPathsFromFile(String file) throws Exception {
+        RobotLog.debug("Precompiling paths from file: {}", file);
+
+        List<String> jsonPaths = FileUtils.readLines(new File(file), "UTF-8");
+
+        for (int i = jsonPaths.size() - 1; i >= 0; i--) {
+            if (jsonPaths.get(i).trim().startsWith("#")) {
+                jsonPaths.remove(i);
+            }
+        }
+
+        return JsonPathCache.precompile(jsonPaths);
+    }
+
+    @RobotKeyword
+    public String startRequest(String source) throws Exception {
+        return startRequest(source, "GET");
+    }
+
+    @RobotKeyword
+    public String startRequest(String source, String method) throws Exception {
+        return startRequest(source, method, null);
+    }
+
+    @RobotKeyword
+    public String startRequest(String source, String method, String data) throws Exception {
+        return startRequest(source, method, data, null);
+    }
+
+    /**
+     * Sends the request without waiting for the response and returns a handle for
+     * `Wait For Responses`. Use it to send many requests at the same time and check
+     * the responses after all of them have arrived.
+     * 
+     * `source` can be either URI or the actual JSON content.
+     * 
+     * You can add optional method (ie GET, POST, PUT), data or content type as parameters.
+     * Method defaults to GET.
+     * 
+     * Example:
+     * | ${first} | Start Request | http://example.com/first.json |
+     * | ${second} | Start Request | http://example.com/second.json | POST | {id: 1} | application/json |
+     * | ${handles} | Create List | ${first} | ${second} |
+     * | ${responses} | Wait For Responses | ${handles} |
+     * | Json Element Should Match | ${responses[1]} | $.id | 1 |
+     */
+    @RobotKeyword
+    public String startRequest(String source, String method, String data, String contentType) throws Exception {
+        RobotLog.debug("Starting request to {}", source);
+        return requestUtil.startRequest(source, method, data, contentType);
+    }
+
+    @RobotKeyword
+    public List<String> waitForResponses(List<String> handles) throws Exception {
+        return waitForResponses(handles, 0);
+    }
+
+    /**
+     * Waits for the requests started with `Start Request` and returns the response
+     * bodies as a list in the order of the handles. The bodies can be passed as the
+     * source to the other keywords.
+     * 
+     * The optional timeout (ms) is for all the requests together, by default the
+     * socket timeout applies to each request. The keyword fails after all the
+     * requests have completed if any of them failed or timed out, and names them.
+     * 
+     * Example:
+     * | ${responses} | Wait For Responses | ${handles} |
+     * | ${responses} | Wait For Responses | ${handles} | 5000 |
+     */
+    @RobotKeyword
+    public List<String> waitForResponses(List<String> handles, Integer timeout) throws Exception {
+        RobotLog.debug("Waiting for responses {}", handles);
+        return requestUtil.waitForResponses(handles, timeout != null ? timeout : 0);
+    }
+
+    /**
+     * Cancels the requests started with `Start Request` that have not been waited
+     * for and returns their number. Use it in test or suite teardown, so the
+     * requests of a test that failed before `Wait For Responses` are not kept.
+     * 
+     * At most `request.max.pending` requests are kept in any case, and the oldest
+     * ones are discarded when more are started.
+     * 
+     * Example:
+     * | [Teardown] | Discard Pending Responses |
+     */
+    @RobotKeyword
+    public int discardPendingResponses() {
+        return requestUtil.discardPendingResponses();
+    }
+
+    /**
+     * Returns the statistics of the URI cache as a dictionary with keys `size`, `bytes`,
+     * `hits`, `misses`, `evictions`, `expirations` and `revalidations`. With the
+     * persistent cache on, also `disk.hits`, `disk.misses`, `disk.writes`,
+     * `disk.evictions` and `disk.bytes`.
+     * 
+     * Example:
+     * | ${stats} | Get Uri Cache Statistics |
+     * | Should Be True | ${stats['hits']} > 0 |
+     */
+    @RobotKeyword
+    public Map<String, Object> getUriCacheStatistics() {
+        return requestUtil.getCacheStatistics();
+    }
+
+    /**
+     * Returns the statistics of the fixture cache as a dictionary with keys `size`,
+     * `hits` and `misses`.
+     * 
+     * Example:
+     * | ${stats} | Get Fixture Cache Statistics |
+     * | Should Be True | ${stats['hits']} > 0 |
+     */
+    @RobotKeyword
+    public Map<String, Object> getFixtureCacheStatistics() {
+        return FixtureCache.getStatistics();
+    }
+
+    /**
+     * Returns the connection counts of the HTTP client pool as a dictionary with keys
+     * `leased`, `pending`, `available` and `max`, and the same counts for each target
+     * host under `routes`.
+     * 
+     * Example:
+     * | ${stats} | Get Http Pool Statistics |
+     * | Should Be True | ${stats['leased']} == 0 |
+     * | Log | ${stats['routes']['http://localhost:1080']} |
+     */
+    @RobotKeyword
+    public Map<String, Object> getHttpPoolStatistics() {
+        return requestUtil.getPoolStatistics();
+    }
+
+    /**
+     * Returns the latency statistics of the requests since the start or the last
+     * `Reset Latency Statistics`, as a dictionary of keys like `GET http://localhost:1080`
+     * to phases to dictionaries with keys `count`, `min`, `mean`, `p50`, `p90`, `p95`,
+     * `p99` and `max` (ms).
+     * 
+     * The phases are `lease` (waiting for a pooled connection), `connect` (new
+     * connections only), `first.byte` (sending the request and waiting for the headers),
+     * `body` (reading the response), `total`, `parse` and `evaluate` (JsonPath).
+     * Requests sent with `Start Request` only have `total`. Sources given as JSON are
+     * under `inline`.
+     * 
+     * Example:
+     * | ${stats} | Get Latency Statistics |
+     * | Should Be True | ${stats['GET http://localhost:1080']['total']['p95']} < 100 |
+     */
+    @RobotKeyword
+    public Map<String, Object> getLatencyStatistics() {
+        return LatencyMetrics.getStatistics();
+    }
+
+    /**
+     * Clears the latency statistics of all the libraries.
+     * 
+     * Example:
+     * | Reset Latency Statistics |
+     */
+    @RobotKeyword
+    public void resetLatencyStatistics() {
+        LatencyMetrics.reset();
+    }
+
+    /**
+     * Records the total times of the following requests also under the `name`, until
+     * the group is changed or cleared with `Clear Latency Group`. The group can be
+     * checked with `Response Time Should Be Less Than` and `P95 Response Time Should Be Below`.
+     * The group applies to the requests of all the libraries and threads.
+     * 
+     * Example:
+     * | Set Latency Group | checkout |
+     * | Json Element Should Match | http://example.com/cart | $.items[0].id | 1 |
+     * | Json Element Should Match | http://example.com/order | $.status | OPEN |
+     * | Clear Latency Group |
+     * | P95 Response Time Should Be Below | 200 | checkout |
+     */
+    @RobotKeyword
+    public void setLatencyGroup(String name) {
+        LatencyMetrics.setGroup(StringUtils.isNotBlank(name) ? name : null);
+    }
+
+    @RobotKeyword
+    public void clearLatencyGroup() {
+        LatencyMetrics.setGroup(null);
+    }
+
+    @RobotKeyword
+    public boolean responseTimeShouldBeLessThan(Double max) throws Exception {
+
+        long last = LatencyMetrics.getLastTotal();
+
+        if (last < 0) {
+            throw new ResponseTimeException("No requests have been timed");
+        }
+
+        String key = LatencyMetrics.getLastKey();
+
+        double time = last / NANOS_PER_MILLI;
+
+        if (time >= max) {
+            throw new ResponseTimeException("Response time of the last request (" + key + ") was " + formatMillis(time) + " ms, expected less than "
+                    + formatMillis(max) + " ms. All the requests to " + key + ": " + LatencyMetrics.summary(LatencyMetrics.getTotals(key)));
+        }
+
+        RobotLog.debug("Response time of the last request ({}) was {} ms", key, formatMillis(time));
+
+        return true;
+    }
+
+    /**
+     * Fails if the last request took `max` milliseconds or longer, or with a `group`, if
+     * any request of the group did. The group is a name given with `Set Latency Group` or
+     * a key of `Get Latency Statistics`, for example `GET http://localhost:1080`.
+     * 
+     * The time is measured inside the library from waiting for a connection to the end of
+     * the response body, so it does not include the parsing. Responses found from the URI
+     * cache are not requests. The error describes the distribution of the response times.
+     * 
+     * Example:
+     * | Json Element Should Match | http://example.com/test.json | $.element.param | hello |
+     * | Response Time Should Be Less Than | 500 |
+     * | Response Time Should Be Less Than | 1000 | GET http://example.com |
+     */
+    @RobotKeyword
+    public boolean responseTimeShouldBeLessThan(Double max, String group) throws Exception {
+
+        Histogram totals = getTotals(group);
+
+        double time = totals.getMaxValue() / MICROS_PER_MILLI;
+
+        if (time >= max) {
+            throw new ResponseTimeException("Response times of '" + group + "' were up to " + formatMillis(time) + " ms, expected less than "
+                    + formatMillis(max) + " ms: " + LatencyMetrics.summary(totals));
+        }
+
+        return true;
+    }
+
+    @RobotKeyword
+    public boolean p95ResponseTimeShouldBeBelow(Double max) throws Exception {
+        return responseTimePercentileShouldBeBelow(95.0, max);
+    }
+
+    /**
+     * Fails if the 95th percentile of the response times is `max` milliseconds or more.
+     * Checks all the requests since the start or `Reset Latency Statistics`, or the
+     * requests of the `group`. See `Response Time Should Be Less Than` for the groups and
+     * `Response Time Percentile Should Be Below` for other percentiles.
+     * 
+     * Example:
+     * | P95 Response Time Should Be Below | 200 |
+     * | P95 Response Time Should Be Below | 200 | checkout |
+     */
+    @RobotKeyword
+    public boolean p95ResponseTimeShouldBeBelow(Double max, String group) throws Exception {
+        return responseTimePercentileShouldBeBelow(95.0, max, group);
+    }
+
+    @RobotKeyword
+    public boolean responseTimePercentileShouldBeBelow(Double percentile, Double max) throws Exception {
+        return responseTimePercentileShouldBeBelow(percentile, max, null);
+    }
+
+    /**
+     * Like `P95 Response Time Should Be Below`, but for the given percentile.
+     * 
+     * Example:
+     * | Response Time Percentile Should Be Below | 99.9 | 1000 |
+     * | Response Time Percentile Should Be Below | 50 | 100 | GET http://example.com |
+     */
+    @RobotKeyword
+    public boolean responseTimePercentileShouldBeBelow(Double percentile, Double max, String group) throws Exception {
+
+        Histogram totals = getTotals(group);
+
+        double time = totals.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+
+        String name = "P" + (percentile == Math.rint(percentile) ? String.valueOf(percentile.intValue()) : String.valueOf(percentile));
+
+        String of = group != null ? " of '" + group + "'" : "";
+
+        if (time >= max) {
+            throw new ResponseTimeException(name + " response time" + of + " was " + formatMillis(time) + " ms, expected below " + formatMillis(max) + " ms: "
+                    + LatencyMetrics.summary(totals));
+        }
+
+        RobotLog.debug("{} response time{} was {} ms", name, of, formatMillis(time));
+
+        return true;
+    }
+
+    private Histogram getTotals(String group) throws ResponseTimeException {
+
+        Histogram totals = LatencyMetrics.getTotals(group);
+
+        if (totals == null || totals.getTotalCount() == 0) {
+            throw new ResponseTimeException("No requests have been timed" + (group != null ? " for '" + group + "'" : ""));
+        }
+
+        return totals;
+    }
+
+    private static String formatMillis(double millis) {
+        return String.format(Locale.ROOT, "%.3f", millis);
+    }
+
+    @RobotKeyword
+    public void exportLatencyStatistics(String file) throws IOException {
+        exportLatencyStatistics(file, file.toLowerCase().endsWith(".csv") ? CSV : JSON);
+    }
+
+    /**
+     * Writes the latency statistics (see `Get Latency Statistics`) to the file as `json`
+     * or `csv`. The format defaults to csv for files ending with .csv and json otherwise.
+     * 
+     * Example:
+     * | [Teardown] | Export Latency Statistics | ${OUTPUT DIR}/latency.json |
+     * | Export Latency Statistics | ${OUTPUT DIR}/latency.txt | csv |
+     */
+    @RobotKeyword
+    public void exportLatencyStatistics(String file, String format) throws IOException {
+
+        String content;
+
+        if (CSV.equalsIgnoreCase(format)) {
+            content = LatencyMetrics.toCsv();
+        } else if (JSON.equalsIgnoreCase(format)) {
+            content = LatencyMetrics.toJson();
+        } else {
+            throw new IllegalArgumentException("Unknown format '" + format + "', use " + JSON + " or " + CSV);
+        }
+
+        FileUtils.writeStringToFile(new File(file), content, "UTF-8");
+
+        RobotLog.info("Wrote latency statistics to {}", file);
+    }
+
+    @RobotKeyword
+    public Map<String, Object> runLoad(String source, Map<String, Object> settings) throws Exception {
+        return runLoad(source, settings, "GET");
+    }
+
+    @RobotKeyword
+    public Map<String, Object> runLoad(String source, Map<String, Object> settings, String method) throws Exception {
+        return runLoad(source, settings, method, null);
+    }
+
+    @RobotKeyword
+    public Map<String, Object> runLoad(String source, Map<String, Object> settings, String method, String data) throws Exception {
+        return runLoad(source, settings, method, data, null);
+    }
+
+    /**
+     * Sends requests to the `source` URI repeatedly and fails if any of the thresholds
+     * is breached.
+     * 
+     * The `settings` dictionary overrides the `load.*` properties for this run, with
+     * the keys without the `load.` prefix:
+     * | *Key* | *Meaning* |
+     * | duration | Length of the run in milliseconds |
+     * | rate | Requests per second. The requests are sent on a fixed schedule and their latency is measured from the time they were due. With 0 each worker sends the next request when the previous one completes. |
+     * | workers | Amount of concurrent requests. Requests to one host are also limited by `http.max.connections.per.route` |
+     * | path | JsonPath checked from each response, a response without it is an error |
+     * | expected | Expected value of the path |
+     * | max.<statistic> | Fails if the statistic is higher |
+     * | min.<statistic> | Fails if the statistic is lower |
+     * 
+     * Returns the statistics as a dictionary with keys `requests`, `errors`, `dropped`
+     * (due at the target rate but not sent before the end), `error.rate` (%),
+     * `throughput` (requests/s) and the latencies in milliseconds `min`, `mean`,
+     * `p50`, `p90`, `p95`, `p99` and `max`. The URI cache is not used.
+     * 
+     * You can add optional method (ie GET, POST, PUT), data or content type as parameters.
+     * Method defaults to GET.
+     * 
+     * Example:
+     * | &{settings} | Create Dictionary | duration=30000 | rate=50 | workers=20 | max.p95=200 | max.error.rate=1 |
+     * | ${stats} | Run Load | http://example.com/api/health | ${settings} |
+     * | &{settings} | Create Dictionary | duration=5000 | path=$.status | expected=success | min.throughput=100 |
+     * | Run Load | http://example.com/api/login | ${settings} | POST | {username: 'foo'} |
+     */
+    @RobotKeyword
+    public Map<String, Object> runLoad(String source, Map<String, Object> settings, final String method, final String data, final String contentType) throws Exception {
+
+        LoadSettings load = new LoadSettings(config, settings);
+
+        final URI uri = getLoadURI(source);
+
+        final String jsonPath = load.getPath();
+
+        final JsonPath path = jsonPath != null ? JsonPathCache.compile(jsonPath) : null;
+
+        final String expected = load.getExpected();
+
+        RobotLog.debug("Running load against {} for {} ms with {} workers at {} requests/s", uri, load.getDuration(), load.getWorkers(), load.getRate());
+
+        LoadResult result = loadGenerator.run(load, new LoadGenerator.Task() {
+
+            @Override
+            public void run() throws Exception {
+                String json = requestUtil.sendRequest(uri, method, data, contentType);
+
+                if (path != null) {
+                    String found = String.valueOf(path.<Object> read(json, backend.getConfiguration()));
+
+                    if (expected != null && !expected.equals(found)) {
+                        throw new JsonNotEqualException("'" + jsonPath + "' found '" + found + "', expected '" + expected + "'");
+                    }
+                }
+            }
+        });
+
+        List<String> breaches = load.check(result);
+
+        if (!breaches.isEmpty()) {
+            RobotLog.error(result.toString());
+            throw new LoadThresholdException("Load thresholds were breached: " + StringUtils.join(breaches, ", ") + "\n" + result);
+        }
+
+        RobotLog.info(result.toString());
+
+        return result.toMap();
+    }
+
+    private URI getLoadURI(String source) {
+        try {
+            URI uri = StringUtils.isNotBlank(source) ? new URI(source.trim()) : null;
+
+            if (uri != null && uri.isAbsolute()) {
+                return uri;
+            }
+        } catch (URISyntaxException e) {
+            // reported below
+        }
+
+        throw new IllegalArgumentException("The source for load must be an URI, was: " + source);
     }
 
 }
@@ -0,0 +1,189 @@
+package org.wuokko.robot.restlib.diff;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * 64-bit structural hash of a parsed JSON value. The hash does not depend on
+ * the order of the object keys, numbers with the same value have the same
+ * hash regardless of their type (1, 1L and 1.0), and with `ignoreArrayOrder`
+ * the order of the array elements does not matter either. Numbers are hashed
+ * from their exact decimal value, so big integers and decimals that differ
+ * only beyond the precision of a double have different hashes.
+ *
+ * Equal values always have equal hashes, so different hashes prove that the
+ * values differ. Different values can still have equal hashes: the hash is
+ * not cryptographic, so two documents can be built to collide on purpose,
+ * and then {@link org.wuokko.robot.restlib.JsonDiff} reports them equal.
+ */
+public final class CanonicalHash {
+
+    private static final long NULL = 0x9E3779B97F4A7C15L;
+
+    private static final long TRUE = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long FALSE = 0x165667B19E3779F9L;
+
+    private static final long STRING = 0x27D4EB2F165667C5L;
+
+    private static final long NUMBER = 0x85EBCA77C2B2AE63L;
+
+    private static final long OBJECT = 0xFF51AFD7ED558CCDL;
+
+    private static final long ARRAY = 0xC4CEB9FE1A85EC53L;
+
+    private CanonicalHash() {
+    }
+
+    /**
+     * Returns the hash of the value. The hashes of {@link HashedNode}s are
+     * not computed again.
+     */
+    public static long hash(Object value, boolean ignoreArrayOrder) {
+
+        if (value instanceof HashedNode) {
+            return ((HashedNode) value).getHash(ignoreArrayOrder);
+        }
+
+        return compute(value, ignoreArrayOrder);
+    }
+
+    /**
+     * Returns a hash of the object projected onto the given keys, or null if
+     * the object does not have all of them. The values of the keys are hashed
+     * shallowly: objects only by their type and arrays by their size, so
+     * objects equal except for extra keys at any depth get the same hash.
+     */
+    public static Long projectedHash(Object value, Collection<String> keys) {
+
+        if (!(value instanceof Map)) {
+            return null;
+        }
+
+        Map<?, ?> map = (Map<?, ?>) value;
+
+        long hash = OBJECT;
+
+        for (String key : keys) {
+            if (!map.containsKey(key)) {
+                return null;
+            }
+            hash += mix(hashString(key) * 31 + shallowHash(map.get(key)));
+        }
+
+        return mix(hash);
+    }
+
+    /**
+     * Hash of the value that does not depend on the contents of objects and
+     * arrays, only on the size of the arrays.
+     */
+    public static long shallowHash(Object value) {
+
+        if (value instanceof Map) {
+            return OBJECT;
+        } else if (value instanceof List) {
+            return mix(ARRAY + ((List<?>) value).size());
+        }
+
+        return hash(value, true);
+    }
+
+    /**
+     * Computes the hash of the value from the hashes of its children.
+     */
+    @SuppressWarnings("unchecked")
+    static long compute(Object value, boolean ignoreArrayOrder) {
+
+        if (value == null) {
+            return NULL;
+        } else if (value instanceof String) {
+            return hashString((String) value);
+        } else if (value instanceof Number) {
+            return hashNumber((Number) value);
+        } else if (value instanceof Boolean) {
+            return ((Boolean) value) ? TRUE : FALSE;
+        } else if (value instanceof Map) {
+            long hash = OBJECT;
+            // Sum of the entry hashes does not depend on the order of the keys
+            for (Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                hash += mix(hashString(entry.getKey()) * 31 + hash(entry.getValue(), ignoreArrayOrder));
+            }
+            return mix(hash);
+        } else if (value instanceof List) {
+            long hash = ARRAY;
+            for (Object element : (List<Object>) value) {
+                if (ignoreArrayOrder) {
+                    hash += mix(hash(element, true));
+                } else {
+                    hash = hash * 31 + hash(element, false);
+                }
+            }
+            return mix(hash);
+        }
+
+        return mix(value.hashCode());
+    }
+
+    private static long hashString(String value) {
+        long hash = STRING;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long hashNumber(Number value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return mix(NUMBER + value.longValue());
+        }
+
+        if (value instanceof Double) {
+            double number = value.doubleValue();
+
+            if (number == Math.rint(number) && Math.abs(number) < 0x1p53) {
+                // Exact integral doubles hash the same as the integer types
+                return mix(NUMBER + (long) number);
+            }
+        }
+
+        BigDecimal decimal;
+
+        try {
+            // The same exact value as the comparison of the numbers uses
+            decimal = new BigDecimal(value.toString());
+        } catch (NumberFormatException e) {
+            // NaN and Infinity
+            return mix(NUMBER ^ Double.doubleToLongBits(value.doubleValue()));
+        }
+
+        if (decimal.signum() == 0) {
+            return mix(NUMBER);
+        }
+
+        decimal = decimal.stripTrailingZeros();
+
+        if (decimal.scale() <= 0 && decimal.precision() - decimal.scale() < 19) {
+            // Integral values that fit into a long hash the same as the integer types
+            return mix(NUMBER + decimal.longValueExact());
+        }
+
+        return mix((NUMBER ^ hashString(decimal.unscaledValue().toString())) * 31 + decimal.scale());
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreads the bits of the hash.
+     */
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
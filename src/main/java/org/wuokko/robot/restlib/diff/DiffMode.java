@@ -0,0 +1,72 @@
+package org.wuokko.robot.restlib.diff;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Options of the JSON comparison, given as a comma separated list of flags:
+ * 
+ * - `ignore_order`: arrays are compared as multisets, the order of the
+ *   elements does not matter
+ * - `strict`: keys found only from the `to` objects are differences too
+ * 
+ * The default mode compares arrays by position and allows extra keys in the
+ * `to` objects.
+ */
+public class DiffMode {
+
+    public static final String IGNORE_ORDER = "ignore_order";
+
+    public static final String STRICT = "strict";
+
+    public static final DiffMode DEFAULT = new DiffMode(false, false);
+
+    private final boolean ignoreArrayOrder;
+
+    private final boolean strict;
+
+    public DiffMode(boolean ignoreArrayOrder, boolean strict) {
+        this.ignoreArrayOrder = ignoreArrayOrder;
+        this.strict = strict;
+    }
+
+    public static DiffMode parse(String mode) {
+
+        boolean ignoreArrayOrder = false;
+        boolean strict = false;
+
+        if (StringUtils.isNotBlank(mode)) {
+            for (String flag : mode.split("[,\\s]+")) {
+                if (IGNORE_ORDER.equalsIgnoreCase(flag)) {
+                    ignoreArrayOrder = true;
+                } else if (STRICT.equalsIgnoreCase(flag)) {
+                    strict = true;
+                } else if (!flag.isEmpty()) {
+                    throw new IllegalArgumentException("Unknown diff mode '" + flag + "', expected " + IGNORE_ORDER + " or " + STRICT);
+                }
+            }
+        }
+
+        return new DiffMode(ignoreArrayOrder, strict);
+    }
+
+    public boolean isIgnoreArrayOrder() {
+        return ignoreArrayOrder;
+    }
+
+    public boolean isStrict() {
+        return strict;
+    }
+
+    @Override
+    public String toString() {
+        if (ignoreArrayOrder && strict) {
+            return IGNORE_ORDER + "," + STRICT;
+        } else if (ignoreArrayOrder) {
+            return IGNORE_ORDER;
+        } else if (strict) {
+            return STRICT;
+        }
+        return "default";
+    }
+
+}
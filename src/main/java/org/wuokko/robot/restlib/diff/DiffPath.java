@@ -0,0 +1,87 @@
+package org.wuokko.robot.restlib.diff;
+
+/**
+ * Mutable path to the node being compared. The segments are pushed and popped
+ * while walking the documents and the JSON Pointer is rendered only when a
+ * difference is found, so matching nodes do not allocate path strings.
+ */
+public class DiffPath {
+
+    private final String root;
+
+    private String[] names = new String[16];
+
+    private int[] indexes = new int[16];
+
+    private int depth = 0;
+
+    public DiffPath() {
+        this("");
+    }
+
+    /**
+     * @param root pointer that is prepended to the rendered paths
+     */
+    public DiffPath(String root) {
+        this.root = root;
+    }
+
+    public void push(String name) {
+        ensureCapacity();
+        names[depth] = name;
+        depth++;
+    }
+
+    public void push(int index) {
+        ensureCapacity();
+        names[depth] = null;
+        indexes[depth] = index;
+        depth++;
+    }
+
+    public void pop() {
+        depth--;
+        names[depth] = null;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    private void ensureCapacity() {
+        if (depth == names.length) {
+            String[] newNames = new String[depth * 2];
+            int[] newIndexes = new int[depth * 2];
+            System.arraycopy(names, 0, newNames, 0, depth);
+            System.arraycopy(indexes, 0, newIndexes, 0, depth);
+            names = newNames;
+            indexes = newIndexes;
+        }
+    }
+
+    /**
+     * Renders the current path as a JSON Pointer, escaping ~ and / in the
+     * names.
+     */
+    public String toPointer() {
+        StringBuilder pointer = new StringBuilder(root);
+
+        for (int i = 0; i < depth; i++) {
+            pointer.append('/');
+
+            if (names[i] != null) {
+                pointer.append(names[i].replace("~", "~0").replace("/", "~1"));
+            } else {
+                pointer.append(indexes[i]);
+            }
+        }
+
+        return pointer.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toPointer();
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.wuokko.robot.restlib.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Differences found between two JSON documents. When a difference is found
+ * after the maximum amount has been reached, the comparison stops and the
+ * result is truncated.
+ */
+public class DiffResult {
+
+    private final int maxDifferences;
+
+    private final List<Difference> differences = new ArrayList<Difference>();
+
+    private boolean truncated = false;
+
+    public DiffResult(int maxDifferences) {
+        this.maxDifferences = maxDifferences;
+    }
+
+    public void add(Difference difference) {
+        if (maxDifferences > 0 && differences.size() >= maxDifferences) {
+            truncated = true;
+        } else {
+            differences.add(difference);
+        }
+    }
+
+    /**
+     * Tells if the comparison should stop, because a difference over the
+     * maximum amount has been found.
+     */
+    public boolean isFull() {
+        return truncated;
+    }
+
+    public boolean isEqual() {
+        return differences.isEmpty();
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public List<Difference> getDifferences() {
+        return Collections.unmodifiableList(differences);
+    }
+
+    public List<Map<String, Object>> toMaps() {
+        List<Map<String, Object>> maps = new ArrayList<Map<String, Object>>(differences.size());
+
+        for (Difference difference : differences) {
+            maps.add(difference.toMap());
+        }
+
+        return maps;
+    }
+
+    /**
+     * Returns the differences one per line.
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+
+        for (Difference difference : differences) {
+            report.append(difference).append('\n');
+        }
+
+        if (truncated) {
+            report.append("Stopped after ").append(differences.size()).append(" differences\n");
+        }
+
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getReport();
+    }
+
+}
@@ -0,0 +1,88 @@
+package org.wuokko.robot.restlib.diff;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.wuokko.robot.restlib.util.JsonValues;
+
+/**
+ * Single difference between two JSON documents. The path is a JSON Pointer
+ * (RFC 6901) to the differing node.
+ */
+public class Difference {
+
+    public enum Type {
+        /** The node exists only in the `to` document */
+        ADDED,
+        /** The node exists only in the `from` document */
+        REMOVED,
+        /** The values of the same type differ */
+        CHANGED,
+        /** The nodes are of different JSON types, ie. object and array */
+        TYPE_CHANGED
+    }
+
+    private static final int MAX_VALUE_LENGTH = 100;
+
+    private final Type type;
+
+    private final String path;
+
+    private final Object from;
+
+    private final Object to;
+
+    public Difference(Type type, String path, Object from, Object to) {
+        this.type = type;
+        this.path = path;
+        this.from = from;
+        this.to = to;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Object getFrom() {
+        return from;
+    }
+
+    public Object getTo() {
+        return to;
+    }
+
+    /**
+     * Returns the difference as a dictionary for Robot Framework.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("type", type.name());
+        map.put("path", path);
+        // The values may be parts of a cached fixture
+        map.put("from", JsonValues.copy(from));
+        map.put("to", JsonValues.copy(to));
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+        case ADDED:
+            return type + " " + path + ": " + format(to);
+        case REMOVED:
+            return type + " " + path + ": " + format(from);
+        default:
+            return type + " " + path + ": " + format(from) + " -> " + format(to);
+        }
+    }
+
+    private static String format(Object value) {
+        return StringUtils.abbreviate(JsonValues.toJson(value, MAX_VALUE_LENGTH), MAX_VALUE_LENGTH);
+    }
+
+}
@@ -0,0 +1,26 @@
+package org.wuokko.robot.restlib.diff;
+
+import net.minidev.json.JSONArray;
+
+/**
+ * JSON array parsed by the {@link HashingReader}.
+ */
+public class HashedJSONArray extends JSONArray implements HashedNode {
+
+    private static final long serialVersionUID = 1L;
+
+    private long hash;
+
+    private long unorderedHash;
+
+    void setHashes(long hash, long unorderedHash) {
+        this.hash = hash;
+        this.unorderedHash = unorderedHash;
+    }
+
+    @Override
+    public long getHash(boolean ignoreArrayOrder) {
+        return ignoreArrayOrder ? unorderedHash : hash;
+    }
+
+}
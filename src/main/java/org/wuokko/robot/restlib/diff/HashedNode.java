@@ -0,0 +1,11 @@
+package org.wuokko.robot.restlib.diff;
+
+/**
+ * JSON object or array that knows its {@link CanonicalHash}, computed once
+ * when it was parsed. The hash is not updated if the node is modified later.
+ */
+public interface HashedNode {
+
+    long getHash(boolean ignoreArrayOrder);
+
+}
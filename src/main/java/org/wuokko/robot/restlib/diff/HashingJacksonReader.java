@@ -0,0 +1,31 @@
+package org.wuokko.robot.restlib.diff;
+
+import java.util.List;
+import java.util.Map;
+
+import org.wuokko.robot.restlib.util.JacksonReader;
+
+/**
+ * {@link JacksonReader} that builds the same hashed objects and arrays as the
+ * {@link HashingReader} does with json-smart.
+ *
+ * Example: new HashingJacksonReader().read(JacksonReader.createParser(json))
+ */
+public class HashingJacksonReader extends JacksonReader {
+
+    @Override
+    protected Map<String, Object> createObject() {
+        return new HashedJSONObject();
+    }
+
+    @Override
+    protected List<Object> createArray() {
+        return new HashedJSONArray();
+    }
+
+    @Override
+    protected Object convert(Object current) {
+        return HashingReader.hash(current);
+    }
+
+}
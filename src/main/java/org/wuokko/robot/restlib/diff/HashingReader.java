@@ -0,0 +1,70 @@
+package org.wuokko.robot.restlib.diff;
+
+import net.minidev.json.JSONValue;
+import net.minidev.json.writer.JsonReaderI;
+
+/**
+ * Reader for the json-smart parser that builds {@link HashedJSONObject}s and
+ * {@link HashedJSONArray}s and computes their canonical hashes while parsing.
+ * Each container is hashed when it ends, from the already computed hashes of
+ * its children, so hashing the whole document takes a single pass.
+ *
+ * Example: parser.parse(json, new HashingReader())
+ */
+public class HashingReader extends JsonReaderI<Object> {
+
+    public HashingReader() {
+        super(JSONValue.defaultReader);
+    }
+
+    @Override
+    public JsonReaderI<?> startObject(String key) {
+        return this;
+    }
+
+    @Override
+    public JsonReaderI<?> startArray(String key) {
+        return this;
+    }
+
+    @Override
+    public Object createObject() {
+        return new HashedJSONObject();
+    }
+
+    @Override
+    public Object createArray() {
+        return new HashedJSONArray();
+    }
+
+    @Override
+    public void setValue(Object current, String key, Object value) {
+        ((HashedJSONObject) current).put(key, value);
+    }
+
+    @Override
+    public void addValue(Object current, Object value) {
+        ((HashedJSONArray) current).add(value);
+    }
+
+    /**
+     * Called by the parser when a value is complete.
+     */
+    @Override
+    public Object convert(Object current) {
+        return hash(current);
+    }
+
+    /**
+     * Sets the hashes of a complete object or array.
+     */
+    static Object hash(Object current) {
+        if (current instanceof HashedJSONObject) {
+            ((HashedJSONObject) current).setHashes(CanonicalHash.compute(current, false), CanonicalHash.compute(current, true));
+        } else if (current instanceof HashedJSONArray) {
+            ((HashedJSONArray) current).setHashes(CanonicalHash.compute(current, false), CanonicalHash.compute(current, true));
+        }
+        return current;
+    }
+
+}
@@ -0,0 +1,14 @@
+package org.wuokko.robot.restlib.exception;
+
+public class LoadThresholdException extends Exception {
+
+    /**
+     * Generated serial version
+     */
+    private static final long serialVersionUID = 3894129576032214170L;
+
+    public LoadThresholdException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,14 @@
+package org.wuokko.robot.restlib.exception;
+
+public class ResponseTimeException extends Exception {
+
+    /**
+     * Generated serial version
+     */
+    private static final long serialVersionUID = -2270831653948236185L;
+
+    public ResponseTimeException(String message) {
+        super(message);
+    }
+
+}
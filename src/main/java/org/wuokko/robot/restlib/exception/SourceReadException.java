@@ -0,0 +1,14 @@
+package org.wuokko.robot.restlib.exception;
+
+public class SourceReadException extends Exception {
+
+    /**
+     * Generated serial version
+     */
+    private static final long serialVersionUID = -6310581204655721840L;
+
+    public SourceReadException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,192 @@
+package org.wuokko.robot.restlib.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.wuokko.robot.restlib.util.DaemonThreadFactory;
+
+/**
+ * Sends requests repeatedly for a given duration and measures them.
+ *
+ * With a target rate the load is open: request `n` is due at `start + n /
+ * rate` no matter how long the earlier requests took, and its latency is
+ * measured from that time. A slow response therefore shows up in the latency
+ * of every request that had to wait for a free worker, instead of silently
+ * lowering the rate (coordinated omission). Requests that are still due when
+ * the duration is over are not sent, but counted as dropped.
+ *
+ * Without a rate each worker sends the next request as soon as the previous
+ * one has completed, and the latency is measured from the send.
+ */
+public class LoadGenerator {
+
+    private static final int MAX_ERROR_MESSAGES = 5;
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    /**
+     * Request sent by the workers. Fails by throwing an exception.
+     */
+    public interface Task {
+
+        void run() throws Exception;
+
+    }
+
+    public LoadResult run(LoadSettings settings, final Task task) throws InterruptedException {
+
+        int workers = settings.getWorkers();
+
+        final double rate = settings.getRate();
+
+        final long duration = settings.getDuration() * 1000000L;
+
+        final AtomicLong sequence = new AtomicLong();
+
+        final AtomicLong errors = new AtomicLong();
+
+        final List<String> errorMessages = new ArrayList<String>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers, new DaemonThreadFactory("robot-rest-lib-load"));
+
+        final long start = System.nanoTime();
+
+        List<long[]> recorded = new ArrayList<long[]>();
+
+        try {
+            List<Callable<long[]>> tasks = new ArrayList<Callable<long[]>>();
+
+            for (int i = 0; i < workers; i++) {
+                tasks.add(new Callable<long[]>() {
+
+                    @Override
+                    public long[] call() {
+                        Recorder recorder = new Recorder();
+
+                        long end = start + duration;
+
+                        while (!Thread.currentThread().isInterrupted()) {
+
+                            long due;
+
+                            if (rate > 0) {
+                                due = start + (long) (sequence.getAndIncrement() * NANOS_PER_SECOND / rate);
+
+                                if (due >= end || System.nanoTime() >= end) {
+                                    break;
+                                }
+
+                                waitUntil(due);
+                            } else {
+                                due = System.nanoTime();
+
+                                if (due >= end) {
+                                    break;
+                                }
+                            }
+
+                            try {
+                                task.run();
+                            } catch (Exception e) {
+                                errors.incrementAndGet();
+
+                                synchronized (errorMessages) {
+                                    if (errorMessages.size() < MAX_ERROR_MESSAGES) {
+                                        errorMessages.add(e.getMessage() != null ? e.getMessage() : e.toString());
+                                    }
+                                }
+                            }
+
+                            recorder.record(System.nanoTime() - due);
+                        }
+
+                        return recorder.toArray();
+                    }
+                });
+            }
+
+            for (Future<long[]> future : pool.invokeAll(tasks)) {
+                try {
+                    recorded.add(future.get());
+                } catch (ExecutionException e) {
+                    // the workers catch everything
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        long[] latencies = merge(recorded);
+
+        long dropped = 0;
+
+        if (rate > 0) {
+            long due = (long) Math.ceil(duration * rate / NANOS_PER_SECOND);
+            dropped = Math.max(0, due - latencies.length);
+        }
+
+        return new LoadResult(latencies, errors.get(), dropped, elapsed, errorMessages);
+    }
+
+    private static void waitUntil(long due) {
+        long wait;
+
+        while ((wait = due - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    private static long[] merge(List<long[]> recorded) {
+        int size = 0;
+
+        for (long[] latencies : recorded) {
+            size += latencies.length;
+        }
+
+        long[] merged = new long[size];
+
+        int position = 0;
+
+        for (long[] latencies : recorded) {
+            System.arraycopy(latencies, 0, merged, position, latencies.length);
+            position += latencies.length;
+        }
+
+        Arrays.sort(merged);
+
+        return merged;
+    }
+
+    /**
+     * Latencies of one worker, so the workers do not contend on recording.
+     */
+    private static class Recorder {
+
+        private long[] latencies = new long[1024];
+
+        private int size = 0;
+
+        void record(long latency) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latency;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(latencies, size);
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+package org.wuokko.robot.restlib.load;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a load run. Latencies are reported in milliseconds.
+ */
+public class LoadResult {
+
+    /**
+     * Names of the statistics in {@link #toMap()}.
+     */
+    public static final List<String> STATISTICS = Collections.unmodifiableList(Arrays.asList(
+            "requests", "errors", "dropped", "error.rate", "throughput", "min", "mean", "p50", "p90", "p95", "p99", "max"));
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final long[] latencies;
+
+    private final long errors;
+
+    private final long dropped;
+
+    private final long elapsed;
+
+    private final List<String> errorMessages;
+
+    /**
+     * @param latencies latencies of the sent requests in nanoseconds, sorted
+     * @param errors amount of failed requests
+     * @param dropped amount of requests that were due but not sent before the
+     *            end of the run
+     * @param elapsed length of the run in nanoseconds
+     * @param errorMessages examples of the failures
+     */
+    LoadResult(long[] latencies, long errors, long dropped, long elapsed, List<String> errorMessages) {
+        this.latencies = latencies;
+        this.errors = errors;
+        this.dropped = dropped;
+        this.elapsed = elapsed;
+        this.errorMessages = errorMessages;
+    }
+
+    public long getRequests() {
+        return latencies.length;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Percentage of the sent requests that failed.
+     */
+    public double getErrorRate() {
+        return latencies.length > 0 ? 100.0 * errors / latencies.length : 0;
+    }
+
+    /**
+     * Sent requests per second.
+     */
+    public double getThroughput() {
+        return elapsed > 0 ? latencies.length * 1000000000.0 / elapsed : 0;
+    }
+
+    public double getMean() {
+        if (latencies.length == 0) {
+            return 0;
+        }
+
+        double sum = 0;
+
+        for (long latency : latencies) {
+            sum += latency;
+        }
+
+        return sum / latencies.length / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Returns the latency below which the given percentage of the requests
+     * completed, using the nearest rank.
+     */
+    public double getPercentile(double percentile) {
+        if (latencies.length == 0) {
+            return 0;
+        }
+
+        int rank = (int) Math.ceil(percentile / 100.0 * latencies.length);
+
+        return latencies[Math.min(latencies.length, Math.max(rank, 1)) - 1] / NANOS_PER_MILLI;
+    }
+
+    public List<String> getErrorMessages() {
+        return errorMessages;
+    }
+
+    /**
+     * Returns the statistics as a dictionary with the keys in
+     * {@link #STATISTICS}.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("requests", getRequests());
+        map.put("errors", errors);
+        map.put("dropped", dropped);
+        map.put("error.rate", getErrorRate());
+        map.put("throughput", getThroughput());
+        map.put("min", getPercentile(0));
+        map.put("mean", getMean());
+        map.put("p50", getPercentile(50));
+        map.put("p90", getPercentile(90));
+        map.put("p95", getPercentile(95));
+        map.put("p99", getPercentile(99));
+        map.put("max", getPercentile(100));
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+
+        report.append(getRequests()).append(" requests in ").append(LoadSettings.format(elapsed / NANOS_PER_MILLI)).append(" ms, ");
+        report.append(LoadSettings.format(getThroughput())).append(" requests/s, ");
+        report.append(errors).append(" errors (").append(LoadSettings.format(getErrorRate())).append(" %)");
+
+        if (dropped > 0) {
+            report.append(", ").append(dropped).append(" dropped");
+        }
+
+        report.append("\nLatency (ms): min ").append(LoadSettings.format(getPercentile(0)));
+        report.append(", mean ").append(LoadSettings.format(getMean()));
+        report.append(", p50 ").append(LoadSettings.format(getPercentile(50)));
+        report.append(", p90 ").append(LoadSettings.format(getPercentile(90)));
+        report.append(", p95 ").append(LoadSettings.format(getPercentile(95)));
+        report.append(", p99 ").append(LoadSettings.format(getPercentile(99)));
+        report.append(", max ").append(LoadSettings.format(getPercentile(100)));
+
+        for (String message : errorMessages) {
+            report.append("\nError: ").append(message);
+        }
+
+        return report.toString();
+    }
+
+}
@@ -0,0 +1,169 @@
+package org.wuokko.robot.restlib.load;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Settings of a single load run. The defaults come from the `load.*`
+ * properties and can be overridden per run with the same keys without the
+ * `load.` prefix.
+ *
+ * Thresholds are given as `max.<statistic>` or `min.<statistic>`, where the
+ * statistic is one of the keys of {@link LoadResult#toMap()}, for example
+ * `max.p95` or `min.throughput`.
+ */
+public class LoadSettings {
+
+    public static final String KEY_PREFIX = "load";
+
+    public static final String DURATION = "duration";
+
+    public static final String RATE = "rate";
+
+    public static final String WORKERS = "workers";
+
+    public static final String PATH = "path";
+
+    public static final String EXPECTED = "expected";
+
+    private static final String MAX = "max.";
+
+    private static final String MIN = "min.";
+
+    private static final long DEFAULT_DURATION = 10000;
+
+    private static final double DEFAULT_RATE = 0;
+
+    private static final int DEFAULT_WORKERS = 10;
+
+    private long duration = DEFAULT_DURATION;
+
+    private double rate = DEFAULT_RATE;
+
+    private int workers = DEFAULT_WORKERS;
+
+    private String path;
+
+    private String expected;
+
+    private final Map<String, Double> maximums = new LinkedHashMap<String, Double>();
+
+    private final Map<String, Double> minimums = new LinkedHashMap<String, Double>();
+
+    public LoadSettings(Configuration config, Map<String, Object> overrides) {
+
+        if (config != null) {
+            Iterator<String> keys = config.getKeys(KEY_PREFIX);
+
+            while (keys.hasNext()) {
+                String key = keys.next();
+                set(key.substring(KEY_PREFIX.length() + 1), String.valueOf(config.getProperty(key)));
+            }
+        }
+
+        if (overrides != null) {
+            for (Entry<String, Object> entry : overrides.entrySet()) {
+                set(entry.getKey(), entry.getValue() != null ? String.valueOf(entry.getValue()) : null);
+            }
+        }
+
+        if (duration <= 0 || workers <= 0 || rate < 0) {
+            throw new IllegalArgumentException("The duration and workers must be positive and the rate must not be negative");
+        }
+    }
+
+    private void set(String key, String value) {
+
+        if (DURATION.equals(key)) {
+            duration = Long.parseLong(value);
+        } else if (RATE.equals(key)) {
+            rate = Double.parseDouble(value);
+        } else if (WORKERS.equals(key)) {
+            workers = Integer.parseInt(value);
+        } else if (PATH.equals(key)) {
+            path = value;
+        } else if (EXPECTED.equals(key)) {
+            expected = value;
+        } else if (key.startsWith(MAX) && LoadResult.STATISTICS.contains(key.substring(MAX.length()))) {
+            maximums.put(key.substring(MAX.length()), Double.valueOf(value));
+        } else if (key.startsWith(MIN) && LoadResult.STATISTICS.contains(key.substring(MIN.length()))) {
+            minimums.put(key.substring(MIN.length()), Double.valueOf(value));
+        } else {
+            throw new IllegalArgumentException("Unknown load setting '" + key + "', use " + DURATION + ", " + RATE + ", " + WORKERS + ", " + PATH + ", " + EXPECTED
+                    + " or max. and min. with one of " + LoadResult.STATISTICS);
+        }
+    }
+
+    /**
+     * Length of the run in milliseconds.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Target rate in requests per second. With 0 the workers send the next
+     * request as soon as the previous one has completed.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * JsonPath checked from each response, or null.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Expected value of the path, or null if the path only has to exist.
+     */
+    public String getExpected() {
+        return expected;
+    }
+
+    /**
+     * Compares the result to the thresholds and returns the breached ones.
+     */
+    public List<String> check(LoadResult result) {
+
+        List<String> breaches = new ArrayList<String>();
+
+        Map<String, Object> statistics = result.toMap();
+
+        for (Entry<String, Double> maximum : maximums.entrySet()) {
+            double value = ((Number) statistics.get(maximum.getKey())).doubleValue();
+
+            if (value > maximum.getValue()) {
+                breaches.add(maximum.getKey() + " " + format(value) + " is above " + format(maximum.getValue()));
+            }
+        }
+
+        for (Entry<String, Double> minimum : minimums.entrySet()) {
+            double value = ((Number) statistics.get(minimum.getKey())).doubleValue();
+
+            if (value < minimum.getValue()) {
+                breaches.add(minimum.getKey() + " " + format(value) + " is below " + format(minimum.getValue()));
+            }
+        }
+
+        return breaches;
+    }
+
+    static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+}
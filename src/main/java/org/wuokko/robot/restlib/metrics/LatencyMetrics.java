@@ -0,0 +1,332 @@
+package org.wuokko.robot.restlib.metrics;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.minidev.json.JSONStyle;
+import net.minidev.json.JSONValue;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Process wide latency histograms of the requests, keyed by the method and
+ * host of the source and the {@link Phase}.
+ *
+ * The values are recorded into HdrHistograms with three significant digits,
+ * so recording is wait-free and takes constant memory no matter how many
+ * requests are made. The statistics are reported in milliseconds.
+ */
+public class LatencyMetrics {
+
+    /**
+     * Key of the sources given as JSON content.
+     */
+    public static final String INLINE = "inline";
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private static final String[] COLUMNS = { "count", "min", "mean", "p50", "p90", "p95", "p99", "max" };
+
+    private static final ConcurrentMap<String, ConcurrentMap<Phase, Histogram>> HISTOGRAMS = new ConcurrentHashMap<String, ConcurrentMap<Phase, Histogram>>();
+
+    private static final ConcurrentMap<String, Histogram> GROUPS = new ConcurrentHashMap<String, Histogram>();
+
+    private static volatile String group;
+
+    private static volatile Sample last;
+
+    private LatencyMetrics() {
+    }
+
+    /**
+     * Returns the key of a request, for example `GET http://example.com:8080`.
+     * File URIs are keyed by the scheme only.
+     */
+    public static String key(String method, URI uri) {
+        if (uri.getAuthority() == null) {
+            return method + " " + uri.getScheme();
+        }
+        return method + " " + uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    /**
+     * Returns the key of a source given to the keywords, which is either an
+     * URI or JSON content.
+     */
+    public static String keyOfSource(String method, String source) {
+        if (source != null) {
+            try {
+                URI uri = new URI(source.trim().replaceAll("\\\\", "/"));
+
+                if (uri.isAbsolute()) {
+                    return key(method, uri);
+                }
+            } catch (URISyntaxException e) {
+                // JSON content
+            }
+        }
+        return INLINE;
+    }
+
+    public static void record(String key, Phase phase, long nanos) {
+        histogram(key, phase).recordValue(Math.max(0, nanos / 1000));
+    }
+
+    /**
+     * Records the time from the given {@link System#nanoTime()}.
+     */
+    public static void recordSince(String key, Phase phase, long start) {
+        record(key, phase, System.nanoTime() - start);
+    }
+
+    /**
+     * Records the total time of a completed request. The time is also
+     * recorded into the current group and kept as the last request.
+     */
+    public static void recordTotal(String key, long nanos) {
+        record(key, Phase.TOTAL, nanos);
+
+        String current = group;
+
+        if (current != null) {
+            Histogram histogram = GROUPS.get(current);
+
+            if (histogram == null) {
+                histogram = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+                Histogram existing = GROUPS.putIfAbsent(current, histogram);
+                histogram = existing != null ? existing : histogram;
+            }
+
+            histogram.recordValue(Math.max(0, nanos / 1000));
+        }
+
+        last = new Sample(key, nanos);
+    }
+
+    /**
+     * Records the total time of the following requests also under the
+     * group, until the group is changed. Null stops grouping.
+     */
+    public static void setGroup(String name) {
+        group = name;
+    }
+
+    public static String getGroup() {
+        return group;
+    }
+
+    /**
+     * Returns the key of the last completed request, or null.
+     */
+    public static String getLastKey() {
+        Sample sample = last;
+        return sample != null ? sample.key : null;
+    }
+
+    /**
+     * Returns the total time (ns) of the last completed request, or -1.
+     */
+    public static long getLastTotal() {
+        Sample sample = last;
+        return sample != null ? sample.nanos : -1;
+    }
+
+    /**
+     * Returns a copy of the total times of a group or a key, or of all the
+     * requests when the name is null. Returns null if nothing was recorded.
+     */
+    public static Histogram getTotals(String name) {
+        if (name == null) {
+            Histogram all = null;
+
+            for (ConcurrentMap<Phase, Histogram> phases : HISTOGRAMS.values()) {
+                Histogram total = phases.get(Phase.TOTAL);
+
+                if (total != null) {
+                    if (all == null) {
+                        all = total.copy();
+                    } else {
+                        all.add(total);
+                    }
+                }
+            }
+
+            return all;
+        }
+
+        Histogram histogram = GROUPS.get(name);
+
+        return histogram != null ? histogram.copy() : getHistogram(name, Phase.TOTAL);
+    }
+
+    /**
+     * Describes the distribution in milliseconds, for error messages.
+     */
+    public static String summary(Histogram histogram) {
+        StringBuilder summary = new StringBuilder();
+
+        for (Entry<String, Object> entry : toMap(histogram).entrySet()) {
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+
+            Object value = entry.getValue();
+
+            summary.append(entry.getKey()).append(' ').append(value instanceof Double ? String.format(Locale.ROOT, "%.3f", value) : value);
+        }
+
+        return summary.toString();
+    }
+
+    private static Histogram histogram(String key, Phase phase) {
+        ConcurrentMap<Phase, Histogram> phases = HISTOGRAMS.get(key);
+
+        if (phases == null) {
+            phases = new ConcurrentHashMap<Phase, Histogram>();
+            ConcurrentMap<Phase, Histogram> existing = HISTOGRAMS.putIfAbsent(key, phases);
+            phases = existing != null ? existing : phases;
+        }
+
+        Histogram histogram = phases.get(phase);
+
+        if (histogram == null) {
+            histogram = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+            Histogram existing = phases.putIfAbsent(phase, histogram);
+            histogram = existing != null ? existing : histogram;
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Returns a copy of the histogram, or null if nothing has been recorded.
+     */
+    public static Histogram getHistogram(String key, Phase phase) {
+        ConcurrentMap<Phase, Histogram> phases = HISTOGRAMS.get(key);
+        Histogram histogram = phases != null ? phases.get(phase) : null;
+        return histogram != null ? histogram.copy() : null;
+    }
+
+    /**
+     * Clears all the recorded values.
+     */
+    public static void reset() {
+        HISTOGRAMS.clear();
+        GROUPS.clear();
+        last = null;
+    }
+
+    /**
+     * Returns the statistics as a dictionary of keys to phases to `count`,
+     * `min`, `mean`, `p50`, `p90`, `p95`, `p99` and `max`. The keys are
+     * sorted and the phases are in the order of {@link Phase}. The groups
+     * are included with the total phase only.
+     */
+    public static Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new TreeMap<String, Object>();
+
+        for (Entry<String, ConcurrentMap<Phase, Histogram>> entry : HISTOGRAMS.entrySet()) {
+            Map<String, Object> phases = new LinkedHashMap<String, Object>();
+
+            for (Phase phase : Phase.values()) {
+                Histogram histogram = entry.getValue().get(phase);
+
+                if (histogram != null) {
+                    phases.put(phase.getName(), toMap(histogram.copy()));
+                }
+            }
+
+            statistics.put(entry.getKey(), phases);
+        }
+
+        for (Entry<String, Histogram> entry : GROUPS.entrySet()) {
+            Map<String, Object> phases = new LinkedHashMap<String, Object>();
+            phases.put(Phase.TOTAL.getName(), toMap(entry.getValue().copy()));
+            statistics.put(entry.getKey(), phases);
+        }
+
+        return statistics;
+    }
+
+    private static Map<String, Object> toMap(Histogram histogram) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("count", histogram.getTotalCount());
+        map.put("min", toMillis(histogram.getTotalCount() > 0 ? histogram.getMinValue() : 0));
+        map.put("mean", toMillis(histogram.getMean()));
+        map.put("p50", toMillis(histogram.getValueAtPercentile(50)));
+        map.put("p90", toMillis(histogram.getValueAtPercentile(90)));
+        map.put("p95", toMillis(histogram.getValueAtPercentile(95)));
+        map.put("p99", toMillis(histogram.getValueAtPercentile(99)));
+        map.put("max", toMillis(histogram.getMaxValue()));
+        return map;
+    }
+
+    private static double toMillis(double micros) {
+        return micros / MICROS_PER_MILLI;
+    }
+
+    public static String toJson() {
+        return JSONValue.toJSONString(getStatistics(), JSONStyle.NO_COMPRESS);
+    }
+
+    /**
+     * Returns the statistics as CSV with one row per key and phase.
+     */
+    @SuppressWarnings("unchecked")
+    public static String toCsv() {
+        StringBuilder csv = new StringBuilder("key,phase");
+
+        for (String column : COLUMNS) {
+            csv.append(',').append(column);
+        }
+
+        csv.append('\n');
+
+        for (Entry<String, Object> key : getStatistics().entrySet()) {
+            for (Entry<String, Object> phase : ((Map<String, Object>) key.getValue()).entrySet()) {
+                csv.append(quote(key.getKey())).append(',').append(phase.getKey());
+
+                Map<String, Object> values = (Map<String, Object>) phase.getValue();
+
+                for (String column : COLUMNS) {
+                    Object value = values.get(column);
+                    csv.append(',').append(value instanceof Double ? String.format(Locale.ROOT, "%.3f", value) : value);
+                }
+
+                csv.append('\n');
+            }
+        }
+
+        return csv.toString();
+    }
+
+    private static String quote(String value) {
+        if (value.contains(",") || value.contains("\"")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    private static class Sample {
+
+        final String key;
+
+        final long nanos;
+
+        Sample(String key, long nanos) {
+            this.key = key;
+            this.nanos = nanos;
+        }
+    }
+
+}
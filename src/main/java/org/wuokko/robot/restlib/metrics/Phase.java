@@ -0,0 +1,58 @@
+package org.wuokko.robot.restlib.metrics;
+
+/**
+ * Measured part of reading and checking a source.
+ */
+public enum Phase {
+
+    /**
+     * Waiting for a connection from the pool.
+     */
+    LEASE("lease"),
+
+    /**
+     * Opening a new connection. Reused connections are not counted.
+     */
+    CONNECT("connect"),
+
+    /**
+     * Sending the request and waiting for the response headers.
+     */
+    FIRST_BYTE("first.byte"),
+
+    /**
+     * Reading the response body.
+     */
+    BODY("body"),
+
+    /**
+     * The whole request from the lease to the end of the body.
+     */
+    TOTAL("total"),
+
+    /**
+     * Parsing the JSON.
+     */
+    PARSE("parse"),
+
+    /**
+     * Evaluating the JsonPath expressions.
+     */
+    EVALUATE("evaluate");
+
+    private final String name;
+
+    private Phase(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
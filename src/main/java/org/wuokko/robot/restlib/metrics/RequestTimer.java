@@ -0,0 +1,73 @@
+package org.wuokko.robot.restlib.metrics;
+
+/**
+ * Times the phases of a request made by the current thread. The connection
+ * manager reports the lease and connect times to the timer of the thread
+ * that is executing the request.
+ */
+public class RequestTimer {
+
+    private static final ThreadLocal<RequestTimer> CURRENT = new ThreadLocal<RequestTimer>();
+
+    private final String key;
+
+    private final long start;
+
+    private long waited = 0;
+
+    private long firstByte;
+
+    private RequestTimer(String key) {
+        this.key = key;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Starts timing a request in the current thread. Call {@link #stop()}
+     * when the request is done.
+     */
+    public static RequestTimer start(String key) {
+        RequestTimer timer = new RequestTimer(key);
+        CURRENT.set(timer);
+        return timer;
+    }
+
+    /**
+     * Returns the timer of the request in the current thread, or null.
+     */
+    public static RequestTimer current() {
+        return CURRENT.get();
+    }
+
+    public void leased(long nanos) {
+        waited += nanos;
+        LatencyMetrics.record(key, Phase.LEASE, nanos);
+    }
+
+    public void connected(long nanos) {
+        waited += nanos;
+        LatencyMetrics.record(key, Phase.CONNECT, nanos);
+    }
+
+    /**
+     * Marks that the response headers have arrived.
+     */
+    public void firstByte() {
+        firstByte = System.nanoTime();
+        LatencyMetrics.record(key, Phase.FIRST_BYTE, firstByte - start - waited);
+    }
+
+    /**
+     * Marks that the response body has been read, completing the request.
+     */
+    public void body() {
+        long end = System.nanoTime();
+        LatencyMetrics.record(key, Phase.BODY, end - firstByte);
+        LatencyMetrics.recordTotal(key, end - start);
+    }
+
+    public void stop() {
+        CURRENT.remove();
+    }
+
+}
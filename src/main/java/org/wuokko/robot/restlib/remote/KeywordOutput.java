@@ -0,0 +1,88 @@
+package org.wuokko.robot.restlib.remote;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Standard output that keeps what each thread writes while it runs a keyword,
+ * so the output of keywords running at the same time can be returned
+ * separately. Output written outside keywords goes to the original standard
+ * output.
+ */
+final class KeywordOutput extends OutputStream {
+
+    private static final ThreadLocal<ByteArrayOutputStream> CAPTURED = new ThreadLocal<ByteArrayOutputStream>();
+
+    private static KeywordOutput installed;
+
+    private final PrintStream original;
+
+    private KeywordOutput(PrintStream original) {
+        this.original = original;
+    }
+
+    /**
+     * Replaces the standard output, once for the JVM.
+     */
+    static synchronized void install() {
+        if (installed == null) {
+            installed = new KeywordOutput(System.out);
+
+            try {
+                System.setOut(new PrintStream(installed, true, StandardCharsets.UTF_8.name()));
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Starts capturing the output of the current thread.
+     */
+    static void start() {
+        CAPTURED.set(new ByteArrayOutputStream());
+    }
+
+    /**
+     * Stops capturing and returns the output of the current thread.
+     */
+    static String stop() {
+        ByteArrayOutputStream captured = CAPTURED.get();
+        CAPTURED.remove();
+        return captured != null ? new String(captured.toByteArray(), StandardCharsets.UTF_8) : "";
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ByteArrayOutputStream captured = CAPTURED.get();
+
+        if (captured != null) {
+            captured.write(b);
+        } else {
+            original.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ByteArrayOutputStream captured = CAPTURED.get();
+
+        if (captured != null) {
+            captured.write(b, off, len);
+        } else {
+            original.write(b, off, len);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (CAPTURED.get() == null) {
+            original.flush();
+        }
+    }
+
+}
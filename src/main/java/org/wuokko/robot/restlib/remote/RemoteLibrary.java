@@ -0,0 +1,380 @@
+package org.wuokko.robot.restlib.remote;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.robotframework.javalib.annotation.ArgumentNames;
+import org.robotframework.javalib.annotation.RobotKeyword;
+
+/**
+ * Runs the keywords of a Java keyword library for the remote library
+ * interface of Robot Framework.
+ *
+ * The keywords are the public methods annotated with {@link RobotKeyword},
+ * named like Robot Framework names them (`findJsonElement` is
+ * `Find Json Element`). The overloads of a method are one keyword with
+ * optional arguments, and a call goes to the overload taking as many
+ * arguments as were given. A last array parameter takes the rest of the
+ * arguments. The strings and numbers sent by Robot Framework are converted to
+ * the parameter types.
+ *
+ * What a keyword writes to the standard output, like the messages of
+ * `RobotLog`, is returned as its output. The output is kept per thread, so
+ * keywords running at the same time do not mix their output.
+ */
+public class RemoteLibrary {
+
+    public static final String PASS = "PASS";
+
+    public static final String FAIL = "FAIL";
+
+    private static final String INTRO = "__intro__";
+
+    private final Object library;
+
+    private final Map<String, Keyword> keywords = new TreeMap<String, Keyword>();
+
+    public RemoteLibrary(Object library) {
+        this.library = library;
+
+        for (Method method : library.getClass().getMethods()) {
+            if (method.isAnnotationPresent(RobotKeyword.class) && !Modifier.isStatic(method.getModifiers())) {
+                String key = normalize(method.getName());
+
+                Keyword keyword = keywords.get(key);
+
+                if (keyword == null) {
+                    keyword = new Keyword(toKeywordName(method.getName()));
+                    keywords.put(key, keyword);
+                }
+
+                keyword.add(method);
+            }
+        }
+
+        KeywordOutput.install();
+    }
+
+    /**
+     * Turns a method name into a keyword name, `findJsonElement` into
+     * `Find Json Element`.
+     */
+    static String toKeywordName(String methodName) {
+        return StringUtils.capitalize(StringUtils.join(StringUtils.splitByCharacterTypeCamelCase(methodName), ' '));
+    }
+
+    /**
+     * Keyword names are matched ignoring case, spaces and underscores, like
+     * Robot Framework does.
+     */
+    static String normalize(String name) {
+        return name.replace(" ", "").replace("_", "").toLowerCase();
+    }
+
+    public List<String> getKeywordNames() {
+        List<String> names = new ArrayList<String>();
+
+        for (Keyword keyword : keywords.values()) {
+            names.add(keyword.name);
+        }
+
+        return names;
+    }
+
+    public List<String> getKeywordArguments(String name) {
+        return keyword(name).getArguments();
+    }
+
+    public String getKeywordDocumentation(String name) {
+        if (INTRO.equals(name)) {
+            return "Keywords of " + library.getClass().getSimpleName() + " served by the remote server of robotframework-rest-java.";
+        }
+
+        Keyword keyword = keywords.get(normalize(name));
+
+        return keyword != null ? keyword.getDocumentation() : "";
+    }
+
+    /**
+     * Returns the arguments and the documentation of every keyword at once.
+     */
+    public Map<String, Object> getLibraryInformation() {
+        Map<String, Object> information = new LinkedHashMap<String, Object>();
+
+        for (Keyword keyword : keywords.values()) {
+            Map<String, Object> details = new LinkedHashMap<String, Object>();
+            details.put("args", keyword.getArguments());
+            details.put("doc", keyword.getDocumentation());
+            details.put("tags", Collections.emptyList());
+            information.put(keyword.name, details);
+        }
+
+        Map<String, Object> intro = new LinkedHashMap<String, Object>();
+        intro.put("doc", getKeywordDocumentation(INTRO));
+        information.put(INTRO, intro);
+
+        return information;
+    }
+
+    /**
+     * Runs the keyword and returns the result struct of the remote interface:
+     * `status`, `output`, `return` and, when the keyword failed, `error` and
+     * `traceback`.
+     */
+    public Map<String, Object> runKeyword(String name, List<Object> args) {
+
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+
+        KeywordOutput.start();
+
+        try {
+            Keyword keyword = keyword(name);
+            Method method = keyword.overload(args.size());
+            Object returned = method.invoke(library, convertArguments(method, args));
+
+            result.put("status", PASS);
+            result.put("return", returned);
+        } catch (InvocationTargetException e) {
+            fail(result, e.getCause());
+        } catch (Exception e) {
+            fail(result, e);
+        } finally {
+            result.put("output", KeywordOutput.stop());
+        }
+
+        return result;
+    }
+
+    private Keyword keyword(String name) {
+        Keyword keyword = keywords.get(normalize(name));
+
+        if (keyword == null) {
+            throw new IllegalArgumentException("No keyword with name '" + name + "' found");
+        }
+
+        return keyword;
+    }
+
+    private static void fail(Map<String, Object> result, Throwable error) {
+        result.put("status", FAIL);
+        result.put("return", "");
+        result.put("error", errorMessage(error));
+        result.put("traceback", ExceptionUtils.getStackTrace(error));
+    }
+
+    /**
+     * The message of a generic exception, or the name and the message of the
+     * others, like Robot Framework reports Java exceptions.
+     */
+    static String errorMessage(Throwable error) {
+        String message = StringUtils.defaultString(error.getMessage());
+
+        Class<?> type = error.getClass();
+
+        if (type == Exception.class || type == RuntimeException.class || type == Error.class || type == AssertionError.class) {
+            return message;
+        }
+
+        return message.isEmpty() ? type.getSimpleName() : type.getSimpleName() + ": " + message;
+    }
+
+    static Object[] convertArguments(Method method, List<Object> args) {
+
+        Class<?>[] types = method.getParameterTypes();
+        Type[] genericTypes = method.getGenericParameterTypes();
+
+        Object[] converted = new Object[types.length];
+
+        int last = types.length - 1;
+
+        for (int i = 0; i < types.length; i++) {
+            if (i == last && types[i].isArray() && !(args.size() == types.length && args.get(last) instanceof List)) {
+                // Rest of the arguments
+                Class<?> component = types[i].getComponentType();
+                Object rest = Array.newInstance(component, args.size() - last);
+
+                for (int j = last; j < args.size(); j++) {
+                    Array.set(rest, j - last, convert(args.get(j), component, component));
+                }
+
+                converted[i] = rest;
+            } else {
+                converted[i] = convert(args.get(i), types[i], genericTypes[i]);
+            }
+        }
+
+        return converted;
+    }
+
+    static Object convert(Object value, Class<?> type, Type genericType) {
+
+        if (value == null) {
+            if (type.isPrimitive()) {
+                throw new IllegalArgumentException("Argument of type " + type.getSimpleName() + " cannot be empty");
+            }
+            return null;
+        }
+
+        if (type == String.class) {
+            return value instanceof byte[] ? new String((byte[]) value, StandardCharsets.UTF_8) : String.valueOf(value);
+        } else if (type == Integer.class || type == int.class) {
+            return value instanceof Number ? Integer.valueOf(((Number) value).intValue()) : Integer.valueOf(text(value));
+        } else if (type == Long.class || type == long.class) {
+            return value instanceof Number ? Long.valueOf(((Number) value).longValue()) : Long.valueOf(text(value));
+        } else if (type == Double.class || type == double.class) {
+            return value instanceof Number ? Double.valueOf(((Number) value).doubleValue()) : Double.valueOf(text(value));
+        } else if (type == Boolean.class || type == boolean.class) {
+            return toBoolean(value);
+        } else if (type.isArray() && value instanceof List) {
+            List<?> list = (List<?>) value;
+            Object array = Array.newInstance(type.getComponentType(), list.size());
+            for (int i = 0; i < list.size(); i++) {
+                Array.set(array, i, convert(list.get(i), type.getComponentType(), type.getComponentType()));
+            }
+            return array;
+        } else if (Collection.class.isAssignableFrom(type) && value instanceof List) {
+            if (elementType(genericType) == String.class) {
+                List<String> strings = new ArrayList<String>();
+                for (Object element : (List<?>) value) {
+                    strings.add((String) convert(element, String.class, String.class));
+                }
+                return strings;
+            }
+            return value;
+        } else if (type.isInstance(value)) {
+            return value;
+        }
+
+        throw new IllegalArgumentException("Cannot convert '" + value + "' to " + type.getSimpleName());
+    }
+
+    private static String text(Object value) {
+        return String.valueOf(value).trim();
+    }
+
+    private static Boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+
+        String text = text(value);
+
+        if ("true".equalsIgnoreCase(text) || "false".equalsIgnoreCase(text)) {
+            return Boolean.valueOf(text);
+        }
+
+        throw new IllegalArgumentException("Cannot convert '" + value + "' to boolean");
+    }
+
+    private static Type elementType(Type genericType) {
+        if (genericType instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+            return arguments.length == 1 ? arguments[0] : null;
+        }
+        return null;
+    }
+
+    /**
+     * Overloads of a keyword method, from the fewest parameters.
+     */
+    private static class Keyword {
+
+        private final String name;
+
+        private final List<Method> overloads = new ArrayList<Method>();
+
+        private Keyword(String name) {
+            this.name = name;
+        }
+
+        private void add(Method method) {
+            overloads.add(method);
+
+            Collections.sort(overloads, new Comparator<Method>() {
+
+                @Override
+                public int compare(Method first, Method second) {
+                    return first.getParameterTypes().length - second.getParameterTypes().length;
+                }
+            });
+        }
+
+        private static boolean hasRest(Method method) {
+            Class<?>[] types = method.getParameterTypes();
+            return types.length > 0 && types[types.length - 1].isArray();
+        }
+
+        private Method overload(int arguments) {
+            for (Method method : overloads) {
+                if (method.getParameterTypes().length == arguments) {
+                    return method;
+                }
+            }
+
+            for (Method method : overloads) {
+                if (hasRest(method) && arguments >= method.getParameterTypes().length - 1) {
+                    return method;
+                }
+            }
+
+            Method first = overloads.get(0);
+            Method longest = overloads.get(overloads.size() - 1);
+
+            throw new IllegalArgumentException("Keyword '" + name + "' expected " + first.getParameterTypes().length
+                    + (longest != first ? " to " + longest.getParameterTypes().length : "") + " arguments, got " + arguments);
+        }
+
+        private List<String> getArguments() {
+            Method longest = overloads.get(overloads.size() - 1);
+
+            int required = overloads.get(0).getParameterTypes().length;
+            int count = longest.getParameterTypes().length;
+
+            ArgumentNames names = longest.getAnnotation(ArgumentNames.class);
+
+            if (names != null && names.value().length == count) {
+                return Arrays.asList(names.value());
+            }
+
+            List<String> arguments = new ArrayList<String>();
+
+            for (int i = 0; i < count; i++) {
+                if (i == count - 1 && hasRest(longest)) {
+                    arguments.add("*args");
+                } else {
+                    arguments.add("arg" + (i + 1) + (i >= required ? "=" : ""));
+                }
+            }
+
+            return arguments;
+        }
+
+        private String getDocumentation() {
+            for (Method method : overloads) {
+                String documentation = method.getAnnotation(RobotKeyword.class).value();
+
+                if (StringUtils.isNotBlank(documentation)) {
+                    return documentation;
+                }
+            }
+            return "";
+        }
+    }
+
+}
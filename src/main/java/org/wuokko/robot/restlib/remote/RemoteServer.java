@@ -0,0 +1,248 @@
+package org.wuokko.robot.restlib.remote;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.configuration.Configuration;
+import org.wuokko.robot.restlib.JsonPathLibrary;
+import org.wuokko.robot.restlib.remote.XmlRpc.MethodCall;
+import org.wuokko.robot.restlib.util.DaemonThreadFactory;
+import org.wuokko.robot.restlib.util.PropertiesUtil;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the keywords of {@link JsonPathLibrary} with the remote library
+ * interface of Robot Framework (XML-RPC), so that many suite processes, for
+ * example pabot workers, share one warm JVM with its compiled paths, document
+ * caches and pooled connections.
+ *
+ * Start it with the properties file as the argument:
+ *
+ *   java -cp <classpath> org.wuokko.robot.restlib.remote.RemoteServer robot-rest-lib.properties
+ *
+ * and take it into use in the suites with `Library  Remote  http://localhost:8270`.
+ *
+ * The keywords are run by a pool of `remote.workers` threads, so that many
+ * suites can run keywords at the same time, and calls beyond that wait for a
+ * free worker. `Stop Remote Server` stops the server unless
+ * `remote.allow.stop` is false.
+ */
+public class RemoteServer {
+
+    public static final String KEY_REMOTE_HOST = "remote.host";
+
+    public static final String KEY_REMOTE_PORT = "remote.port";
+
+    public static final String KEY_REMOTE_WORKERS = "remote.workers";
+
+    public static final String KEY_REMOTE_ALLOW_STOP = "remote.allow.stop";
+
+    public static final String DEFAULT_HOST = "localhost";
+
+    public static final int DEFAULT_PORT = 8270;
+
+    public static final int DEFAULT_WORKERS = 16;
+
+    private static final String DEFAULT_PROPERTIES_FILE = "robot-rest-lib.properties";
+
+    private static final int PARSE_ERROR = -32700;
+
+    private static final int INVALID_CALL = -32600;
+
+    private final RemoteLibrary library;
+
+    private final String host;
+
+    private final int port;
+
+    private final int workers;
+
+    private final boolean allowStop;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    public RemoteServer(Object library, Configuration config) {
+
+        String host = DEFAULT_HOST;
+        int port = DEFAULT_PORT;
+        int workers = DEFAULT_WORKERS;
+        boolean allowStop = true;
+
+        if (config != null) {
+
+            if (config.containsKey(KEY_REMOTE_HOST)) {
+                host = config.getString(KEY_REMOTE_HOST);
+                System.out.println("[Robot-Rest-Lib] Set remote server host to '" + host + "'");
+            }
+
+            if (config.containsKey(KEY_REMOTE_PORT)) {
+                port = config.getInt(KEY_REMOTE_PORT);
+                System.out.println("[Robot-Rest-Lib] Set remote server port to '" + port + "'");
+            }
+
+            if (config.containsKey(KEY_REMOTE_WORKERS)) {
+                workers = config.getInt(KEY_REMOTE_WORKERS);
+                System.out.println("[Robot-Rest-Lib] Set remote server workers to '" + workers + "'");
+            }
+
+            if (config.containsKey(KEY_REMOTE_ALLOW_STOP)) {
+                allowStop = config.getBoolean(KEY_REMOTE_ALLOW_STOP);
+                System.out.println("[Robot-Rest-Lib] Allow stopping the remote server: " + allowStop);
+            }
+        }
+
+        this.library = new RemoteLibrary(library);
+        this.host = host;
+        this.port = port;
+        this.workers = Math.max(1, workers);
+        this.allowStop = allowStop;
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        String propertiesFile = args.length > 0 ? args[0] : DEFAULT_PROPERTIES_FILE;
+
+        Configuration config = PropertiesUtil.loadProperties(propertiesFile);
+
+        new RemoteServer(new JsonPathLibrary(propertiesFile), config).start();
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+
+        executor = Executors.newFixedThreadPool(workers, new DaemonThreadFactory("robot-rest-lib-remote"));
+
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/", new Handler());
+        server.setExecutor(executor);
+        server.start();
+
+        System.out.println("[Robot-Rest-Lib] Remote server listening on http://" + host + ":" + getPort() + " with " + workers + " workers");
+    }
+
+    /**
+     * Stops accepting calls and waits at most a second for the running ones.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            server = null;
+            System.out.println("[Robot-Rest-Lib] Remote server stopped");
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * The port the server listens to, which is chosen by the system when
+     * `remote.port` is 0.
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    Object dispatch(MethodCall call) {
+
+        List<Object> params = call.getParams();
+
+        switch (call.getName()) {
+        case "get_keyword_names":
+            return library.getKeywordNames();
+        case "run_keyword":
+            if (params.size() > 2 && !((Map<?, ?>) params.get(2)).isEmpty()) {
+                throw new IllegalArgumentException("Named arguments are not supported");
+            }
+            return library.runKeyword(string(params, 0), list(params, 1));
+        case "get_keyword_arguments":
+            return library.getKeywordArguments(string(params, 0));
+        case "get_keyword_documentation":
+            return library.getKeywordDocumentation(string(params, 0));
+        case "get_keyword_tags":
+        case "get_keyword_types":
+            return Collections.emptyList();
+        case "get_library_information":
+            return library.getLibraryInformation();
+        case "stop_remote_server":
+            if (allowStop) {
+                // Stop after the response has been sent
+                new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        stop();
+                    }
+                }, "robot-rest-lib-remote-stop").start();
+            }
+            return allowStop;
+        default:
+            throw new IllegalArgumentException("Unknown method '" + call.getName() + "'");
+        }
+    }
+
+    private static String string(List<Object> params, int index) {
+        if (params.size() <= index) {
+            throw new IllegalArgumentException("Missing parameter " + (index + 1));
+        }
+        return String.valueOf(params.get(index));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(List<Object> params, int index) {
+        if (params.size() <= index) {
+            return Collections.emptyList();
+        }
+        return (List<Object>) params.get(index);
+    }
+
+    private class Handler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+
+                String response;
+
+                try {
+                    response = XmlRpc.writeResponse(dispatch(XmlRpc.readCall(exchange.getRequestBody())));
+                } catch (IOException e) {
+                    response = XmlRpc.writeFault(PARSE_ERROR, e.getMessage());
+                } catch (RuntimeException e) {
+                    response = XmlRpc.writeFault(INVALID_CALL, RemoteLibrary.errorMessage(e));
+                }
+
+                byte[] body = response.getBytes(StandardCharsets.UTF_8);
+
+                exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.flush();
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,319 @@
+package org.wuokko.robot.restlib.remote;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.commons.codec.binary.Base64;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads XML-RPC method calls and writes their responses, with the value
+ * conversions of the Robot Framework remote library interface.
+ *
+ * Values are written as follows:
+ *
+ * - null as an empty string
+ * - integers as `int`, or as strings when they do not fit into 32 bits
+ * - other numbers as `double`
+ * - maps as structs with string keys, collections and arrays as arrays
+ * - byte arrays and strings with characters not allowed in XML as `base64`
+ * - anything else as its string value
+ */
+public final class XmlRpc {
+
+    /**
+     * Method name and parameters of a call.
+     */
+    public static class MethodCall {
+
+        private final String name;
+
+        private final List<Object> params;
+
+        public MethodCall(String name, List<Object> params) {
+            this.name = name;
+            this.params = params;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Object> getParams() {
+            return params;
+        }
+    }
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+
+    private XmlRpc() {
+    }
+
+    /**
+     * Parses a method call. Documents with a DTD are rejected.
+     */
+    public static MethodCall readCall(InputStream xml) throws IOException {
+        try {
+            Element call = newBuilder().parse(xml).getDocumentElement();
+
+            if (!"methodCall".equals(call.getTagName())) {
+                throw new IOException("Expected methodCall, found " + call.getTagName());
+            }
+
+            Element name = child(call, "methodName");
+
+            if (name == null) {
+                throw new IOException("The method name is missing");
+            }
+
+            List<Object> params = new ArrayList<Object>();
+
+            Element paramsElement = child(call, "params");
+
+            if (paramsElement != null) {
+                for (Element param : children(paramsElement, "param")) {
+                    params.add(readValue(child(param, "value")));
+                }
+            }
+
+            return new MethodCall(name.getTextContent().trim(), params);
+        } catch (SAXException e) {
+            throw new IOException("Invalid XML-RPC call: " + e.getMessage(), e);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static DocumentBuilder newBuilder() throws ParserConfigurationException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setExpandEntityReferences(false);
+        factory.setXIncludeAware(false);
+        return factory.newDocumentBuilder();
+    }
+
+    static Object readValue(Element value) throws IOException {
+
+        if (value == null) {
+            throw new IOException("The value is missing");
+        }
+
+        Element typed = firstElement(value);
+
+        if (typed == null) {
+            // A value without a type is a string
+            return value.getTextContent();
+        }
+
+        String type = typed.getTagName();
+        String text = typed.getTextContent();
+
+        if ("string".equals(type) || "dateTime.iso8601".equals(type)) {
+            return text;
+        } else if ("int".equals(type) || "i4".equals(type) || "i8".equals(type)) {
+            long number = Long.parseLong(text.trim());
+            if (number == (int) number) {
+                return Integer.valueOf((int) number);
+            }
+            return Long.valueOf(number);
+        } else if ("boolean".equals(type)) {
+            return "1".equals(text.trim()) || "true".equalsIgnoreCase(text.trim());
+        } else if ("double".equals(type)) {
+            return Double.valueOf(text.trim());
+        } else if ("base64".equals(type)) {
+            return Base64.decodeBase64(text.trim());
+        } else if ("nil".equals(type)) {
+            return null;
+        } else if ("array".equals(type)) {
+            List<Object> array = new ArrayList<Object>();
+            Element data = child(typed, "data");
+            if (data != null) {
+                for (Element element : children(data, "value")) {
+                    array.add(readValue(element));
+                }
+            }
+            return array;
+        } else if ("struct".equals(type)) {
+            Map<String, Object> struct = new LinkedHashMap<String, Object>();
+            for (Element member : children(typed, "member")) {
+                struct.put(child(member, "name").getTextContent(), readValue(child(member, "value")));
+            }
+            return struct;
+        }
+
+        throw new IOException("Unknown XML-RPC type '" + type + "'");
+    }
+
+    /**
+     * Writes a successful response with the value.
+     */
+    public static String writeResponse(Object value) {
+        StringBuilder xml = new StringBuilder(HEADER).append("<methodResponse><params><param>");
+        writeValue(xml, value);
+        return xml.append("</param></params></methodResponse>\n").toString();
+    }
+
+    public static String writeFault(int code, String message) {
+        Map<String, Object> fault = new LinkedHashMap<String, Object>();
+        fault.put("faultCode", code);
+        fault.put("faultString", message);
+
+        StringBuilder xml = new StringBuilder(HEADER).append("<methodResponse><fault>");
+        writeValue(xml, fault);
+        return xml.append("</fault></methodResponse>\n").toString();
+    }
+
+    static void writeValue(StringBuilder xml, Object value) {
+
+        xml.append("<value>");
+
+        if (value == null) {
+            xml.append("<string></string>");
+        } else if (value instanceof String) {
+            writeString(xml, (String) value);
+        } else if (value instanceof Boolean) {
+            xml.append("<boolean>").append((Boolean) value ? 1 : 0).append("</boolean>");
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            xml.append("<int>").append(value).append("</int>");
+        } else if (value instanceof Long || value instanceof BigInteger) {
+            writeInteger(xml, (Number) value);
+        } else if (value instanceof Number) {
+            xml.append("<double>").append(value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString()).append("</double>");
+        } else if (value instanceof byte[]) {
+            xml.append("<base64>").append(Base64.encodeBase64String((byte[]) value)).append("</base64>");
+        } else if (value instanceof Map) {
+            xml.append("<struct>");
+            for (Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                xml.append("<member><name>");
+                escape(xml, String.valueOf(entry.getKey()));
+                xml.append("</name>");
+                writeValue(xml, entry.getValue());
+                xml.append("</member>");
+            }
+            xml.append("</struct>");
+        } else if (value instanceof Collection) {
+            xml.append("<array><data>");
+            for (Object element : (Collection<?>) value) {
+                writeValue(xml, element);
+            }
+            xml.append("</data></array>");
+        } else if (value.getClass().isArray()) {
+            xml.append("<array><data>");
+            for (int i = 0; i < Array.getLength(value); i++) {
+                writeValue(xml, Array.get(value, i));
+            }
+            xml.append("</data></array>");
+        } else {
+            writeString(xml, value.toString());
+        }
+
+        xml.append("</value>");
+    }
+
+    private static void writeInteger(StringBuilder xml, Number value) {
+        long number = value.longValue();
+
+        if (number == (int) number && (!(value instanceof BigInteger) || BigInteger.valueOf(number).equals(value))) {
+            xml.append("<int>").append(number).append("</int>");
+        } else {
+            xml.append("<string>").append(value).append("</string>");
+        }
+    }
+
+    private static void writeString(StringBuilder xml, String value) {
+        if (isXmlText(value)) {
+            xml.append("<string>");
+            escape(xml, value);
+            xml.append("</string>");
+        } else {
+            xml.append("<base64>").append(Base64.encodeBase64String(value.getBytes(StandardCharsets.UTF_8))).append("</base64>");
+        }
+    }
+
+    /**
+     * Checks that all the characters are allowed in XML 1.0.
+     */
+    static boolean isXmlText(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c < 0x20 && c != '\t' && c != '\n' && c != '\r' || c == 0xFFFE || c == 0xFFFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void escape(StringBuilder xml, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+            case '&':
+                xml.append("&amp;");
+                break;
+            case '<':
+                xml.append("&lt;");
+                break;
+            case '>':
+                xml.append("&gt;");
+                break;
+            case '\r':
+                // A literal CR would be read as a line feed
+                xml.append("&#13;");
+                break;
+            default:
+                xml.append(c);
+            }
+        }
+    }
+
+    private static Element firstElement(Element parent) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    private static Element child(Element parent, String name) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && name.equals(((Element) node).getTagName())) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    private static List<Element> children(Element parent, String name) {
+        List<Element> children = new ArrayList<Element>();
+
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && name.equals(((Element) node).getTagName())) {
+                children.add((Element) node);
+            }
+        }
+
+        return children;
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.wuokko.robot.restlib.stream;
+
+import java.util.List;
+
+/**
+ * Amount of elements found by a JsonPath.
+ *
+ * A single element is a definite path pointing to something else than an
+ * array. A limited count stopped at the limit, so there may be more elements
+ * than the count.
+ */
+public class ElementCount {
+
+    private final boolean found;
+
+    private final long count;
+
+    private final boolean single;
+
+    private final boolean limited;
+
+    ElementCount(long count, boolean single, boolean limited) {
+        this(true, count, single, limited);
+    }
+
+    private ElementCount(boolean found, long count, boolean single, boolean limited) {
+        this.found = found;
+        this.count = count;
+        this.single = single;
+        this.limited = limited;
+    }
+
+    public static ElementCount notFound() {
+        return new ElementCount(false, 0, false, false);
+    }
+
+    /**
+     * Counts the elements of a value read with JsonPath.
+     */
+    public static ElementCount of(Object value) {
+
+        if (value == null) {
+            return new ElementCount(0, false, false);
+        } else if (value instanceof List) {
+            return new ElementCount(((List<?>) value).size(), false, false);
+        }
+
+        return new ElementCount(1, true, false);
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isSingle() {
+        return single;
+    }
+
+    public boolean isLimited() {
+        return limited;
+    }
+
+    @Override
+    public String toString() {
+        return limited ? "at least " + count : String.valueOf(count);
+    }
+
+}
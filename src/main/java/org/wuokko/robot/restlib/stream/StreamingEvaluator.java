@@ -0,0 +1,424 @@
+package org.wuokko.robot.restlib.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+
+import org.wuokko.robot.restlib.stream.StreamingPath.Segment;
+import org.wuokko.robot.restlib.stream.StreamingPath.Type;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Evaluates {@link StreamingPath}s over a stream of JSON tokens without
+ * building the whole document.
+ *
+ * Only the matched values are materialized, everything else is skipped token
+ * by token, so the memory used depends on the depth of the document and the
+ * size of the results. When all the paths have been satisfied (no wildcards or
+ * filters can match anymore) the rest of the stream is not read.
+ *
+ * The parser accepts unquoted field names, single quotes and comments like the
+ * default JsonPath parser, but the string values must be quoted.
+ */
+public class StreamingEvaluator {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    static {
+        FACTORY.enable(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES);
+        FACTORY.enable(JsonParser.Feature.ALLOW_SINGLE_QUOTES);
+        FACTORY.enable(JsonParser.Feature.ALLOW_COMMENTS);
+        FACTORY.enable(JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS);
+        FACTORY.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+
+    private final List<StreamingPath> paths;
+
+    public StreamingEvaluator(StreamingPath... paths) {
+        this.paths = new ArrayList<StreamingPath>();
+
+        for (StreamingPath path : paths) {
+            this.paths.add(path);
+        }
+    }
+
+    public StreamingEvaluator(Collection<String> jsonPaths) {
+        this.paths = new ArrayList<StreamingPath>();
+
+        for (String jsonPath : jsonPaths) {
+            this.paths.add(StreamingPath.compile(jsonPath));
+        }
+    }
+
+    public List<StreamingPath> getPaths() {
+        return paths;
+    }
+
+    /**
+     * Reads the stream until all the paths are evaluated. The stream is not
+     * closed.
+     */
+    public StreamingResult evaluate(InputStream stream) throws IOException {
+        return evaluate(stream, null);
+    }
+
+    /**
+     * Evaluates the stream encoded with the charset, detecting the Unicode
+     * encoding when the charset is UTF-8 or null.
+     */
+    public StreamingResult evaluate(InputStream stream, Charset charset) throws IOException {
+        return run(stream, charset, new StreamingResult(paths));
+    }
+
+    /**
+     * Counts the matches of the paths without materializing them. A definite
+     * path pointing to an array counts the elements of the array, like the
+     * size of the list returned by JsonPath.
+     *
+     * Reading stops when every path has at least `limit` matches, so the
+     * counts are exact only if they are below the limit. Use 0 to count all
+     * the matches.
+     */
+    public StreamingResult count(InputStream stream, long limit) throws IOException {
+        return count(stream, null, limit);
+    }
+
+    public StreamingResult count(InputStream stream, Charset charset, long limit) throws IOException {
+        return run(stream, charset, new StreamingResult(paths, limit));
+    }
+
+    private StreamingResult run(InputStream stream, Charset charset, StreamingResult result) throws IOException {
+
+        JsonParser parser = charset == null || StandardCharsets.UTF_8.equals(charset) ? FACTORY.createParser(stream) : FACTORY.createParser(new InputStreamReader(stream, charset));
+
+        try {
+            if (parser.nextToken() != null) {
+
+                List<Cursor> cursors = new ArrayList<Cursor>();
+
+                for (int i = 0; i < paths.size(); i++) {
+                    cursors.add(new Cursor(i, 0));
+                }
+
+                boolean stopped = visit(parser, cursors, result);
+
+                result.setStoppedEarly(stopped);
+            }
+        } finally {
+            parser.close();
+        }
+
+        return result;
+    }
+
+    /**
+     * Visits the value at the current token. Returns true if the value was
+     * left partially read because nothing in the rest of it could match.
+     */
+    private boolean visit(JsonParser parser, List<Cursor> cursors, StreamingResult result) throws IOException {
+
+        for (Cursor cursor : cursors) {
+            if (cursor.isComplete() && !cursor.filtered && cursors.size() == 1 && result.isCounting()) {
+                return count(parser, cursor.path, result);
+            } else if (cursor.isComplete() || cursor.filtered) {
+                Object value = readValue(parser);
+
+                for (Cursor each : cursors) {
+                    if (!each.filtered) {
+                        evaluate(value, each.path, each.segment, result);
+                    } else if (each.segment().accept(value)) {
+                        evaluate(value, each.path, each.segment + 1, result);
+                    }
+                }
+
+                return false;
+            }
+        }
+
+        JsonToken token = parser.getCurrentToken();
+
+        if (token == JsonToken.START_OBJECT) {
+            return visitObject(parser, cursors, result);
+        } else if (token == JsonToken.START_ARRAY) {
+            return visitArray(parser, cursors, result);
+        }
+
+        return false;
+    }
+
+    /**
+     * Counts the match at the current token and skips it. Returns true if
+     * the count limit was reached in the middle of an array.
+     */
+    private boolean count(JsonParser parser, int path, StreamingResult result) throws IOException {
+
+        JsonToken token = parser.getCurrentToken();
+
+        if (!paths.get(path).isDefinite()) {
+            result.count(path, 1);
+        } else if (token == JsonToken.START_ARRAY) {
+            result.countArray(path);
+
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                parser.skipChildren();
+                result.count(path, 1);
+
+                if (result.isDone()) {
+                    return true;
+                }
+            }
+
+            return false;
+        } else {
+            result.count(path, token == JsonToken.VALUE_NULL ? 0 : 1);
+        }
+
+        parser.skipChildren();
+
+        return false;
+    }
+
+    private boolean visitObject(JsonParser parser, List<Cursor> cursors, StreamingResult result) throws IOException {
+
+        JsonStreamContext context = parser.getParsingContext();
+
+        List<Cursor> active = new ArrayList<Cursor>(cursors);
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+            String name = parser.getCurrentName();
+
+            parser.nextToken();
+
+            List<Cursor> children = new ArrayList<Cursor>();
+
+            Iterator<Cursor> iterator = active.iterator();
+
+            while (iterator.hasNext()) {
+                Cursor cursor = iterator.next();
+                Segment segment = cursor.segment();
+
+                if (segment.matchesProperty(name)) {
+                    children.add(cursor.next());
+
+                    if (segment.type == Type.PROPERTY) {
+                        iterator.remove();
+                    }
+                }
+            }
+
+            if (!visitChild(parser, context, children, active, result)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean visitArray(JsonParser parser, List<Cursor> cursors, StreamingResult result) throws IOException {
+
+        JsonStreamContext context = parser.getParsingContext();
+
+        List<Cursor> active = new ArrayList<Cursor>(cursors);
+
+        int index = 0;
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+
+            List<Cursor> children = new ArrayList<Cursor>();
+
+            Iterator<Cursor> iterator = active.iterator();
+
+            while (iterator.hasNext()) {
+                Cursor cursor = iterator.next();
+                Segment segment = cursor.segment();
+
+                if (segment.type == Type.FILTER) {
+                    children.add(cursor.filter());
+                } else if (segment.matchesIndex(index)) {
+                    children.add(cursor.next());
+
+                    if (segment.type == Type.INDEX) {
+                        iterator.remove();
+                    }
+                }
+            }
+
+            if (!visitChild(parser, context, children, active, result)) {
+                return true;
+            }
+
+            index++;
+        }
+
+        return false;
+    }
+
+    /**
+     * Visits a single field or element of a container. Returns false if the
+     * container does not need to be read any further, because nothing in it
+     * can match or the count limit has been reached.
+     */
+    private boolean visitChild(JsonParser parser, JsonStreamContext context, List<Cursor> children, List<Cursor> active, StreamingResult result) throws IOException {
+
+        if (children.isEmpty()) {
+            parser.skipChildren();
+        } else if (visit(parser, children, result) && !active.isEmpty() && !result.isDone()) {
+            skipTo(parser, context);
+        }
+
+        return !active.isEmpty() && !result.isDone();
+    }
+
+    /**
+     * Skips the tokens until the parser is back in the given container.
+     */
+    private void skipTo(JsonParser parser, JsonStreamContext context) throws IOException {
+        while (parser.getParsingContext() != context && parser.nextToken() != null) {
+            // skip
+        }
+    }
+
+    /**
+     * Evaluates the rest of the path from the given position over a
+     * materialized value.
+     */
+    @SuppressWarnings("unchecked")
+    private void evaluate(Object value, int path, int position, StreamingResult result) {
+
+        StreamingPath streamingPath = paths.get(path);
+
+        if (position == streamingPath.length()) {
+            result.add(path, value);
+            return;
+        }
+
+        Segment segment = streamingPath.segment(position);
+
+        switch (segment.type) {
+        case PROPERTY:
+            if (value instanceof Map && ((Map<String, Object>) value).containsKey(segment.name)) {
+                evaluate(((Map<String, Object>) value).get(segment.name), path, position + 1, result);
+            }
+            break;
+        case INDEX:
+            if (value instanceof List && ((List<Object>) value).size() > segment.index) {
+                evaluate(((List<Object>) value).get(segment.index), path, position + 1, result);
+            }
+            break;
+        case WILDCARD:
+            if (value instanceof Map) {
+                for (Object child : ((Map<String, Object>) value).values()) {
+                    evaluate(child, path, position + 1, result);
+                }
+            } else if (value instanceof List) {
+                for (Object child : (List<Object>) value) {
+                    evaluate(child, path, position + 1, result);
+                }
+            }
+            break;
+        case FILTER:
+            if (value instanceof List) {
+                for (Object child : (List<Object>) value) {
+                    if (segment.accept(child)) {
+                        evaluate(child, path, position + 1, result);
+                    }
+                }
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Reads the value at the current token into the same json-smart types
+     * that JsonPath returns.
+     */
+    static Object readValue(JsonParser parser) throws IOException {
+
+        switch (parser.getCurrentToken()) {
+        case START_OBJECT:
+            JSONObject object = new JSONObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                object.put(name, readValue(parser));
+            }
+            return object;
+        case START_ARRAY:
+            JSONArray array = new JSONArray();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                array.add(readValue(parser));
+            }
+            return array;
+        case VALUE_STRING:
+            return parser.getText();
+        case VALUE_NUMBER_INT:
+            return parser.getNumberValue();
+        case VALUE_NUMBER_FLOAT:
+            return parser.getDoubleValue();
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Position in one of the evaluated paths. A filtered cursor points to an
+     * array element that must pass the filter of the current segment before
+     * the rest of the path is evaluated.
+     */
+    private class Cursor {
+
+        final int path;
+
+        final int segment;
+
+        final boolean filtered;
+
+        Cursor(int path, int segment) {
+            this(path, segment, false);
+        }
+
+        Cursor(int path, int segment, boolean filtered) {
+            this.path = path;
+            this.segment = segment;
+            this.filtered = filtered;
+        }
+
+        boolean isComplete() {
+            return segment == paths.get(path).length();
+        }
+
+        Segment segment() {
+            return paths.get(path).segment(segment);
+        }
+
+        Cursor next() {
+            return new Cursor(path, segment + 1);
+        }
+
+        Cursor filter() {
+            return new Cursor(path, segment, true);
+        }
+    }
+
+}
@@ -0,0 +1,336 @@
+package org.wuokko.robot.restlib.stream;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.jayway.jsonpath.InvalidPathException;
+
+/**
+ * JsonPath expression compiled for the streaming evaluation.
+ *
+ * Only a subset of JsonPath is supported: properties (`.name` and
+ * `['name']`), array indexes (`[0]`), wildcards (`.*` and `[*]`) and simple
+ * filters on array elements (`[?(@.field)]` and `[?(@.field op value)]` with
+ * ==, !=, <, <=, > or >=). Deep scans, negative indexes, slices, unions and
+ * functions are not supported, use the normal keywords for those.
+ */
+public class StreamingPath {
+
+    enum Type {
+        PROPERTY, INDEX, WILDCARD, FILTER
+    }
+
+    private final String path;
+
+    private final List<Segment> segments;
+
+    private final boolean definite;
+
+    private StreamingPath(String path, List<Segment> segments) {
+        this.path = path;
+        this.segments = Collections.unmodifiableList(segments);
+
+        boolean isDefinite = true;
+        for (Segment segment : segments) {
+            if (segment.type == Type.WILDCARD || segment.type == Type.FILTER) {
+                isDefinite = false;
+            }
+        }
+        this.definite = isDefinite;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Definite path points to at most one element, so its value is returned
+     * as such instead of a list.
+     */
+    public boolean isDefinite() {
+        return definite;
+    }
+
+    List<Segment> getSegments() {
+        return segments;
+    }
+
+    int length() {
+        return segments.size();
+    }
+
+    Segment segment(int index) {
+        return segments.get(index);
+    }
+
+    /**
+     * Checks if the given path can be evaluated in the streaming mode.
+     */
+    public static boolean isSupported(String path) {
+        try {
+            compile(path);
+            return true;
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    public static StreamingPath compile(String path) {
+
+        if (path == null || !path.trim().startsWith("$")) {
+            throw new InvalidPathException("Path '" + path + "' must start with $ in streaming mode");
+        }
+
+        String trimmed = path.trim();
+
+        List<Segment> segments = new ArrayList<Segment>();
+
+        int position = 1;
+
+        while (position < trimmed.length()) {
+            char c = trimmed.charAt(position);
+
+            if (c == '.') {
+                position++;
+
+                if (position >= trimmed.length()) {
+                    throw new InvalidPathException("Path '" + path + "' must not end with .");
+                } else if (trimmed.charAt(position) == '.') {
+                    throw unsupported(path, "deep scan (..)");
+                } else if (trimmed.charAt(position) == '[') {
+                    // $.store.[0] is the same as $.store[0]
+                    continue;
+                } else if (trimmed.charAt(position) == '*') {
+                    segments.add(new Segment(Type.WILDCARD));
+                    position++;
+                } else {
+                    int end = position;
+                    while (end < trimmed.length() && trimmed.charAt(end) != '.' && trimmed.charAt(end) != '[') {
+                        end++;
+                    }
+                    String name = trimmed.substring(position, end).trim();
+                    if (name.isEmpty() || name.contains("(")) {
+                        throw unsupported(path, "'" + name + "'");
+                    }
+                    segments.add(Segment.property(name));
+                    position = end;
+                }
+            } else if (c == '[') {
+                int end = findClosingBracket(trimmed, position, path);
+                segments.add(parseBracket(trimmed.substring(position + 1, end).trim(), path));
+                position = end + 1;
+            } else {
+                throw new InvalidPathException("Unexpected character '" + c + "' at " + position + " in path '" + path + "'");
+            }
+        }
+
+        return new StreamingPath(trimmed, segments);
+    }
+
+    private static Segment parseBracket(String content, String path) {
+
+        if (content.equals("*")) {
+            return new Segment(Type.WILDCARD);
+        } else if (isQuoted(content)) {
+            return Segment.property(content.substring(1, content.length() - 1));
+        } else if (content.startsWith("?(") && content.endsWith(")")) {
+            return Segment.filter(content.substring(2, content.length() - 1).trim(), path);
+        } else if (content.matches("\\d+")) {
+            return Segment.index(Integer.parseInt(content));
+        }
+
+        throw unsupported(path, "[" + content + "]");
+    }
+
+    private static int findClosingBracket(String path, int start, String original) {
+        char quote = 0;
+
+        for (int i = start + 1; i < path.length(); i++) {
+            char c = path.charAt(i);
+
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == ']') {
+                return i;
+            }
+        }
+
+        throw new InvalidPathException("Path '" + original + "' has unclosed [");
+    }
+
+    private static boolean isQuoted(String value) {
+        return value.length() >= 2
+                && (value.charAt(0) == '\'' || value.charAt(0) == '"')
+                && value.charAt(value.length() - 1) == value.charAt(0);
+    }
+
+    private static InvalidPathException unsupported(String path, String what) {
+        return new InvalidPathException("Path '" + path + "' is not supported in streaming mode: " + what);
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    static class Segment {
+
+        private static final String[] OPERATORS = { "==", "!=", "<=", ">=", "<", ">" };
+
+        final Type type;
+
+        String name;
+
+        int index;
+
+        String[] field;
+
+        String operator;
+
+        Object literal;
+
+        Segment(Type type) {
+            this.type = type;
+        }
+
+        static Segment property(String name) {
+            Segment segment = new Segment(Type.PROPERTY);
+            segment.name = name;
+            return segment;
+        }
+
+        static Segment index(int index) {
+            Segment segment = new Segment(Type.INDEX);
+            segment.index = index;
+            return segment;
+        }
+
+        static Segment filter(String expression, String path) {
+            Segment segment = new Segment(Type.FILTER);
+
+            if (expression.contains("&&") || expression.contains("||") || expression.contains("=~")) {
+                throw unsupported(path, "filter '" + expression + "'");
+            }
+
+            String left = expression;
+
+            for (String operator : OPERATORS) {
+                int position = indexOutsideQuotes(expression, operator);
+                if (position > 0) {
+                    segment.operator = operator;
+                    left = expression.substring(0, position).trim();
+                    segment.literal = parseLiteral(expression.substring(position + operator.length()).trim(), path);
+                    break;
+                }
+            }
+
+            if (!left.startsWith("@.") || left.length() < 3) {
+                throw unsupported(path, "filter '" + expression + "'");
+            }
+
+            segment.field = left.substring(2).split("\\.");
+
+            return segment;
+        }
+
+        private static int indexOutsideQuotes(String expression, String operator) {
+            char quote = 0;
+
+            for (int i = 0; i < expression.length(); i++) {
+                char c = expression.charAt(i);
+
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (expression.startsWith(operator, i)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        private static Object parseLiteral(String literal, String path) {
+            if (isQuoted(literal)) {
+                return literal.substring(1, literal.length() - 1);
+            } else if ("true".equals(literal) || "false".equals(literal)) {
+                return Boolean.valueOf(literal);
+            } else if ("null".equals(literal)) {
+                return null;
+            }
+
+            try {
+                return new BigDecimal(literal);
+            } catch (NumberFormatException e) {
+                throw unsupported(path, "filter value '" + literal + "'");
+            }
+        }
+
+        boolean matchesProperty(String property) {
+            return type == Type.WILDCARD || (type == Type.PROPERTY && name.equals(property));
+        }
+
+        boolean matchesIndex(int position) {
+            return type == Type.WILDCARD || (type == Type.INDEX && index == position);
+        }
+
+        /**
+         * Checks if the array element passes the filter.
+         */
+        @SuppressWarnings("unchecked")
+        boolean accept(Object element) {
+
+            Object value = element;
+
+            for (String part : field) {
+                if (!(value instanceof Map) || !((Map<String, Object>) value).containsKey(part)) {
+                    return false;
+                }
+                value = ((Map<String, Object>) value).get(part);
+            }
+
+            if (operator == null) {
+                return true;
+            }
+
+            int comparison;
+
+            if (value instanceof Number && literal instanceof BigDecimal) {
+                comparison = new BigDecimal(value.toString()).compareTo((BigDecimal) literal);
+            } else if (value instanceof String && literal instanceof String) {
+                comparison = ((String) value).compareTo((String) literal);
+            } else if (value == null || literal == null || value instanceof Boolean) {
+                boolean equal = value == null ? literal == null : value.equals(literal);
+                return "==".equals(operator) ? equal : "!=".equals(operator) && !equal;
+            } else {
+                return "!=".equals(operator);
+            }
+
+            switch (operator) {
+            case "==":
+                return comparison == 0;
+            case "!=":
+                return comparison != 0;
+            case "<":
+                return comparison < 0;
+            case "<=":
+                return comparison <= 0;
+            case ">":
+                return comparison > 0;
+            default:
+                return comparison >= 0;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package org.wuokko.robot.restlib.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.minidev.json.JSONArray;
+
+/**
+ * Values or counts found by a {@link StreamingEvaluator}, in the order of the
+ * evaluated paths.
+ */
+public class StreamingResult {
+
+    private final List<StreamingPath> paths;
+
+    private final List<List<Object>> matches;
+
+    private final boolean counting;
+
+    private final long limit;
+
+    private final long[] counts;
+
+    private final boolean[] found;
+
+    private final boolean[] arrays;
+
+    private boolean stoppedEarly = false;
+
+    StreamingResult(List<StreamingPath> paths) {
+        this(paths, false, 0);
+    }
+
+    StreamingResult(List<StreamingPath> paths, long limit) {
+        this(paths, true, limit);
+    }
+
+    private StreamingResult(List<StreamingPath> paths, boolean counting, long limit) {
+        this.paths = paths;
+        this.counting = counting;
+        this.limit = limit;
+        this.matches = new ArrayList<List<Object>>(paths.size());
+        this.counts = new long[paths.size()];
+        this.found = new boolean[paths.size()];
+        this.arrays = new boolean[paths.size()];
+
+        for (int i = 0; i < paths.size(); i++) {
+            matches.add(new ArrayList<Object>());
+        }
+    }
+
+    boolean isCounting() {
+        return counting;
+    }
+
+    /**
+     * Counting is done when every path has reached the limit.
+     */
+    boolean isDone() {
+        if (!counting || limit <= 0) {
+            return false;
+        }
+
+        for (long count : counts) {
+            if (count < limit) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    void add(int path, Object value) {
+        if (!counting) {
+            found[path] = true;
+            matches.get(path).add(value);
+        } else if (paths.get(path).isDefinite() && value instanceof List) {
+            countArray(path);
+            count(path, ((List<?>) value).size());
+        } else {
+            count(path, value != null || !paths.get(path).isDefinite() ? 1 : 0);
+        }
+    }
+
+    void count(int path, long count) {
+        found[path] = true;
+        counts[path] += count;
+    }
+
+    void countArray(int path) {
+        found[path] = true;
+        arrays[path] = true;
+    }
+
+    void setStoppedEarly(boolean stoppedEarly) {
+        this.stoppedEarly = stoppedEarly;
+    }
+
+    /**
+     * Tells if the evaluation stopped before the end of the document, because
+     * nothing in the rest of it could have matched or the count limit was
+     * reached.
+     */
+    public boolean isStoppedEarly() {
+        return stoppedEarly;
+    }
+
+    /**
+     * A definite path is found if it matched an element. An indefinite path is
+     * always found, but its list of values can be empty.
+     */
+    public boolean isFound(int path) {
+        return !paths.get(path).isDefinite() || found[path];
+    }
+
+    /**
+     * Returns the value of a definite path or a list of the values of an
+     * indefinite path, the same way as JsonPath does.
+     */
+    public Object getValue(int path) {
+
+        List<Object> values = matches.get(path);
+
+        if (paths.get(path).isDefinite()) {
+            return values.isEmpty() ? null : values.get(0);
+        }
+
+        JSONArray array = new JSONArray();
+        array.addAll(values);
+        return array;
+    }
+
+    public List<Object> getValues(int path) {
+        return matches.get(path);
+    }
+
+    /**
+     * Returns the amount of elements found by the path in the counting mode.
+     */
+    public ElementCount getElementCount(int path) {
+
+        if (!isFound(path)) {
+            return ElementCount.notFound();
+        }
+
+        boolean single = paths.get(path).isDefinite() && !arrays[path] && counts[path] == 1;
+
+        return new ElementCount(counts[path], single, limit > 0 && counts[path] >= limit);
+    }
+
+}
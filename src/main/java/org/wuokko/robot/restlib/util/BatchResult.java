@@ -0,0 +1,67 @@
+package org.wuokko.robot.restlib.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Result of checking one source in a batch.
+ */
+public class BatchResult {
+
+    public static final String PASS = "PASS";
+
+    public static final String FAIL = "FAIL";
+
+    private final String source;
+
+    private final boolean passed;
+
+    private final long time;
+
+    private final String message;
+
+    public BatchResult(String source, boolean passed, long time, String message) {
+        this.source = source;
+        this.passed = passed;
+        this.time = time;
+        this.message = message;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public boolean isPassed() {
+        return passed;
+    }
+
+    /**
+     * Time (ms) it took to read and check the source.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Returns the result as a dictionary with keys `source`, `status` (PASS
+     * or FAIL), `time` (ms) and `message`.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("source", source);
+        map.put("status", passed ? PASS : FAIL);
+        map.put("time", time);
+        map.put("message", message);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return (passed ? PASS : FAIL) + " " + source + " (" + time + " ms)" + (message != null ? ": " + message : "");
+    }
+
+}
@@ -0,0 +1,135 @@
+package org.wuokko.robot.restlib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Checks many sources with a bounded pool of worker threads. Every source is
+ * checked even if some of them fail, and the results are returned in the
+ * order of the sources.
+ *
+ * At most `maxConcurrency` sources are read at the same time. The requests
+ * to the same host are also limited by `http.max.connections.per.route`.
+ */
+public class BatchRunner {
+
+    public static final String KEY_BATCH_MAX_CONCURRENCY = "batch.max.concurrency";
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 10;
+
+    private final int maxConcurrency;
+
+    /**
+     * Check done for each source. The check fails by throwing an exception,
+     * whose message is reported.
+     */
+    public interface Check {
+
+        void check(String source) throws Exception;
+
+    }
+
+    public BatchRunner(Configuration config) {
+        if (config != null && config.containsKey(KEY_BATCH_MAX_CONCURRENCY)) {
+            maxConcurrency = config.getInt(KEY_BATCH_MAX_CONCURRENCY);
+            System.out.println("[Robot-Rest-Lib] Set batch max concurrency to '" + maxConcurrency + "'");
+        } else {
+            maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public List<BatchResult> run(List<String> sources, Check check) throws InterruptedException {
+        return run(sources, maxConcurrency, check);
+    }
+
+    public List<BatchResult> run(List<String> sources, int concurrency, final Check check) throws InterruptedException {
+
+        List<BatchResult> results = new ArrayList<BatchResult>();
+
+        if (sources.isEmpty()) {
+            return results;
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, sources.size())), new DaemonThreadFactory("robot-rest-lib-batch"));
+
+        try {
+            List<Callable<BatchResult>> tasks = new ArrayList<Callable<BatchResult>>();
+
+            for (final String source : sources) {
+                tasks.add(new Callable<BatchResult>() {
+
+                    @Override
+                    public BatchResult call() {
+                        return runCheck(source, check);
+                    }
+                });
+            }
+
+            for (Future<BatchResult> future : workers.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    // runCheck catches everything
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        return results;
+    }
+
+    static BatchResult runCheck(String source, Check check) {
+        long start = System.nanoTime();
+
+        try {
+            check.check(source);
+            return new BatchResult(source, true, elapsed(start), null);
+        } catch (Exception e) {
+            String message = e.getMessage() != null ? e.getMessage() : e.toString();
+            return new BatchResult(source, false, elapsed(start), message);
+        }
+    }
+
+    private static long elapsed(long start) {
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * Formats the results as a report with one line per source, failures
+     * first.
+     */
+    public static String report(List<BatchResult> results) {
+        StringBuilder report = new StringBuilder();
+
+        int failed = 0;
+
+        for (BatchResult result : results) {
+            if (!result.isPassed()) {
+                failed++;
+                report.append(result).append('\n');
+            }
+        }
+
+        for (BatchResult result : results) {
+            if (result.isPassed()) {
+                report.append(result).append('\n');
+            }
+        }
+
+        return failed + " of " + results.size() + " sources failed:\n" + report;
+    }
+
+}
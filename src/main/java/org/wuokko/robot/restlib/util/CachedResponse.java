@@ -0,0 +1,67 @@
+package org.wuokko.robot.restlib.util;
+
+/**
+ * Response body stored in the {@link ResponseCache} together with the
+ * validators (ETag and Last-Modified) needed to revalidate it.
+ */
+public class CachedResponse {
+
+    private final String body;
+
+    private final String etag;
+
+    private final String lastModified;
+
+    private final long stored;
+
+    public CachedResponse(String body) {
+        this(body, null, null);
+    }
+
+    public CachedResponse(String body, String etag, String lastModified) {
+        this(body, etag, lastModified, System.currentTimeMillis());
+    }
+
+    CachedResponse(String body, String etag, String lastModified, long stored) {
+        this.body = body;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.stored = stored;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public long getStored() {
+        return stored;
+    }
+
+    /**
+     * Approximate heap size of the body, two bytes per character.
+     */
+    public long getBytes() {
+        return 2L * body.length();
+    }
+
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * Returns a copy of this response stored at the current time, used when
+     * the server has confirmed that the response is still valid.
+     */
+    public CachedResponse refresh() {
+        return new CachedResponse(body, etag, lastModified, System.currentTimeMillis());
+    }
+
+}
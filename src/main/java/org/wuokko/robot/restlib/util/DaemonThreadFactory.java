@@ -0,0 +1,27 @@
+package org.wuokko.robot.restlib.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named daemon threads, which do not keep the JVM running after the
+ * tests.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+
+    private final AtomicInteger number = new AtomicInteger();
+
+    public DaemonThreadFactory(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, prefix + "-" + number.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+}
@@ -0,0 +1,215 @@
+package org.wuokko.robot.restlib.util;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.configuration.Configuration;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+
+/**
+ * Bounded cache of parsed JSON documents.
+ *
+ * The documents are keyed by the JSON provider and the SHA-1 hash of the JSON
+ * content, so the same body is parsed only once even when it is read by
+ * several keywords. Responses read as bytes are hashed from the bytes, which
+ * for UTF-8 gives the same key as the string of the response. The least
+ * recently used documents are evicted when either the entry count or the
+ * total length of the cached JSON exceeds the configured limits.
+ *
+ * The documents are parsed with the configured {@link JsonBackend}.
+ *
+ * The same document is returned to every caller, and the values read from it
+ * are the maps and lists of the document. Callers must not modify them, but
+ * copy the values they hand out with {@link JsonValues#copy(Object)}.
+ */
+public class DocumentCache {
+
+    public static final String KEY_DOCUMENT_CACHE_SIZE = "document.cache.size";
+
+    public static final String KEY_DOCUMENT_CACHE_MAX_LENGTH = "document.cache.max.length";
+
+    private static final int DEFAULT_CACHE_SIZE = 20;
+
+    private static final long DEFAULT_MAX_LENGTH = 50L * 1024 * 1024;
+
+    private final int maxSize;
+
+    private final long maxLength;
+
+    private final JsonBackend backend;
+
+    private long length = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final LinkedHashMap<String, CachedDocument> documents = new LinkedHashMap<String, CachedDocument>(16, 0.75f, true);
+
+    public DocumentCache(Configuration config) {
+
+        int maxSize = DEFAULT_CACHE_SIZE;
+        long maxLength = DEFAULT_MAX_LENGTH;
+
+        if (config != null) {
+
+            if (config.containsKey(KEY_DOCUMENT_CACHE_SIZE)) {
+                maxSize = config.getInt(KEY_DOCUMENT_CACHE_SIZE);
+                System.out.println("[Robot-Rest-Lib] Set document cache size to '" + maxSize + "'");
+            }
+
+            if (config.containsKey(KEY_DOCUMENT_CACHE_MAX_LENGTH)) {
+                maxLength = config.getLong(KEY_DOCUMENT_CACHE_MAX_LENGTH);
+                System.out.println("[Robot-Rest-Lib] Set document cache max length to '" + maxLength + "'");
+            }
+        }
+
+        this.maxSize = maxSize;
+        this.maxLength = maxLength;
+        this.backend = JsonBackend.of(config);
+    }
+
+    /**
+     * Returns the parsed document for the given JSON, parsing it only if the
+     * same content is not already in the cache.
+     */
+    public DocumentContext parse(String json) {
+
+        if (json == null || maxSize <= 0 || json.length() > maxLength) {
+            return JsonPath.using(backend.getConfiguration()).parse(json);
+        }
+
+        String key = backend + ":" + DigestUtils.sha1Hex(json);
+
+        DocumentContext document = get(key);
+
+        if (document == null) {
+            document = JsonPath.using(backend.getConfiguration()).parse(json);
+            put(key, document, json.length());
+        }
+
+        return document;
+    }
+
+    /**
+     * Returns the parsed document for the JSON bytes encoded with the charset,
+     * or UTF-8 if the charset is null, parsing them only if the same content is
+     * not already in the cache. The bytes are parsed without decoding them
+     * into a string first.
+     */
+    public DocumentContext parse(byte[] json, Charset charset) {
+
+        if (maxSize <= 0 || json.length > maxLength) {
+            return parseBytes(json, charset);
+        }
+
+        String key = backend + ":" + (Utf8Reader.isUtf8(charset) ? "" : charset.name() + ":") + DigestUtils.sha1Hex(json);
+
+        DocumentContext document = get(key);
+
+        if (document == null) {
+            document = parseBytes(json, charset);
+            put(key, document, json.length);
+        }
+
+        return document;
+    }
+
+    private DocumentContext parseBytes(byte[] json, Charset charset) {
+        return JsonPath.parse(backend.parse(new ByteArrayInputStream(json), charset), backend.getConfiguration());
+    }
+
+    private DocumentContext get(String key) {
+
+        CachedDocument cached;
+
+        synchronized (documents) {
+            cached = documents.get(key);
+        }
+
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.document;
+        }
+
+        misses.incrementAndGet();
+
+        return null;
+    }
+
+    private void put(String key, DocumentContext document, int length) {
+        synchronized (documents) {
+            if (documents.put(key, new CachedDocument(document, length)) == null) {
+                this.length += length;
+            }
+            evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry<String, CachedDocument>> iterator = documents.entrySet().iterator();
+
+        while (iterator.hasNext() && (documents.size() > maxSize || length > maxLength)) {
+            length -= iterator.next().getValue().length;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public void clear() {
+        synchronized (documents) {
+            documents.clear();
+            length = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (documents) {
+            return documents.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+        statistics.put("size", size());
+        statistics.put("hits", getHits());
+        statistics.put("misses", getMisses());
+        statistics.put("evictions", getEvictions());
+        return statistics;
+    }
+
+    private static class CachedDocument {
+
+        private final DocumentContext document;
+
+        private final int length;
+
+        private CachedDocument(DocumentContext document, int length) {
+            this.document = document;
+            this.length = length;
+        }
+    }
+
+}
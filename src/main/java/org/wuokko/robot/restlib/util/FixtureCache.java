@@ -0,0 +1,183 @@
+package org.wuokko.robot.restlib.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.collections4.map.LRUMap;
+import org.apache.commons.configuration.Configuration;
+import org.wuokko.robot.restlib.exception.JsonNotValidException;
+
+/**
+ * Process wide cache of parsed JSON files.
+ *
+ * The parsed forms of a file are kept as long as its modification time and
+ * size stay the same, so unchanged fixture files are parsed once per JVM
+ * however many keywords or library instances read them. A file can have a
+ * parsed form for each kind of parser, ie. a JsonPath document and a diff
+ * document. The least recently used files are dropped when the cache is full.
+ */
+public final class FixtureCache {
+
+    public static final String KEY_FIXTURE_CACHE_SIZE = "fixture.cache.size";
+
+    private static final int DEFAULT_CACHE_SIZE = 10;
+
+    /**
+     * Parses a file opened with {@link MappedFile#open(File)}.
+     */
+    public interface Parser<T> {
+
+        T parse(InputStream json) throws JsonNotValidException;
+    }
+
+    private static int maxSize = DEFAULT_CACHE_SIZE;
+
+    private static volatile Map<String, Fixture> fixtures = Collections.synchronizedMap(new LRUMap<String, Fixture>(DEFAULT_CACHE_SIZE));
+
+    private static final AtomicLong hits = new AtomicLong();
+
+    private static final AtomicLong misses = new AtomicLong();
+
+    private FixtureCache() {
+    }
+
+    /**
+     * Sets the capacity of the cache from the configuration. Size 0 disables
+     * the cache.
+     */
+    public static synchronized void configure(Configuration config) {
+        if (config != null && config.containsKey(KEY_FIXTURE_CACHE_SIZE)) {
+
+            int size = config.getInt(KEY_FIXTURE_CACHE_SIZE);
+
+            if (size >= 0) {
+                synchronized (fixtures) {
+                    LRUMap<String, Fixture> resized = new LRUMap<String, Fixture>(Math.max(size, 1));
+                    if (size > 0) {
+                        resized.putAll(fixtures);
+                    }
+                    fixtures = Collections.synchronizedMap(resized);
+                }
+                maxSize = size;
+                System.out.println("[Robot-Rest-Lib] Set fixture cache size to '" + size + "'");
+            } else {
+                System.out.println("[Robot-Rest-Lib] Invalid fixture cache size '" + size + "', using " + maxSize);
+            }
+        }
+    }
+
+    /**
+     * Returns the file parsed with the given parser, parsing it only if the
+     * file has changed since it was last parsed with a parser of the same
+     * kind.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T get(File file, String kind, Parser<T> parser) throws IOException, JsonNotValidException {
+
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+
+        if (maxSize() <= 0) {
+            return parse(file, parser);
+        }
+
+        String path = file.getAbsolutePath();
+
+        Map<String, Fixture> cache = fixtures;
+
+        Fixture fixture = cache.get(path);
+
+        if (fixture == null || !fixture.isCurrent(attributes)) {
+            fixture = new Fixture(attributes);
+        } else {
+            Object parsed = fixture.parsed.get(kind);
+
+            if (parsed != null) {
+                hits.incrementAndGet();
+                RobotLog.debug("Found the parsed file {} from the fixture cache", path);
+                return (T) parsed;
+            }
+        }
+
+        misses.incrementAndGet();
+
+        // The attributes were read before the file, so a change during the
+        // parsing is noticed on the next read.
+        T parsed = parse(file, parser);
+
+        if (parsed != null) {
+            synchronized (cache) {
+                Fixture current = cache.get(path);
+
+                if (current != null && current.isSame(fixture)) {
+                    fixture = current;
+                } else {
+                    cache.put(path, fixture);
+                }
+
+                fixture.parsed.put(kind, parsed);
+            }
+        }
+
+        return parsed;
+    }
+
+    private static <T> T parse(File file, Parser<T> parser) throws IOException, JsonNotValidException {
+        RobotLog.debug("Parsing file {}", file);
+
+        try (InputStream stream = MappedFile.open(file)) {
+            return parser.parse(stream);
+        }
+    }
+
+    public static int size() {
+        return fixtures.size();
+    }
+
+    public static synchronized int maxSize() {
+        return maxSize;
+    }
+
+    public static void clear() {
+        fixtures.clear();
+    }
+
+    public static Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+        statistics.put("size", size());
+        statistics.put("hits", hits.get());
+        statistics.put("misses", misses.get());
+        return statistics;
+    }
+
+    private static class Fixture {
+
+        private final FileTime modified;
+
+        private final long size;
+
+        private final Map<String, Object> parsed = new ConcurrentHashMap<String, Object>();
+
+        Fixture(BasicFileAttributes attributes) {
+            this.modified = attributes.lastModifiedTime();
+            this.size = attributes.size();
+        }
+
+        boolean isCurrent(BasicFileAttributes attributes) {
+            return size == attributes.size() && modified.equals(attributes.lastModifiedTime());
+        }
+
+        boolean isSame(Fixture other) {
+            return size == other.size && modified.equals(other.modified);
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+package org.wuokko.robot.restlib.util;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Pooled HTTP client shared by all the libraries with the same
+ * {@link HttpClientSettings}, so the connections are reused across library
+ * instances and keywords.
+ *
+ * The client is thread safe. The pools live as long as the JVM, the idle
+ * connections are closed by a background thread after `http.idle.timeout`.
+ *
+ * The non-blocking client used by `Start Request` is created with the same
+ * settings when it is first needed. Its I/O reactor serves all the started
+ * requests with a few threads.
+ */
+public class HttpClientPool {
+
+    private static final Map<HttpClientSettings, HttpClientPool> POOLS = new HashMap<HttpClientSettings, HttpClientPool>();
+
+    private final HttpClientSettings settings;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final CloseableHttpClient client;
+
+    private final Executor executor;
+
+    private PoolingNHttpClientConnectionManager asyncConnectionManager;
+
+    private CloseableHttpAsyncClient asyncClient;
+
+    HttpClientPool(final HttpClientSettings settings) {
+        this.settings = settings;
+
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(settings.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(settings.getMaxConnectionsPerRoute());
+        connectionManager.setDefaultSocketConfig(SocketConfig.custom()
+                .setTcpNoDelay(settings.isTcpNoDelay())
+                .setSoTimeout(settings.getSocketTimeout())
+                .build());
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(settings.getConnectTimeout())
+                .setSocketTimeout(settings.getSocketTimeout())
+                .setConnectionRequestTimeout(settings.getRequestTimeout())
+                .build();
+
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setConnectionManager(new TimedConnectionManager(connectionManager))
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(new KeepAliveStrategy(settings.getKeepAlive()));
+
+        if (settings.getIdleTimeout() > 0) {
+            builder.evictExpiredConnections().evictIdleConnections(settings.getIdleTimeout(), TimeUnit.MILLISECONDS);
+        }
+
+        client = builder.build();
+
+        executor = Executor.newInstance(client);
+    }
+
+    /**
+     * Returns the pool for the settings, creating it on the first call.
+     */
+    public static HttpClientPool get(HttpClientSettings settings) {
+        synchronized (POOLS) {
+            HttpClientPool pool = POOLS.get(settings);
+
+            if (pool == null) {
+                System.out.println("[Robot-Rest-Lib] Created HTTP client pool with " + settings);
+                pool = new HttpClientPool(settings);
+                POOLS.put(settings, pool);
+            }
+
+            return pool;
+        }
+    }
+
+    public HttpClientSettings getSettings() {
+        return settings;
+    }
+
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Fluent executor running the requests with the pooled client.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns the started non-blocking client, creating it on the first call.
+     */
+    public synchronized CloseableHttpAsyncClient getAsyncClient() throws IOException {
+        if (asyncClient == null) {
+
+            IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                    .setTcpNoDelay(settings.isTcpNoDelay())
+                    .setConnectTimeout(settings.getConnectTimeout())
+                    .setSoTimeout(settings.getSocketTimeout())
+                    .build();
+
+            asyncConnectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig, new DaemonThreadFactory("robot-rest-lib-io")));
+            asyncConnectionManager.setMaxTotal(settings.getMaxConnections());
+            asyncConnectionManager.setDefaultMaxPerRoute(settings.getMaxConnectionsPerRoute());
+
+            asyncClient = HttpAsyncClients.custom()
+                    .setConnectionManager(asyncConnectionManager)
+                    .setDefaultRequestConfig(RequestConfig.custom()
+                            .setConnectTimeout(settings.getConnectTimeout())
+                            .setSocketTimeout(settings.getSocketTimeout())
+                            .setConnectionRequestTimeout(settings.getRequestTimeout())
+                            .build())
+                    .setKeepAliveStrategy(new KeepAliveStrategy(settings.getKeepAlive()))
+                    .setThreadFactory(new DaemonThreadFactory("robot-rest-lib-async"))
+                    .build();
+
+            asyncClient.start();
+
+            System.out.println("[Robot-Rest-Lib] Started non-blocking HTTP client");
+        }
+
+        return asyncClient;
+    }
+
+    /**
+     * Returns the connection counts of the whole pool (`leased`, `pending`,
+     * `available` and `max`) and the same counts for each route under
+     * `routes`, keyed by the target host. The counts of the non-blocking
+     * client are under `async` when it has been used.
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = toMap(connectionManager.getTotalStats());
+
+        Map<String, Object> routes = new LinkedHashMap<String, Object>();
+
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            routes.put(route.getTargetHost().toURI(), toMap(connectionManager.getStats(route)));
+        }
+
+        statistics.put("routes", routes);
+
+        synchronized (this) {
+            if (asyncConnectionManager != null) {
+                statistics.put("async", toMap(asyncConnectionManager.getTotalStats()));
+            }
+        }
+
+        return statistics;
+    }
+
+    private static Map<String, Object> toMap(PoolStats stats) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("leased", stats.getLeased());
+        map.put("pending", stats.getPending());
+        map.put("available", stats.getAvailable());
+        map.put("max", stats.getMax());
+        return map;
+    }
+
+    /**
+     * Uses the Keep-Alive header of the response, or the configured time if
+     * the server does not send one.
+     */
+    private static class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+        private final long keepAlive;
+
+        KeepAliveStrategy(long keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : keepAlive;
+        }
+    }
+
+}
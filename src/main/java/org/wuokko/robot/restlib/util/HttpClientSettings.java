@@ -0,0 +1,173 @@
+package org.wuokko.robot.restlib.util;
+
+import java.util.Arrays;
+
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Settings of the pooled HTTP client. Libraries with equal settings share
+ * the same {@link HttpClientPool}.
+ *
+ * The connect, socket and connection request (waiting for a pooled
+ * connection) timeouts default to `connection.timeout`.
+ */
+public class HttpClientSettings {
+
+    public static final String KEY_MAX_CONNECTIONS = "http.max.connections";
+
+    public static final String KEY_MAX_CONNECTIONS_PER_ROUTE = "http.max.connections.per.route";
+
+    public static final String KEY_KEEP_ALIVE = "http.keep.alive";
+
+    public static final String KEY_TCP_NODELAY = "http.tcp.nodelay";
+
+    public static final String KEY_IDLE_TIMEOUT = "http.idle.timeout";
+
+    public static final String KEY_CONNECT_TIMEOUT = "http.connect.timeout";
+
+    public static final String KEY_SOCKET_TIMEOUT = "http.socket.timeout";
+
+    public static final String KEY_REQUEST_TIMEOUT = "http.request.timeout";
+
+    static final int DEFAULT_CONNECTION_TIMEOUT = 5000;
+
+    static final int DEFAULT_MAX_CONNECTIONS = 200;
+
+    static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+
+    static final long DEFAULT_KEEP_ALIVE = 30000;
+
+    static final long DEFAULT_IDLE_TIMEOUT = 60000;
+
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+    private long keepAlive = DEFAULT_KEEP_ALIVE;
+
+    private boolean tcpNoDelay = true;
+
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    private int connectTimeout = DEFAULT_CONNECTION_TIMEOUT;
+
+    private int socketTimeout = DEFAULT_CONNECTION_TIMEOUT;
+
+    private int requestTimeout = DEFAULT_CONNECTION_TIMEOUT;
+
+    public HttpClientSettings(Configuration config) {
+        if (config != null) {
+
+            if (config.containsKey(RequestUtil.KEY_CONNECTION_TIMEOUT)) {
+                int timeout = config.getInt(RequestUtil.KEY_CONNECTION_TIMEOUT);
+                connectTimeout = timeout;
+                socketTimeout = timeout;
+                requestTimeout = timeout;
+                System.out.println("[Robot-Rest-Lib] Set connection time to '" + timeout + "'");
+            }
+
+            if (config.containsKey(KEY_CONNECT_TIMEOUT)) {
+                connectTimeout = config.getInt(KEY_CONNECT_TIMEOUT);
+                System.out.println("[Robot-Rest-Lib] Set HTTP connect timeout to '" + connectTimeout + "'");
+            }
+
+            if (config.containsKey(KEY_SOCKET_TIMEOUT)) {
+                socketTimeout = config.getInt(KEY_SOCKET_TIMEOUT);
+                System.out.println("[Robot-Rest-Lib] Set HTTP socket timeout to '" + socketTimeout + "'");
+            }
+
+            if (config.containsKey(KEY_REQUEST_TIMEOUT)) {
+                requestTimeout = config.getInt(KEY_REQUEST_TIMEOUT);
+                System.out.println("[Robot-Rest-Lib] Set HTTP connection request timeout to '" + requestTimeout + "'");
+            }
+
+            if (config.containsKey(KEY_MAX_CONNECTIONS)) {
+                maxConnections = config.getInt(KEY_MAX_CONNECTIONS);
+                System.out.println("[Robot-Rest-Lib] Set HTTP max connections to '" + maxConnections + "'");
+            }
+
+            if (config.containsKey(KEY_MAX_CONNECTIONS_PER_ROUTE)) {
+                maxConnectionsPerRoute = config.getInt(KEY_MAX_CONNECTIONS_PER_ROUTE);
+                System.out.println("[Robot-Rest-Lib] Set HTTP max connections per route to '" + maxConnectionsPerRoute + "'");
+            }
+
+            if (config.containsKey(KEY_KEEP_ALIVE)) {
+                keepAlive = config.getLong(KEY_KEEP_ALIVE);
+                System.out.println("[Robot-Rest-Lib] Set HTTP keep alive to '" + keepAlive + "'");
+            }
+
+            if (config.containsKey(KEY_TCP_NODELAY)) {
+                tcpNoDelay = config.getBoolean(KEY_TCP_NODELAY);
+                System.out.println("[Robot-Rest-Lib] Use TCP_NODELAY: " + tcpNoDelay);
+            }
+
+            if (config.containsKey(KEY_IDLE_TIMEOUT)) {
+                idleTimeout = config.getLong(KEY_IDLE_TIMEOUT);
+                System.out.println("[Robot-Rest-Lib] Set HTTP idle timeout to '" + idleTimeout + "'");
+            }
+        }
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Time (ms) to keep an idle connection open when the server does not
+     * tell it with the Keep-Alive header, 0 keeps them open until they are
+     * evicted as idle.
+     */
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * Connections idle for longer than this (ms) are closed in the
+     * background, 0 turns the eviction off.
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    private Object[] values() {
+        return new Object[] { maxConnections, maxConnectionsPerRoute, keepAlive, tcpNoDelay, idleTimeout, connectTimeout, socketTimeout, requestTimeout };
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof HttpClientSettings && Arrays.equals(values(), ((HttpClientSettings) other).values());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values());
+    }
+
+    @Override
+    public String toString() {
+        return "maxConnections=" + maxConnections + ", maxConnectionsPerRoute=" + maxConnectionsPerRoute + ", keepAlive=" + keepAlive
+                + ", tcpNoDelay=" + tcpNoDelay + ", idleTimeout=" + idleTimeout + ", connectTimeout=" + connectTimeout
+                + ", socketTimeout=" + socketTimeout + ", requestTimeout=" + requestTimeout;
+    }
+
+}
@@ -0,0 +1,139 @@
+package org.wuokko.robot.restlib.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minidev.json.JSONArray;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Builds a JSON value from the tokens of a Jackson parser, with the same
+ * types as the ordered json-smart reader of JsonPath: objects are
+ * {@link LinkedHashMap}s, arrays are {@link JSONArray}s, integers are Integer,
+ * Long or BigInteger by their size and decimals are Double, or BigDecimal when
+ * they are longer than 18 characters.
+ *
+ * The parser is strict JSON: no comments, single quotes or unquoted names, and
+ * nothing but whitespace after the value. Subclasses can create other
+ * containers and convert them when they end, like the readers of json-smart.
+ */
+public class JacksonReader {
+
+    private static final int MAX_DOUBLE_LENGTH = 18;
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    static {
+        FACTORY.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+
+    public static JsonParser createParser(String json) throws IOException {
+        return FACTORY.createParser(json);
+    }
+
+    /**
+     * Creates a parser for the stream, detecting the Unicode encoding. The
+     * stream is not closed.
+     */
+    public static JsonParser createParser(InputStream json) throws IOException {
+        return FACTORY.createParser(json);
+    }
+
+    /**
+     * Creates a parser for the stream encoded with the charset, detecting the
+     * Unicode encoding when the charset is UTF-8 or not known. The stream is
+     * not closed.
+     */
+    public static JsonParser createParser(InputStream json, Charset charset) throws IOException {
+        if (Utf8Reader.isUtf8(charset)) {
+            return FACTORY.createParser(json);
+        }
+        return FACTORY.createParser(new InputStreamReader(json, charset));
+    }
+
+    /**
+     * Reads the only value of the parser, or null if there is nothing but
+     * whitespace.
+     */
+    public Object read(JsonParser parser) throws IOException {
+        try {
+            JsonToken token = parser.nextToken();
+
+            if (token == null) {
+                return null;
+            }
+
+            Object value = readValue(parser, token);
+
+            if (parser.nextToken() != null) {
+                throw new JsonParseException("Unexpected data after the JSON value", parser.getCurrentLocation());
+            }
+
+            return value;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private Object readValue(JsonParser parser, JsonToken token) throws IOException {
+
+        if (token == null) {
+            throw new JsonParseException("Unexpected end of input", parser.getCurrentLocation());
+        }
+
+        switch (token) {
+        case START_OBJECT:
+            Map<String, Object> object = createObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                object.put(name, readValue(parser, parser.nextToken()));
+            }
+            return convert(object);
+        case START_ARRAY:
+            List<Object> array = createArray();
+            for (JsonToken next = parser.nextToken(); next != JsonToken.END_ARRAY; next = parser.nextToken()) {
+                array.add(readValue(parser, next));
+            }
+            return convert(array);
+        case VALUE_STRING:
+            return parser.getText();
+        case VALUE_NUMBER_INT:
+            return parser.getNumberValue();
+        case VALUE_NUMBER_FLOAT:
+            return parser.getTextLength() > MAX_DOUBLE_LENGTH ? parser.getDecimalValue() : parser.getDoubleValue();
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return null;
+        default:
+            throw new JsonParseException("Unexpected token " + token, parser.getCurrentLocation());
+        }
+    }
+
+    protected Map<String, Object> createObject() {
+        return new LinkedHashMap<String, Object>();
+    }
+
+    protected List<Object> createArray() {
+        return new JSONArray();
+    }
+
+    /**
+     * Called when an object or an array is complete.
+     */
+    protected Object convert(Object current) {
+        return current;
+    }
+
+}
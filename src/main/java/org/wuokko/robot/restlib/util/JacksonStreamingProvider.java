@@ -0,0 +1,65 @@
+package org.wuokko.robot.restlib.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
+
+import net.minidev.json.JSONArray;
+
+import org.apache.commons.io.IOUtils;
+
+import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.spi.json.AbstractJsonProvider;
+
+/**
+ * JsonPath provider that parses with the Jackson streaming parser through a
+ * {@link JacksonReader}. The documents are built from the same map and list
+ * types as with the json-smart provider, so the values read from them do not
+ * depend on the provider.
+ */
+public class JacksonStreamingProvider extends AbstractJsonProvider {
+
+    private static final String UTF_8 = "UTF-8";
+
+    private final JacksonReader reader = new JacksonReader();
+
+    @Override
+    public Object parse(String json) throws InvalidJsonException {
+        try {
+            return reader.read(JacksonReader.createParser(json));
+        } catch (IOException e) {
+            throw new InvalidJsonException(e);
+        }
+    }
+
+    @Override
+    public Object parse(InputStream json, String charset) throws InvalidJsonException {
+        try {
+            if (charset == null || UTF_8.equalsIgnoreCase(charset)) {
+                return reader.read(JacksonReader.createParser(json));
+            }
+            return parse(IOUtils.toString(json, charset));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalArgumentException("Unsupported charset '" + charset + "'", e);
+        } catch (IOException e) {
+            throw new InvalidJsonException(e);
+        }
+    }
+
+    @Override
+    public String toJson(Object obj) {
+        return JsonValues.toJson(obj);
+    }
+
+    @Override
+    public Object createArray() {
+        return new JSONArray();
+    }
+
+    @Override
+    public Object createMap() {
+        return new LinkedHashMap<String, Object>();
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.wuokko.robot.restlib.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import net.minidev.json.JSONValue;
+import net.minidev.json.parser.JSONParser;
+import net.minidev.json.parser.ParseException;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.jayway.jsonpath.spi.json.JsonSmartJsonProvider;
+
+/**
+ * JSON parser used for the JsonPath documents and the comparisons, selected
+ * with `json.provider` for each library instance:
+ *
+ * - `json-smart`: the permissive json-smart parser, which accepts single
+ *   quotes, unquoted strings, comments and trailing data (the default)
+ * - `json-smart-strict`: json-smart in the RFC 4627 mode
+ * - `jackson`: the Jackson streaming parser, strict JSON
+ *
+ * All of them build the same kinds of maps, lists and numbers, so the values
+ * read from the documents do not depend on the provider.
+ */
+public enum JsonBackend {
+
+    JSON_SMART("json-smart", JSONParser.MODE_PERMISSIVE),
+
+    JSON_SMART_STRICT("json-smart-strict", JSONParser.MODE_RFC4627),
+
+    JACKSON("jackson", 0);
+
+    public static final String KEY_JSON_PROVIDER = "json.provider";
+
+    private final String name;
+
+    private final int parserMode;
+
+    private final com.jayway.jsonpath.Configuration configuration;
+
+    private JsonBackend(String name, int parserMode) {
+        this.name = name;
+        this.parserMode = parserMode;
+
+        JsonProvider provider = parserMode != 0 ? new JsonSmartJsonProvider(parserMode, JSONValue.defaultReader.DEFAULT_ORDERED) : new JacksonStreamingProvider();
+
+        this.configuration = com.jayway.jsonpath.Configuration.defaultConfiguration().jsonProvider(provider);
+    }
+
+    /**
+     * Returns the provider of the configuration, json-smart by default.
+     */
+    public static JsonBackend of(Configuration config) {
+        if (config != null && config.containsKey(KEY_JSON_PROVIDER)) {
+            return forName(config.getString(KEY_JSON_PROVIDER));
+        }
+        return JSON_SMART;
+    }
+
+    public static JsonBackend forName(String name) {
+        for (JsonBackend backend : values()) {
+            if (backend.name.equalsIgnoreCase(name.trim())) {
+                return backend;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown JSON provider '" + name + "', expected json-smart, json-smart-strict or jackson");
+    }
+
+    /**
+     * The json-smart parser mode, 0 for Jackson.
+     */
+    public int getParserMode() {
+        return parserMode;
+    }
+
+    /**
+     * JsonPath configuration with this provider.
+     */
+    public com.jayway.jsonpath.Configuration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Parses a UTF-8 encoded document for JsonPath from the stream.
+     */
+    public Object parse(InputStream json) throws InvalidJsonException {
+        return parse(json, null);
+    }
+
+    /**
+     * Parses a document for JsonPath from the stream encoded with the charset,
+     * or with UTF-8 if the charset is null.
+     */
+    public Object parse(InputStream json, Charset charset) throws InvalidJsonException {
+        try {
+            if (this == JACKSON) {
+                return new JacksonReader().read(JacksonReader.createParser(json, charset));
+            }
+            return new JSONParser(parserMode).parse(Utf8Reader.open(json, charset), JSONValue.defaultReader.DEFAULT_ORDERED);
+        } catch (ParseException e) {
+            throw new InvalidJsonException(e);
+        } catch (IOException e) {
+            throw new InvalidJsonException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,209 @@
+package org.wuokko.robot.restlib.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.lang3.StringUtils;
+
+import com.jayway.jsonpath.InvalidPathException;
+import com.jayway.jsonpath.JsonPath;
+
+/**
+ * Process wide cache of compiled JsonPath expressions.
+ *
+ * Compiled paths are immutable, so they are shared by all library instances
+ * and threads. The paths are kept in a ConcurrentHashMap, so finding a
+ * compiled path takes no lock. Each path remembers when it was last used, and
+ * when the cache grows over its capacity the least recently used tenth is
+ * dropped by one thread at a time, which makes the order approximate.
+ */
+public class JsonPathCache {
+
+    public static final String KEY_JSONPATH_CACHE_SIZE = "jsonpath.cache.size";
+
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+
+    private static volatile int maxSize = DEFAULT_CACHE_SIZE;
+
+    private static final ConcurrentMap<String, CachedPath> paths = new ConcurrentHashMap<String, CachedPath>();
+
+    /**
+     * Advances on every compiled path, so the times of the paths used since
+     * then are newer.
+     */
+    private static final AtomicLong clock = new AtomicLong();
+
+    private static final ReentrantLock evicting = new ReentrantLock();
+
+    private JsonPathCache() {
+    }
+
+    /**
+     * Sets the capacity of the cache from the configuration. Already compiled
+     * paths are kept as far as they fit into the new capacity.
+     */
+    public static synchronized void configure(Configuration config) {
+        if (config != null && config.containsKey(KEY_JSONPATH_CACHE_SIZE)) {
+
+            int size = config.getInt(KEY_JSONPATH_CACHE_SIZE);
+
+            if (size > 0) {
+                maxSize = size;
+                evict();
+                System.out.println("[Robot-Rest-Lib] Set JsonPath cache size to '" + size + "'");
+            } else {
+                System.out.println("[Robot-Rest-Lib] Invalid JsonPath cache size '" + size + "', using " + maxSize);
+            }
+        }
+    }
+
+    /**
+     * Returns the compiled form of the given path, compiling it on the first
+     * use. The paths are cached without the surrounding whitespace.
+     */
+    public static JsonPath compile(String jsonPath) {
+
+        if (jsonPath == null) {
+            return JsonPath.compile(jsonPath);
+        }
+
+        String key = jsonPath.trim();
+
+        CachedPath cached = paths.get(key);
+
+        if (cached != null) {
+            cached.used = clock.get();
+            return cached.path;
+        }
+
+        cached = new CachedPath(key, JsonPath.compile(key), clock.incrementAndGet());
+
+        // Threads compiling the same path at the same time share the first one
+        CachedPath previous = paths.putIfAbsent(key, cached);
+
+        if (previous != null) {
+            return previous.path;
+        }
+
+        if (paths.size() > maxSize) {
+            evict();
+        }
+
+        return cached.path;
+    }
+
+    /**
+     * Compiles all the given paths into the cache.
+     *
+     * All paths are tried before failing, so the error lists every path that
+     * could not be compiled.
+     *
+     * @return amount of compiled paths
+     */
+    public static int precompile(Collection<String> jsonPaths) {
+
+        int compiled = 0;
+
+        List<String> errors = new ArrayList<String>();
+
+        for (String jsonPath : jsonPaths) {
+            if (StringUtils.isNotBlank(jsonPath)) {
+                try {
+                    compile(jsonPath);
+                    compiled++;
+                } catch (InvalidPathException e) {
+                    errors.add("'" + jsonPath + "' (" + e.getMessage() + ")");
+                }
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            throw new InvalidPathException("Could not compile paths: " + StringUtils.join(errors, ", "));
+        }
+
+        return compiled;
+    }
+
+    public static int size() {
+        return paths.size();
+    }
+
+    public static int maxSize() {
+        return maxSize;
+    }
+
+    public static void clear() {
+        paths.clear();
+    }
+
+    /**
+     * Drops the least recently used paths until a tenth of the capacity is
+     * free, unless another thread is already doing it.
+     */
+    private static void evict() {
+
+        if (!evicting.tryLock()) {
+            return;
+        }
+
+        try {
+            int max = maxSize;
+
+            if (paths.size() <= max) {
+                return;
+            }
+
+            CachedPath[] cached = paths.values().toArray(new CachedPath[0]);
+
+            // The times change while evicting, so they are read once
+            long[] used = new long[cached.length];
+
+            for (int i = 0; i < cached.length; i++) {
+                used[i] = cached[i].used;
+            }
+
+            long[] sorted = used.clone();
+
+            Arrays.sort(sorted);
+
+            int dropped = cached.length - (max - max / 10);
+
+            if (dropped <= 0) {
+                return;
+            }
+
+            long oldest = sorted[dropped - 1];
+
+            for (int i = 0; i < cached.length && dropped > 0; i++) {
+                if (used[i] <= oldest && paths.remove(cached[i].key, cached[i])) {
+                    dropped--;
+                }
+            }
+        } finally {
+            evicting.unlock();
+        }
+    }
+
+    private static class CachedPath {
+
+        private final String key;
+
+        private final JsonPath path;
+
+        private volatile long used;
+
+        private CachedPath(String key, JsonPath path, long used) {
+            this.key = key;
+            this.path = path;
+            this.used = used;
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.wuokko.robot.restlib.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.minidev.json.JSONValue;
+
+/**
+ * Copies and writes values read from parsed JSON documents.
+ *
+ * The document and fixture caches hand the same parsed document to every
+ * keyword reading the same content, and JsonPath returns the maps and lists
+ * of the document itself. The values given to the tests are copied, so a
+ * test modifying a returned list or dictionary does not change what the
+ * other keywords read.
+ */
+public final class JsonValues {
+
+    private JsonValues() {
+    }
+
+    /**
+     * Returns a deep copy of the maps and lists of the value. Strings,
+     * numbers, booleans and null are immutable and returned as they are.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T copy(T value) {
+
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Map<Object, Object> copy = new LinkedHashMap<Object, Object>(Math.max(16, map.size() * 4 / 3 + 1));
+
+            for (Entry<?, ?> entry : map.entrySet()) {
+                copy.put(entry.getKey(), copy(entry.getValue()));
+            }
+
+            return (T) copy;
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> copy = new ArrayList<Object>(list.size());
+
+            for (Object element : list) {
+                copy.add(copy(element));
+            }
+
+            return (T) copy;
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns the value as compact JSON.
+     */
+    public static String toJson(Object value) {
+        return toJson(value, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the value as compact JSON, stopping soon after the given
+     * length. The result is cut, so it is only meant to be shown.
+     */
+    public static String toJson(Object value, int maxLength) {
+        StringBuilder json = new StringBuilder();
+        write(value, json, maxLength);
+        return json.toString();
+    }
+
+    private static void write(Object value, StringBuilder json, int maxLength) {
+
+        if (json.length() > maxLength) {
+            return;
+        }
+
+        if (value instanceof Map) {
+            json.append('{');
+
+            Iterator<? extends Entry<?, ?>> entries = ((Map<?, ?>) value).entrySet().iterator();
+
+            while (entries.hasNext() && json.length() <= maxLength) {
+                Entry<?, ?> entry = entries.next();
+                write(String.valueOf(entry.getKey()), json, maxLength);
+                json.append(':');
+                write(entry.getValue(), json, maxLength);
+
+                if (entries.hasNext() && json.length() <= maxLength) {
+                    json.append(',');
+                }
+            }
+
+            json.append('}');
+        } else if (value instanceof List) {
+            json.append('[');
+
+            Iterator<?> elements = ((List<?>) value).iterator();
+
+            while (elements.hasNext() && json.length() <= maxLength) {
+                write(elements.next(), json, maxLength);
+
+                if (elements.hasNext() && json.length() <= maxLength) {
+                    json.append(',');
+                }
+            }
+
+            json.append(']');
+        } else if (value instanceof String) {
+            json.append('"').append(JSONValue.escape((String) value)).append('"');
+        } else if (value instanceof Number || value instanceof Boolean || value == null) {
+            json.append(value);
+        } else {
+            json.append(JSONValue.toJSONString(value));
+        }
+    }
+
+}
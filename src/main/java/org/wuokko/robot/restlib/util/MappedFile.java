@@ -0,0 +1,161 @@
+package org.wuokko.robot.restlib.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads UTF-8 encoded files through a memory mapped buffer.
+ *
+ * Large files are mapped instead of copied into the heap, so the parser reads
+ * the bytes straight from the page cache. Files smaller than
+ * {@link #MAP_THRESHOLD} are read into a heap buffer, because mapping them
+ * costs more than copying. A leading UTF-8 byte order mark is skipped.
+ */
+public final class MappedFile {
+
+    /**
+     * Files of at least this many bytes are mapped.
+     */
+    public static final int MAP_THRESHOLD = 64 * 1024;
+
+    private static final int BOM_LENGTH = 3;
+
+    private MappedFile() {
+    }
+
+    /**
+     * Opens the file as a stream of UTF-8 bytes. Files too large to be mapped
+     * are read with a buffered stream.
+     */
+    public static InputStream open(File file) throws IOException {
+
+        if (file.length() > Integer.MAX_VALUE) {
+            return new BufferedInputStream(new FileInputStream(file));
+        }
+
+        return new ByteBufferInputStream(map(file));
+    }
+
+    /**
+     * Opens a binary file as a stream of its bytes, without skipping a byte
+     * order mark.
+     */
+    static InputStream openBinary(File file) throws IOException {
+
+        if (file.length() > Integer.MAX_VALUE) {
+            return new BufferedInputStream(new FileInputStream(file));
+        }
+
+        return new ByteBufferInputStream(mapBytes(file));
+    }
+
+    /**
+     * Reads the whole file into a string. Invalid UTF-8 fails the read instead
+     * of being replaced.
+     */
+    public static String read(File file) throws IOException {
+
+        if (file.length() > Integer.MAX_VALUE) {
+            throw new IOException("File " + file + " is too large to be read into memory (" + file.length() + " bytes)");
+        }
+
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(map(file))
+                .toString();
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+
+        ByteBuffer buffer = mapBytes(file);
+
+        skipByteOrderMark(buffer);
+
+        return buffer;
+    }
+
+    private static ByteBuffer mapBytes(File file) throws IOException {
+
+        ByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            long size = channel.size();
+
+            if (size >= MAP_THRESHOLD) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // read until the buffer is full or the file ends
+                }
+                // Through Buffer, as JDK 9+ links ByteBuffer.flip() that Java 7 and 8 do not have
+                ((Buffer) buffer).flip();
+            }
+        }
+
+        return buffer;
+    }
+
+    private static void skipByteOrderMark(ByteBuffer buffer) {
+        if (buffer.remaining() >= BOM_LENGTH
+                && buffer.get(0) == (byte) 0xEF
+                && buffer.get(1) == (byte) 0xBB
+                && buffer.get(2) == (byte) 0xBF) {
+            ((Buffer) buffer).position(BOM_LENGTH);
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+
+            if (length == 0) {
+                return 0;
+            }
+
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long count) {
+            int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+            ((Buffer) buffer).position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+}
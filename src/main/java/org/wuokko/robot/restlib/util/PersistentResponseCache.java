@@ -0,0 +1,386 @@
+package org.wuokko.robot.restlib.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Response cache in a local directory, which keeps the responses between
+ * suite runs and between the processes using the same directory.
+ *
+ * Each response is a file named by the fingerprint of its {@link RequestKey}.
+ * The file holds the key, the validators (ETag and Last-Modified) and the
+ * gzip compressed body, and its modification time is the time the response
+ * was stored or last confirmed by the server. The files are written to a
+ * temporary file first and moved in place, so a reader never sees a partly
+ * written response, and they are read through a memory mapped buffer.
+ *
+ * The mode is one of:
+ *
+ * - `off`: the directory is not used (the default)
+ * - `read-through`: responses are read from the directory and the new ones
+ *   are stored into it, entries expire after the time to live
+ * - `replay-only`: responses are only read from the directory, never expire
+ *   and are never revalidated, and requests without a stored response fail
+ *
+ * Only HTTP responses are stored. When the files take more than the maximum
+ * size, the files stored or confirmed the longest time ago are removed first.
+ */
+public class PersistentResponseCache {
+
+    public static final String KEY_DISK_MODE = "uri.cache.disk.mode";
+
+    public static final String KEY_DISK_DIR = "uri.cache.disk.dir";
+
+    public static final String KEY_DISK_TTL = "uri.cache.disk.ttl";
+
+    public static final String KEY_DISK_MAX_BYTES = "uri.cache.disk.max.bytes";
+
+    public enum Mode {
+
+        OFF("off"),
+
+        READ_THROUGH("read-through"),
+
+        REPLAY_ONLY("replay-only");
+
+        private final String name;
+
+        private Mode(String name) {
+            this.name = name;
+        }
+
+        public static Mode forName(String name) {
+            for (Mode mode : values()) {
+                if (mode.name.equalsIgnoreCase(name.trim())) {
+                    return mode;
+                }
+            }
+
+            throw new IllegalArgumentException("Unknown URI cache disk mode '" + name + "', expected off, read-through or replay-only");
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final String DEFAULT_DIR = System.getProperty("user.home") + File.separator + ".robot-rest-lib" + File.separator + "cache";
+
+    private static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+    private static final String SUFFIX = ".response";
+
+    private static final int MAGIC = 0x52524c43;
+
+    private static final int VERSION = 1;
+
+    private static final FileFilter ENTRIES = new FileFilter() {
+
+        @Override
+        public boolean accept(File file) {
+            return file.isFile() && file.getName().endsWith(SUFFIX);
+        }
+    };
+
+    private final Mode mode;
+
+    private final File directory;
+
+    private final long ttl;
+
+    private final long maxBytes;
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong writes = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PersistentResponseCache(Configuration config) {
+
+        Mode mode = Mode.OFF;
+        String directory = DEFAULT_DIR;
+        long ttl = 0;
+        long maxBytes = DEFAULT_MAX_BYTES;
+
+        if (config != null) {
+
+            if (config.containsKey(KEY_DISK_MODE)) {
+                mode = Mode.forName(config.getString(KEY_DISK_MODE));
+                System.out.println("[Robot-Rest-Lib] Set URI cache disk mode to '" + mode + "'");
+            }
+
+            if (config.containsKey(KEY_DISK_DIR)) {
+                directory = config.getString(KEY_DISK_DIR);
+                System.out.println("[Robot-Rest-Lib] Set URI cache disk directory to '" + directory + "'");
+            }
+
+            if (config.containsKey(KEY_DISK_TTL)) {
+                ttl = config.getLong(KEY_DISK_TTL);
+                System.out.println("[Robot-Rest-Lib] Set URI cache disk TTL to '" + ttl + "'");
+            }
+
+            if (config.containsKey(KEY_DISK_MAX_BYTES)) {
+                maxBytes = config.getLong(KEY_DISK_MAX_BYTES);
+                System.out.println("[Robot-Rest-Lib] Set URI cache disk max bytes to '" + maxBytes + "'");
+            }
+        }
+
+        this.mode = mode;
+        this.directory = new File(directory);
+        this.ttl = ttl;
+        this.maxBytes = maxBytes;
+
+        if (mode != Mode.OFF) {
+            if (mode == Mode.READ_THROUGH && !this.directory.isDirectory() && !this.directory.mkdirs()) {
+                RobotLog.warn("Could not create the URI cache directory {}", this.directory);
+            }
+            bytes.set(size(entries()));
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Checks if the response of the request can be stored, which is true for
+     * HTTP requests when the cache is not off.
+     */
+    public boolean isPersistent(RequestKey key) {
+        String scheme = key.getUri().getScheme();
+        return mode != Mode.OFF && ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme));
+    }
+
+    /**
+     * Reads the stored response of the request, or returns null if there is
+     * none or it has expired. A file that cannot be read is a miss.
+     */
+    public CachedResponse get(RequestKey key) {
+
+        if (!isPersistent(key)) {
+            return null;
+        }
+
+        File file = file(key);
+
+        long stored = file.lastModified();
+
+        if (stored == 0 || (mode == Mode.READ_THROUGH && ttl > 0 && System.currentTimeMillis() - stored > ttl)) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(MappedFile.openBinary(file))) {
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.toString().equals(in.readUTF())) {
+                RobotLog.debug("The cached response in {} is not for {}", file, key);
+                misses.incrementAndGet();
+                return null;
+            }
+
+            String etag = readOptional(in);
+            String lastModified = readOptional(in);
+
+            byte[] body = new byte[in.readInt()];
+
+            try (InputStream gzip = new GZIPInputStream(in)) {
+                IOUtils.readFully(gzip, body);
+            }
+
+            hits.incrementAndGet();
+
+            return new CachedResponse(new String(body, StandardCharsets.UTF_8), etag, lastModified, stored);
+        } catch (IOException e) {
+            RobotLog.debug("Could not read the cached response {}: {}", file, e);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the response of the request, replacing the previous one. Nothing
+     * is stored in the replay-only mode.
+     */
+    public void put(RequestKey key, CachedResponse response) {
+
+        if (mode != Mode.READ_THROUGH || !isPersistent(key)) {
+            return;
+        }
+
+        File file = file(key);
+        File temporary = null;
+
+        try {
+            temporary = File.createTempFile(file.getName(), ".tmp", directory);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                byte[] body = response.getBody().getBytes(StandardCharsets.UTF_8);
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(key.toString());
+                writeOptional(out, response.getEtag());
+                writeOptional(out, response.getLastModified());
+                out.writeInt(body.length);
+
+                GZIPOutputStream gzip = new GZIPOutputStream(out);
+                gzip.write(body);
+                gzip.finish();
+            }
+
+            long length = temporary.length();
+
+            if (length > maxBytes) {
+                RobotLog.debug("Response of {} compressed bytes is too large for the URI cache directory", length);
+                return;
+            }
+
+            long replaced = file.length();
+
+            move(temporary, file);
+
+            writes.incrementAndGet();
+
+            if (bytes.addAndGet(length - replaced) > maxBytes) {
+                evict();
+            }
+        } catch (IOException e) {
+            RobotLog.warn("Could not store the response of {} into {}: {}", key, directory, e);
+        } finally {
+            if (temporary != null && temporary.exists() && !temporary.delete()) {
+                temporary.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Marks the stored response as confirmed by the server, which restarts
+     * its time to live.
+     */
+    public void refresh(RequestKey key) {
+        if (mode == Mode.READ_THROUGH && isPersistent(key) && !file(key).setLastModified(System.currentTimeMillis())) {
+            RobotLog.debug("Could not refresh the cached response of {}", key);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+        statistics.put("disk.hits", hits.get());
+        statistics.put("disk.misses", misses.get());
+        statistics.put("disk.writes", writes.get());
+        statistics.put("disk.evictions", evictions.get());
+        statistics.put("disk.bytes", bytes.get());
+        return statistics;
+    }
+
+    /**
+     * The file of the request, named by the SHA-256 fingerprint of the key.
+     */
+    File file(RequestKey key) {
+        return new File(directory, key.getFingerprint() + SUFFIX);
+    }
+
+    /**
+     * Removes the oldest files until the directory is within the limit. The
+     * size is counted again from the files, because other processes may
+     * share the directory.
+     */
+    private synchronized void evict() {
+
+        File[] files = entries();
+
+        long total = size(files);
+
+        // The modification times change while sorting when files are refreshed
+        final Map<File, Long> modified = new LinkedHashMap<File, Long>();
+
+        for (File file : files) {
+            modified.put(file, file.lastModified());
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+
+            @Override
+            public int compare(File first, File second) {
+                return Long.compare(modified.get(first), modified.get(second));
+            }
+        });
+
+        for (int i = 0; i < files.length && total > maxBytes; i++) {
+            long length = files[i].length();
+
+            if (files[i].delete()) {
+                total -= length;
+                evictions.incrementAndGet();
+            }
+        }
+
+        bytes.set(total);
+    }
+
+    private File[] entries() {
+        File[] files = directory.listFiles(ENTRIES);
+        return files != null ? files : new File[0];
+    }
+
+    private static long size(File[] files) {
+        long size = 0;
+
+        for (File file : files) {
+            size += file.length();
+        }
+
+        return size;
+    }
+
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String readOptional(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeOptional(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+}
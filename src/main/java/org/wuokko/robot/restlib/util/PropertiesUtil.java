@@ -12,7 +12,6 @@ public class PropertiesUtil {
 		
         try {
             config = new PropertiesConfiguration(propertiesFile);
-            System.out.println("config: " + config);
             System.out.println("[Robot-Rest-Lib] Found properties file '" + propertiesFile + "'");
         } catch (ConfigurationException e) {
             System.out.println("[Robot-Rest-Lib] Did not find properties file '" + propertiesFile + "', using defaults");
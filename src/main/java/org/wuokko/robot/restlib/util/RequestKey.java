@@ -0,0 +1,83 @@
+package org.wuokko.robot.restlib.util;
+
+import java.net.URI;
+import java.util.Objects;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Identifies a request for the response cache: method, URI, digest of the
+ * request body and the content type of the body.
+ */
+public final class RequestKey {
+
+    private final String method;
+
+    private final URI uri;
+
+    private final String bodyDigest;
+
+    private final String contentType;
+
+    private final int hash;
+
+    public RequestKey(String method, URI uri, String data, String contentType) {
+        this.method = method;
+        this.uri = uri;
+        this.bodyDigest = data != null ? DigestUtils.sha1Hex(data) : null;
+        this.contentType = contentType;
+        this.hash = Objects.hash(method, uri, bodyDigest, contentType);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    public String getBodyDigest() {
+        return bodyDigest;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * SHA-256 of the key, which names the response in the persistent cache.
+     */
+    public String getFingerprint() {
+        return DigestUtils.sha256Hex(toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof RequestKey)) {
+            return false;
+        }
+
+        RequestKey other = (RequestKey) obj;
+
+        return hash == other.hash
+                && Objects.equals(method, other.method)
+                && Objects.equals(uri, other.uri)
+                && Objects.equals(bodyDigest, other.bodyDigest)
+                && Objects.equals(contentType, other.contentType);
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + uri + (bodyDigest != null ? " body:" + bodyDigest : "") + (contentType != null ? " " + contentType : "");
+    }
+
+}
@@ -1,18 +1,55 @@
 package org.wuokko.robot.restlib.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Collections;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.configuration.Configuration;
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.ProxyInputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.fluent.Executor;
 import org.apache.http.client.fluent.Request;
+import org.apache.http.client.fluent.Response;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.EofSensorInputStream;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.BasicAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.wuokko.robot.restlib.exception.SourceReadException;
+import org.wuokko.robot.restlib.metrics.LatencyMetrics;
+import org.wuokko.robot.restlib.metrics.RequestTimer;
 
 public class RequestUtil {
 	
@@ -20,27 +57,68 @@ public class RequestUtil {
 	
 	public static final String KEY_USE_URI_CACHE = "use.uri.cache";
 	
-    private static final int MAX_CACHE_SIZE = 100;
+	public static final String KEY_PARSE_FROM_STREAM = "parse.from.stream";
 
-    private static int CONNECTION_TIMEOUT = 5000;
+	/**
+	 * HTTP responses are parsed from the stream by default, see
+	 * {@link #isParsedFromStream(String, String)}.
+	 */
+	public static final boolean DEFAULT_PARSE_FROM_STREAM = true;
 
-    protected Map<URI, String> uriCache = Collections.synchronizedMap(new LRUMap<URI, String>(MAX_CACHE_SIZE));
+	public static final String KEY_REQUEST_MAX_PENDING = "request.max.pending";
 
-    private Boolean useCache = Boolean.valueOf(System.getProperty("use.uri.cache"));
+	private static final int DEFAULT_MAX_PENDING = 1000;
+	
+    protected ResponseCache uriCache;
+
+    protected HttpClientPool clientPool;
+
+    protected Executor executor;
+
+    private final AtomicLong requestNumber = new AtomicLong();
+
+    /**
+     * The started requests in the order they were started, guarded by itself.
+     */
+    private final Map<String, PendingResponse> pendingResponses = new LinkedHashMap<String, PendingResponse>();
+
+    private final int maxPending;
+
+    private final boolean useCache;
+
+    private final boolean parseFromStream;
 
     public RequestUtil(Configuration config) {
+    	uriCache = new ResponseCache(config);
+    	clientPool = HttpClientPool.get(new HttpClientSettings(config));
+    	executor = clientPool.getExecutor();
+
+        boolean useCache = Boolean.parseBoolean(System.getProperty(KEY_USE_URI_CACHE));
+        boolean parseFromStream = DEFAULT_PARSE_FROM_STREAM;
+        int maxPending = DEFAULT_MAX_PENDING;
+    	
     	if(config != null) {
             
-            if(config.containsKey(KEY_CONNECTION_TIMEOUT)) {
-                CONNECTION_TIMEOUT = config.getInt(KEY_CONNECTION_TIMEOUT);
-                System.out.println("[Robot-Rest-Lib] Set connection time to '" + CONNECTION_TIMEOUT + "'");
-            }
-            
             if(config.containsKey(KEY_USE_URI_CACHE)) {
                 useCache = config.getBoolean(KEY_USE_URI_CACHE);
                 System.out.println("[Robot-Rest-Lib] Using URI cache: " + useCache);
             }
+
+            if(config.containsKey(KEY_PARSE_FROM_STREAM)) {
+                parseFromStream = config.getBoolean(KEY_PARSE_FROM_STREAM);
+                System.out.println("[Robot-Rest-Lib] Parsing responses from stream: " + parseFromStream);
+            }
+
+            if(config.containsKey(KEY_REQUEST_MAX_PENDING)) {
+                maxPending = config.getInt(KEY_REQUEST_MAX_PENDING);
+                System.out.println("[Robot-Rest-Lib] Set max pending requests to '" + maxPending + "'");
+            }
         }
+
+        // The persistent cache is not useful without the URI cache
+        this.useCache = useCache || uriCache.isPersistent();
+        this.parseFromStream = parseFromStream;
+        this.maxPending = maxPending;
 	}
     
     public String readSource(String source) {
@@ -66,12 +144,12 @@ public class RequestUtil {
             if (uri != null) {
                 json = loadURI(uri, method, data, contentType);
             } else {
-                System.out.println("*DEBUG* The source is JSON");
+                RobotLog.debug("The source is JSON");
                 json = source;
             }
 
         } else {
-            System.out.println("*ERROR* The source was empty or null: " + source);
+            RobotLog.error("The source was empty or null: {}", source);
         }
 
         return json;
@@ -83,82 +161,597 @@ public class RequestUtil {
         
         if (uri != null && StringUtils.isNotBlank(method)) {
 
-            System.out.println("*DEBUG* Use cache: " + useCache);
+            boolean cacheable = useCache && uriCache.isCacheable(method);
+
+            RobotLog.debug("Use cache: {}", cacheable);
+
+            RequestKey key = null;
+
+            CachedResponse cached = null;
 
-            if (useCache) {
-                json = uriCache.get(uri);
+            if (cacheable) {
+                key = new RequestKey(method, uri, data, contentTypeString);
+                cached = uriCache.get(key);
+
+                if (cached != null && !uriCache.shouldRevalidate(cached)) {
+                    json = cached.getBody();
+                }
             }
 
             if (json == null) {
 
-                System.out.println("*DEBUG* Did not find result from cache");
+                RobotLog.debug("Did not find result from cache");
+
+                CachedResponse loaded = null;
 
                 // Check if the source is an URL
                 try {
 
-                    System.out.println("*TRACE* Loading the JSON from the URI");
+                    RobotLog.trace("Loading the JSON from the URI");
 
                     if ("file".equals(uri.getScheme())) {
-                        System.out.println("*DEBUG* Loading file system URI");
-                        json = FileUtils.readFileToString(new File(uri));
+                        RobotLog.debug("Loading file system URI");
+                        json = MappedFile.read(new File(uri));
+                        loaded = new CachedResponse(json);
                     } else {
-                        System.out.println("*DEBUG* Loading external URI");
-                        
-                        ContentType contentType = ContentType.APPLICATION_JSON;
-                        
-                        if(StringUtils.isNotBlank(contentTypeString)) {
-                        	contentType = ContentType.create(contentTypeString);
-                        	System.out.println("*DEBUG* Created content type: " + contentType);
-                        }
-                        
-                        Request request = null;
+                        RobotLog.debug("Loading external URI with method: {}", method);
 
-                        System.out.println("*DEBUG* Using method: " + method);
+                        checkNotReplayOnly(cacheable, key);
                         
-                        switch (method) {
-						case "GET":
-							request = Request.Get(uri);
-							break;
-						case "POST":
-							request = Request.Post(uri).bodyString(data, contentType);
-							break;
-						case "DELETE":
-							request = Request.Delete(uri); 
-							break;
-						case "PUT":
-							request = Request.Put(uri).bodyString(data, contentType); 
-							break;
-						default:
-							break;
-						}
+                        Request request = createRequest(uri, method, data, contentTypeString);
                         
                         if(request != null) {
-                        	json = request.connectTimeout(CONNECTION_TIMEOUT).socketTimeout(CONNECTION_TIMEOUT).execute().returnContent().asString();
-                        	System.out.println("JSON: " + json);
+                        	if(cached != null) {
+                        		RobotLog.debug("Revalidating the cached response");
+                        		addConditionalHeaders(request, cached);
+                        	}
+                        	
+                        	HttpResponse response = execute(request, LatencyMetrics.key(method, uri));
+                        	
+                        	if(cached != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                        		RobotLog.debug("The cached response was not modified");
+                        		json = cached.getBody();
+                        		uriCache.revalidated(key, cached);
+                        	} else {
+                        		json = readContent(response);
+                        		loaded = new CachedResponse(json, getHeader(response, HttpHeaders.ETAG), getHeader(response, HttpHeaders.LAST_MODIFIED));
+                        	}
+                        	RobotLog.debug("Response: {}", json);
                         } else {
-                        	System.out.println("*ERROR* Could not find out request method, was: " + method);
+                        	RobotLog.error("Could not find out request method, was: {}", method);
                         }
                     }
 
-                    if (json != null && useCache) {
-                        System.out.println("*DEBUG* Storing value to the cache");
-                        uriCache.put(uri, json);
+                    if (loaded != null && json != null && cacheable) {
+                        RobotLog.debug("Storing value to the cache");
+                        uriCache.put(key, loaded);
                     }
 
                 } catch (IOException e) {
-                    System.out.println("*ERROR* Could not load json from URI " + uri + ", because " + e);
+                    RobotLog.error("Could not load json from URI {}, because {}", uri, e);
                 }
 
             } else {
-                System.out.println("*DEBUG* Found the result from cache");
+                RobotLog.debug("Found the result from cache");
             }
         } else {
-            System.out.println("*DEBUG* Got invalid parameters - method: " + method + " - uri: " + uri);
+            RobotLog.debug("Got invalid parameters - method: {} - uri: {}", method, uri);
         }
 
         return json;
     }
 
+    /**
+     * Opens the source as a stream and passes it to the handler, so the
+     * response does not have to be held in memory. A response found from the
+     * URI cache is streamed from the cache, but streamed responses are not
+     * stored into the cache.
+     * 
+     * The stream is closed after the handler returns. If the handler did not
+     * read the whole HTTP response, the connection is aborted instead of
+     * reading the rest of the response.
+     * 
+     * The body of the HTTP response is timed until the end of the stream is
+     * read, so the time the handler spends on the content is not included.
+     */
+    public <T> T streamSource(String source, String method, String data, String contentType, final SourceHandler<T> handler) throws IOException {
+
+        if (StringUtils.isBlank(source)) {
+            RobotLog.error("The source was empty or null: {}", source);
+            return null;
+        }
+
+        URI uri = getURI(source);
+
+        if (uri == null) {
+            RobotLog.debug("The source is JSON");
+            return handler.handle(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+        }
+
+        boolean cacheable = useCache && uriCache.isCacheable(method);
+
+        RequestKey key = cacheable ? new RequestKey(method, uri, data, contentType) : null;
+
+        if (cacheable) {
+            CachedResponse cached = uriCache.get(key);
+
+            if (cached != null && !uriCache.shouldRevalidate(cached)) {
+                RobotLog.debug("Streaming the result from cache");
+                return handler.handle(new ByteArrayInputStream(cached.getBody().getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+            }
+        }
+
+        if ("file".equals(uri.getScheme())) {
+            RobotLog.debug("Streaming file system URI");
+            try (InputStream stream = MappedFile.open(new File(uri))) {
+                return handler.handle(stream, StandardCharsets.UTF_8);
+            }
+        }
+
+        checkNotReplayOnly(cacheable, key);
+
+        Request request = createRequest(uri, method, data, contentType);
+
+        if (request == null) {
+            RobotLog.error("Could not find out request method, was: {}", method);
+            return null;
+        }
+
+        RobotLog.debug("Streaming external URI");
+
+        final RequestTimer timer = RequestTimer.start(LatencyMetrics.key(method, uri));
+
+        try {
+            Response response = executor.execute(request);
+
+            timer.firstByte();
+
+            return response.handleResponse(new ResponseHandler<T>() {
+
+                @Override
+                public T handleResponse(HttpResponse response) throws IOException {
+                    StatusLine statusLine = response.getStatusLine();
+                    HttpEntity entity = response.getEntity();
+
+                    if (statusLine.getStatusCode() >= HttpStatus.SC_MULTIPLE_CHOICES) {
+                        EntityUtils.consume(entity);
+                        throw new HttpResponseException(statusLine.getStatusCode(), statusLine.getReasonPhrase());
+                    }
+
+                    InputStream stream = entity != null ? entity.getContent() : new ByteArrayInputStream(new byte[0]);
+
+                    // Decoded like readContent decodes the body into a string
+                    Charset charset = entity != null ? ContentType.getOrDefault(entity).getCharset() : null;
+
+                    InputStream timed = new ProxyInputStream(stream) {
+
+                        private boolean read = false;
+
+                        @Override
+                        protected void afterRead(int n) {
+                            if (n == -1 && !read) {
+                                read = true;
+                                timer.body();
+                            }
+                        }
+                    };
+
+                    boolean complete = false;
+
+                    try {
+                        T result = handler.handle(timed, charset);
+                        complete = timed.read() == -1;
+                        return result;
+                    } finally {
+                        if (!complete && stream instanceof EofSensorInputStream) {
+                            RobotLog.debug("Aborting the rest of the response");
+                            ((EofSensorInputStream) stream).abortConnection();
+                        }
+                    }
+                }
+            });
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Tells if the HTTP response of the source should be parsed straight from
+     * {@link #streamSource}, without reading it into a string first. Inline
+     * JSON, files and responses that go through the URI cache are read as
+     * strings.
+     */
+    public boolean isParsedFromStream(String source, String method) {
+
+        if (!parseFromStream || StringUtils.isBlank(source) || (useCache && uriCache.isCacheable(method))) {
+            return false;
+        }
+
+        URI uri = getURI(source);
+
+        return uri != null && ("http".equals(uri.getScheme()) || "https".equals(uri.getScheme()));
+    }
+
+    /**
+     * Sends the request without the URI cache and returns the response body.
+     * Unlike {@link #readSource}, failures and error statuses are thrown and
+     * nothing is logged, so this can be called in a tight loop.
+     */
+    public String sendRequest(URI uri, String method, String data, String contentType) throws IOException {
+
+        if ("file".equals(uri.getScheme())) {
+            return MappedFile.read(new File(uri));
+        }
+
+        Request request = createRequest(uri, method, data, contentType);
+
+        if (request == null) {
+            throw new IllegalArgumentException("Unknown request method: " + method);
+        }
+
+        return readContent(execute(request, LatencyMetrics.key(method, uri)));
+    }
+
+    /**
+     * Fails a cacheable request that was not found from the cache when the
+     * persistent cache is replay-only, instead of sending it.
+     */
+    private void checkNotReplayOnly(boolean cacheable, RequestKey key) throws IOException {
+        if (cacheable && uriCache.isReplayOnly()) {
+            throw new IOException("No recorded response for " + key + " in the URI cache directory (replay-only)");
+        }
+    }
+
+    private Request createRequest(URI uri, String method, String data, String contentTypeString) {
+
+        ContentType contentType = ContentType.APPLICATION_JSON;
+
+        if (StringUtils.isNotBlank(contentTypeString)) {
+            contentType = ContentType.create(contentTypeString);
+        }
+
+        Request request = null;
+
+        switch (method) {
+        case "GET":
+            request = Request.Get(uri);
+            break;
+        case "POST":
+            request = Request.Post(uri).bodyString(data, contentType);
+            break;
+        case "DELETE":
+            request = Request.Delete(uri);
+            break;
+        case "PUT":
+            request = Request.Put(uri).bodyString(data, contentType);
+            break;
+        default:
+            break;
+        }
+
+        return request;
+    }
+
+    /**
+     * Starts reading the source without waiting for the response and returns
+     * a handle for {@link #waitForResponses(List, long)}. HTTP requests are
+     * sent with the non-blocking client, other sources and responses found
+     * from the URI cache are complete right away.
+     *
+     * At most `request.max.pending` requests are kept waiting. When more are
+     * started, the oldest ones are discarded like in
+     * {@link #discardPendingResponses()}.
+     */
+    public String startRequest(String source, String method, String data, String contentType) throws IOException {
+
+        if (StringUtils.isBlank(source)) {
+            throw new IllegalArgumentException("The source was empty or null");
+        }
+
+        PendingResponse pending = new PendingResponse(source);
+
+        URI uri = getURI(source);
+
+        if (uri == null) {
+            RobotLog.debug("The source is JSON");
+            pending.body = source;
+        } else {
+            pending.cacheable = useCache && uriCache.isCacheable(method);
+
+            if (pending.cacheable) {
+                pending.key = new RequestKey(method, uri, data, contentType);
+                pending.cached = uriCache.get(pending.key);
+
+                if (pending.cached != null && !uriCache.shouldRevalidate(pending.cached)) {
+                    RobotLog.debug("Found the result from cache");
+                    pending.body = pending.cached.getBody();
+                }
+            }
+
+            if (pending.body != null) {
+                // Found from the cache
+            } else if ("file".equals(uri.getScheme())) {
+                pending.body = MappedFile.read(new File(uri));
+            } else {
+                checkNotReplayOnly(pending.cacheable, pending.key);
+
+                HttpUriRequest request = createAsyncRequest(uri, method, data, contentType);
+
+                if (request == null) {
+                    throw new IllegalArgumentException("Could not find out request method, was: " + method);
+                }
+
+                if (pending.cached != null) {
+                    RobotLog.debug("Revalidating the cached response");
+                    addConditionalHeaders(request, pending.cached);
+                }
+
+                pending.future = clientPool.getAsyncClient().execute(HttpAsyncMethods.create(request), new TimedResponseConsumer(LatencyMetrics.key(method, uri)), null);
+            }
+        }
+
+        String handle = "request-" + requestNumber.incrementAndGet();
+
+        synchronized (pendingResponses) {
+            pendingResponses.put(handle, pending);
+
+            Iterator<Entry<String, PendingResponse>> oldest = pendingResponses.entrySet().iterator();
+
+            while (maxPending > 0 && pendingResponses.size() > maxPending) {
+                Entry<String, PendingResponse> discarded = oldest.next();
+                oldest.remove();
+                discarded.getValue().discard();
+                RobotLog.warn("Discarded {} for {}, which was not waited for", discarded.getKey(), discarded.getValue().source);
+            }
+        }
+
+        RobotLog.debug("Started {} for {}", handle, source);
+
+        return handle;
+    }
+
+    /**
+     * Cancels the started requests that have not been waited for and returns
+     * their number. Their handles can not be used any more.
+     */
+    public int discardPendingResponses() {
+
+        List<PendingResponse> discarded;
+
+        synchronized (pendingResponses) {
+            discarded = new ArrayList<PendingResponse>(pendingResponses.values());
+            pendingResponses.clear();
+        }
+
+        for (PendingResponse pending : discarded) {
+            pending.discard();
+        }
+
+        if (!discarded.isEmpty()) {
+            RobotLog.debug("Discarded {} pending requests", discarded.size());
+        }
+
+        return discarded.size();
+    }
+
+    /**
+     * Waits for the started requests and returns their bodies in the order of
+     * the handles. The timeout (ms) is for all the requests together, 0 waits
+     * until the socket timeouts.
+     * 
+     * All the requests are waited for before SourceReadException is thrown,
+     * naming each request that failed or timed out. The handles can not be
+     * used again.
+     */
+    public List<String> waitForResponses(List<String> handles, long timeout) throws SourceReadException {
+
+        List<PendingResponse> responses = new ArrayList<PendingResponse>();
+
+        synchronized (pendingResponses) {
+            for (String handle : handles) {
+                PendingResponse pending = pendingResponses.get(handle);
+
+                if (pending == null) {
+                    throw new IllegalArgumentException("Unknown or discarded request handle '" + handle + "'");
+                }
+
+                responses.add(pending);
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + timeout;
+
+        List<String> bodies = new ArrayList<String>();
+
+        List<String> failures = new ArrayList<String>();
+
+        for (int i = 0; i < responses.size(); i++) {
+            String handle = handles.get(i);
+
+            try {
+                // A deadline that has passed times out the responses not yet complete
+                bodies.add(complete(responses.get(i), timeout > 0, Math.max(0, deadline - System.currentTimeMillis())));
+            } catch (TimeoutException e) {
+                responses.get(i).future.cancel(true);
+                failures.add("'" + handle + "' (" + responses.get(i).source + ") timed out after " + timeout + " ms");
+            } catch (CancellationException e) {
+                failures.add("'" + handle + "' (" + responses.get(i).source + ") was discarded");
+            } catch (ExecutionException e) {
+                failures.add("'" + handle + "' (" + responses.get(i).source + "): " + e.getCause());
+            } catch (IOException e) {
+                failures.add("'" + handle + "' (" + responses.get(i).source + "): " + e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SourceReadException("Interrupted while waiting for the responses");
+            } finally {
+                synchronized (pendingResponses) {
+                    pendingResponses.remove(handle);
+                }
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            RobotLog.error("Could not read the responses: {}", failures);
+            throw new SourceReadException("Could not read " + (failures.size() == 1 ? "the response " : "the responses ") + StringUtils.join(failures, ", "));
+        }
+
+        return bodies;
+    }
+
+    /**
+     * Returns the number of started requests that have not been waited for.
+     */
+    public int getPendingRequestCount() {
+        synchronized (pendingResponses) {
+            return pendingResponses.size();
+        }
+    }
+
+    /**
+     * Waits for the response at most the remaining time (ms) when limited.
+     */
+    private String complete(PendingResponse pending, boolean limited, long remaining) throws InterruptedException, ExecutionException, TimeoutException, IOException {
+
+        if (pending.future == null) {
+            return pending.body;
+        }
+
+        HttpResponse response = limited ? pending.future.get(remaining, TimeUnit.MILLISECONDS) : pending.future.get();
+
+        if (pending.cached != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            RobotLog.debug("The cached response was not modified");
+            uriCache.revalidated(pending.key, pending.cached);
+            return pending.cached.getBody();
+        }
+
+        String json = readContent(response);
+
+        if (pending.cacheable) {
+            RobotLog.debug("Storing value to the cache");
+            uriCache.put(pending.key, new CachedResponse(json, getHeader(response, HttpHeaders.ETAG), getHeader(response, HttpHeaders.LAST_MODIFIED)));
+        }
+
+        return json;
+    }
+
+    /**
+     * Executes the request with the pooled client and reads the response,
+     * recording the phases of the request under the key. The timeouts come
+     * from the client settings.
+     */
+    private HttpResponse execute(Request request, String key) throws IOException {
+
+        RequestTimer timer = RequestTimer.start(key);
+
+        try {
+            Response response = executor.execute(request);
+
+            timer.firstByte();
+
+            HttpResponse buffered = response.returnResponse();
+
+            timer.body();
+
+            return buffered;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private HttpUriRequest createAsyncRequest(URI uri, String method, String data, String contentTypeString) {
+
+        ContentType contentType = StringUtils.isNotBlank(contentTypeString) ? ContentType.create(contentTypeString) : ContentType.APPLICATION_JSON;
+
+        switch (method) {
+        case "GET":
+            return new HttpGet(uri);
+        case "POST":
+            HttpPost post = new HttpPost(uri);
+            post.setEntity(new StringEntity(data, contentType));
+            return post;
+        case "DELETE":
+            return new HttpDelete(uri);
+        case "PUT":
+            HttpPut put = new HttpPut(uri);
+            put.setEntity(new StringEntity(data, contentType));
+            return put;
+        default:
+            return null;
+        }
+    }
+
+    private void addConditionalHeaders(HttpUriRequest request, CachedResponse cached) {
+        if (cached.getEtag() != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, cached.getEtag());
+        }
+        if (cached.getLastModified() != null) {
+            request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+        }
+    }
+
+    private void addConditionalHeaders(Request request, CachedResponse cached) {
+        if (cached.getEtag() != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, cached.getEtag());
+        }
+        if (cached.getLastModified() != null) {
+            request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+        }
+    }
+
+    /**
+     * Reads the response body as a string, failing on error statuses the same
+     * way as the fluent API does.
+     */
+    private String readContent(HttpResponse response) throws IOException {
+        StatusLine statusLine = response.getStatusLine();
+        HttpEntity entity = response.getEntity();
+
+        if (statusLine.getStatusCode() >= HttpStatus.SC_MULTIPLE_CHOICES) {
+            EntityUtils.consume(entity);
+            throw new HttpResponseException(statusLine.getStatusCode(), statusLine.getReasonPhrase());
+        }
+
+        return entity != null ? EntityUtils.toString(entity) : "";
+    }
+
+    private String getHeader(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    public Map<String, Object> getCacheStatistics() {
+        return uriCache.getStatistics();
+    }
+
+    public Map<String, Object> getPoolStatistics() {
+        return clientPool.getStatistics();
+    }
+
+    /**
+     * Returns the file of a `file` URI source, or null if the source is not an
+     * existing file.
+     */
+    public File getFile(String source) {
+
+        if (StringUtils.isBlank(source)) {
+            return null;
+        }
+
+        URI uri = getURI(source);
+
+        if (uri == null || !"file".equals(uri.getScheme())) {
+            return null;
+        }
+
+        try {
+            File file = new File(uri);
+            return file.isFile() ? file : null;
+        } catch (IllegalArgumentException e) {
+            RobotLog.debug("The source {} is not a file: {}", source, e.getMessage());
+            return null;
+        }
+    }
+
     protected URI getURI(String url) {
 
         URI uri = null;
@@ -169,11 +762,62 @@ public class RequestUtil {
         	url = url.replaceAll("\\\\", "/");
         	
             uri = new URI(url);
-            System.out.println("*DEBUG* The source " + url + " is an URL");
+            RobotLog.debug("The source {} is an URL", url);
         } catch (URISyntaxException e) {
         }
 
         return uri;
     }
 	
+    /**
+     * Records the total time of a started request before its future
+     * completes. The phases of the non-blocking requests are not measured
+     * separately.
+     */
+    private static class TimedResponseConsumer extends BasicAsyncResponseConsumer {
+
+        private final String key;
+
+        private final long start = System.nanoTime();
+
+        TimedResponseConsumer(String key) {
+            this.key = key;
+        }
+
+        @Override
+        protected HttpResponse buildResult(HttpContext context) {
+            LatencyMetrics.recordTotal(key, System.nanoTime() - start);
+            return super.buildResult(context);
+        }
+    }
+
+    /**
+     * Request started with {@link RequestUtil#startRequest}. Either the body
+     * is known right away or the future completes with the HTTP response.
+     */
+    private static class PendingResponse {
+
+        final String source;
+
+        String body;
+
+        Future<HttpResponse> future;
+
+        boolean cacheable;
+
+        RequestKey key;
+
+        CachedResponse cached;
+
+        PendingResponse(String source) {
+            this.source = source;
+        }
+
+        void discard() {
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,263 @@
+package org.wuokko.robot.restlib.util;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * In-memory cache of responses keyed by {@link RequestKey}.
+ *
+ * Only the configured methods are cached. Entries expire after the time to
+ * live and the least recently used entries are evicted when the total size of
+ * the cached bodies exceeds the limit. Responses with an ETag or Last-Modified
+ * validator are revalidated with the server before use, unless revalidation is
+ * turned off.
+ *
+ * With a {@link PersistentResponseCache} mode other than off, the responses
+ * not found from memory are looked up from the cache directory, and the new
+ * responses are stored into both.
+ */
+public class ResponseCache {
+
+    public static final String KEY_CACHE_METHODS = "uri.cache.methods";
+
+    public static final String KEY_CACHE_TTL = "uri.cache.ttl";
+
+    public static final String KEY_CACHE_MAX_BYTES = "uri.cache.max.bytes";
+
+    public static final String KEY_CACHE_REVALIDATE = "uri.cache.revalidate";
+
+    private static final String[] DEFAULT_METHODS = { "GET" };
+
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final Set<String> methods = new HashSet<String>();
+
+    private final long ttl;
+
+    private final long maxBytes;
+
+    private final boolean revalidate;
+
+    private final PersistentResponseCache disk;
+
+    private long bytes = 0;
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    private long evictions = 0;
+
+    private long expirations = 0;
+
+    private long revalidations = 0;
+
+    private final LinkedHashMap<RequestKey, CachedResponse> responses = new LinkedHashMap<RequestKey, CachedResponse>(16, 0.75f, true);
+
+    public ResponseCache(Configuration config) {
+
+        String[] cachedMethods = DEFAULT_METHODS;
+        long ttl = 0;
+        long maxBytes = DEFAULT_MAX_BYTES;
+        boolean revalidate = true;
+
+        if (config != null) {
+
+            if (config.containsKey(KEY_CACHE_METHODS)) {
+                cachedMethods = config.getStringArray(KEY_CACHE_METHODS);
+            }
+
+            if (config.containsKey(KEY_CACHE_TTL)) {
+                ttl = config.getLong(KEY_CACHE_TTL);
+                System.out.println("[Robot-Rest-Lib] Set URI cache TTL to '" + ttl + "'");
+            }
+
+            if (config.containsKey(KEY_CACHE_MAX_BYTES)) {
+                maxBytes = config.getLong(KEY_CACHE_MAX_BYTES);
+                System.out.println("[Robot-Rest-Lib] Set URI cache max bytes to '" + maxBytes + "'");
+            }
+
+            if (config.containsKey(KEY_CACHE_REVALIDATE)) {
+                revalidate = config.getBoolean(KEY_CACHE_REVALIDATE);
+                System.out.println("[Robot-Rest-Lib] Revalidate URI cache: " + revalidate);
+            }
+        }
+
+        for (String method : cachedMethods) {
+            methods.add(method.trim().toUpperCase());
+        }
+
+        this.ttl = ttl;
+        this.maxBytes = maxBytes;
+        this.revalidate = revalidate;
+
+        PersistentResponseCache disk = new PersistentResponseCache(config);
+
+        this.disk = disk.getMode() != PersistentResponseCache.Mode.OFF ? disk : null;
+    }
+
+    /**
+     * Checks if the responses of the given method should be cached.
+     */
+    public boolean isCacheable(String method) {
+        return method != null && methods.contains(method.toUpperCase());
+    }
+
+    /**
+     * Checks if the given cached response must be revalidated with the server
+     * before it is used.
+     */
+    public boolean shouldRevalidate(CachedResponse response) {
+        return revalidate && response.hasValidators() && !isReplayOnly();
+    }
+
+    /**
+     * Checks if the responses are kept in the cache directory.
+     */
+    public boolean isPersistent() {
+        return disk != null;
+    }
+
+    /**
+     * Checks if the cacheable requests must be answered from the cache
+     * directory without sending them.
+     */
+    public boolean isReplayOnly() {
+        return disk != null && disk.getMode() == PersistentResponseCache.Mode.REPLAY_ONLY;
+    }
+
+    public CachedResponse get(RequestKey key) {
+
+        synchronized (this) {
+            CachedResponse response = responses.get(key);
+
+            if (response != null && isExpired(response)) {
+                remove(key);
+                expirations++;
+                response = null;
+            }
+
+            if (response != null) {
+                hits++;
+                return response;
+            }
+
+            if (disk == null) {
+                misses++;
+                return null;
+            }
+        }
+
+        // The directory is read without holding the lock
+        CachedResponse stored = disk.get(key);
+
+        synchronized (this) {
+            if (stored == null) {
+                misses++;
+                return null;
+            }
+
+            hits++;
+            putInMemory(key, stored);
+            return stored;
+        }
+    }
+
+    public void put(RequestKey key, CachedResponse response) {
+
+        putInMemory(key, response);
+
+        if (disk != null) {
+            disk.put(key, response);
+        }
+    }
+
+    private synchronized void putInMemory(RequestKey key, CachedResponse response) {
+
+        if (response.getBytes() > maxBytes) {
+            RobotLog.debug("Response of {} bytes is too large for the cache", response.getBytes());
+            return;
+        }
+
+        remove(key);
+
+        responses.put(key, response);
+        bytes += response.getBytes();
+
+        evict();
+    }
+
+    /**
+     * Marks the cached response as confirmed by the server (304 Not Modified),
+     * which restarts its time to live.
+     */
+    public void revalidated(RequestKey key, CachedResponse response) {
+
+        synchronized (this) {
+            revalidations++;
+            putInMemory(key, response.refresh());
+        }
+
+        if (disk != null) {
+            disk.refresh(key);
+        }
+    }
+
+    /**
+     * Removes the responses from memory. The cache directory is kept.
+     */
+    public synchronized void clear() {
+        responses.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return responses.size();
+    }
+
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+        statistics.put("size", responses.size());
+        statistics.put("bytes", bytes);
+        statistics.put("hits", hits);
+        statistics.put("misses", misses);
+        statistics.put("evictions", evictions);
+        statistics.put("expirations", expirations);
+        statistics.put("revalidations", revalidations);
+
+        if (disk != null) {
+            statistics.putAll(disk.getStatistics());
+        }
+
+        return statistics;
+    }
+
+    private boolean isExpired(CachedResponse response) {
+        return ttl > 0 && System.currentTimeMillis() - response.getStored() > ttl;
+    }
+
+    private void remove(RequestKey key) {
+        CachedResponse removed = responses.remove(key);
+
+        if (removed != null) {
+            bytes -= removed.getBytes();
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry<RequestKey, CachedResponse>> iterator = responses.entrySet().iterator();
+
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().getValue().getBytes();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+}
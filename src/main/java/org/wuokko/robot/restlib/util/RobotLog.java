@@ -0,0 +1,147 @@
+package org.wuokko.robot.restlib.util;
+
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Writes messages to the Robot Framework log through the standard output.
+ *
+ * Messages below `log.level` are dropped before they are formatted, so a
+ * disabled level costs only the level check. The `{}` placeholders in the
+ * message are replaced with the arguments, and arguments longer than
+ * `log.max.length` characters are truncated, so large response bodies do not
+ * end up in output.xml.
+ */
+public final class RobotLog {
+
+    public static final String KEY_LOG_LEVEL = "log.level";
+
+    public static final String KEY_LOG_MAX_LENGTH = "log.max.length";
+
+    /**
+     * Robot Framework log levels, from the most verbose.
+     */
+    public enum Level {
+        TRACE, DEBUG, INFO, WARN, ERROR, NONE
+    }
+
+    private static final Level DEFAULT_LEVEL = Level.INFO;
+
+    private static final int DEFAULT_MAX_LENGTH = 2000;
+
+    private static volatile Level level = DEFAULT_LEVEL;
+
+    private static volatile int maxLength = DEFAULT_MAX_LENGTH;
+
+    private RobotLog() {
+    }
+
+    /**
+     * Sets the level and the maximum length from the configuration.
+     */
+    public static void configure(Configuration config) {
+        if (config != null) {
+
+            if (config.containsKey(KEY_LOG_LEVEL)) {
+                level = Level.valueOf(config.getString(KEY_LOG_LEVEL).trim().toUpperCase());
+                System.out.println("[Robot-Rest-Lib] Set log level to '" + level + "'");
+            }
+
+            if (config.containsKey(KEY_LOG_MAX_LENGTH)) {
+                maxLength = config.getInt(KEY_LOG_MAX_LENGTH);
+                System.out.println("[Robot-Rest-Lib] Set log max length to '" + maxLength + "'");
+            }
+        }
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    /**
+     * Maximum length of an argument, 0 is no limit.
+     */
+    public static int getMaxLength() {
+        return maxLength;
+    }
+
+    public static void setMaxLength(int newMaxLength) {
+        maxLength = newMaxLength;
+    }
+
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel.compareTo(level) >= 0 && messageLevel != Level.NONE;
+    }
+
+    public static boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public static void trace(String message, Object... args) {
+        log(Level.TRACE, message, args);
+    }
+
+    public static void debug(String message, Object... args) {
+        log(Level.DEBUG, message, args);
+    }
+
+    public static void info(String message, Object... args) {
+        log(Level.INFO, message, args);
+    }
+
+    public static void warn(String message, Object... args) {
+        log(Level.WARN, message, args);
+    }
+
+    public static void error(String message, Object... args) {
+        log(Level.ERROR, message, args);
+    }
+
+    public static void log(Level messageLevel, String message, Object... args) {
+        if (isEnabled(messageLevel)) {
+            System.out.println(format(messageLevel, message, args));
+        }
+    }
+
+    static String format(Level messageLevel, String message, Object... args) {
+
+        StringBuilder formatted = new StringBuilder(message.length() + 16);
+
+        formatted.append('*').append(messageLevel).append("* ");
+
+        int position = 0;
+
+        for (Object arg : args) {
+            int placeholder = message.indexOf("{}", position);
+
+            if (placeholder < 0) {
+                break;
+            }
+
+            formatted.append(message, position, placeholder).append(truncate(String.valueOf(arg)));
+
+            position = placeholder + 2;
+        }
+
+        formatted.append(message, position, message.length());
+
+        return formatted.toString();
+    }
+
+    /**
+     * Cuts the value to the maximum length, telling how long it was.
+     */
+    public static String truncate(String value) {
+        int max = maxLength;
+
+        if (max <= 0 || value.length() <= max) {
+            return value;
+        }
+
+        return value.substring(0, max) + "... (" + value.length() + " characters)";
+    }
+
+}
@@ -0,0 +1,210 @@
+package org.wuokko.robot.restlib.util;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.configuration.Configuration;
+import org.wuokko.robot.restlib.exception.SourceReadException;
+
+/**
+ * Reads several sources concurrently, for example both sides of a JSON
+ * comparison, so the keyword waits for the slowest source instead of the sum
+ * of them.
+ *
+ * The executor is chosen with `fetch.executor`:
+ *
+ *  | virtual | a virtual thread per source when the JVM supports them, otherwise `cached` (default) |
+ *  | cached | a cached pool of daemon threads |
+ *  | fixed | `fetch.threads` daemon threads |
+ *  | direct | the sources are read one after another in the calling thread |
+ *
+ * `fetch.timeout` limits the time (ms) to wait for all the sources, 0 waits
+ * until the connection timeouts. The failures and timeouts are reported for
+ * each source separately.
+ */
+public class SourceFetcher {
+
+    public static final String KEY_FETCH_EXECUTOR = "fetch.executor";
+
+    public static final String KEY_FETCH_THREADS = "fetch.threads";
+
+    public static final String KEY_FETCH_TIMEOUT = "fetch.timeout";
+
+    public static final String EXECUTOR_VIRTUAL = "virtual";
+
+    public static final String EXECUTOR_CACHED = "cached";
+
+    public static final String EXECUTOR_FIXED = "fixed";
+
+    public static final String EXECUTOR_DIRECT = "direct";
+
+    private static final int DEFAULT_THREADS = 4;
+
+    private static final String THREAD_PREFIX = "robot-rest-lib-fetch";
+
+    private final String executorType;
+
+    private final long timeout;
+
+    private final ExecutorService executor;
+
+    public SourceFetcher(Configuration config) {
+
+        String executorType = EXECUTOR_VIRTUAL;
+        int threads = DEFAULT_THREADS;
+        long timeout = 0;
+
+        if (config != null) {
+
+            if (config.containsKey(KEY_FETCH_EXECUTOR)) {
+                executorType = config.getString(KEY_FETCH_EXECUTOR).trim().toLowerCase();
+            }
+
+            if (config.containsKey(KEY_FETCH_THREADS)) {
+                threads = config.getInt(KEY_FETCH_THREADS);
+                System.out.println("[Robot-Rest-Lib] Set fetch threads to '" + threads + "'");
+            }
+
+            if (config.containsKey(KEY_FETCH_TIMEOUT)) {
+                timeout = config.getLong(KEY_FETCH_TIMEOUT);
+                System.out.println("[Robot-Rest-Lib] Set fetch timeout to '" + timeout + "'");
+            }
+        }
+
+        this.executorType = executorType;
+        this.timeout = timeout;
+        this.executor = createExecutor(executorType, threads);
+
+        System.out.println("[Robot-Rest-Lib] Using fetch executor '" + executorType + "'");
+    }
+
+    public String getExecutorType() {
+        return executorType;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Runs the tasks concurrently and returns their results by name, in the
+     * order of the given map.
+     *
+     * Throws SourceReadException listing every task that failed or did not
+     * finish in time. The tasks still running are cancelled.
+     */
+    public <T> Map<String, T> fetchAll(Map<String, Callable<T>> tasks) throws SourceReadException {
+
+        Map<String, T> results = new LinkedHashMap<String, T>();
+
+        List<String> failures = new ArrayList<String>();
+
+        if (executor == null) {
+            for (Entry<String, Callable<T>> task : tasks.entrySet()) {
+                try {
+                    results.put(task.getKey(), task.getValue().call());
+                } catch (Exception e) {
+                    failures.add(failure(task.getKey(), e));
+                }
+            }
+        } else {
+            Map<String, Future<T>> futures = new LinkedHashMap<String, Future<T>>();
+
+            for (Entry<String, Callable<T>> task : tasks.entrySet()) {
+                futures.put(task.getKey(), executor.submit(task.getValue()));
+            }
+
+            long deadline = System.currentTimeMillis() + timeout;
+
+            for (Entry<String, Future<T>> future : futures.entrySet()) {
+                try {
+                    if (timeout > 0) {
+                        results.put(future.getKey(), future.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+                    } else {
+                        results.put(future.getKey(), future.getValue().get());
+                    }
+                } catch (TimeoutException e) {
+                    future.getValue().cancel(true);
+                    failures.add("'" + future.getKey() + "' timed out after " + timeout + " ms");
+                } catch (ExecutionException e) {
+                    failures.add(failure(future.getKey(), e.getCause()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancelAll(futures);
+                    throw new SourceReadException("Interrupted while reading the sources");
+                }
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            RobotLog.error("Could not read the sources: {}", failures);
+            throw new SourceReadException("Could not read " + (failures.size() == 1 ? "the source " : "the sources ") + joinFailures(failures));
+        }
+
+        return results;
+    }
+
+    private String failure(String name, Throwable cause) {
+        return "'" + name + "': " + cause;
+    }
+
+    private String joinFailures(List<String> failures) {
+        StringBuilder message = new StringBuilder();
+
+        for (String failure : failures) {
+            message.append(message.length() > 0 ? ", " : "").append(failure);
+        }
+
+        return message.toString();
+    }
+
+    private <T> void cancelAll(Map<String, Future<T>> futures) {
+        for (Future<T> future : futures.values()) {
+            future.cancel(true);
+        }
+    }
+
+    static ExecutorService createExecutor(String type, int threads) {
+
+        switch (type) {
+        case EXECUTOR_DIRECT:
+            return null;
+        case EXECUTOR_FIXED:
+            return Executors.newFixedThreadPool(Math.max(1, threads), new DaemonThreadFactory(THREAD_PREFIX));
+        case EXECUTOR_CACHED:
+            return Executors.newCachedThreadPool(new DaemonThreadFactory(THREAD_PREFIX));
+        case EXECUTOR_VIRTUAL:
+            ExecutorService virtual = createVirtualExecutor();
+            return virtual != null ? virtual : Executors.newCachedThreadPool(new DaemonThreadFactory(THREAD_PREFIX));
+        default:
+            throw new IllegalArgumentException("Unknown fetch executor '" + type + "', expected one of virtual, cached, fixed or direct");
+        }
+    }
+
+    /**
+     * Creates a virtual thread per task executor with reflection, because the
+     * library is built for older Java versions. Returns null if the JVM does
+     * not support virtual threads.
+     */
+    static ExecutorService createVirtualExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (Exception e) {
+            RobotLog.debug("Virtual threads are not supported, using a thread pool");
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,21 @@
+package org.wuokko.robot.restlib.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the content of a source opened by
+ * {@link RequestUtil#streamSource(String, String, String, String, SourceHandler)}.
+ */
+public interface SourceHandler<T> {
+
+    /**
+     * Reads the stream, which is encoded with the given charset. The charset
+     * is the one declared by the Content-Type of an HTTP response, or null if
+     * the response did not declare one. Inline JSON, files and cached
+     * responses are UTF-8.
+     */
+    T handle(InputStream stream, Charset charset) throws IOException;
+
+}
@@ -0,0 +1,101 @@
+package org.wuokko.robot.restlib.util;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.protocol.HttpContext;
+import org.wuokko.robot.restlib.metrics.RequestTimer;
+
+/**
+ * Connection manager reporting the time spent waiting for a pooled
+ * connection and opening new connections to the {@link RequestTimer} of the
+ * requesting thread.
+ */
+class TimedConnectionManager implements HttpClientConnectionManager {
+
+    private final HttpClientConnectionManager manager;
+
+    TimedConnectionManager(HttpClientConnectionManager manager) {
+        this.manager = manager;
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+
+        final ConnectionRequest request = manager.requestConnection(route, state);
+
+        final RequestTimer timer = RequestTimer.current();
+
+        if (timer == null) {
+            return request;
+        }
+
+        final long start = System.nanoTime();
+
+        return new ConnectionRequest() {
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit tunit) throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                HttpClientConnection connection = request.get(timeout, tunit);
+                timer.leased(System.nanoTime() - start);
+                return connection;
+            }
+        };
+    }
+
+    @Override
+    public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout, HttpContext context) throws IOException {
+
+        long start = System.nanoTime();
+
+        manager.connect(conn, route, connectTimeout, context);
+
+        RequestTimer timer = RequestTimer.current();
+
+        if (timer != null) {
+            timer.connected(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void releaseConnection(HttpClientConnection conn, Object newState, long validDuration, TimeUnit timeUnit) {
+        manager.releaseConnection(conn, newState, validDuration, timeUnit);
+    }
+
+    @Override
+    public void upgrade(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+        manager.upgrade(conn, route, context);
+    }
+
+    @Override
+    public void routeComplete(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+        manager.routeComplete(conn, route, context);
+    }
+
+    @Override
+    public void closeIdleConnections(long idletime, TimeUnit tunit) {
+        manager.closeIdleConnections(idletime, tunit);
+    }
+
+    @Override
+    public void closeExpiredConnections() {
+        manager.closeExpiredConnections();
+    }
+
+    @Override
+    public void shutdown() {
+        manager.shutdown();
+    }
+
+}
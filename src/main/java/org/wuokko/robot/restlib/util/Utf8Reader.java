@@ -0,0 +1,166 @@
+package org.wuokko.robot.restlib.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes a UTF-8 stream for the JSON parser.
+ *
+ * json-smart reads its input one character at a time. InputStreamReader
+ * synchronizes and goes through several layers on every character, which
+ * makes parsing a stream much slower than parsing a string. This reader
+ * decodes the bytes in blocks and serves the characters from an array, so it
+ * must be used from one thread only. Invalid UTF-8 fails the read.
+ *
+ * The positions of the buffers are set through {@link Buffer}, whose methods
+ * exist on every Java version, and not the ByteBuffer and CharBuffer
+ * overrides added in Java 9.
+ */
+public final class Utf8Reader extends Reader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream stream;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+    private final char[] buffer = chars.array();
+
+    private int position = 0;
+
+    private int limit = 0;
+
+    private boolean endOfStream = false;
+
+    private boolean finished = false;
+
+    public Utf8Reader(InputStream stream) {
+        this.stream = stream;
+        ((Buffer) bytes).limit(0);
+    }
+
+    /**
+     * Checks if the stream of the charset is UTF-8, which is the default of
+     * JSON when the charset is not known.
+     */
+    public static boolean isUtf8(Charset charset) {
+        return charset == null || StandardCharsets.UTF_8.equals(charset);
+    }
+
+    /**
+     * Opens a reader decoding the stream with the charset, this reader for
+     * UTF-8 or an unknown charset.
+     */
+    public static Reader open(InputStream stream, Charset charset) {
+        return isUtf8(charset) ? new Utf8Reader(stream) : new InputStreamReader(stream, charset);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+
+        return buffer[position++];
+    }
+
+    @Override
+    public int read(char[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+
+        int count = Math.min(length, limit - position);
+        System.arraycopy(buffer, position, target, offset, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * Decodes the next block of characters. Returns false at the end of the
+     * stream.
+     */
+    private boolean fill() throws IOException {
+
+        if (finished) {
+            return false;
+        }
+
+        ((Buffer) chars).clear();
+
+        while (chars.position() == 0) {
+
+            if (!endOfStream && bytes.remaining() < BUFFER_SIZE / 2) {
+                readBytes();
+            }
+
+            CoderResult result = decoder.decode(bytes, chars, endOfStream);
+
+            if (result.isError()) {
+                result.throwException();
+            }
+
+            if (endOfStream && chars.position() == 0) {
+                result = decoder.flush(chars);
+
+                if (result.isError()) {
+                    result.throwException();
+                }
+
+                if (chars.position() == 0) {
+                    if (bytes.hasRemaining()) {
+                        throw new IOException("Truncated UTF-8 sequence at the end of the stream");
+                    }
+                    limit = 0;
+                    position = 0;
+                    finished = true;
+                    return false;
+                }
+            }
+        }
+
+        position = 0;
+        limit = chars.position();
+        return true;
+    }
+
+    private void readBytes() throws IOException {
+        bytes.compact();
+
+        int read = stream.read(bytes.array(), bytes.position(), bytes.remaining());
+
+        if (read < 0) {
+            endOfStream = true;
+        } else {
+            ((Buffer) bytes).position(bytes.position() + read);
+        }
+
+        ((Buffer) bytes).flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+}
@@ -0,0 +1,383 @@
+package org.wuokko.robot.restlib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wuokko.robot.restlib.util.CachedResponse;
+import org.wuokko.robot.restlib.util.DocumentCache;
+import org.wuokko.robot.restlib.util.FixtureCache;
+import org.wuokko.robot.restlib.util.JsonBackend;
+import org.wuokko.robot.restlib.util.JsonPathCache;
+import org.wuokko.robot.restlib.util.RequestKey;
+import org.wuokko.robot.restlib.util.RequestUtil;
+import org.wuokko.robot.restlib.util.ResponseCache;
+import org.wuokko.robot.restlib.util.RobotLog;
+
+import com.jayway.jsonpath.JsonPath;
+
+/**
+ * Runs the same keywords and caches from many threads at once, with caches
+ * small enough to be evicted all the time, and checks that every thread gets
+ * its own results. The HTTP sources are served by the MockServer started for
+ * the tests.
+ */
+public class ConcurrencyStressTest {
+
+    private static final int THREADS = 16;
+
+    private static final int ITERATIONS = 50;
+
+    private ExecutorService workers;
+
+    private final List<File> files = new ArrayList<File>();
+
+    private interface Task {
+
+        void run(int thread, int iteration) throws Exception;
+
+    }
+
+    @Before
+    public void setUp() {
+        workers = Executors.newFixedThreadPool(THREADS);
+        RobotLog.setLevel(RobotLog.Level.NONE);
+    }
+
+    @After
+    public void tearDown() {
+        workers.shutdownNow();
+        RobotLog.setLevel(RobotLog.Level.INFO);
+        FixtureCache.clear();
+
+        for (File file : files) {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    /**
+     * Starts the task on all the threads at the same time and rethrows the
+     * first failure.
+     */
+    private void stress(final Task task) throws Exception {
+
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+
+            futures.add(workers.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        task.run(thread, i);
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        start.countDown();
+
+        for (Future<Void> future : futures) {
+            try {
+                future.get(2, TimeUnit.MINUTES);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw (Exception) e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Document with thread + 1 items, unique to the thread and the iteration.
+     */
+    private static String document(int thread, int iteration) {
+        List<String> items = new ArrayList<String>();
+
+        for (int i = 0; i <= thread; i++) {
+            items.add("{\"id\": " + i + ", \"name\": \"item-" + thread + "-" + i + "\"}");
+        }
+
+        return "{\"thread\": " + thread + ", \"iteration\": " + iteration + ", \"items\": [" + StringUtils.join(items, ", ") + "]}";
+    }
+
+    private File write(String json) throws IOException {
+        File file = File.createTempFile("stress", ".json");
+        FileUtils.writeStringToFile(file, json, StandardCharsets.UTF_8);
+        files.add(file);
+        return file;
+    }
+
+    private String properties(String... keysAndValues) throws IOException {
+        StringBuilder properties = new StringBuilder();
+
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            properties.append(keysAndValues[i]).append('=').append(keysAndValues[i + 1]).append('\n');
+        }
+
+        return write(properties.toString()).getAbsolutePath();
+    }
+
+    @Test
+    public void testJsonDiff() throws Exception {
+
+        for (JsonBackend backend : JsonBackend.values()) {
+            PropertiesConfiguration config = new PropertiesConfiguration();
+            config.setProperty(JsonBackend.KEY_JSON_PROVIDER, backend.toString());
+
+            final JsonDiff diff = new JsonDiff(config);
+
+            stress(new Task() {
+
+                @Override
+                public void run(int thread, int iteration) throws Exception {
+                    String from = document(thread, iteration);
+                    String to = document(thread, iteration + 1);
+
+                    assertTrue(diff.compare(from, from));
+                    assertEquals(1, diff.diff(from, to).getDifferences().size());
+
+                    Object parsed = diff.parse(new ByteArrayInputStream(from.getBytes(StandardCharsets.UTF_8)));
+
+                    assertTrue(diff.diff(parsed, diff.parse(from)).isEqual());
+                    assertEquals(1, diff.diff(parsed, diff.parse(to)).getDifferences().size());
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testLibrary() throws Exception {
+
+        final JsonPathLibrary library = new JsonPathLibrary(properties(
+                DocumentCache.KEY_DOCUMENT_CACHE_SIZE, "4",
+                FixtureCache.KEY_FIXTURE_CACHE_SIZE, "2",
+                JsonPathCache.KEY_JSONPATH_CACHE_SIZE, "8",
+                RequestUtil.KEY_USE_URI_CACHE, "true"));
+
+        final String[] fixtures = new String[4];
+
+        for (int i = 0; i < fixtures.length; i++) {
+            fixtures[i] = write(document(i, 0)).toURI().toString();
+        }
+
+        try {
+            stress(new Task() {
+
+                @Override
+                public void run(int thread, int iteration) throws Exception {
+                    String json = document(thread, iteration);
+                    int item = iteration % (thread + 1);
+
+                    assertEquals(iteration, library.findJsonElement(json, "$.iteration"));
+                    assertEquals("item-" + thread + "-" + item, library.findJsonElement(json, "$.items[" + item + "].name"));
+                    assertTrue(library.jsonShouldHaveElementCount(json, "$.items[*]", thread + 1));
+                    assertTrue(library.jsonShouldBeEqual(json, json));
+
+                    int fixture = (thread + iteration) % fixtures.length;
+
+                    assertEquals(fixture, library.findJsonElement(fixtures[fixture], "$.thread"));
+
+                    if (iteration % 5 == 0) {
+                        assertEquals(2, library.findJsonElement("http://localhost:1080/catalog", "$.items[1].id"));
+                    }
+                }
+            });
+        } finally {
+            PropertiesConfiguration config = new PropertiesConfiguration();
+            config.setProperty(JsonPathCache.KEY_JSONPATH_CACHE_SIZE, "1000");
+            JsonPathCache.configure(config);
+        }
+
+        assertTrue((Integer) library.getFixtureCacheStatistics().get("size") <= 2);
+    }
+
+    @Test
+    public void testJsonPathCache() throws Exception {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(JsonPathCache.KEY_JSONPATH_CACHE_SIZE, "20");
+        JsonPathCache.configure(config);
+
+        final String json = document(THREADS, 0);
+
+        try {
+            stress(new Task() {
+
+                @Override
+                public void run(int thread, int iteration) throws Exception {
+                    // A few paths shared by all threads and many used only once
+                    String[] paths = {
+                        "$.items[" + (iteration % 4) + "].name",
+                        "$.items[" + ((thread + iteration) % (THREADS + 1)) + "].id",
+                        " $.thread ",
+                        "$.items[?(@.id == " + (thread * ITERATIONS + iteration) + ")].id"
+                    };
+
+                    for (String path : paths) {
+                        assertEquals(path, JsonPath.compile(path.trim()).getPath(), JsonPathCache.compile(path).getPath());
+                    }
+
+                    assertEquals("item-" + THREADS + "-" + (iteration % 4), JsonPathCache.compile(paths[0]).read(json));
+                    assertEquals((thread + iteration) % (THREADS + 1), JsonPathCache.compile(paths[1]).read(json));
+                    assertEquals(THREADS, JsonPathCache.compile(paths[2]).read(json));
+                }
+            });
+
+            // The evicting thread may miss the paths added while it runs
+            assertTrue(JsonPathCache.size() <= 20 + THREADS);
+        } finally {
+            config.setProperty(JsonPathCache.KEY_JSONPATH_CACHE_SIZE, "1000");
+            JsonPathCache.configure(config);
+        }
+    }
+
+    private static void assertFails(Callable<?> keyword) {
+        try {
+            keyword.call();
+        } catch (Exception e) {
+            return;
+        }
+        throw new AssertionError("The keyword should have failed");
+    }
+
+    @Test
+    public void testInstancesWithDifferentSettings() throws Exception {
+
+        final JsonPathLibrary strict = new JsonPathLibrary(properties(
+                JsonBackend.KEY_JSON_PROVIDER, "jackson",
+                JsonDiff.KEY_MODE, "ignore_order",
+                JsonPathCache.KEY_JSONPATH_CACHE_SIZE, "500"));
+
+        final JsonPathLibrary permissive = new JsonPathLibrary(properties(
+                JsonPathCache.KEY_JSONPATH_CACHE_SIZE, "1000"));
+
+        assertEquals("The JsonPath cache size should be set by the last library", 1000, JsonPathCache.maxSize());
+
+        stress(new Task() {
+
+            @Override
+            public void run(int thread, int iteration) throws Exception {
+                final String json = "{thread: " + thread + ", iteration: " + iteration + "}";
+
+                assertEquals(iteration, permissive.findJsonElement(json, "$.iteration"));
+
+                assertFails(new Callable<Object>() {
+
+                    @Override
+                    public Object call() throws Exception {
+                        return strict.findJsonElement(json, "$.iteration");
+                    }
+                });
+
+                final String from = "[" + thread + ", " + iteration + "]";
+                final String to = "[" + iteration + ", " + thread + "]";
+
+                assertTrue(strict.jsonShouldBeEqual(from, to));
+
+                if (thread != iteration) {
+                    assertFails(new Callable<Object>() {
+
+                        @Override
+                        public Object call() throws Exception {
+                            return permissive.jsonShouldBeEqual(from, to);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private static String body(int iteration) {
+        return String.format("body-%02d", iteration % 20);
+    }
+
+    @Test
+    public void testResponseCache() throws Exception {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(ResponseCache.KEY_CACHE_MAX_BYTES, "1000");
+
+        final ResponseCache cache = new ResponseCache(config);
+
+        final AtomicLong gets = new AtomicLong();
+
+        stress(new Task() {
+
+            @Override
+            public void run(int thread, int iteration) throws Exception {
+                RequestKey key = new RequestKey("GET", new URI("http://localhost/" + (iteration % 20)), null, null);
+
+                CachedResponse cached = cache.get(key);
+                gets.incrementAndGet();
+
+                if (cached != null) {
+                    assertEquals(key.toString(), body(iteration), cached.getBody());
+                } else {
+                    cache.put(key, new CachedResponse(body(iteration)));
+                }
+            }
+        });
+
+        Map<String, Object> statistics = cache.getStatistics();
+
+        assertEquals(gets.get(), (Long) statistics.get("hits") + (Long) statistics.get("misses"));
+        assertTrue((Long) statistics.get("bytes") <= 1000);
+        assertEquals(2L * body(0).length() * cache.size(), statistics.get("bytes"));
+    }
+
+    @Test
+    public void testDocumentCache() throws Exception {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(DocumentCache.KEY_DOCUMENT_CACHE_SIZE, "4");
+
+        final DocumentCache cache = new DocumentCache(config);
+
+        stress(new Task() {
+
+            @Override
+            public void run(int thread, int iteration) throws Exception {
+                int shared = iteration % 8;
+
+                assertEquals(shared, cache.parse(document(0, shared)).read("$.iteration"));
+                assertEquals(thread, cache.parse(document(thread, iteration)).read("$.thread"));
+            }
+        });
+
+        assertEquals(2L * THREADS * ITERATIONS, cache.getHits() + cache.getMisses());
+        assertTrue(cache.size() <= 4);
+    }
+
+}
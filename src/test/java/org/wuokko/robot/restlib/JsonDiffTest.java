@@ -1,19 +1,34 @@
 package org.wuokko.robot.restlib;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.http.client.fluent.Request;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.powermock.api.mockito.PowerMockito;
+import org.wuokko.robot.restlib.diff.DiffMode;
+import org.wuokko.robot.restlib.diff.DiffResult;
+import org.wuokko.robot.restlib.diff.Difference;
+import org.wuokko.robot.restlib.diff.Difference.Type;
+import org.wuokko.robot.restlib.diff.HashedNode;
+import org.wuokko.robot.restlib.exception.JsonNotValidException;
+import org.wuokko.robot.restlib.util.JsonBackend;
 
 @RunWith(MockitoJUnitRunner.class)
 public class JsonDiffTest {
@@ -380,6 +395,318 @@ public class JsonDiffTest {
         assertFalse("The objects should have NOT matched", equal);
     }
     
+    @Test
+    public void testDiff() {
+
+        DiffResult result = diff.diff("{ store: { book: [ { price: 8.95, title: 'a' }, { price: 12 } ], bicycle: { color: red } }, total: 2 }",
+                "{ store: { book: [ { price: 9.95, title: 'a' } ], bicycle: [] }, total: '2', extra: 1 }");
+
+        assertFalse("The documents should not be equal", result.isEqual());
+        assertFalse("The result should not be truncated", result.isTruncated());
+
+        List<Difference> differences = result.getDifferences();
+
+        assertEquals("All the differences should be found: " + differences, 4, differences.size());
+        assertDifference(differences, Type.CHANGED, "/store/book/0/price");
+        assertDifference(differences, Type.REMOVED, "/store/book/1");
+        assertDifference(differences, Type.TYPE_CHANGED, "/store/bicycle");
+        assertDifference(differences, Type.TYPE_CHANGED, "/total");
+    }
+
+    @Test
+    public void testDiffAddedArrayElement() {
+
+        DiffResult result = diff.diff("[ 1, 2 ]", "[ 1, 2, 3 ]");
+
+        assertEquals("The added element should be found", 1, result.getDifferences().size());
+        assertDifference(result.getDifferences(), Type.ADDED, "/2");
+        assertEquals("The report should show the value", "ADDED /2: 3\n", result.getReport());
+    }
+
+    @Test
+    public void testDiffPointerEscaping() {
+
+        DiffResult result = diff.diff("{ 'a/b': { 'c~d': 1 } }", "{ 'a/b': { 'c~d': 2 } }");
+
+        assertDifference(result.getDifferences(), Type.CHANGED, "/a~1b/c~0d");
+    }
+
+    @Test
+    public void testDiffMaxDifferences() {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(JsonDiff.KEY_MAX_DIFFERENCES, 3);
+
+        DiffResult result = new JsonDiff(config).diff("[ 1, 2, 3, 4, 5 ]", "[ 5, 4, 3, 2, 1 ]");
+
+        assertEquals("The comparison should stop at the limit", 3, result.getDifferences().size());
+        assertTrue("The result should be truncated", result.isTruncated());
+        assertTrue("The report should tell about the limit", result.getReport().endsWith("Stopped after 3 differences\n"));
+    }
+
+    @Test
+    public void testDiffExactlyMaxDifferences() {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(JsonDiff.KEY_MAX_DIFFERENCES, 3);
+
+        DiffResult result = new JsonDiff(config).diff("[ 1, 2, 3, 4, 5 ]", "[ 5, 2, 3, 4, 1, 6 ]");
+
+        assertEquals("All the differences should be found", 3, result.getDifferences().size());
+        assertFalse("The result should not be truncated", result.isTruncated());
+        assertFalse("The report should not tell about the limit", result.getReport().contains("Stopped"));
+    }
+
+    @Test
+    public void testDiffLargeDocuments() {
+
+        String from = createDocument(20000, -1);
+        String to = createDocument(20000, 19999);
+
+        assertTrue("The document should be several megabytes", from.length() > 2 * 1024 * 1024);
+
+        assertTrue("The equal documents should match", diff.diff(from, createDocument(20000, -1)).isEqual());
+
+        DiffResult result = diff.diff(from, to);
+
+        assertEquals("Only the changed value should differ", 1, result.getDifferences().size());
+        assertDifference(result.getDifferences(), Type.CHANGED, "/items/19999/name");
+    }
+
+    @Test
+    public void testDiffIgnoreOrder() {
+
+        DiffMode mode = DiffMode.parse("ignore_order");
+
+        assertTrue("The order should not matter", diff.diff("[ 1, 2, 3, { a: [ x, y ] } ]", "[ { a: [ y, x ] }, 3, 1, 2 ]", mode).isEqual());
+        assertFalse("The order should matter by default", diff.diff("[ 1, 2, 3 ]", "[ 3, 1, 2 ]").isEqual());
+
+        DiffResult result = diff.diff("[ 1, 1, 2, 4 ]", "[ 2, 1, 3, 5 ]", mode);
+
+        assertEquals("The duplicates should be counted: " + result, 4, result.getDifferences().size());
+        assertDifference(result.getDifferences(), Type.REMOVED, "/1");
+        assertDifference(result.getDifferences(), Type.REMOVED, "/3");
+        assertDifference(result.getDifferences(), Type.ADDED, "/2");
+        assertDifference(result.getDifferences(), Type.ADDED, "/3");
+    }
+
+    @Test
+    public void testDiffIgnoreOrderExtraKeys() {
+
+        String from = "[ { id: 1 }, { id: 2 } ]";
+        String to = "[ { id: 2, name: b }, { id: 1, name: a } ]";
+
+        assertTrue("Extra keys should be allowed by default", diff.diff(from, to, DiffMode.parse("ignore_order")).isEqual());
+
+        DiffResult result = diff.diff(from, to, DiffMode.parse("ignore_order, strict"));
+
+        assertEquals("Extra keys should not match in strict mode", 4, result.getDifferences().size());
+    }
+
+    @Test
+    public void testDiffStrict() {
+
+        String from = "{ a: 1, b: { c: 2 } }";
+        String to = "{ a: 1, b: { c: 2, d: 3 }, e: 4 }";
+
+        assertTrue("Extra keys should be allowed by default", diff.diff(from, to).isEqual());
+
+        DiffResult result = diff.diff(from, to, DiffMode.parse("strict"));
+
+        assertEquals("The extra keys should be found", 2, result.getDifferences().size());
+        assertDifference(result.getDifferences(), Type.ADDED, "/b/d");
+        assertDifference(result.getDifferences(), Type.ADDED, "/e");
+    }
+
+    @Test
+    public void testDiffModeFromConfiguration() {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(JsonDiff.KEY_MODE, "ignore_order,strict");
+
+        JsonDiff configured = new JsonDiff(config);
+
+        assertTrue("The mode should be read", configured.getMode().isIgnoreArrayOrder() && configured.getMode().isStrict());
+        assertFalse("The configured mode should be used", configured.compare("{ a: [ 1, 2 ] }", "{ a: [ 2, 1 ], b: 1 }"));
+        assertTrue("The configured mode should be used", configured.compare("{ a: [ 1, 2 ] }", "{ a: [ 2, 1 ] }"));
+    }
+
+    @Test
+    public void testDiffIgnoreOrderLargeArrays() {
+
+        int size = 50000;
+
+        List<Object> from = new ArrayList<Object>();
+        List<Object> to = new ArrayList<Object>();
+
+        for (int i = 0; i < size; i++) {
+            JSONObject item = new JSONObject();
+            item.put("id", i);
+            item.put("name", "item " + i);
+            from.add(item);
+
+            JSONObject other = new JSONObject();
+            other.put("name", "item " + i);
+            other.put("id", i == size - 1 ? -1 : i);
+            to.add(other);
+        }
+
+        Collections.shuffle(to, new Random(1));
+
+        DiffResult result = diff.diff(from, to, DiffMode.parse("ignore_order,strict"));
+
+        assertEquals("Only the changed element should differ: " + result, 2, result.getDifferences().size());
+        assertDifference(result.getDifferences(), Type.REMOVED, "/" + (size - 1));
+    }
+
+    @Test
+    public void testDiffIgnoreOrderLargeArraysWithExtraKeys() {
+
+        int size = 50000;
+
+        List<Object> from = new ArrayList<Object>();
+        List<Object> to = new ArrayList<Object>();
+
+        for (int i = 0; i < size; i++) {
+            JSONObject item = new JSONObject();
+            item.put("id", i);
+            item.put("name", "item " + i);
+            from.add(item);
+
+            JSONObject other = new JSONObject();
+            other.put("name", "item " + i);
+            other.put("id", i == size - 1 ? -1 : i);
+            other.put("updated", "2016-01-0" + (i % 9 + 1));
+            to.add(other);
+        }
+
+        Collections.shuffle(to, new Random(1));
+
+        long start = System.currentTimeMillis();
+
+        DiffResult result = diff.diff(from, to, DiffMode.parse("ignore_order"));
+
+        long time = System.currentTimeMillis() - start;
+
+        assertEquals("Only the changed element should differ: " + result, 2, result.getDifferences().size());
+        assertDifference(result.getDifferences(), Type.REMOVED, "/" + (size - 1));
+        assertTrue("The elements with extra keys should be matched without comparing all the pairs, took " + time + " ms", time < 5000);
+    }
+
+    @Test
+    public void testDiffIgnoreOrderNestedExtraKeys() {
+
+        DiffMode mode = DiffMode.parse("ignore_order");
+
+        assertTrue("Nested extra keys should be allowed", diff.diff(
+                "[ { id: 1, tags: [ { a: 1 } ] }, { id: 2, owner: { name: x } }, [ { b: 1 } ] ]",
+                "[ [ { b: 1, c: 2 } ], { id: 2, owner: { name: x, age: 3 } }, { id: 1, tags: [ { a: 1, z: 0 } ], more: true } ]", mode).isEqual());
+
+        DiffResult result = diff.diff("[ { id: 1, owner: { name: x } }, { id: 2 } ]", "[ { id: 2, extra: 1 }, { id: 1, owner: { name: y } } ]", mode);
+
+        assertEquals("The changed nested value should not match: " + result, 2, result.getDifferences().size());
+        assertDifference(result.getDifferences(), Type.REMOVED, "/0");
+        assertDifference(result.getDifferences(), Type.ADDED, "/1");
+    }
+
+    @Test
+    public void testDiffSkipsEqualBranches() {
+
+        final int[] compared = { 0 };
+
+        JsonDiff counting = new JsonDiff() {
+            @Override
+            protected boolean compareBasicObjects(Object fromObject, Object toObject, String path) {
+                compared[0]++;
+                return super.compareBasicObjects(fromObject, toObject, path);
+            }
+        };
+
+        DiffResult result = counting.diff(createDocument(1000, -1), createDocument(1000, 500));
+
+        assertEquals("Only the changed name should differ: " + result, 1, result.getDifferences().size());
+        assertDifference(result.getDifferences(), Type.CHANGED, "/items/500/name");
+        assertTrue("The equal items should have been skipped, compared " + compared[0] + " values", compared[0] < 10);
+
+        compared[0] = 0;
+
+        assertTrue("The reordered documents should be equal", counting.diff("{ a: [ 1, { b: 2, c: 3 } ] }", "{ a: [ { c: 3, b: 2 }, 1 ] }", DiffMode.parse("ignore_order")).isEqual());
+        assertEquals("The equal hashes should have been enough", 0, compared[0]);
+    }
+
+    @Test
+    public void testDiffNumbersByValue() {
+
+        assertTrue("The numbers should be compared by value", diff.compare("{ a: 1, b: [ 2.0 ] }", "{ a: 1.0, b: [ 2 ] }"));
+        assertTrue("The big numbers should be compared by value", diff.compare("{ a: 12345678901234567890 }", "{ a: 12345678901234567890.0 }"));
+        assertFalse("The different numbers should NOT match", diff.compare("{ a: 1 }", "{ a: 1.5 }"));
+    }
+
+    @Test
+    public void testDiffBigNumbers() {
+
+        assertFalse("The big integers should be compared exactly", diff.compare("{\"a\": 12345678901234567890}", "{\"a\": 12345678901234567891}"));
+        assertFalse("The decimals should be compared exactly", diff.compare("{\"a\": 0.10000000000000000000001}", "{\"a\": 0.1}"));
+        assertFalse("The nested big integers should be compared exactly", diff.compare("{\"a\": [{\"id\": 98765432109876543210}]}", "{\"a\": [{\"id\": 98765432109876543211}]}"));
+        assertFalse("The big integers should be compared exactly ignoring order", diff.diff("[12345678901234567890, 1]", "[1, 12345678901234567891]", DiffMode.parse(DiffMode.IGNORE_ORDER)).isEqual());
+        assertTrue("The equal big decimals should match", diff.compare("{\"a\": 0.10000000000000000000001}", "{\"a\": 0.100000000000000000000010}"));
+
+        DiffResult result = diff.diff("{\"a\": [{\"id\": 98765432109876543210}, 0.10000000000000000000001]}", "{\"a\": []}");
+
+        assertEquals("The report should show the exact numbers", "REMOVED /a/0: {\"id\":98765432109876543210}\nREMOVED /a/1: 0.10000000000000000000001\n", result.getReport());
+    }
+
+    static String createDocument(int items, int changed) {
+        StringBuilder json = new StringBuilder("{ \"items\": [");
+
+        for (int i = 0; i < items; i++) {
+            json.append(i > 0 ? "," : "")
+                .append("{ \"id\": ").append(i)
+                .append(", \"name\": \"").append(i == changed ? "changed" : "item " + i)
+                .append("\", \"price\": ").append(i * 1.5)
+                .append(", \"tags\": [ \"a\", \"b\", \"c\" ], \"description\": \"")
+                .append(StringUtils.repeat("x", 64)).append("\" }");
+        }
+
+        return json.append("] }").toString();
+    }
+
+    private void assertDifference(List<Difference> differences, Type type, String path) {
+        for (Difference difference : differences) {
+            if (difference.getPath().equals(path) && difference.getType() == type) {
+                return;
+            }
+        }
+        fail("Difference " + type + " " + path + " was not found from " + differences);
+    }
+
+    private static JsonDiff jacksonDiff() {
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(JsonBackend.KEY_JSON_PROVIDER, "jackson");
+        return new JsonDiff(config);
+    }
+
+    @Test
+    public void testDiffWithJackson() throws Exception {
+        String from = "{\"a\": [1, 2, {\"b\": \"c\"}], \"d\": 1.0}";
+        String to = "{\"a\": [2, 1, {\"b\": \"x\"}], \"d\": 1}";
+
+        DiffResult expected = diff.diff(from, to, DiffMode.parse(DiffMode.IGNORE_ORDER));
+
+        JsonDiff jackson = jacksonDiff();
+
+        assertEquals(JsonBackend.JACKSON, jackson.getBackend());
+        assertEquals("The default diff should not be affected", JsonBackend.JSON_SMART, diff.getBackend());
+        assertTrue(jackson.parse(from) instanceof HashedNode);
+        assertEquals(expected.toMaps(), jackson.diff(from, to, DiffMode.parse(DiffMode.IGNORE_ORDER)).toMaps());
+        assertTrue(jackson.compare(from, from));
+    }
+
+    @Test(expected = JsonNotValidException.class)
+    public void testParseStrictJackson() throws Exception {
+        jacksonDiff().parse("{foo: bar}");
+    }
+
     class FooBar {
         
     }
@@ -5,10 +5,20 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 import static org.powermock.api.mockito.PowerMockito.mock;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.client.fluent.Request;
 import org.junit.Before;
@@ -18,25 +28,43 @@ import org.mockito.InjectMocks;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.wuokko.robot.restlib.exception.JsonElementNotFoundException;
 import org.wuokko.robot.restlib.exception.JsonNotEqualException;
 import org.wuokko.robot.restlib.exception.JsonNotValidException;
+import org.wuokko.robot.restlib.exception.LoadThresholdException;
+import org.wuokko.robot.restlib.exception.ResponseTimeException;
+import org.wuokko.robot.restlib.metrics.LatencyMetrics;
+import org.wuokko.robot.restlib.util.DocumentCache;
+import org.wuokko.robot.restlib.util.FixtureCache;
+import org.wuokko.robot.restlib.util.JsonPathCache;
 import org.wuokko.robot.restlib.util.PropertiesUtil;
 import org.wuokko.robot.restlib.util.RequestUtil;
+import org.wuokko.robot.restlib.util.SourceHandler;
 
-import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.InvalidPathException;
 import com.jayway.jsonpath.PathNotFoundException;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({ Request.class, JsonPathLibrary.class, PropertiesUtil.class, JsonPath.class})
+@PowerMockIgnore("javax.net.ssl.*")
+@PrepareForTest({ Request.class, JsonPathLibrary.class, PropertiesUtil.class })
 public class JsonPathLibraryTest {
 	
 	@Mock
 	RequestUtil util;
 	
+	@Mock
+	DocumentCache documentCache;
+	
+	@Mock
+	DocumentContext document;
+	
 	@InjectMocks
     JsonPathLibrary lib = new JsonPathLibrary();
 
@@ -44,7 +72,8 @@ public class JsonPathLibraryTest {
     public void setUp() throws Exception {
         PowerMockito.mockStatic(Request.class);
         PowerMockito.mockStatic(PropertiesUtil.class);
-        PowerMockito.mockStatic(JsonPath.class);
+        
+        Mockito.when(documentCache.parse(Matchers.anyString())).thenReturn(document);
     }
 
     @Test
@@ -183,13 +212,13 @@ public class JsonPathLibraryTest {
         
         when(util.readSource(eq(source), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn("JSONDATA");
         
-        when(JsonPath.read(eq("JSONDATA"), eq(path))).thenReturn("SINGE_ITEM");
+        when(document.read(JsonPathCache.compile(path))).thenReturn("SINGE_ITEM");
         
         match = spyLib.jsonShouldHaveElementCount(source, path, 1, "METHOD", "DATA", "CONTENTTYPE");
 
         assertTrue("The element count should have matched", match);
         
-        when(JsonPath.read(eq("JSONDATA"), eq(path))).thenReturn(Arrays.asList("1", "2", "3"));
+        when(document.read(JsonPathCache.compile(path))).thenReturn(Arrays.asList("1", "2", "3"));
         
         match = spyLib.jsonShouldHaveElementCount(source, path, 3, "METHOD", "DATA", "CONTENTTYPE");
 
@@ -208,7 +237,7 @@ public class JsonPathLibraryTest {
         
         when(util.readSource(eq(source), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn("JSONDATA");
         
-        when(JsonPath.read(eq("JSONDATA"), eq(path))).thenReturn("SINGE_ITEM");
+        when(document.read(JsonPathCache.compile(path))).thenReturn("SINGE_ITEM");
         
         spyLib.jsonShouldHaveElementCount(source, path, 5, "METHOD", "DATA", "CONTENTTYPE");
 
@@ -227,7 +256,7 @@ public class JsonPathLibraryTest {
         
         when(util.readSource(eq(source), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn("JSONDATA");
         
-        when(JsonPath.read(eq("JSONDATA"), eq(path))).thenReturn(Arrays.asList("1", "2"));
+        when(document.read(JsonPathCache.compile(path))).thenReturn(Arrays.asList("1", "2"));
         
         spyLib.jsonShouldHaveElementCount(source, path, 1, "METHOD", "DATA", "CONTENTTYPE");
 
@@ -246,7 +275,7 @@ public class JsonPathLibraryTest {
         
         when(util.readSource(eq(source), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn("JSONDATA");
         
-        when(JsonPath.read(eq("JSONDATA"), eq(path))).thenReturn(null);
+        when(document.read(JsonPathCache.compile(path))).thenReturn(null);
         
         spyLib.jsonShouldHaveElementCount(source, path, 1, "METHOD", "DATA", "CONTENTTYPE");
 
@@ -285,7 +314,7 @@ public class JsonPathLibraryTest {
         
         Mockito.when(util.readSource(source, "METHOD", "DATA", "CONTENTTYPE")).thenReturn("JSON");
         
-        Mockito.when(JsonPath.read("JSON", path)).thenReturn(expected);
+        when(document.read(JsonPathCache.compile(path))).thenReturn(expected);
         
         element = spyLib.findJsonElement(source, path, "METHOD", "DATA", "CONTENTTYPE");
 
@@ -297,13 +326,349 @@ public class JsonPathLibraryTest {
 
     	Mockito.when(util.readSource("SOURCE", "METHOD", "DATA", "CONTENTTYPE")).thenReturn("JSON");
         
-        Mockito.when(JsonPath.read("JSON", "PATH")).thenThrow(new PathNotFoundException(""));
+        when(document.read(JsonPathCache.compile("PATH"))).thenThrow(new PathNotFoundException(""));
         
         lib.findJsonElement("SOURCE", "PATH", "METHOD", "DATA", "CONTENTTYPE");
 
         fail("Should have thrown exception");
     }
 
+    @Test
+    public void testFindJsonElements() throws Exception {
+
+        Mockito.when(util.readSource("SOURCE", "METHOD", "DATA", "CONTENTTYPE")).thenReturn("JSON");
+        
+        when(document.read(JsonPathCache.compile("$.foo"))).thenReturn("bar");
+        when(document.read(JsonPathCache.compile("$.abc"))).thenReturn(5);
+        
+        Map<String, Object> values = lib.findJsonElements("SOURCE", Arrays.asList("$.foo", "$.abc"), "METHOD", "DATA", "CONTENTTYPE");
+
+        assertEquals("The values should be as expected", "bar", values.get("$.foo"));
+        assertEquals("The values should be as expected", 5, values.get("$.abc"));
+        
+        Mockito.verify(util, Mockito.times(1)).readSource("SOURCE", "METHOD", "DATA", "CONTENTTYPE");
+        Mockito.verify(documentCache, Mockito.times(1)).parse("JSON");
+    }
+    
+    @Test
+    public void testFindJsonElementsNotFound() throws Exception {
+
+        Mockito.when(util.readSource("SOURCE", "GET", null, null)).thenReturn("JSON");
+        
+        when(document.read(JsonPathCache.compile("$.foo"))).thenReturn("bar");
+        when(document.read(JsonPathCache.compile("$.abc"))).thenThrow(new PathNotFoundException(""));
+        when(document.read(JsonPathCache.compile("$.xyz"))).thenThrow(new PathNotFoundException(""));
+        
+        try {
+            lib.findJsonElements("SOURCE", Arrays.asList("$.foo", "$.abc", "$.xyz"));
+            fail("Should have thrown exception");
+        } catch (JsonElementNotFoundException e) {
+            assertTrue("All missing paths should be reported", e.getMessage().contains("[$.abc, $.xyz]"));
+        }
+    }
+    
+    @Test
+    public void testFindJsonElementReturnsCopy() throws Exception {
+
+        Mockito.when(util.readSource("SOURCE", "GET", null, null)).thenReturn("JSON");
+
+        Map<String, Object> item = new LinkedHashMap<String, Object>();
+        item.put("name", "foo");
+
+        List<Object> shared = new ArrayList<Object>();
+        shared.add(item);
+
+        when(document.read(JsonPathCache.compile("$.items"))).thenReturn(shared);
+
+        @SuppressWarnings("unchecked")
+        List<Object> element = (List<Object>) lib.findJsonElement("SOURCE", "$.items");
+
+        element.add("bar");
+        ((Map<String, Object>) element.get(0)).put("name", "changed");
+
+        assertEquals("The cached list should not have been modified", 1, shared.size());
+        assertEquals("The cached map should not have been modified", "foo", item.get("name"));
+
+        List<Object> list = lib.findJsonElementList("SOURCE", "$.items");
+
+        list.clear();
+
+        assertEquals("The cached list should not have been modified", 1, shared.size());
+    }
+
+    @Test
+    public void testJsonElementsShouldMatch() throws Exception {
+
+        Mockito.when(util.readSource("SOURCE", "GET", null, null)).thenReturn("JSON");
+        
+        when(document.read(JsonPathCache.compile("$.foo"))).thenReturn("bar");
+        when(document.read(JsonPathCache.compile("$.abc"))).thenReturn(5);
+        
+        Map<String, Object> expected = new LinkedHashMap<String, Object>();
+        expected.put("$.foo", "bar");
+        expected.put("$.abc", "5");
+        
+        assertTrue("The values should have matched", lib.jsonElementsShouldMatch("SOURCE", expected));
+    }
+    
+    @Test
+    public void testJsonElementsShouldMatchNoMatch() throws Exception {
+
+        Mockito.when(util.readSource("SOURCE", "GET", null, null)).thenReturn("JSON");
+        
+        when(document.read(JsonPathCache.compile("$.foo"))).thenReturn("bar");
+        when(document.read(JsonPathCache.compile("$.abc"))).thenReturn(5);
+        when(document.read(JsonPathCache.compile("$.xyz"))).thenThrow(new PathNotFoundException(""));
+        
+        Map<String, Object> expected = new LinkedHashMap<String, Object>();
+        expected.put("$.foo", "car");
+        expected.put("$.abc", "5");
+        expected.put("$.xyz", "1");
+        
+        try {
+            lib.jsonElementsShouldMatch("SOURCE", expected);
+            fail("Should have thrown exception");
+        } catch (JsonNotEqualException e) {
+            assertTrue("The count should be reported", e.getMessage().startsWith("2 of 3 values did not match"));
+            assertTrue("The mismatch should be reported", e.getMessage().contains("'$.foo' found 'bar', expected 'car'"));
+            assertTrue("The missing path should be reported", e.getMessage().contains("'$.xyz' was not found"));
+        }
+    }
+    
+    @Test
+    public void testJsonElementsShouldMatchInBatch() throws Exception {
+
+        DocumentContext other = mock(DocumentContext.class);
+
+        Mockito.when(util.readSource("SOURCE1", "GET", null, null)).thenReturn("JSON1");
+        Mockito.when(util.readSource("SOURCE2", "GET", null, null)).thenReturn("JSON2");
+        Mockito.when(documentCache.parse("JSON2")).thenReturn(other);
+
+        when(document.read(JsonPathCache.compile("$.foo"))).thenReturn("bar");
+        when(other.read(JsonPathCache.compile("$.foo"))).thenReturn("bar");
+
+        Map<String, Object> expected = new LinkedHashMap<String, Object>();
+        expected.put("$.foo", "bar");
+
+        List<Map<String, Object>> results = lib.jsonElementsShouldMatchInBatch(Arrays.asList("SOURCE1", "SOURCE2"), expected);
+
+        assertEquals(2, results.size());
+        assertEquals("SOURCE1", results.get(0).get("source"));
+        assertEquals("PASS", results.get(0).get("status"));
+        assertEquals("SOURCE2", results.get(1).get("source"));
+        assertEquals("PASS", results.get(1).get("status"));
+    }
+
+    @Test
+    public void testJsonElementsShouldMatchInBatchFailure() throws Exception {
+
+        DocumentContext other = mock(DocumentContext.class);
+
+        Mockito.when(util.readSource("SOURCE1", "POST", "DATA", "CONTENTTYPE")).thenReturn("JSON1");
+        Mockito.when(util.readSource("SOURCE2", "POST", "DATA", "CONTENTTYPE")).thenReturn("JSON2");
+        Mockito.when(util.readSource("SOURCE3", "POST", "DATA", "CONTENTTYPE")).thenThrow(new IllegalStateException("unreachable"));
+        Mockito.when(documentCache.parse("JSON2")).thenReturn(other);
+
+        when(document.read(JsonPathCache.compile("$.foo"))).thenReturn("bar");
+        when(other.read(JsonPathCache.compile("$.foo"))).thenReturn("car");
+
+        Map<String, Object> expected = new LinkedHashMap<String, Object>();
+        expected.put("$.foo", "bar");
+
+        try {
+            lib.jsonElementsShouldMatchInBatch(Arrays.asList("SOURCE1", "SOURCE2", "SOURCE3"), expected, 2, "POST", "DATA", "CONTENTTYPE");
+            fail("Should have thrown exception");
+        } catch (JsonNotEqualException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("2 of 3 sources failed:\nFAIL SOURCE2"));
+            assertTrue(e.getMessage(), e.getMessage().contains("'$.foo' found 'car', expected 'bar'"));
+            assertTrue(e.getMessage(), e.getMessage().contains("FAIL SOURCE3"));
+            assertTrue(e.getMessage(), e.getMessage().contains("unreachable"));
+            assertTrue(e.getMessage(), e.getMessage().contains("PASS SOURCE1"));
+        }
+    }
+
+    @Test
+    public void testJsonElementsShouldMatchInBatchFromFile() throws Exception {
+
+        File file = File.createTempFile("sources", ".txt");
+        file.deleteOnExit();
+
+        FileUtils.writeLines(file, "UTF-8", Arrays.asList("# endpoints", "SOURCE1", "", "  SOURCE2  "));
+
+        Mockito.when(util.readSource(Matchers.anyString(), eq("GET"), Matchers.<String> eq(null), Matchers.<String> eq(null))).thenReturn("JSON");
+
+        when(document.read(JsonPathCache.compile("$.foo"))).thenReturn("bar");
+
+        Map<String, Object> expected = new LinkedHashMap<String, Object>();
+        expected.put("$.foo", "bar");
+
+        List<Map<String, Object>> results = lib.jsonElementsShouldMatchInBatchFromFile(file.getAbsolutePath(), expected, 1);
+
+        assertEquals(2, results.size());
+        assertEquals("SOURCE2", results.get(1).get("source"));
+    }
+
+    @Test
+    public void testRunLoad() throws Exception {
+
+        Mockito.when(util.sendRequest(new URI("http://localhost/status"), "GET", null, null)).thenReturn("{ status: 'UP' }");
+
+        Map<String, Object> settings = new HashMap<String, Object>();
+        settings.put("duration", 200);
+        settings.put("rate", 50);
+        settings.put("workers", 2);
+        settings.put("path", "$.status");
+        settings.put("expected", "UP");
+        settings.put("max.error.rate", 0);
+
+        Map<String, Object> statistics = lib.runLoad("http://localhost/status", settings);
+
+        assertEquals("Every request due should be sent or dropped", 10L, (Long) statistics.get("requests") + (Long) statistics.get("dropped"));
+        assertEquals(0L, statistics.get("errors"));
+    }
+
+    @Test
+    public void testRunLoadThresholdBreached() throws Exception {
+
+        Mockito.when(util.sendRequest(new URI("http://localhost/status"), "POST", "DATA", "CONTENTTYPE")).thenReturn("{ status: 'DOWN' }");
+
+        Map<String, Object> settings = new HashMap<String, Object>();
+        settings.put("duration", 100);
+        settings.put("path", "$.status");
+        settings.put("expected", "UP");
+        settings.put("max.error.rate", 5);
+
+        try {
+            lib.runLoad("http://localhost/status", settings, "POST", "DATA", "CONTENTTYPE");
+            fail("Should have thrown exception");
+        } catch (LoadThresholdException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Load thresholds were breached: error.rate 100.00 is above 5.00"));
+            assertTrue(e.getMessage(), e.getMessage().contains("'$.status' found 'DOWN', expected 'UP'"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRunLoadNotUri() throws Exception {
+        lib.runLoad("{ status: 'UP' }", new HashMap<String, Object>());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLatencyStatistics() throws Exception {
+
+        lib.resetLatencyStatistics();
+
+        Mockito.when(util.readSource("{ foo: 'bar' }", "GET", null, null)).thenReturn("{ foo: 'bar' }");
+        when(document.read(JsonPathCache.compile("$.foo"))).thenReturn("bar");
+
+        lib.findJsonElement("{ foo: 'bar' }", "$.foo");
+
+        Map<String, Object> phases = (Map<String, Object>) lib.getLatencyStatistics().get("inline");
+
+        assertEquals(1L, ((Map<String, Object>) phases.get("parse")).get("count"));
+        assertEquals(1L, ((Map<String, Object>) phases.get("evaluate")).get("count"));
+
+        File json = File.createTempFile("latency", ".json");
+        File csv = File.createTempFile("latency", ".csv");
+        json.deleteOnExit();
+        csv.deleteOnExit();
+
+        lib.exportLatencyStatistics(json.getAbsolutePath());
+        lib.exportLatencyStatistics(csv.getAbsolutePath());
+
+        assertTrue(FileUtils.readFileToString(json, "UTF-8").contains("\"inline\""));
+        assertTrue(FileUtils.readFileToString(csv, "UTF-8").contains("inline,evaluate,1,"));
+    }
+
+    @Test
+    public void testResponseTimeShouldBeLessThan() throws Exception {
+
+        lib.resetLatencyStatistics();
+
+        LatencyMetrics.recordTotal("GET http://localhost", 5000000L);
+
+        assertTrue(lib.responseTimeShouldBeLessThan(10.0));
+
+        try {
+            lib.responseTimeShouldBeLessThan(5.0);
+            fail("Should have thrown exception");
+        } catch (ResponseTimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Response time of the last request (GET http://localhost) was 5.000 ms, expected less than 5.000 ms."));
+            assertTrue("The distribution should be described: " + e.getMessage(), e.getMessage().contains("count 1, min 5.000"));
+        }
+    }
+
+    @Test
+    public void testResponseTimeOfGroup() throws Exception {
+
+        lib.resetLatencyStatistics();
+
+        lib.setLatencyGroup("checkout");
+        LatencyMetrics.recordTotal("GET http://localhost", 3000000L);
+        LatencyMetrics.recordTotal("POST http://localhost", 8000000L);
+        lib.clearLatencyGroup();
+        LatencyMetrics.recordTotal("GET http://localhost", 1000000L);
+
+        assertTrue(lib.responseTimeShouldBeLessThan(10.0, "checkout"));
+        assertTrue(lib.p95ResponseTimeShouldBeBelow(10.0, "checkout"));
+        assertTrue("The key should be usable as a group", lib.responseTimeShouldBeLessThan(4.0, "GET http://localhost"));
+
+        try {
+            lib.responseTimeShouldBeLessThan(5.0, "checkout");
+            fail("Should have thrown exception");
+        } catch (ResponseTimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Response times of 'checkout' were up to 8.0"));
+            assertTrue(e.getMessage(), e.getMessage().contains("count 2"));
+        }
+
+        try {
+            lib.p95ResponseTimeShouldBeBelow(5.0, "checkout");
+            fail("Should have thrown exception");
+        } catch (ResponseTimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("P95 response time of 'checkout' was 8.0"));
+        }
+
+        try {
+            lib.responseTimePercentileShouldBeBelow(99.9, 2.0);
+            fail("Should have thrown exception");
+        } catch (ResponseTimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("P99.9 response time was 8.0"));
+            assertTrue("All the requests should be counted: " + e.getMessage(), e.getMessage().contains("count 3"));
+        }
+    }
+
+    @Test
+    public void testResponseTimeWithoutRequests() throws Exception {
+
+        lib.resetLatencyStatistics();
+
+        try {
+            lib.responseTimeShouldBeLessThan(1.0);
+            fail("Should have thrown exception");
+        } catch (ResponseTimeException e) {
+            assertEquals("No requests have been timed", e.getMessage());
+        }
+
+        try {
+            lib.p95ResponseTimeShouldBeBelow(1.0, "missing");
+            fail("Should have thrown exception");
+        } catch (ResponseTimeException e) {
+            assertEquals("No requests have been timed for 'missing'", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExportLatencyStatisticsUnknownFormat() throws Exception {
+        lib.exportLatencyStatistics("latency.xml", "xml");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJsonElementsShouldMatchNull() throws Exception {
+
+        lib.jsonElementsShouldMatch("SOURCE", null);
+
+    }
+
     @Test
     public void testFindJsonElementList() throws Exception {
 
@@ -335,7 +700,7 @@ public class JsonPathLibraryTest {
         
         Mockito.when(util.readSource(source, "METHOD", "DATA", "CONTENTTYPE")).thenReturn("JSON");
         
-        Mockito.when(JsonPath.read("JSON", path)).thenReturn(expected);
+        when(document.read(JsonPathCache.compile(path))).thenReturn(expected);
         
         element = spyLib.findJsonElementList(source, path, "METHOD", "DATA", "CONTENTTYPE");
 
@@ -347,7 +712,7 @@ public class JsonPathLibraryTest {
 
     	Mockito.when(util.readSource("SOURCE", "METHOD", "DATA", "CONTENTTYPE")).thenReturn("JSON");
         
-        Mockito.when(JsonPath.read("JSON", "PATH")).thenThrow(new PathNotFoundException(""));
+        when(document.read(JsonPathCache.compile("PATH"))).thenThrow(new PathNotFoundException(""));
         
         lib.findJsonElementList("SOURCE", "PATH", "METHOD", "DATA", "CONTENTTYPE");
 
@@ -426,6 +791,145 @@ public class JsonPathLibraryTest {
 
     }
 
+    @Test
+    public void testJsonShouldBeEqualReport() throws Exception {
+
+        String from = "{foo: bar, list: [1, 2]}";
+        String to = "{foo: xyz, list: [1]}";
+
+        Mockito.when(util.readSource(eq(from), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn(from);
+        Mockito.when(util.readSource(eq(to), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn(to);
+
+        try {
+            lib.jsonShouldBeEqual(from, to, false, "METHOD", "DATA", "CONTENTTYPE");
+            fail("Should have thrown exception");
+        } catch (JsonNotEqualException e) {
+            assertTrue("The changed value should be reported: " + e.getMessage(), e.getMessage().contains("CHANGED /foo: \"bar\" -> \"xyz\""));
+            assertTrue("The removed element should be reported: " + e.getMessage(), e.getMessage().contains("REMOVED /list/1: 2"));
+        }
+    }
+
+    @Test
+    public void testJsonShouldBeEqualWithMode() throws Exception {
+
+        String from = "{ids: [1, 2, 3]}";
+        String to = "{ids: [3, 1, 2], extra: 1}";
+
+        Mockito.when(util.readSource(eq(from), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn(from);
+        Mockito.when(util.readSource(eq(to), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn(to);
+
+        assertTrue("The order should be ignored", lib.jsonShouldBeEqualWithMode(from, to, "ignore_order", "METHOD", "DATA", "CONTENTTYPE"));
+
+        try {
+            lib.jsonShouldBeEqualWithMode(from, to, "ignore_order,strict", "METHOD", "DATA", "CONTENTTYPE");
+            fail("Should have thrown exception");
+        } catch (JsonNotEqualException e) {
+            assertTrue("The extra key should be reported: " + e.getMessage(), e.getMessage().contains("ADDED /extra: 1"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJsonShouldBeEqualWithModeInvalid() throws Exception {
+        lib.jsonShouldBeEqualWithMode("{}", "{}", "unordered", "METHOD", "DATA", "CONTENTTYPE");
+    }
+
+    @Test
+    public void testJsonShouldBeEqualConcurrently() throws Exception {
+
+        String from = "http://localhost/from";
+        String to = "http://localhost/to";
+
+        Answer<String> slowAnswer = new Answer<String>() {
+            @Override
+            public String answer(InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(500);
+                return "{foo: bar}";
+            }
+        };
+
+        Mockito.when(util.readSource(eq(from), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenAnswer(slowAnswer);
+        Mockito.when(util.readSource(eq(to), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenAnswer(slowAnswer);
+
+        long start = System.currentTimeMillis();
+
+        assertTrue("The sources should be equal", lib.jsonShouldBeEqual(from, to, false, "METHOD", "DATA", "CONTENTTYPE"));
+
+        long time = System.currentTimeMillis() - start;
+
+        assertTrue("The sources should have been read concurrently in " + time + " ms", time < 900);
+    }
+
+    @Test
+    public void testJsonShouldBeEqualEmptySource() throws Exception {
+
+        String from = "{foo: bar}";
+        String to = "http://localhost/to";
+
+        Mockito.when(util.readSource(eq(from), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn(from);
+        Mockito.when(util.readSource(eq(to), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn(null);
+
+        try {
+            lib.jsonShouldBeEqual(from, to, false, "METHOD", "DATA", "CONTENTTYPE");
+            fail("Should have thrown exception");
+        } catch (JsonNotValidException e) {
+            assertTrue("The empty source should be named: " + e.getMessage(), e.getMessage().contains("'to' is empty"));
+            assertFalse("The valid source should not be named: " + e.getMessage(), e.getMessage().contains("'from'"));
+        }
+
+        Mockito.when(util.readSource(eq(to), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn("{foo: ");
+
+        try {
+            lib.jsonShouldBeEqual(from, to, false, "METHOD", "DATA", "CONTENTTYPE");
+            fail("Should have thrown exception");
+        } catch (JsonNotValidException e) {
+            assertTrue("The invalid source should be named: " + e.getMessage(), e.getMessage().contains("'to' is not valid"));
+        }
+    }
+
+    @Test
+    public void testStartRequest() throws Exception {
+
+        Mockito.when(util.startRequest("http://localhost/a", "GET", null, null)).thenReturn("request-1");
+        Mockito.when(util.startRequest("http://localhost/b", "POST", "DATA", "CONTENTTYPE")).thenReturn("request-2");
+
+        assertEquals("The handle should be returned", "request-1", lib.startRequest("http://localhost/a"));
+        assertEquals("The handle should be returned", "request-2", lib.startRequest("http://localhost/b", "POST", "DATA", "CONTENTTYPE"));
+
+        List<String> handles = Arrays.asList("request-1", "request-2");
+
+        Mockito.when(util.waitForResponses(handles, 0)).thenReturn(Arrays.asList("{a: 1}", "{b: 2}"));
+        Mockito.when(util.waitForResponses(handles, 5000)).thenReturn(Arrays.asList("{a: 1}", "{b: 3}"));
+
+        assertEquals("The bodies should be returned", Arrays.asList("{a: 1}", "{b: 2}"), lib.waitForResponses(handles));
+        assertEquals("The timeout should be passed", Arrays.asList("{a: 1}", "{b: 3}"), lib.waitForResponses(handles, 5000));
+
+        Mockito.when(util.discardPendingResponses()).thenReturn(2);
+
+        assertEquals("The number of discarded requests should be returned", 2, lib.discardPendingResponses());
+    }
+
+    @Test
+    public void testGetJsonDifferences() throws Exception {
+
+        String from = "{foo: bar}";
+        String to = "{foo: xyz}";
+
+        Mockito.when(util.readSource(eq(from), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn(from);
+        Mockito.when(util.readSource(eq(to), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn(to);
+
+        List<Map<String, Object>> differences = lib.getJsonDifferences(from, to, "METHOD", "DATA", "CONTENTTYPE");
+
+        assertEquals("There should be one difference", 1, differences.size());
+        assertEquals("The type should be set", "CHANGED", differences.get(0).get("type"));
+        assertEquals("The path should be set", "/foo", differences.get(0).get("path"));
+        assertEquals("The from value should be set", "bar", differences.get(0).get("from"));
+        assertEquals("The to value should be set", "xyz", differences.get(0).get("to"));
+
+        Mockito.when(util.readSource(eq(to), eq("METHOD"), eq("DATA"), eq("CONTENTTYPE"))).thenReturn(from);
+
+        assertTrue("Equal sources should have no differences", lib.getJsonDifferences(from, to, "METHOD", "DATA", "CONTENTTYPE").isEmpty());
+    }
+
     @Test(expected = JsonNotValidException.class)
     public void testJsonShouldBeEqualNoMatchBlank() throws Exception {
 
@@ -464,7 +968,189 @@ public class JsonPathLibraryTest {
 
         assertTrue("The elements should be equal", equal);
     }
+    @Test
+    public void testPrecompileJsonPaths() throws Exception {
+
+        int compiled = lib.precompileJsonPaths(new String[] { "$.store.book[*].author", "$.store.bicycle.color" });
+
+        assertEquals("The paths should have been compiled", 2, compiled);
+    }
+
+    @Test(expected = InvalidPathException.class)
+    public void testPrecompileJsonPathsInvalid() throws Exception {
+
+        lib.precompileJsonPaths(new String[] { "$.store.book[" });
+
+    }
+
+    @Test
+    public void testPrecompileJsonPathsFromFile() throws Exception {
+
+        String file = ClassLoader.getSystemClassLoader().getResource("paths.txt").getFile();
+
+        int compiled = lib.precompileJsonPathsFromFile(file);
+
+        assertEquals("The paths should have been compiled", 3, compiled);
+    }
+
+    @Test
+    public void testGetUriCacheStatistics() throws Exception {
+
+        Map<String, Object> expected = new HashMap<String, Object>();
+        expected.put("hits", 1L);
+
+        Mockito.when(util.getCacheStatistics()).thenReturn(expected);
+
+        assertEquals("The statistics should be as expected", expected, lib.getUriCacheStatistics());
+    }
+
 //
+    @SuppressWarnings("unchecked")
+    private void mockStream(final String json) throws Exception {
+        Mockito.when(util.streamSource(Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.any(SourceHandler.class))).thenAnswer(new Answer<Object>() {
+
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                SourceHandler<Object> handler = (SourceHandler<Object>) invocation.getArguments()[4];
+                return handler.handle(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+            }
+        });
+    }
+
+    @Test
+    public void testFindJsonElementFromStream() throws Exception {
+
+        mockStream("{ items: [ { id: 1, name: 'first' }, { id: 2, name: 'second' } ] }");
+
+        assertEquals("The element should be found", "second", lib.findJsonElementFromStream("http://localhost/items", "$.items[1].name", "GET", "", ""));
+        assertEquals("The filtered elements should be found", Arrays.asList((Object) "first"), lib.findJsonElementFromStream("http://localhost/items", "$.items[?(@.id == 1)].name", "GET", "", ""));
+    }
+
+    @Test(expected = JsonElementNotFoundException.class)
+    public void testFindJsonElementFromStreamNotFound() throws Exception {
+
+        mockStream("{ items: [] }");
+
+        lib.findJsonElementFromStream("http://localhost/items", "$.items[0]", "GET", "", "");
+    }
+
+    @Test(expected = InvalidPathException.class)
+    public void testFindJsonElementFromStreamUnsupported() throws Exception {
+
+        mockStream("{ items: [] }");
+
+        lib.findJsonElementFromStream("http://localhost/items", "$..id", "GET", "", "");
+    }
+
+    @Test
+    public void testFindJsonElementsFromStream() throws Exception {
+
+        mockStream("{ meta: { total: 2 }, items: [ { id: 1 }, { id: 2 } ] }");
+
+        Map<String, Object> values = lib.findJsonElementsFromStream("http://localhost/items", Arrays.asList("$.meta.total", "$.items[*].id"), "GET", "", "");
+
+        assertEquals("The total should be found", 2, values.get("$.meta.total"));
+        assertEquals("The ids should be found", Arrays.asList((Object) 1, 2), values.get("$.items[*].id"));
+    }
+
+    @Test
+    public void testFindJsonElementsFromStreamNotFound() throws Exception {
+
+        mockStream("{ meta: { total: 2 } }");
+
+        try {
+            lib.findJsonElementsFromStream("http://localhost/items", Arrays.asList("$.meta.total", "$.meta.count", "$.items[0]"), "GET", "", "");
+            fail("Should have thrown exception");
+        } catch (JsonElementNotFoundException e) {
+            assertEquals("All the missing paths should be reported", "Paths [$.meta.count, $.items[0]] were not found in JSON", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testShouldHaveElementCountFromStream() throws Exception {
+
+        mockStream("{ items: [ { id: 1 }, { id: 2 }, { id: 3 } ], meta: { total: 3 } }");
+
+        assertTrue("The wildcard count should match", lib.jsonShouldHaveElementCount("http://localhost/items", "$.items[*]", 3, "GET", "", ""));
+        assertTrue("The array count should match", lib.jsonShouldHaveElementCount("http://localhost/items", "$.items", 3, "GET", "", ""));
+        assertTrue("The single item should match", lib.jsonShouldHaveElementCount("http://localhost/items", "$.meta.total", 1, "GET", "", ""));
+
+        try {
+            lib.jsonShouldHaveElementCount("http://localhost/items", "$.items[*]", 2, "GET", "", "");
+            fail("Should have thrown exception");
+        } catch (JsonNotEqualException e) {
+            assertEquals("The count should stop after the expected count", "Element counts did not match. Expected '2', got 'at least 3'", e.getMessage());
+        }
+
+        verify(util, never()).readSource(Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString());
+    }
+
+    @Test
+    public void testShouldHaveElementCountFallback() throws Exception {
+
+        mockStream("{ items: [ { id: one }, { id: two } ] }");
+
+        when(util.readSource(eq("source"), eq("GET"), eq(""), eq(""))).thenReturn("JSONDATA");
+        when(document.read(JsonPathCache.compile("$.items[*]"))).thenReturn(Arrays.asList("1", "2"));
+
+        assertTrue("The count should be read with JsonPath", lib.jsonShouldHaveElementCount("source", "$.items[*]", 2, "GET", "", ""));
+    }
+
+    @Test
+    public void testShouldHaveElementCountFallbackNotResent() throws Exception {
+
+        String json = "{ items: [ { id: one }, { id: two } ] }";
+
+        mockStream(json);
+
+        when(document.read(JsonPathCache.compile("$.items[*]"))).thenReturn(Arrays.asList("1", "2"));
+
+        assertTrue("The count should be read with JsonPath", lib.jsonShouldHaveElementCount("http://localhost/items", "$.items[*]", 2, "POST", "DATA", ""));
+
+        verify(util, never()).readSource(Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString());
+        verify(documentCache).parse(json);
+    }
+
+    @Test
+    public void testShouldHaveAtLeastElementCount() throws Exception {
+
+        mockStream("{ items: [ { id: 1 }, { id: 2 }, { id: 3 } ] }");
+
+        assertTrue("The count should be at least 2", lib.jsonShouldHaveAtLeastElementCount("http://localhost/items", "$.items[*]", 2, "GET", "", ""));
+        assertTrue("The count should be at least 3", lib.jsonShouldHaveAtLeastElementCount("http://localhost/items", "$.items[*]", 3, "GET", "", ""));
+
+        try {
+            lib.jsonShouldHaveAtLeastElementCount("http://localhost/items", "$.items[*]", 4, "GET", "", "");
+            fail("Should have thrown exception");
+        } catch (JsonNotEqualException e) {
+            assertEquals("The error should tell the count", "Expected at least '4' elements, got '3'", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testShouldHaveAtMostElementCount() throws Exception {
+
+        mockStream("{ items: [ { id: 1 }, { id: 2 }, { id: 3 } ], empty: [] }");
+
+        assertTrue("The count should be at most 3", lib.jsonShouldHaveAtMostElementCount("http://localhost/items", "$.items[*]", 3, "GET", "", ""));
+        assertTrue("No elements should be at most 0", lib.jsonShouldHaveAtMostElementCount("http://localhost/items", "$.empty[*]", 0, "GET", "", ""));
+
+        try {
+            lib.jsonShouldHaveAtMostElementCount("http://localhost/items", "$.items[*]", 1, "GET", "", "");
+            fail("Should have thrown exception");
+        } catch (JsonNotEqualException e) {
+            assertEquals("The error should tell the count", "Expected at most '1' elements, got 'at least 2'", e.getMessage());
+        }
+    }
+
+    @Test(expected = JsonElementNotFoundException.class)
+    public void testShouldHaveAtMostElementCountNotFound() throws Exception {
+
+        mockStream("{ items: [] }");
+
+        lib.jsonShouldHaveAtMostElementCount("http://localhost/items", "$.pages", 1, "GET", "", "");
+    }
+
 //    @Test(expected = JsonNotEqualException.class)
 //    public void testJsonShouldBeEqualExactNoMatch() throws Exception {
 //
@@ -477,4 +1163,117 @@ public class JsonPathLibraryTest {
 //        lib.jsonShouldBeEqual(from, to, true);
 //    }
 
+    private File writeFixture(String json) throws Exception {
+        File file = File.createTempFile("fixture", ".json");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, json, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Test
+    public void testFindJsonElementFromFixture() throws Exception {
+
+        FixtureCache.clear();
+
+        File file = writeFixture("{ \"name\": \"J\u00f6r\u00f6\", \"items\": [ 1, 2 ] }");
+        String source = file.toURI().toString();
+
+        Mockito.when(util.getFile(source)).thenReturn(file);
+
+        long misses = (Long) FixtureCache.getStatistics().get("misses");
+
+        assertEquals("J\u00f6r\u00f6", lib.findJsonElement(source, "$.name"));
+        assertEquals(Arrays.asList(1, 2), lib.findJsonElementList(source, "$.items[*]"));
+        assertTrue(lib.jsonShouldHaveElementCount(source, "$.items[*]", 2));
+
+        assertEquals(misses + 1, FixtureCache.getStatistics().get("misses"));
+
+        Mockito.verify(util, Mockito.never()).readSource(Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString());
+        Mockito.verify(documentCache, Mockito.never()).parse(Matchers.anyString());
+    }
+
+    @Test
+    public void testJsonShouldBeEqualFromFixtures() throws Exception {
+
+        File from = writeFixture("{ \"a\": 1, \"b\": [ true ] }");
+        File to = writeFixture("{ \"b\": [ true ], \"a\": 1 }");
+        File changed = writeFixture("{ \"b\": [ false ], \"a\": 1 }");
+
+        Mockito.when(util.getFile(Matchers.anyString())).thenAnswer(new Answer<File>() {
+            @Override
+            public File answer(InvocationOnMock invocation) throws Throwable {
+                return new File(new URI((String) invocation.getArguments()[0]));
+            }
+        });
+
+        assertTrue(lib.jsonShouldBeEqual(from.toURI().toString(), to.toURI().toString()));
+
+        try {
+            lib.jsonShouldBeEqual(from.toURI().toString(), changed.toURI().toString());
+            fail("The files should not be equal");
+        } catch (JsonNotEqualException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("/b/0"));
+        }
+    }
+
+    @Test
+    public void testFindJsonElementParsedFromStream() throws Exception {
+
+        final DocumentCache cache = new DocumentCache(null);
+
+        Mockito.when(util.isParsedFromStream(Matchers.anyString(), Matchers.anyString())).thenReturn(true);
+        Mockito.when(documentCache.parse(Matchers.any(byte[].class), Matchers.any(Charset.class))).thenAnswer(new Answer<Object>() {
+
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return cache.parse((byte[]) invocation.getArguments()[0], (Charset) invocation.getArguments()[1]);
+            }
+        });
+        mockStream("{ \"name\": \"hello\", \"items\": [ 1, 2 ] }\n");
+
+        assertEquals("hello", lib.findJsonElement("http://example.com/test.json", "$.name"));
+        assertEquals(Arrays.asList(1, 2), lib.findJsonElementList("http://example.com/test.json", "$.items[*]"));
+
+        Mockito.verify(util, Mockito.never()).readSource(Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString());
+        Mockito.verify(documentCache, Mockito.never()).parse(Matchers.anyString());
+        assertEquals("The streamed response should have been parsed once", 1, cache.getMisses());
+        assertEquals("The second read should have used the document cache", 1, cache.getHits());
+    }
+
+    @Test
+    public void testJsonShouldBeEqualParsedFromStream() throws Exception {
+
+        Mockito.when(util.isParsedFromStream(Matchers.anyString(), Matchers.anyString())).thenReturn(true);
+        mockStream("{ \"a\": 1, \"b\": [ true ] }");
+
+        assertTrue(lib.jsonShouldBeEqual("http://example.com/from.json", "http://example.com/to.json"));
+
+        Mockito.verify(util, Mockito.never()).readSource(Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString());
+    }
+
+    @Test
+    public void testJsonShouldBeEqualExactMatchIsNotParsedFromStream() throws Exception {
+
+        Mockito.when(util.isParsedFromStream(Matchers.anyString(), Matchers.anyString())).thenReturn(true);
+        Mockito.when(util.readSource(Matchers.anyString(), eq("GET"), Matchers.<String> eq(null), Matchers.<String> eq(null))).thenReturn("{ \"a\": 1 }");
+
+        assertTrue(lib.jsonShouldBeEqual("http://example.com/from.json", "http://example.com/to.json", true));
+
+        Mockito.verify(util, Mockito.never()).streamSource(Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.any(SourceHandler.class));
+    }
+
+    @Test
+    public void testInvalidJsonParsedFromStream() throws Exception {
+
+        Mockito.when(util.isParsedFromStream(Matchers.anyString(), Matchers.anyString())).thenReturn(true);
+        mockStream("{ \"a\": [ 1, ");
+
+        try {
+            lib.jsonShouldBeEqual("http://example.com/from.json", "http://example.com/to.json");
+            fail("The JSON should not be valid");
+        } catch (JsonNotValidException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("is not valid"));
+        }
+    }
+
 }
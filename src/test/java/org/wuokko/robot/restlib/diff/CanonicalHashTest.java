@@ -0,0 +1,55 @@
+package org.wuokko.robot.restlib.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+import com.jayway.jsonpath.JsonPath;
+
+public class CanonicalHashTest {
+
+    private long hash(String json, boolean ignoreArrayOrder) {
+        return CanonicalHash.hash(JsonPath.parse(json).json(), ignoreArrayOrder);
+    }
+
+    @Test
+    public void testKeyOrder() {
+        assertEquals("The key order should not matter", hash("{ a: 1, b: { c: [ 1, 2 ] } }", false), hash("{ b: { c: [ 1, 2 ] }, a: 1 }", false));
+    }
+
+    @Test
+    public void testArrayOrder() {
+        assertNotEquals("The array order should matter", hash("[ 1, 2 ]", false), hash("[ 2, 1 ]", false));
+        assertEquals("The array order should not matter", hash("[ 1, [ 2, 3 ] ]", true), hash("[ [ 3, 2 ], 1 ]", true));
+        assertNotEquals("The duplicates should matter", hash("[ 1, 1, 2 ]", true), hash("[ 1, 2, 2 ]", true));
+    }
+
+    @Test
+    public void testNumbers() {
+        assertEquals("The number types should not matter", CanonicalHash.hash(1, false), CanonicalHash.hash(1L, false));
+        assertEquals("The integral doubles should equal integers", CanonicalHash.hash(1, false), CanonicalHash.hash(1.0, false));
+        assertNotEquals("Different numbers should differ", CanonicalHash.hash(1.5, false), CanonicalHash.hash(1, false));
+    }
+
+    @Test
+    public void testBigNumbers() {
+        assertEquals("A big integer should equal the long", CanonicalHash.hash(1L << 40, false), CanonicalHash.hash(BigInteger.ONE.shiftLeft(40), false));
+        assertEquals("The trailing zeros should not matter", CanonicalHash.hash(new BigDecimal("1.500"), false), CanonicalHash.hash(1.5, false));
+        assertEquals("The trailing zeros should not matter", CanonicalHash.hash(new BigDecimal("12345678901234567890.0"), false), CanonicalHash.hash(new BigInteger("12345678901234567890"), false));
+        assertEquals("Zero should equal zero", CanonicalHash.hash(new BigDecimal("0.000"), false), CanonicalHash.hash(0, false));
+        assertNotEquals("Big integers should be hashed exactly", CanonicalHash.hash(new BigInteger("12345678901234567890"), false), CanonicalHash.hash(new BigInteger("12345678901234567891"), false));
+        assertNotEquals("Decimals should be hashed exactly", CanonicalHash.hash(new BigDecimal("0.10000000000000000000001"), false), CanonicalHash.hash(0.1, false));
+    }
+
+    @Test
+    public void testTypes() {
+        assertNotEquals("String and number should differ", hash("[ '1' ]", false), hash("[ 1 ]", false));
+        assertNotEquals("Empty object and array should differ", hash("{}", false), hash("[]", false));
+        assertNotEquals("Null and false should differ", hash("[ null ]", false), hash("[ false ]", false));
+    }
+
+}
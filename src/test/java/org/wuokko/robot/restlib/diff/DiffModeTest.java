@@ -0,0 +1,31 @@
+package org.wuokko.robot.restlib.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DiffModeTest {
+
+    @Test
+    public void testParse() {
+
+        DiffMode mode = DiffMode.parse("IGNORE_ORDER, strict");
+
+        assertTrue("The order should be ignored", mode.isIgnoreArrayOrder());
+        assertTrue("The mode should be strict", mode.isStrict());
+        assertEquals("The mode should be shown as flags", "ignore_order,strict", mode.toString());
+
+        mode = DiffMode.parse("");
+
+        assertFalse("The order should not be ignored by default", mode.isIgnoreArrayOrder());
+        assertFalse("The mode should not be strict by default", mode.isStrict());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseUnknown() {
+        DiffMode.parse("ignore_order,unordered");
+    }
+
+}
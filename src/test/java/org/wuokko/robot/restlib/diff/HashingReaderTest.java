@@ -0,0 +1,62 @@
+package org.wuokko.robot.restlib.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import net.minidev.json.parser.JSONParser;
+
+import org.junit.Test;
+
+import com.jayway.jsonpath.JsonPath;
+
+public class HashingReaderTest {
+
+    private JSONParser parser = new JSONParser(JSONParser.MODE_PERMISSIVE);
+
+    private Object parse(String json) throws Exception {
+        return parser.parse(json, new HashingReader());
+    }
+
+    @Test
+    public void testHashedNodes() throws Exception {
+
+        Object json = parse("{ a: [ 1, { b: true } ], c: null }");
+
+        assertTrue("The object should be hashed", json instanceof HashedJSONObject);
+        assertTrue("The array should be hashed", ((Map<?, ?>) json).get("a") instanceof HashedJSONArray);
+        assertTrue("The nested object should be hashed", ((List<?>) ((Map<?, ?>) json).get("a")).get(1) instanceof HashedJSONObject);
+        assertEquals("The values should be parsed", Boolean.TRUE, JsonPath.read(json, "$.a[1].b"));
+    }
+
+    @Test
+    public void testSameHashAsComputed() throws Exception {
+
+        String json = "{ store: { book: [ { price: 8.95, title: 'a' }, { price: 12 } ], bicycle: { color: red } }, total: 2 }";
+
+        Object hashed = parse(json);
+        Object plain = JsonPath.parse(json).json();
+
+        assertEquals("The hash should equal the computed one", CanonicalHash.compute(plain, false), CanonicalHash.hash(hashed, false));
+        assertEquals("The unordered hash should equal the computed one", CanonicalHash.compute(plain, true), CanonicalHash.hash(hashed, true));
+    }
+
+    @Test
+    public void testArrayOrder() throws Exception {
+
+        HashedNode from = (HashedNode) parse("[ 1, [ 2, 3 ] ]");
+        HashedNode to = (HashedNode) parse("[ [ 3, 2 ], 1 ]");
+
+        assertNotEquals("The array order should matter", from.getHash(false), to.getHash(false));
+        assertEquals("The array order should not matter", from.getHash(true), to.getHash(true));
+    }
+
+    @Test
+    public void testScalar() throws Exception {
+        assertEquals("The scalar should be returned as such", "foo", parse("'foo'"));
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.wuokko.robot.restlib.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class LoadGeneratorTest {
+
+    private LoadSettings settings(long duration, double rate, int workers) {
+        Map<String, Object> overrides = new HashMap<String, Object>();
+        overrides.put(LoadSettings.DURATION, duration);
+        overrides.put(LoadSettings.RATE, rate);
+        overrides.put(LoadSettings.WORKERS, workers);
+        return new LoadSettings(null, overrides);
+    }
+
+    /**
+     * The first request stalls, the rest complete right away.
+     */
+    private LoadGenerator.Task stallFirst(final long stall) {
+        final AtomicInteger calls = new AtomicInteger();
+
+        return new LoadGenerator.Task() {
+
+            @Override
+            public void run() throws Exception {
+                if (calls.getAndIncrement() == 0) {
+                    Thread.sleep(stall);
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testTargetRate() throws Exception {
+
+        LoadResult result = new LoadGenerator().run(settings(1000, 100, 4), new LoadGenerator.Task() {
+
+            @Override
+            public void run() throws Exception {
+            }
+        });
+
+        assertEquals("All the requests due should have been sent", 100, result.getRequests());
+        assertEquals(0, result.getDropped());
+        assertEquals(0, result.getErrors());
+        assertTrue("The throughput should be near the rate: " + result.getThroughput(), result.getThroughput() > 80 && result.getThroughput() <= 101);
+    }
+
+    @Test
+    public void testLatencyMeasuredFromSchedule() throws Exception {
+
+        LoadResult result = new LoadGenerator().run(settings(1000, 20, 1), stallFirst(500));
+
+        // the requests due during the stall waited for the only worker
+        assertTrue("The delayed requests should be counted: " + result, result.getPercentile(75) >= 200);
+        assertTrue(result.toString(), result.getPercentile(100) >= 500);
+    }
+
+    @Test
+    public void testClosedLoop() throws Exception {
+
+        LoadResult result = new LoadGenerator().run(settings(1000, 0, 1), stallFirst(500));
+
+        assertTrue("The worker should send back to back: " + result, result.getRequests() > 100);
+        assertEquals(0, result.getDropped());
+        assertTrue("Only the stalled request should be slow: " + result, result.getPercentile(90) < 50);
+        assertTrue(result.toString(), result.getPercentile(100) >= 500);
+    }
+
+    @Test
+    public void testDropped() throws Exception {
+
+        LoadResult result = new LoadGenerator().run(settings(500, 100, 1), new LoadGenerator.Task() {
+
+            @Override
+            public void run() throws Exception {
+                Thread.sleep(50);
+            }
+        });
+
+        assertTrue("The requests that could not be sent should be dropped: " + result, result.getDropped() >= 30);
+        assertEquals(50, result.getRequests() + result.getDropped());
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        LoadResult result = new LoadGenerator().run(settings(200, 0, 2), new LoadGenerator.Task() {
+
+            @Override
+            public void run() throws Exception {
+                if (calls.getAndIncrement() % 2 == 0) {
+                    Thread.sleep(1);
+                    throw new IllegalStateException("failed");
+                }
+                Thread.sleep(1);
+            }
+        });
+
+        assertTrue(result.getErrors() > 0);
+        assertTrue("About half of the requests should fail: " + result.getErrorRate(), result.getErrorRate() > 30 && result.getErrorRate() < 70);
+        assertEquals("Only a few messages should be kept", 5, result.getErrorMessages().size());
+        assertEquals("failed", result.getErrorMessages().get(0));
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.wuokko.robot.restlib.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.Test;
+
+public class LoadSettingsTest {
+
+    private LoadResult result(long... latencies) {
+        return new LoadResult(latencies, 1, 0, 1000000000L, Collections.<String> emptyList());
+    }
+
+    @Test
+    public void testDefaults() {
+
+        LoadSettings settings = new LoadSettings(null, null);
+
+        assertEquals(10000, settings.getDuration());
+        assertEquals(0, settings.getRate(), 0);
+        assertEquals(10, settings.getWorkers());
+        assertNull(settings.getPath());
+        assertTrue(settings.check(result(1000000)).isEmpty());
+    }
+
+    @Test
+    public void testOverrides() {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty("load.duration", 2000);
+        config.setProperty("load.workers", 3);
+        config.setProperty("load.max.p95", 100);
+
+        Map<String, Object> overrides = new HashMap<String, Object>();
+        overrides.put("workers", "5");
+        overrides.put("path", "$.status");
+        overrides.put("max.p95", "2");
+
+        LoadSettings settings = new LoadSettings(config, overrides);
+
+        assertEquals(2000, settings.getDuration());
+        assertEquals(5, settings.getWorkers());
+        assertEquals("$.status", settings.getPath());
+
+        List<String> breaches = settings.check(result(1000000, 3000000));
+
+        assertEquals(Arrays.asList("p95 3.00 is above 2.00"), breaches);
+    }
+
+    @Test
+    public void testThresholds() {
+
+        Map<String, Object> overrides = new HashMap<String, Object>();
+        overrides.put("max.error.rate", 10);
+        overrides.put("min.throughput", 5);
+        overrides.put("max.p50", 5);
+
+        List<String> breaches = new LoadSettings(null, overrides).check(result(1000000, 2000000, 3000000, 4000000));
+
+        assertEquals(Arrays.asList("error.rate 25.00 is above 10.00", "throughput 4.00 is below 5.00"), breaches);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownSetting() {
+        new LoadSettings(null, Collections.<String, Object> singletonMap("max.p42", 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDuration() {
+        new LoadSettings(null, Collections.<String, Object> singletonMap("duration", 0));
+    }
+
+    @Test
+    public void testPercentiles() {
+
+        LoadResult result = result(1000000, 2000000, 3000000, 4000000, 5000000, 6000000, 7000000, 8000000, 9000000, 10000000);
+
+        assertEquals(1, result.getPercentile(0), 0.001);
+        assertEquals(5, result.getPercentile(50), 0.001);
+        assertEquals(10, result.getPercentile(95), 0.001);
+        assertEquals(10, result.getPercentile(100), 0.001);
+        assertEquals(5.5, result.getMean(), 0.001);
+        assertEquals(10, result.getThroughput(), 0.001);
+        assertEquals(10.0, result.toMap().get("error.rate"));
+    }
+
+}
@@ -0,0 +1,129 @@
+package org.wuokko.robot.restlib.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.minidev.json.JSONObject;
+import net.minidev.json.JSONValue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LatencyMetricsTest {
+
+    @Before
+    public void setUp() {
+        LatencyMetrics.reset();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> statistics(String key, Phase phase) {
+        return (Map<String, Object>) ((Map<String, Object>) LatencyMetrics.getStatistics().get(key)).get(phase.getName());
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        assertEquals("GET http://localhost:1080", LatencyMetrics.key("GET", new URI("http://localhost:1080/hello?id=1")));
+        assertEquals("POST https://example.com", LatencyMetrics.key("POST", new URI("https://example.com/login")));
+        assertEquals("GET file", LatencyMetrics.key("GET", new URI("file:///tmp/test.json")));
+        assertEquals("GET http://example.com", LatencyMetrics.keyOfSource("GET", "http://example.com/test.json"));
+        assertEquals(LatencyMetrics.INLINE, LatencyMetrics.keyOfSource("GET", "{ hello: 'world' }"));
+        assertEquals(LatencyMetrics.INLINE, LatencyMetrics.keyOfSource("GET", null));
+    }
+
+    @Test
+    public void testStatistics() {
+
+        for (int i = 1; i <= 100; i++) {
+            LatencyMetrics.record("GET http://localhost", Phase.TOTAL, i * 1000000L);
+        }
+
+        LatencyMetrics.record("GET http://localhost", Phase.LEASE, 500000L);
+
+        Map<String, Object> total = statistics("GET http://localhost", Phase.TOTAL);
+
+        assertEquals(100L, total.get("count"));
+        assertEquals(1.0, (Double) total.get("min"), 0.01);
+        assertEquals(50.5, (Double) total.get("mean"), 0.1);
+        assertEquals(95.0, (Double) total.get("p95"), 0.1);
+        assertEquals(100.0, (Double) total.get("max"), 0.1);
+
+        assertEquals("The phases should be in order", "[lease, total]", String.valueOf(((Map<?, ?>) LatencyMetrics.getStatistics().get("GET http://localhost")).keySet()));
+
+        LatencyMetrics.reset();
+
+        assertTrue(LatencyMetrics.getStatistics().isEmpty());
+    }
+
+    @Test
+    public void testGroups() {
+
+        LatencyMetrics.setGroup("login");
+        LatencyMetrics.recordTotal("POST http://localhost", 2000000L);
+        LatencyMetrics.setGroup(null);
+        LatencyMetrics.recordTotal("GET http://localhost", 4000000L);
+
+        assertEquals("GET http://localhost", LatencyMetrics.getLastKey());
+        assertEquals(4000000L, LatencyMetrics.getLastTotal());
+
+        assertEquals(1, LatencyMetrics.getTotals("login").getTotalCount());
+        assertEquals("The groups should not be counted twice", 2, LatencyMetrics.getTotals(null).getTotalCount());
+        assertEquals(1L, statistics("login", Phase.TOTAL).get("count"));
+
+        LatencyMetrics.reset();
+
+        assertEquals(-1, LatencyMetrics.getLastTotal());
+        assertNull(LatencyMetrics.getTotals("login"));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        LatencyMetrics.record("GET http://localhost", Phase.BODY, j * 1000L);
+                    }
+                }
+            });
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals("No values should be lost", 80000L, LatencyMetrics.getHistogram("GET http://localhost", Phase.BODY).getTotalCount());
+    }
+
+    @Test
+    public void testExport() {
+
+        LatencyMetrics.record("GET http://a.example.com", Phase.TOTAL, 2000000L);
+        LatencyMetrics.record("inline", Phase.PARSE, 1000000L);
+
+        String csv = LatencyMetrics.toCsv();
+
+        assertEquals("key,phase,count,min,mean,p50,p90,p95,p99,max\n"
+                + "GET http://a.example.com,total,1,2.000,2.000,2.000,2.000,2.000,2.000,2.000\n"
+                + "inline,parse,1,1.000,1.000,1.000,1.000,1.000,1.000,1.000\n", csv);
+
+        JSONObject json = (JSONObject) JSONValue.parse(LatencyMetrics.toJson());
+
+        assertEquals(1, ((Number) ((JSONObject) ((JSONObject) json.get("inline")).get("parse")).get("count")).intValue());
+    }
+
+}
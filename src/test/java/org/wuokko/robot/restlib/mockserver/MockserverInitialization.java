@@ -5,10 +5,20 @@ import static org.mockserver.model.HttpRequest.request;
 import static org.mockserver.model.HttpResponse.response;
 import static org.mockserver.model.StringBody.exact;
 
+import java.util.concurrent.TimeUnit;
+
 import org.mockserver.client.server.MockServerClient;
 import org.mockserver.initialize.ExpectationInitializer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.Header;
 
 public class MockserverInitialization implements ExpectationInitializer {
+	
+	public static final String CATALOG_ETAG = "\"catalog-v1\"";
+	
+	public static final String CATALOG_LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+	
+	public static final long SLOW_DELAY = 500;
 
 	@Override
 	public void initializeExpectations(MockServerClient mockServer) {
@@ -76,6 +86,70 @@ public class MockserverInitialization implements ExpectationInitializer {
                         .withBody("{ deleted: '1' }")
         );
 		
+		mockServer.when(
+                request()
+                        .withMethod("GET")
+                        .withPath("/catalog")
+                        .withHeader(new Header("If-None-Match", CATALOG_ETAG)),
+                unlimited()
+        )
+        .respond(
+                response()
+                        .withStatusCode(304)
+                        .withHeader(new Header("ETag", CATALOG_ETAG))
+        );
+		
+		mockServer.when(
+                request()
+                        .withMethod("GET")
+                        .withPath("/catalog"),
+                unlimited()
+        )
+        .respond(
+                response()
+                        .withStatusCode(200)
+                        .withHeader(new Header("ETag", CATALOG_ETAG))
+                        .withBody("{ items: [ { id: 1 }, { id: 2 } ] }")
+        );
+		
+		mockServer.when(
+                request()
+                        .withMethod("GET")
+                        .withPath("/catalog-modified")
+                        .withHeader(new Header("If-Modified-Since", CATALOG_LAST_MODIFIED)),
+                unlimited()
+        )
+        .respond(
+                response()
+                        .withStatusCode(304)
+        );
+		
+		mockServer.when(
+                request()
+                        .withMethod("GET")
+                        .withPath("/catalog-modified"),
+                unlimited()
+        )
+        .respond(
+                response()
+                        .withStatusCode(200)
+                        .withHeader(new Header("Last-Modified", CATALOG_LAST_MODIFIED))
+                        .withBody("{ items: [ { id: 3 } ] }")
+        );
+		
+		mockServer.when(
+                request()
+                        .withMethod("GET")
+                        .withPath("/slow"),
+                unlimited()
+        )
+        .respond(
+                response()
+                        .withStatusCode(200)
+                        .withDelay(new Delay(TimeUnit.MILLISECONDS, SLOW_DELAY))
+                        .withBody("{ message: 'slow' }")
+        );
+		
 	}
 
 }
@@ -0,0 +1,121 @@
+package org.wuokko.robot.restlib.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.robotframework.javalib.annotation.RobotKeyword;
+import org.robotframework.javalib.annotation.RobotKeywords;
+import org.wuokko.robot.restlib.JsonPathLibrary;
+import org.wuokko.robot.restlib.exception.JsonNotEqualException;
+
+public class RemoteLibraryTest {
+
+    @RobotKeywords
+    public static class TestKeywords {
+
+        @RobotKeyword
+        public String greet(String name) {
+            return greet(name, 1);
+        }
+
+        @RobotKeyword("Greets the name the given times.")
+        public String greet(String name, Integer times) {
+            System.out.println("*INFO* Greeting " + name);
+            StringBuilder greeting = new StringBuilder();
+            for (int i = 0; i < times; i++) {
+                greeting.append("Hello ").append(name).append('!');
+            }
+            return greeting.toString();
+        }
+
+        @RobotKeyword
+        public int countAll(String[] values) {
+            return values.length;
+        }
+
+        @RobotKeyword
+        public boolean isEnabled(boolean enabled, List<String> names) {
+            return enabled && names.contains("1");
+        }
+
+        @RobotKeyword
+        public void failWithName() throws JsonNotEqualException {
+            throw new JsonNotEqualException("The JSONs were not equal");
+        }
+
+        @RobotKeyword
+        public void failWithMessage() {
+            throw new RuntimeException("Plain failure");
+        }
+
+        public void notKeyword() {
+        }
+    }
+
+    private final RemoteLibrary library = new RemoteLibrary(new TestKeywords());
+
+    private Map<String, Object> run(String name, Object... args) {
+        return library.runKeyword(name, Arrays.asList(args));
+    }
+
+    @Test
+    public void testKeywordNames() {
+        assertEquals(Arrays.asList("Count All", "Fail With Message", "Fail With Name", "Greet", "Is Enabled"), library.getKeywordNames());
+    }
+
+    @Test
+    public void testKeywordArguments() {
+        assertEquals(Arrays.asList("arg1", "arg2="), library.getKeywordArguments("greet"));
+        assertEquals(Arrays.asList("*args"), library.getKeywordArguments("Count All"));
+        assertEquals("Greets the name the given times.", library.getKeywordDocumentation("GREET"));
+    }
+
+    @Test
+    public void testJsonPathLibraryKeywords() {
+        RemoteLibrary jsonPathLibrary = new RemoteLibrary(new JsonPathLibrary());
+
+        assertTrue(jsonPathLibrary.getKeywordNames().contains("Find Json Element"));
+        assertEquals(Arrays.asList("arg1", "arg2", "arg3=", "arg4=", "arg5="), jsonPathLibrary.getKeywordArguments("Find Json Element"));
+        assertEquals("bar", jsonPathLibrary.runKeyword("find_json_element", Arrays.<Object> asList("{\"foo\": \"bar\"}", "$.foo")).get("return"));
+    }
+
+    @Test
+    public void testRunOverloads() {
+        assertEquals("Hello Robot!", run("Greet", "Robot").get("return"));
+
+        Map<String, Object> result = run("greet", "Robot", "2");
+
+        assertEquals(RemoteLibrary.PASS, result.get("status"));
+        assertEquals("Hello Robot!Hello Robot!", result.get("return"));
+        assertEquals("*INFO* Greeting Robot\n", result.get("output").toString().replace("\r", ""));
+    }
+
+    @Test
+    public void testRunWithRestAndConversions() {
+        assertEquals(3, run("Count All", "a", "b", 1).get("return"));
+        assertEquals(0, run("Count All").get("return"));
+        assertEquals(2, run("Count All", Arrays.asList("a", "b")).get("return"));
+        assertEquals(true, run("Is Enabled", "True", Arrays.asList(1, 2)).get("return"));
+    }
+
+    @Test
+    public void testFailures() {
+        Map<String, Object> result = run("Fail With Name");
+
+        assertEquals(RemoteLibrary.FAIL, result.get("status"));
+        assertEquals("JsonNotEqualException: The JSONs were not equal", result.get("error"));
+        assertTrue(result.get("traceback").toString().contains("failWithName"));
+
+        assertEquals("Plain failure", run("Fail With Message").get("error"));
+        assertEquals("IllegalArgumentException: Keyword 'Greet' expected 1 to 2 arguments, got 3", run("Greet", "a", "b", "c").get("error"));
+        assertEquals("NumberFormatException: For input string: \"many\"", run("Greet", "a", "many").get("error"));
+        assertEquals("IllegalArgumentException: No keyword with name 'Missing' found", library.runKeyword("Missing", Collections.emptyList()).get("error"));
+    }
+
+}
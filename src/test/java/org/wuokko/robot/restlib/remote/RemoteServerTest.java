@@ -0,0 +1,147 @@
+package org.wuokko.robot.restlib.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wuokko.robot.restlib.JsonPathLibrary;
+
+public class RemoteServerTest {
+
+    private RemoteServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(RemoteServer.KEY_REMOTE_PORT, "0");
+        config.setProperty(RemoteServer.KEY_REMOTE_WORKERS, "4");
+
+        server = new RemoteServer(new JsonPathLibrary(), config);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    private String post(String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + "/RPC2").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "text/xml");
+
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(200, connection.getResponseCode());
+
+        try (InputStream in = connection.getInputStream()) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private Object call(String method, String... params) throws Exception {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?><methodCall><methodName>").append(method).append("</methodName><params>");
+
+        if (params.length > 0) {
+            xml.append("<param><value><string>").append(params[0]).append("</string></value></param>");
+        }
+
+        if (params.length > 1) {
+            xml.append("<param><value><array><data>");
+            for (int i = 1; i < params.length; i++) {
+                xml.append("<value><string>").append(params[i]).append("</string></value>");
+            }
+            xml.append("</data></array></value></param>");
+        }
+
+        return XmlRpcTest.response(post(xml.append("</params></methodCall>").toString()));
+    }
+
+    @Test
+    public void testKeywordNames() throws Exception {
+        List<?> names = (List<?>) call("get_keyword_names");
+
+        assertTrue(names.contains("Find Json Element"));
+        assertTrue(names.contains("Json Should Be Equal"));
+        assertEquals("arg1", ((List<?>) call("get_keyword_arguments", "Find Json Element")).get(0));
+    }
+
+    @Test
+    public void testRunKeywordConcurrently() throws Exception {
+        ExecutorService suites = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<Object>> results = new ArrayList<Future<Object>>();
+
+            for (int i = 0; i < 32; i++) {
+                final int id = i;
+
+                results.add(suites.submit(new Callable<Object>() {
+
+                    @Override
+                    public Object call() throws Exception {
+                        return RemoteServerTest.this.call("run_keyword", "Find Json Element", "{\"id\": " + id + "}", "$.id");
+                    }
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                Map<?, ?> result = (Map<?, ?>) results.get(i).get(1, TimeUnit.MINUTES);
+
+                assertEquals(RemoteLibrary.PASS, result.get("status"));
+                assertEquals(i, result.get("return"));
+            }
+        } finally {
+            suites.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailingKeyword() throws Exception {
+        Map<?, ?> result = (Map<?, ?>) call("run_keyword", "Json Should Be Equal", "{\"a\": 1}", "{\"a\": 2}");
+
+        assertEquals(RemoteLibrary.FAIL, result.get("status"));
+        assertTrue(result.get("error").toString().startsWith("JsonNotEqualException"));
+    }
+
+    @Test
+    public void testFaults() throws Exception {
+        assertTrue(post("<methodCall><methodName>foo</methodName></methodCall>").contains("Unknown method 'foo'"));
+        assertTrue(post("not xml").contains("<name>faultCode</name><value><int>-32700</int>"));
+    }
+
+    @Test
+    public void testStopRemoteServer() throws Exception {
+        assertEquals(true, call("stop_remote_server"));
+
+        for (int i = 0; i < 50 && server.isRunning(); i++) {
+            Thread.sleep(100);
+        }
+
+        assertFalse(server.isRunning());
+    }
+
+}
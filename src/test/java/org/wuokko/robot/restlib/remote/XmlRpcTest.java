@@ -0,0 +1,111 @@
+package org.wuokko.robot.restlib.remote;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.wuokko.robot.restlib.remote.XmlRpc.MethodCall;
+
+public class XmlRpcTest {
+
+    private static MethodCall call(String xml) throws IOException {
+        return XmlRpc.readCall(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Reads the value back from a response.
+     */
+    static Object response(String xml) throws Exception {
+        Element response = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))).getDocumentElement();
+
+        Element value = (Element) response.getElementsByTagName("value").item(0);
+
+        return XmlRpc.readValue(value);
+    }
+
+    @Test
+    public void testReadCall() throws IOException {
+        MethodCall call = call("<?xml version='1.0'?><methodCall><methodName>run_keyword</methodName><params>"
+                + "<param><value><string>Find Json Element</string></value></param>"
+                + "<param><value><array><data>"
+                + "<value>untyped</value><value><int>42</int></value><value><i4>-1</i4></value><value><boolean>1</boolean></value>"
+                + "<value><double>1.5</double></value><value><base64>aGk=</base64></value><value><i8>12345678901</i8></value>"
+                + "<value><struct><member><name>key</name><value><string>a &amp; b</string></value></member></struct></value>"
+                + "</data></array></value></param></params></methodCall>");
+
+        assertEquals("run_keyword", call.getName());
+        assertEquals("Find Json Element", call.getParams().get(0));
+
+        List<?> args = (List<?>) call.getParams().get(1);
+
+        assertEquals("untyped", args.get(0));
+        assertEquals(42, args.get(1));
+        assertEquals(-1, args.get(2));
+        assertEquals(true, args.get(3));
+        assertEquals(1.5, args.get(4));
+        assertArrayEquals("hi".getBytes(StandardCharsets.UTF_8), (byte[]) args.get(5));
+        assertEquals(12345678901L, args.get(6));
+        assertEquals("a & b", ((Map<?, ?>) args.get(7)).get("key"));
+    }
+
+    @Test
+    public void testReadCallWithoutParams() throws IOException {
+        MethodCall call = call("<methodCall><methodName>get_keyword_names</methodName></methodCall>");
+
+        assertEquals("get_keyword_names", call.getName());
+        assertTrue(call.getParams().isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadCallWithDoctype() throws IOException {
+        call("<?xml version='1.0'?><!DOCTYPE x [<!ENTITY e SYSTEM 'file:///etc/passwd'>]>"
+                + "<methodCall><methodName>&e;</methodName></methodCall>");
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadInvalidCall() throws IOException {
+        call("<methodResponse/>");
+    }
+
+    @Test
+    public void testWriteResponse() throws Exception {
+        Map<String, Object> struct = new LinkedHashMap<String, Object>();
+        struct.put("status", "PASS");
+        struct.put("return", Arrays.asList(1, 2L, 3000000000L, new BigDecimal("1.25"), null, "<a & b>\r\n", true));
+
+        Map<?, ?> read = (Map<?, ?>) response(XmlRpc.writeResponse(struct));
+
+        assertEquals("PASS", read.get("status"));
+        assertEquals(Arrays.<Object> asList(1, 2, "3000000000", 1.25, "", "<a & b>\r\n", true), read.get("return"));
+    }
+
+    @Test
+    public void testWriteStringWithControlCharacters() throws Exception {
+        String value = "bell \u0007";
+
+        assertArrayEquals(value.getBytes(StandardCharsets.UTF_8), (byte[]) response(XmlRpc.writeResponse(value)));
+    }
+
+    @Test
+    public void testWriteFault() throws Exception {
+        String fault = XmlRpc.writeFault(-32600, "Unknown method 'foo'");
+
+        assertTrue(fault.contains("<fault>"));
+        assertEquals("Unknown method 'foo'", ((Map<?, ?>) response(fault)).get("faultString"));
+    }
+
+}
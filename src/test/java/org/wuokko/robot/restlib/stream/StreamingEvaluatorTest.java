@@ -0,0 +1,190 @@
+package org.wuokko.robot.restlib.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.jayway.jsonpath.JsonPath;
+
+public class StreamingEvaluatorTest {
+
+    private static final String STORE = "{ store: { book: [ "
+            + "{ category: 'reference', author: 'Nigel Rees', title: 'Sayings of the Century', price: 8.95 }, "
+            + "{ category: 'fiction', author: 'Evelyn Waugh', title: 'Sword of Honour', price: 12.99 }, "
+            + "{ category: 'fiction', author: 'J. R. R. Tolkien', title: 'The Lord of the Rings', isbn: '0-395-19395-8', price: 22.99 } ], "
+            + "bicycle: { color: 'red', price: 19.95 } }, expensive: 10 }";
+
+    static Object parse(String json) {
+        return JsonPath.parse(json).json();
+    }
+
+    private StreamingResult evaluate(String json, String... paths) throws IOException {
+        return new StreamingEvaluator(Arrays.asList(paths)).evaluate(stream(json));
+    }
+
+    private InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDefinitePaths() throws IOException {
+
+        StreamingResult result = evaluate(STORE, "$.store.book[1].author", "$.store.bicycle", "$.expensive", "$.store.book[5]");
+
+        assertEquals("The author should be found", "Evelyn Waugh", result.getValue(0));
+        assertEquals("The object should be materialized", parse("{ color: 'red', price: 19.95 }"), result.getValue(1));
+        assertEquals("The number should be found", 10, result.getValue(2));
+        assertFalse("The missing index should not be found", result.isFound(3));
+        assertNull("The missing index should not have a value", result.getValue(3));
+    }
+
+    @Test
+    public void testSameAsJsonPath() throws IOException {
+
+        List<String> paths = Arrays.asList(
+                "$.store.book[*].author",
+                "$.store.*",
+                "$.store.book[?(@.price < 10)].title",
+                "$.store.book[?(@.isbn)].isbn",
+                "$.store.book[?(@.category == 'fiction')]",
+                "$.store.book[*]",
+                "$.store.book[2].price");
+
+        StreamingResult result = new StreamingEvaluator(paths).evaluate(stream(STORE));
+
+        for (int i = 0; i < paths.size(); i++) {
+            assertEquals("The result of " + paths.get(i) + " should be the same as with JsonPath", JsonPath.read(STORE, paths.get(i)), result.getValue(i));
+        }
+    }
+
+    @Test
+    public void testStopsEarly() throws IOException {
+
+        StringBuilder json = new StringBuilder("{ meta: { total: 100000 }, items: [");
+
+        for (int i = 0; i < 100000; i++) {
+            json.append(i > 0 ? "," : "").append("{ id: ").append(i).append(" }");
+        }
+
+        json.append("] }");
+
+        CountingInputStream stream = new CountingInputStream(json.toString());
+
+        StreamingResult result = new StreamingEvaluator(Arrays.asList("$.meta.total", "$.items[2].id")).evaluate(stream);
+
+        assertEquals("The total should be found", 100000, result.getValue(0));
+        assertEquals("The item should be found", 2, result.getValue(1));
+        assertTrue("The evaluation should have stopped early", result.isStoppedEarly());
+        assertTrue("Only the start of the stream should have been read", stream.read < json.length() / 10);
+    }
+
+    @Test
+    public void testReadsToEndForWildcard() throws IOException {
+
+        StreamingResult result = evaluate("{ a: { x: 1 }, b: [ 1, 2 ], c: { x: 2 } }", "$.*.x", "$.b[1]");
+
+        assertEquals("All the matches should be found", parse("[1, 2]"), result.getValue(0));
+        assertEquals("The element should be found", 2, result.getValue(1));
+        assertFalse("The evaluation should not stop early", result.isStoppedEarly());
+    }
+
+    @Test
+    public void testSkipsPartiallyReadChildren() throws IOException {
+
+        StreamingResult result = evaluate("[ { a: { b: 1, c: [ 1, 2, 3 ] }, d: 1 }, { a: { b: 2, c: [] }, d: 2 } ]", "$[*].d", "$[0].a.b");
+
+        assertEquals("The element after the skipped object should be found", parse("[1, 2]"), result.getValue(0));
+        assertEquals("The nested value should be found", 1, result.getValue(1));
+    }
+
+    @Test
+    public void testEmptyResult() throws IOException {
+
+        StreamingResult result = evaluate("{ items: [] }", "$.items[*].id");
+
+        assertTrue("The indefinite path should be found", result.isFound(0));
+        assertEquals("The result should be empty", parse("[]"), result.getValue(0));
+    }
+
+    @Test
+    public void testCount() throws IOException {
+
+        List<String> paths = Arrays.asList("$.store.book[*]", "$.store.book", "$.store.book[?(@.category == 'fiction')]", "$.store.bicycle", "$.store.book[0].isbn");
+
+        StreamingResult result = new StreamingEvaluator(paths).count(stream(STORE), 0);
+
+        assertEquals("The wildcard matches should be counted", 3, result.getElementCount(0).getCount());
+        assertEquals("The elements of the definite array should be counted", 3, result.getElementCount(1).getCount());
+        assertFalse("The definite array should not be a single element", result.getElementCount(1).isSingle());
+        assertEquals("The filtered matches should be counted", 2, result.getElementCount(2).getCount());
+        assertTrue("The definite object should be a single element", result.getElementCount(3).isSingle());
+        assertFalse("The missing path should not be found", result.getElementCount(4).isFound());
+        assertTrue("The result should be materialized only in the evaluation mode", result.getValues(0).isEmpty());
+    }
+
+    @Test
+    public void testCountStopsAtLimit() throws IOException {
+
+        StringBuilder json = new StringBuilder("{ items: [");
+
+        for (int i = 0; i < 100000; i++) {
+            json.append(i > 0 ? "," : "").append("{ id: ").append(i).append(", tags: [ 'a', 'b' ] }");
+        }
+
+        json.append("], total: 100000 }");
+
+        CountingInputStream stream = new CountingInputStream(json.toString());
+
+        ElementCount count = new StreamingEvaluator(StreamingPath.compile("$.items[*]")).count(stream, 11).getElementCount(0);
+
+        assertEquals("The count should stop at the limit", 11, count.getCount());
+        assertTrue("The count should be limited", count.isLimited());
+        assertEquals("The limited count should be shown as lower bound", "at least 11", count.toString());
+        assertTrue("Only the start of the stream should have been read", stream.read < json.length() / 10);
+
+        stream = new CountingInputStream(json.toString());
+
+        count = new StreamingEvaluator(StreamingPath.compile("$.items")).count(stream, 11).getElementCount(0);
+
+        assertEquals("The count of the definite array should stop at the limit", 11, count.getCount());
+        assertTrue("Only the start of the stream should have been read", stream.read < json.length() / 10);
+    }
+
+    @Test
+    public void testCharset() throws IOException {
+
+        byte[] latin = "{ items: [ { name: 'caf\u00e9' }, { name: 'th\u00e9' } ] }".getBytes(StandardCharsets.ISO_8859_1);
+
+        StreamingEvaluator evaluator = new StreamingEvaluator(Arrays.asList("$.items[1].name"));
+
+        assertEquals("The value should be decoded with the charset", "th\u00e9", evaluator.evaluate(new ByteArrayInputStream(latin), StandardCharsets.ISO_8859_1).getValue(0));
+        assertEquals("The count should be as expected", 1, evaluator.count(new ByteArrayInputStream(latin), StandardCharsets.ISO_8859_1, 0).getElementCount(0).getCount());
+    }
+
+    private static class CountingInputStream extends ByteArrayInputStream {
+
+        int read = 0;
+
+        CountingInputStream(String json) {
+            super(json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            int count = super.read(b, off, len);
+            read += Math.max(count, 0);
+            return count;
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package org.wuokko.robot.restlib.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.wuokko.robot.restlib.stream.StreamingPath.Type;
+
+import com.jayway.jsonpath.InvalidPathException;
+
+public class StreamingPathTest {
+
+    @Test
+    public void testCompileDefinite() {
+
+        StreamingPath path = StreamingPath.compile("$.store['book'][1].title");
+
+        assertTrue("The path should be definite", path.isDefinite());
+        assertEquals("The path should have four segments", 4, path.length());
+        assertEquals("The bracket property should be parsed", "book", path.segment(1).name);
+        assertEquals("The index should be parsed", Type.INDEX, path.segment(2).type);
+        assertEquals("The index should be parsed", 1, path.segment(2).index);
+    }
+
+    @Test
+    public void testCompileIndefinite() {
+
+        StreamingPath path = StreamingPath.compile("$.store.book[?(@.price < 10)].title");
+
+        assertFalse("The path should be indefinite", path.isDefinite());
+        assertEquals("The filter should be parsed", Type.FILTER, path.segment(2).type);
+        assertEquals("The filter operator should be parsed", "<", path.segment(2).operator);
+
+        assertFalse("The wildcard path should be indefinite", StreamingPath.compile("$.store.*").isDefinite());
+    }
+
+    @Test
+    public void testFilterAccept() {
+
+        StreamingPath.Segment cheap = StreamingPath.compile("$[?(@.price <= 8.95)]").segment(0);
+        StreamingPath.Segment named = StreamingPath.compile("$[?(@.author.name == 'Tolkien')]").segment(0);
+        StreamingPath.Segment exists = StreamingPath.compile("$[?(@.isbn)]").segment(0);
+
+        assertTrue("Equal price should be accepted", cheap.accept(StreamingEvaluatorTest.parse("{price: 8.95}")));
+        assertFalse("Higher price should not be accepted", cheap.accept(StreamingEvaluatorTest.parse("{price: 22}")));
+        assertTrue("Nested field should be compared", named.accept(StreamingEvaluatorTest.parse("{author: {name: 'Tolkien'}}")));
+        assertFalse("Missing field should not be accepted", exists.accept(StreamingEvaluatorTest.parse("{price: 1}")));
+    }
+
+    @Test
+    public void testUnsupported() {
+
+        assertTrue("Simple path should be supported", StreamingPath.isSupported("$.store.book[*].author"));
+        assertFalse("Deep scan should not be supported", StreamingPath.isSupported("$..author"));
+        assertFalse("Negative index should not be supported", StreamingPath.isSupported("$.book[-1]"));
+        assertFalse("Slice should not be supported", StreamingPath.isSupported("$.book[0:2]"));
+        assertFalse("Union should not be supported", StreamingPath.isSupported("$.book[0,1]"));
+        assertFalse("Functions should not be supported", StreamingPath.isSupported("$.book.length()"));
+        assertFalse("Complex filter should not be supported", StreamingPath.isSupported("$.book[?(@.a && @.b)]"));
+    }
+
+    @Test(expected = InvalidPathException.class)
+    public void testCompileInvalid() {
+        StreamingPath.compile("store.book");
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.Test;
+
+public class BatchRunnerTest {
+
+    private List<String> sources(int count) {
+        List<String> sources = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            sources.add("source-" + i);
+        }
+        return sources;
+    }
+
+    @Test
+    public void testConfiguration() {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(BatchRunner.KEY_BATCH_MAX_CONCURRENCY, 3);
+
+        assertEquals(3, new BatchRunner(config).getMaxConcurrency());
+        assertEquals(10, new BatchRunner(null).getMaxConcurrency());
+    }
+
+    @Test
+    public void testConcurrencyBounded() throws Exception {
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+
+        List<BatchResult> results = new BatchRunner(null).run(sources(12), 3, new BatchRunner.Check() {
+
+            @Override
+            public void check(String source) throws Exception {
+                int current = running.incrementAndGet();
+
+                synchronized (max) {
+                    max.set(Math.max(max.get(), current));
+                }
+
+                Thread.sleep(100);
+
+                running.decrementAndGet();
+            }
+        });
+
+        assertEquals(12, results.size());
+        assertEquals("At most 3 sources should have been checked at once", 3, max.get());
+
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals("The results should be in the order of the sources", "source-" + i, results.get(i).getSource());
+            assertTrue(results.get(i).isPassed());
+            assertTrue("The time should be measured", results.get(i).getTime() >= 90);
+        }
+    }
+
+    @Test
+    public void testFailuresReported() throws Exception {
+
+        List<BatchResult> results = new BatchRunner(null).run(sources(3), new BatchRunner.Check() {
+
+            @Override
+            public void check(String source) throws Exception {
+                if (source.equals("source-1")) {
+                    throw new IllegalStateException("broken");
+                }
+            }
+        });
+
+        assertTrue(results.get(0).isPassed());
+        assertFalse(results.get(1).isPassed());
+        assertEquals("broken", results.get(1).getMessage());
+        assertNull(results.get(2).getMessage());
+        assertEquals(BatchResult.FAIL, results.get(1).toMap().get("status"));
+
+        String report = BatchRunner.report(results);
+
+        assertTrue(report, report.startsWith("1 of 3 sources failed:\nFAIL source-1 ("));
+        assertTrue(report, report.contains("ms): broken\nPASS source-0 ("));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+
+        List<BatchResult> results = new BatchRunner(null).run(Arrays.<String> asList(), new BatchRunner.Check() {
+
+            @Override
+            public void check(String source) throws Exception {
+            }
+        });
+
+        assertTrue(results.isEmpty());
+    }
+
+}
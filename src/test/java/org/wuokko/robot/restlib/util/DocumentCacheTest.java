@@ -0,0 +1,119 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.jayway.jsonpath.DocumentContext;
+
+public class DocumentCacheTest {
+
+    @Test
+    public void testParseCached() {
+
+        DocumentCache cache = new DocumentCache(null);
+
+        DocumentContext first = cache.parse("{foo: bar}");
+        DocumentContext second = cache.parse(new String("{foo: bar}"));
+
+        assertSame("The document should have been cached", first, second);
+        assertEquals("The value should be as expected", "bar", second.read("$.foo"));
+
+        assertEquals("There should have been one miss", 1, cache.getMisses());
+        assertEquals("There should have been one hit", 1, cache.getHits());
+        assertEquals("There should be one document", 1, cache.size());
+    }
+
+    @Test
+    public void testParseBytes() {
+
+        DocumentCache cache = new DocumentCache(null);
+
+        DocumentContext first = cache.parse("{foo: 'caf\u00e9'}".getBytes(StandardCharsets.UTF_8), null);
+        DocumentContext second = cache.parse("{foo: 'caf\u00e9'}");
+
+        assertSame("The string should have the same key as its UTF-8 bytes", first, second);
+        assertEquals("The value should be as expected", "caf\u00e9", first.read("$.foo"));
+
+        DocumentContext latin = cache.parse("{foo: 'caf\u00e9'}".getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1);
+
+        assertNotSame("Other charsets should have their own keys", first, latin);
+        assertEquals("The bytes should be decoded with the charset", "caf\u00e9", latin.read("$.foo"));
+        assertSame("The bytes should be cached", latin, cache.parse("{foo: 'caf\u00e9'}".getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testParseDifferentContent() {
+
+        DocumentCache cache = new DocumentCache(null);
+
+        DocumentContext first = cache.parse("{foo: bar}");
+        DocumentContext second = cache.parse("{foo: xyz}");
+
+        assertNotSame("The documents should differ", first, second);
+        assertEquals("There should have been two misses", 2, cache.getMisses());
+        assertEquals("There should be two documents", 2, cache.size());
+    }
+
+    @Test
+    public void testEvictionBySize() {
+
+        PropertiesConfiguration mockConfiguration = mock(PropertiesConfiguration.class);
+
+        Mockito.when(mockConfiguration.containsKey(DocumentCache.KEY_DOCUMENT_CACHE_SIZE)).thenReturn(Boolean.TRUE);
+        Mockito.when(mockConfiguration.getInt(DocumentCache.KEY_DOCUMENT_CACHE_SIZE)).thenReturn(2);
+
+        DocumentCache cache = new DocumentCache(mockConfiguration);
+
+        DocumentContext first = cache.parse("{a: 1}");
+        cache.parse("{b: 2}");
+
+        // Touch the first one so the second is the least recently used
+        cache.parse("{a: 1}");
+        cache.parse("{c: 3}");
+
+        assertEquals("There should be two documents", 2, cache.size());
+        assertEquals("There should have been one eviction", 1, cache.getEvictions());
+        assertSame("The recently used document should have been kept", first, cache.parse("{a: 1}"));
+
+        cache.parse("{b: 2}");
+
+        assertEquals("The evicted document should have been parsed again", 4, cache.getMisses());
+    }
+
+    @Test
+    public void testEvictionByLength() {
+
+        PropertiesConfiguration mockConfiguration = mock(PropertiesConfiguration.class);
+
+        Mockito.when(mockConfiguration.containsKey(DocumentCache.KEY_DOCUMENT_CACHE_MAX_LENGTH)).thenReturn(Boolean.TRUE);
+        Mockito.when(mockConfiguration.getLong(DocumentCache.KEY_DOCUMENT_CACHE_MAX_LENGTH)).thenReturn(15L);
+
+        DocumentCache cache = new DocumentCache(mockConfiguration);
+
+        cache.parse("{foo: bar}");
+        cache.parse("{abc: xyz}");
+
+        assertEquals("Only one document should fit", 1, cache.size());
+
+        // Too large to be cached at all
+        cache.parse("{foo: bar, abc: xyz}");
+
+        assertEquals("The large document should not be cached", 1, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseNull() {
+
+        new DocumentCache(null).parse(null);
+
+    }
+
+}
@@ -0,0 +1,108 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FixtureCacheTest {
+
+    private File file;
+
+    private final AtomicInteger parsed = new AtomicInteger();
+
+    private final FixtureCache.Parser<String> parser = new FixtureCache.Parser<String>() {
+
+        @Override
+        public String parse(InputStream json) {
+            parsed.incrementAndGet();
+            try {
+                return IOUtils.toString(json, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        FixtureCache.clear();
+        file = File.createTempFile("fixture", ".json");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "{ \"version\": 1 }", StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() {
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(FixtureCache.KEY_FIXTURE_CACHE_SIZE, 10);
+        FixtureCache.configure(config);
+        FixtureCache.clear();
+    }
+
+    @Test
+    public void testUnchangedFileIsParsedOnce() throws Exception {
+
+        String first = FixtureCache.get(file, "text", parser);
+        String second = FixtureCache.get(file, "text", parser);
+
+        assertEquals("{ \"version\": 1 }", first);
+        assertSame(first, second);
+        assertEquals(1, parsed.get());
+        assertEquals(1, FixtureCache.size());
+    }
+
+    @Test
+    public void testKindsAreParsedSeparately() throws Exception {
+
+        FixtureCache.get(file, "text", parser);
+        FixtureCache.get(file, "other", parser);
+        FixtureCache.get(file, "other", parser);
+
+        assertEquals(2, parsed.get());
+        assertEquals(1, FixtureCache.size());
+    }
+
+    @Test
+    public void testChangedFileIsParsedAgain() throws Exception {
+
+        FixtureCache.get(file, "text", parser);
+
+        FileUtils.writeStringToFile(file, "{ \"version\": 22 }", StandardCharsets.UTF_8);
+
+        assertEquals("{ \"version\": 22 }", FixtureCache.get(file, "text", parser));
+
+        // same size, only the modification time tells the change
+        FileUtils.writeStringToFile(file, "{ \"version\": 33 }", StandardCharsets.UTF_8);
+        file.setLastModified(file.lastModified() + 2000);
+
+        assertEquals("{ \"version\": 33 }", FixtureCache.get(file, "text", parser));
+        assertEquals(3, parsed.get());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(FixtureCache.KEY_FIXTURE_CACHE_SIZE, 0);
+        FixtureCache.configure(config);
+
+        FixtureCache.get(file, "text", parser);
+        FixtureCache.get(file, "text", parser);
+
+        assertEquals(2, parsed.get());
+        assertEquals(0, FixtureCache.size());
+    }
+
+}
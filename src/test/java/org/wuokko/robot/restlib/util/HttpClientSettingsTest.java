@@ -0,0 +1,73 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.Test;
+
+public class HttpClientSettingsTest {
+
+    @Test
+    public void testDefaults() {
+
+        HttpClientSettings settings = new HttpClientSettings(null);
+
+        assertEquals("The default timeout should be used", HttpClientSettings.DEFAULT_CONNECTION_TIMEOUT, settings.getConnectTimeout());
+        assertEquals("The default max connections should be used", HttpClientSettings.DEFAULT_MAX_CONNECTIONS, settings.getMaxConnections());
+        assertEquals("The default max connections per route should be used", HttpClientSettings.DEFAULT_MAX_CONNECTIONS_PER_ROUTE, settings.getMaxConnectionsPerRoute());
+    }
+
+    @Test
+    public void testTimeouts() {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(RequestUtil.KEY_CONNECTION_TIMEOUT, 1000);
+        config.setProperty(HttpClientSettings.KEY_SOCKET_TIMEOUT, 3000);
+
+        HttpClientSettings settings = new HttpClientSettings(config);
+
+        assertEquals("The connection timeout should be used", 1000, settings.getConnectTimeout());
+        assertEquals("The socket timeout should override the connection timeout", 3000, settings.getSocketTimeout());
+        assertEquals("The connection timeout should be used", 1000, settings.getRequestTimeout());
+    }
+
+    @Test
+    public void testPoolSettings() {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(HttpClientSettings.KEY_MAX_CONNECTIONS, 10);
+        config.setProperty(HttpClientSettings.KEY_MAX_CONNECTIONS_PER_ROUTE, 5);
+        config.setProperty(HttpClientSettings.KEY_TCP_NODELAY, false);
+        config.setProperty(HttpClientSettings.KEY_KEEP_ALIVE, 1000);
+        config.setProperty(HttpClientSettings.KEY_IDLE_TIMEOUT, 0);
+
+        HttpClientSettings settings = new HttpClientSettings(config);
+
+        assertEquals("The max connections should be set", 10, settings.getMaxConnections());
+        assertEquals("The max connections per route should be set", 5, settings.getMaxConnectionsPerRoute());
+        assertFalse("The TCP_NODELAY should be set", settings.isTcpNoDelay());
+        assertEquals("The keep alive should be set", 1000, settings.getKeepAlive());
+        assertEquals("The idle timeout should be set", 0, settings.getIdleTimeout());
+
+        HttpClientPool pool = HttpClientPool.get(settings);
+
+        assertEquals("The pool should use the max connections", 10, pool.getStatistics().get("max"));
+        assertSame("The equal settings should share the pool", pool, HttpClientPool.get(new HttpClientSettings(config)));
+        assertNotSame("Different settings should have own pool", pool, HttpClientPool.get(new HttpClientSettings(null)));
+    }
+
+    @Test
+    public void testEquals() {
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(HttpClientSettings.KEY_MAX_CONNECTIONS, 10);
+
+        assertEquals("The default settings should be equal", new HttpClientSettings(null), new HttpClientSettings(new PropertiesConfiguration()));
+        assertEquals("The hash codes should be equal", new HttpClientSettings(null).hashCode(), new HttpClientSettings(new PropertiesConfiguration()).hashCode());
+        assertNotEquals("Different settings should not be equal", new HttpClientSettings(null), new HttpClientSettings(config));
+    }
+
+}
@@ -0,0 +1,142 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.minidev.json.JSONArray;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.Test;
+
+import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.JsonPath;
+
+public class JsonBackendTest {
+
+    private static final String JSON = "{\"name\": \"caf\u00e9\", \"count\": 3, \"big\": 12345678901, \"huge\": 123456789012345678901234,"
+            + " \"price\": 1.5, \"precise\": 1.2345678901234567890, \"items\": [1, true, null], \"z\": 1, \"a\": 2}";
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testForName() {
+        assertEquals(JsonBackend.JSON_SMART, JsonBackend.forName("json-smart"));
+        assertEquals(JsonBackend.JSON_SMART_STRICT, JsonBackend.forName("JSON-SMART-STRICT"));
+        assertEquals(JsonBackend.JACKSON, JsonBackend.forName(" jackson "));
+        assertEquals("jackson", JsonBackend.JACKSON.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForNameUnknown() {
+        JsonBackend.forName("gson");
+    }
+
+    @Test
+    public void testOf() {
+        PropertiesConfiguration config = new PropertiesConfiguration();
+
+        assertEquals(JsonBackend.JSON_SMART, JsonBackend.of(null));
+        assertEquals(JsonBackend.JSON_SMART, JsonBackend.of(config));
+
+        config.setProperty(JsonBackend.KEY_JSON_PROVIDER, "jackson");
+        assertEquals(JsonBackend.JACKSON, JsonBackend.of(config));
+    }
+
+    @Test
+    public void testSameValuesFromAllBackends() {
+        Map<?, ?> expected = (Map<?, ?>) JsonBackend.JSON_SMART.parse(stream(JSON));
+
+        for (JsonBackend backend : JsonBackend.values()) {
+            Map<?, ?> parsed = (Map<?, ?>) backend.parse(stream(JSON));
+
+            assertEquals(backend.toString(), expected, parsed);
+            assertEquals(backend.toString(), new ArrayList<Object>(expected.keySet()), new ArrayList<Object>(parsed.keySet()));
+
+            assertEquals("caf\u00e9", parsed.get("name"));
+            assertEquals(Integer.valueOf(3), parsed.get("count"));
+            assertEquals(Long.valueOf(12345678901L), parsed.get("big"));
+            assertEquals(new BigInteger("123456789012345678901234"), parsed.get("huge"));
+            assertEquals(Double.valueOf(1.5), parsed.get("price"));
+            assertEquals(new BigDecimal("1.2345678901234567890"), parsed.get("precise"));
+            assertTrue(parsed.get("items") instanceof JSONArray);
+        }
+    }
+
+    @Test
+    public void testConfigurationReadsWithProvider() {
+        for (JsonBackend backend : JsonBackend.values()) {
+            List<Object> items = JsonPath.using(backend.getConfiguration()).parse(JSON).read("$.items");
+
+            assertEquals(backend.toString(), 3, items.size());
+            assertEquals(backend.toString(), "caf\u00e9", JsonPath.parse(backend.parse(stream(JSON)), backend.getConfiguration()).read("$.name"));
+        }
+    }
+
+    @Test
+    public void testPermissiveJson() {
+        assertEquals("bar", ((Map<?, ?>) JsonBackend.JSON_SMART.parse(stream("{foo: 'bar'}"))).get("foo"));
+
+        for (JsonBackend backend : new JsonBackend[] { JsonBackend.JSON_SMART_STRICT, JsonBackend.JACKSON }) {
+            try {
+                backend.parse(stream("{foo: 'bar'}"));
+                fail(backend + " should not accept permissive JSON");
+            } catch (InvalidJsonException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test(expected = InvalidJsonException.class)
+    public void testJacksonTrailingData() {
+        JsonBackend.JACKSON.parse(stream("{\"foo\": 1} {"));
+    }
+
+    @Test(expected = InvalidJsonException.class)
+    public void testJacksonTruncated() {
+        JsonBackend.JACKSON.parse(stream("{\"foo\": [1, 2"));
+    }
+
+    @Test
+    public void testJacksonEmpty() {
+        assertNull(JsonBackend.JACKSON.parse(stream("  ")));
+    }
+
+    @Test
+    public void testJacksonProviderCharset() {
+        byte[] latin = "{\"name\": \"caf\u00e9\"}".getBytes(StandardCharsets.ISO_8859_1);
+
+        Map<?, ?> parsed = (Map<?, ?>) new JacksonStreamingProvider().parse(new ByteArrayInputStream(latin), "ISO-8859-1");
+
+        assertEquals("caf\u00e9", parsed.get("name"));
+    }
+
+    @Test
+    public void testParseWithCharset() {
+        byte[] latin = "{\"name\": \"caf\u00e9\"}".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] utf8 = "{\"name\": \"caf\u00e9\"}".getBytes(StandardCharsets.UTF_8);
+
+        for (JsonBackend backend : JsonBackend.values()) {
+            Map<?, ?> parsed = (Map<?, ?>) backend.parse(new ByteArrayInputStream(latin), StandardCharsets.ISO_8859_1);
+
+            assertEquals(backend + " should decode with the charset", "caf\u00e9", parsed.get("name"));
+
+            parsed = (Map<?, ?>) backend.parse(new ByteArrayInputStream(utf8), null);
+
+            assertEquals(backend + " should decode UTF-8 without a charset", "caf\u00e9", parsed.get("name"));
+        }
+    }
+
+}
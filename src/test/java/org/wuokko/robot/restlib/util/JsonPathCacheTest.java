@@ -0,0 +1,96 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.jayway.jsonpath.InvalidPathException;
+import com.jayway.jsonpath.JsonPath;
+
+public class JsonPathCacheTest {
+
+    @After
+    public void tearDown() {
+        JsonPathCache.clear();
+    }
+
+    @Test
+    public void testCompile() {
+
+        JsonPath first = JsonPathCache.compile("$.store.book[0].category");
+        JsonPath second = JsonPathCache.compile("$.store.book[0].category");
+
+        assertSame("The compiled path should have been cached", first, second);
+        assertEquals("The path should be as expected", "$['store']['book'][0]['category']", first.getPath());
+    }
+
+    @Test
+    public void testPrecompile() {
+
+        int compiled = JsonPathCache.precompile(Arrays.asList("$.foo", "", "$.bar[*]"));
+
+        assertEquals("Two paths should have been compiled", 2, compiled);
+        assertEquals("The cache should contain the paths", 2, JsonPathCache.size());
+    }
+
+    @Test
+    public void testPrecompileWithWhitespace() {
+
+        JsonPathCache.precompile(Arrays.asList("  $.foo  "));
+
+        assertEquals("The path should have been compiled", 1, JsonPathCache.size());
+
+        JsonPath precompiled = JsonPathCache.compile("  $.foo  ");
+
+        assertSame("The path should be found with the whitespace", precompiled, JsonPathCache.compile("$.foo"));
+        assertEquals("The same path should not be cached twice", 1, JsonPathCache.size());
+    }
+
+    @Test
+    public void testPrecompileInvalid() {
+
+        try {
+            JsonPathCache.precompile(Arrays.asList("$.foo[", "$.bar", "$.baz."));
+            fail("Should have thrown exception");
+        } catch (InvalidPathException e) {
+            assertTrue("The first invalid path should be reported", e.getMessage().contains("'$.foo['"));
+            assertTrue("The second invalid path should be reported", e.getMessage().contains("'$.baz.'"));
+        }
+
+        assertEquals("The valid path should have been compiled", 1, JsonPathCache.size());
+    }
+
+    @Test
+    public void testConfigure() {
+
+        PropertiesConfiguration mockConfiguration = mock(PropertiesConfiguration.class);
+
+        Mockito.when(mockConfiguration.containsKey(JsonPathCache.KEY_JSONPATH_CACHE_SIZE)).thenReturn(Boolean.TRUE);
+        Mockito.when(mockConfiguration.getInt(JsonPathCache.KEY_JSONPATH_CACHE_SIZE)).thenReturn(2);
+
+        int maxSize = JsonPathCache.maxSize();
+
+        try {
+            JsonPathCache.configure(mockConfiguration);
+
+            assertEquals("The size should have been set", 2, JsonPathCache.maxSize());
+
+            JsonPathCache.precompile(Arrays.asList("$.a", "$.b", "$.c"));
+
+            assertEquals("The cache should be bounded", 2, JsonPathCache.size());
+        } finally {
+            Mockito.when(mockConfiguration.getInt(JsonPathCache.KEY_JSONPATH_CACHE_SIZE)).thenReturn(maxSize);
+            JsonPathCache.configure(mockConfiguration);
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.jayway.jsonpath.DocumentContext;
+
+public class JsonValuesTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCopy() {
+
+        DocumentContext document = new DocumentCache(null).parse("{items: [{name: foo, tags: [a, b]}, 1, true, null]}");
+
+        Map<String, Object> root = document.read("$");
+        Map<String, Object> copy = JsonValues.copy(root);
+
+        assertEquals("The copy should be equal", root, copy);
+        assertNotSame("The map should have been copied", root, copy);
+
+        List<Object> items = (List<Object>) copy.get("items");
+        Map<String, Object> item = (Map<String, Object>) items.get(0);
+
+        items.remove(3);
+        item.put("name", "bar");
+        ((List<Object>) item.get("tags")).add("c");
+
+        assertEquals("The document should not have changed", 4, document.<List<Object>> read("$.items").size());
+        assertEquals("The document should not have changed", "foo", document.read("$.items[0].name"));
+        assertEquals("The document should not have changed", Arrays.asList("a", "b"), document.read("$.items[0].tags"));
+    }
+
+    @Test
+    public void testCopyScalars() {
+
+        String value = "foo";
+
+        assertSame("Strings should not be copied", value, JsonValues.copy(value));
+        assertEquals("Numbers should be kept", 5, (int) JsonValues.copy(5));
+        assertNull("Null should be kept", JsonValues.copy(null));
+    }
+
+    @Test
+    public void testToJson() {
+
+        Map<String, Object> value = new LinkedHashMap<String, Object>();
+        value.put("price", new BigDecimal("0.10000000000000000000001"));
+        value.put("tags", Arrays.asList("a\"b", true, null, 1));
+
+        assertEquals("The value should be written as JSON", "{\"price\":0.10000000000000000000001,\"tags\":[\"a\\\"b\",true,null,1]}", JsonValues.toJson(value));
+        assertEquals("The writing should stop after the length", "{\"price\":0.10000000000000000000001}", JsonValues.toJson(value, 10));
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+public class MappedFileTest {
+
+    private File write(byte[] content) throws IOException {
+        File file = File.createTempFile("mapped", ".json");
+        file.deleteOnExit();
+        FileUtils.writeByteArrayToFile(file, content);
+        return file;
+    }
+
+    @Test
+    public void testReadSmallFile() throws Exception {
+        File file = write("{ \"name\": \"\u00c4l\u00e4\" }".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("{ \"name\": \"\u00c4l\u00e4\" }", MappedFile.read(file));
+    }
+
+    @Test
+    public void testReadMappedFile() throws Exception {
+        String json = "[\"" + StringUtils.repeat("\u00f6", MappedFile.MAP_THRESHOLD) + "\"]";
+
+        File file = write(json.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(json, MappedFile.read(file));
+
+        try (InputStream stream = MappedFile.open(file)) {
+            assertEquals(json, IOUtils.toString(stream, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testByteOrderMarkIsSkipped() throws Exception {
+        File file = write(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF, '{', '}' });
+
+        assertEquals("{}", MappedFile.read(file));
+
+        try (InputStream stream = MappedFile.open(file)) {
+            assertEquals('{', stream.read());
+            assertEquals(1, stream.available());
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        File file = write(new byte[0]);
+
+        assertEquals("", MappedFile.read(file));
+
+        try (InputStream stream = MappedFile.open(file)) {
+            assertEquals(-1, stream.read());
+        }
+    }
+
+    @Test(expected = CharacterCodingException.class)
+    public void testInvalidUtf8() throws Exception {
+        MappedFile.read(write(new byte[] { '"', (byte) 0xC3, '"' }));
+    }
+
+}
@@ -0,0 +1,193 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wuokko.robot.restlib.util.PersistentResponseCache.Mode;
+
+public class PersistentResponseCacheTest {
+
+    private static final RequestKey KEY_FOO = new RequestKey("GET", URI.create("http://example.com/foo"), null, null);
+
+    private static final RequestKey KEY_BAR = new RequestKey("POST", URI.create("http://example.com/bar"), "{id: 1}", "application/json");
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("response-cache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(directory);
+    }
+
+    private PersistentResponseCache cache(Mode mode, String... keysAndValues) {
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(PersistentResponseCache.KEY_DISK_MODE, mode.toString());
+        config.setProperty(PersistentResponseCache.KEY_DISK_DIR, directory.getAbsolutePath());
+
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            config.setProperty(keysAndValues[i], keysAndValues[i + 1]);
+        }
+
+        return new PersistentResponseCache(config);
+    }
+
+    @Test
+    public void testModes() {
+        assertEquals(Mode.OFF, new PersistentResponseCache(null).getMode());
+        assertEquals(Mode.READ_THROUGH, Mode.forName(" Read-Through"));
+        assertEquals(Mode.REPLAY_ONLY, Mode.forName("replay-only"));
+        assertFalse("Nothing should be persistent when off", cache(Mode.OFF).isPersistent(KEY_FOO));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMode() {
+        Mode.forName("write-only");
+    }
+
+    @Test
+    public void testStoreAndReadBetweenRuns() {
+
+        String body = "{\"items\": [" + StringUtils.repeat("{\"id\": 1, \"name\": \"item\"}", ", ", 1000) + "]}";
+
+        cache(Mode.READ_THROUGH).put(KEY_FOO, new CachedResponse(body, "\"v1\"", "Mon, 01 Jan 2018 00:00:00 GMT"));
+
+        PersistentResponseCache cache = cache(Mode.READ_THROUGH);
+
+        CachedResponse read = cache.get(KEY_FOO);
+
+        assertEquals("The body should be read back", body, read.getBody());
+        assertEquals("The ETag should be read back", "\"v1\"", read.getEtag());
+        assertEquals("The Last-Modified should be read back", "Mon, 01 Jan 2018 00:00:00 GMT", read.getLastModified());
+        assertEquals("The stored time should be the time of the file", cache.file(KEY_FOO).lastModified(), read.getStored());
+        assertTrue("The body should be compressed", cache.file(KEY_FOO).length() < body.length() / 10);
+        assertNull("Other requests should not be found", cache.get(KEY_BAR));
+        assertEquals(1L, cache.getStatistics().get("disk.hits"));
+        assertEquals(1L, cache.getStatistics().get("disk.misses"));
+    }
+
+    @Test
+    public void testMappedResponse() {
+
+        // Random text does not compress below the size that is memory mapped
+        Random random = new Random(42);
+        StringBuilder body = new StringBuilder();
+
+        while (body.length() < 4 * MappedFile.MAP_THRESHOLD) {
+            body.append(Long.toString(random.nextLong(), 36)).append('\u00e4');
+        }
+
+        PersistentResponseCache cache = cache(Mode.READ_THROUGH);
+
+        cache.put(KEY_BAR, new CachedResponse(body.toString()));
+
+        assertTrue("The file should be memory mapped", cache.file(KEY_BAR).length() >= MappedFile.MAP_THRESHOLD);
+        assertEquals("The body should be read back", body.toString(), cache.get(KEY_BAR).getBody());
+        assertNull("A response without validators should have none", cache.get(KEY_BAR).getEtag());
+    }
+
+    @Test
+    public void testOnlyHttpIsStored() {
+
+        PersistentResponseCache cache = cache(Mode.READ_THROUGH);
+
+        RequestKey file = new RequestKey("GET", new File("test.json").toURI(), null, null);
+
+        cache.put(file, new CachedResponse("{}"));
+
+        assertFalse("File sources should not be persistent", cache.isPersistent(file));
+        assertEquals("Nothing should be stored", 0, directory.list().length);
+    }
+
+    @Test
+    public void testReplayOnlyDoesNotWrite() {
+
+        cache(Mode.READ_THROUGH).put(KEY_FOO, new CachedResponse("recorded"));
+
+        PersistentResponseCache replay = cache(Mode.REPLAY_ONLY, PersistentResponseCache.KEY_DISK_TTL, "1");
+
+        replay.put(KEY_BAR, new CachedResponse("new"));
+        replay.put(KEY_FOO, new CachedResponse("changed"));
+
+        assertTrue("The stored response should be replayed after the TTL", replay.file(KEY_FOO).setLastModified(System.currentTimeMillis() - 60000));
+        assertEquals("The recorded response should be kept", "recorded", replay.get(KEY_FOO).getBody());
+        assertNull("The new response should not be stored", replay.get(KEY_BAR));
+    }
+
+    @Test
+    public void testExpiration() {
+
+        PersistentResponseCache cache = cache(Mode.READ_THROUGH, PersistentResponseCache.KEY_DISK_TTL, "10000");
+
+        cache.put(KEY_FOO, new CachedResponse("foo"));
+
+        assertEquals("The response should be fresh", "foo", cache.get(KEY_FOO).getBody());
+
+        cache.file(KEY_FOO).setLastModified(System.currentTimeMillis() - 60000);
+
+        assertNull("The response should have expired", cache.get(KEY_FOO));
+
+        cache.refresh(KEY_FOO);
+
+        assertEquals("The refreshed response should be fresh again", "foo", cache.get(KEY_FOO).getBody());
+    }
+
+    @Test
+    public void testEvictionBySize() throws IOException {
+
+        PersistentResponseCache cache = cache(Mode.READ_THROUGH);
+
+        cache.put(KEY_FOO, new CachedResponse("foo"));
+        cache.put(KEY_BAR, new CachedResponse("bar"));
+
+        cache.file(KEY_FOO).setLastModified(System.currentTimeMillis() - 60000);
+
+        // Allows the files of bar and baz, which is as large as foo
+        long maxBytes = cache.file(KEY_BAR).length() + 2 * cache.file(KEY_FOO).length() - 1;
+
+        cache = cache(Mode.READ_THROUGH, PersistentResponseCache.KEY_DISK_MAX_BYTES, String.valueOf(maxBytes));
+
+        RequestKey baz = new RequestKey("GET", URI.create("http://example.com/baz"), null, null);
+
+        cache.put(baz, new CachedResponse("baz"));
+
+        assertNull("The oldest response should have been evicted", cache.get(KEY_FOO));
+        assertEquals("bar", cache.get(KEY_BAR).getBody());
+        assertEquals("baz", cache.get(baz).getBody());
+        assertEquals(1L, cache.getStatistics().get("disk.evictions"));
+        assertEquals(2, directory.list().length);
+    }
+
+    @Test
+    public void testInvalidFileIsMiss() throws IOException {
+
+        PersistentResponseCache cache = cache(Mode.READ_THROUGH);
+
+        FileUtils.writeStringToFile(cache.file(KEY_FOO), "not a cached response", StandardCharsets.UTF_8);
+
+        assertNull("An invalid file should be a miss", cache.get(KEY_FOO));
+
+        cache.put(KEY_FOO, new CachedResponse("foo"));
+
+        assertEquals("The invalid file should be replaced", "foo", cache.get(KEY_FOO).getBody());
+    }
+
+}
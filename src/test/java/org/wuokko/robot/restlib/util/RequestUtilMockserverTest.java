@@ -0,0 +1,402 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.HdrHistogram.Histogram;
+import org.apache.http.client.HttpResponseException;
+import org.junit.Before;
+import org.junit.Test;
+import org.wuokko.robot.restlib.exception.SourceReadException;
+import org.wuokko.robot.restlib.metrics.LatencyMetrics;
+import org.wuokko.robot.restlib.metrics.Phase;
+import org.wuokko.robot.restlib.mockserver.MockserverInitialization;
+
+/**
+ * Runs the requests against the MockServer started by the build, see
+ * MockserverInitialization for the expectations.
+ */
+public class RequestUtilMockserverTest {
+
+    private RequestUtil util;
+
+    @Before
+    public void setUp() {
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(RequestUtil.KEY_USE_URI_CACHE, true);
+
+        util = new RequestUtil(config);
+    }
+
+    @Test
+    public void testRevalidateETag() {
+
+        String first = util.readSource("http://localhost:1080/catalog");
+        String second = util.readSource("http://localhost:1080/catalog");
+
+        assertEquals("The content should be as expected", "{ items: [ { id: 1 }, { id: 2 } ] }", first);
+        assertEquals("The cached content should be used on 304", first, second);
+
+        Map<String, Object> statistics = util.getCacheStatistics();
+
+        assertEquals("The response should have been revalidated", 1L, statistics.get("revalidations"));
+        assertEquals("The cached response should have been found", 1L, statistics.get("hits"));
+    }
+
+    @Test
+    public void testRevalidateLastModified() {
+
+        String first = util.readSource("http://localhost:1080/catalog-modified");
+        String second = util.readSource("http://localhost:1080/catalog-modified");
+
+        assertEquals("The content should be as expected", "{ items: [ { id: 3 } ] }", first);
+        assertEquals("The cached content should be used on 304", first, second);
+
+        assertEquals("The response should have been revalidated", 1L, util.getCacheStatistics().get("revalidations"));
+    }
+
+    @Test
+    public void testNoValidators() {
+
+        util.readSource("http://localhost:1080/hello");
+        String second = util.readSource("http://localhost:1080/hello");
+
+        assertEquals("The content should be as expected", "{ message: 'hello world' }", second);
+
+        assertEquals("The response without validators should not be revalidated", 0L, util.getCacheStatistics().get("revalidations"));
+    }
+
+    @Test
+    public void testStreamSource() throws IOException {
+
+        String content = util.streamSource("http://localhost:1080/catalog", "GET", null, null, new SourceHandler<String>() {
+
+            @Override
+            public String handle(InputStream stream, Charset charset) throws IOException {
+                return IOUtils.toString(stream, "UTF-8");
+            }
+        });
+
+        assertEquals("The content should be streamed", "{ items: [ { id: 1 }, { id: 2 } ] }", content);
+        assertEquals("The streamed response should not be cached", 0, util.getCacheStatistics().get("size"));
+    }
+
+    @Test
+    public void testStreamSourceLatencyPhases() throws Exception {
+
+        LatencyMetrics.reset();
+
+        final long handling = 1000;
+
+        util.streamSource("http://localhost:1080/catalog", "GET", null, null, new SourceHandler<String>() {
+
+            @Override
+            public String handle(InputStream stream, Charset charset) throws IOException {
+                String content = IOUtils.toString(stream, "UTF-8");
+
+                try {
+                    Thread.sleep(handling);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+
+                return content;
+            }
+        });
+
+        Histogram body = LatencyMetrics.getHistogram("GET http://localhost:1080", Phase.BODY);
+        Histogram total = LatencyMetrics.getHistogram("GET http://localhost:1080", Phase.TOTAL);
+
+        assertTrue("The body should be recorded", body.getTotalCount() >= 1);
+        assertTrue("The body should not include the handler", body.getMaxValue() < handling * 1000);
+        assertTrue("The total should not include the handler", total.getMaxValue() < handling * 1000);
+    }
+
+    @Test
+    public void testStreamSourceStopEarly() throws IOException {
+
+        Integer first = util.streamSource("http://localhost:1080/catalog", "GET", null, null, new SourceHandler<Integer>() {
+
+            @Override
+            public Integer handle(InputStream stream, Charset charset) throws IOException {
+                return stream.read();
+            }
+        });
+
+        assertEquals("The first byte should be read", Integer.valueOf('{'), first);
+        assertEquals("The connection should still work after the abort", "{ message: 'hello world' }", util.readSource("http://localhost:1080/hello"));
+    }
+
+    @Test
+    public void testPoolStatistics() {
+
+        util.readSource("http://localhost:1080/hello");
+        util.readSource("http://localhost:1080/hello");
+
+        Map<String, Object> statistics = util.getPoolStatistics();
+
+        assertEquals("The connections should have been released", 0, statistics.get("leased"));
+        assertEquals("The default max connections should be used", 200, statistics.get("max"));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> route = (Map<String, Object>) ((Map<String, Object>) statistics.get("routes")).get("http://localhost:1080");
+
+        assertEquals("The connection should have been kept for reuse", 1, route.get("available"));
+    }
+
+    @Test
+    public void testPoolShared() {
+        assertSame("The libraries with equal settings should share the pool", util.clientPool, new RequestUtil(new PropertiesConfiguration()).clientPool);
+    }
+
+    @Test
+    public void testSendRequest() throws Exception {
+
+        assertEquals("{ message: 'hello world' }", util.sendRequest(new URI("http://localhost:1080/hello"), "GET", null, null));
+        assertEquals("The URI cache should not be used", 0, util.getCacheStatistics().get("size"));
+
+        try {
+            util.sendRequest(new URI("http://localhost:1080/not-found"), "GET", null, null);
+            fail("Should have thrown exception");
+        } catch (HttpResponseException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLatencyPhases() throws Exception {
+
+        LatencyMetrics.reset();
+
+        util.sendRequest(new URI("http://localhost:1080/login"), "POST", "{username: 'foo', password: 'bar'}", null);
+        util.sendRequest(new URI("http://localhost:1080/login"), "POST", "{username: 'foo', password: 'bar'}", null);
+
+        Map<String, Object> phases = (Map<String, Object>) LatencyMetrics.getStatistics().get("POST http://localhost:1080");
+
+        for (Phase phase : Arrays.asList(Phase.LEASE, Phase.FIRST_BYTE, Phase.BODY, Phase.TOTAL)) {
+            assertEquals("The phase " + phase + " should be recorded for each request", 2L, ((Map<String, Object>) phases.get(phase.getName())).get("count"));
+        }
+
+        Histogram total = LatencyMetrics.getHistogram("POST http://localhost:1080", Phase.TOTAL);
+        Histogram firstByte = LatencyMetrics.getHistogram("POST http://localhost:1080", Phase.FIRST_BYTE);
+
+        assertTrue("The total should cover the phases", total.getMaxValue() >= firstByte.getMinValue());
+    }
+
+    @Test
+    public void testLatencyOfStartedRequests() throws Exception {
+
+        LatencyMetrics.reset();
+
+        util.waitForResponses(Arrays.asList(util.startRequest("http://localhost:1080/slow", "GET", null, null)), 0);
+
+        Histogram total = LatencyMetrics.getHistogram("GET http://localhost:1080", Phase.TOTAL);
+
+        // requests of the other tests may still be completing
+        assertTrue(total.getTotalCount() >= 1);
+        assertTrue("The delay should be measured", total.getMaxValue() >= MockserverInitialization.SLOW_DELAY * 1000);
+    }
+
+    @Test
+    public void testStartRequests() throws Exception {
+
+        List<String> handles = new ArrayList<String>();
+
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < 5; i++) {
+            handles.add(util.startRequest("http://localhost:1080/slow", "GET", null, null));
+        }
+
+        handles.add(util.startRequest("{ inline: true }", "GET", null, null));
+
+        List<String> responses = util.waitForResponses(handles, 0);
+
+        long time = System.currentTimeMillis() - start;
+
+        assertEquals("All the responses should be returned", 6, responses.size());
+        assertEquals("The response should be read", "{ message: 'slow' }", responses.get(0));
+        assertEquals("The inline JSON should be returned", "{ inline: true }", responses.get(5));
+        assertTrue("The requests should have run concurrently in " + time + " ms", time < 4 * MockserverInitialization.SLOW_DELAY);
+        assertEquals("The handles should have been released", 0, util.getPendingRequestCount());
+    }
+
+    @Test
+    public void testStartRequestPost() throws Exception {
+
+        String handle = util.startRequest("http://localhost:1080/login", "POST", "{username: 'foo', password: 'bar'}", null);
+
+        assertEquals("The body should be sent", "{ message: 'Welcome', status: 'success' }", util.waitForResponses(Arrays.asList(handle), 0).get(0));
+    }
+
+    @Test
+    public void testWaitForResponsesFailures() throws Exception {
+
+        // connect first, so the timeout only has to cover the slow response
+        util.waitForResponses(Arrays.asList(util.startRequest("http://localhost:1080/hello", "GET", null, null)), 0);
+
+        String ok = util.startRequest("http://localhost:1080/hello", "GET", null, null);
+        String missing = util.startRequest("http://localhost:1080/missing", "GET", null, null);
+        String slow = util.startRequest("http://localhost:1080/slow", "GET", null, null);
+
+        try {
+            util.waitForResponses(Arrays.asList(ok, missing, slow), MockserverInitialization.SLOW_DELAY - 100);
+            fail("Should have thrown exception");
+        } catch (SourceReadException e) {
+            assertFalse("The successful request should not be named: " + e.getMessage(), e.getMessage().contains("'" + ok + "'"));
+            assertTrue("The missing request should be named: " + e.getMessage(), e.getMessage().contains("'" + missing + "' (http://localhost:1080/missing)"));
+            assertTrue("The slow request should be named: " + e.getMessage(), e.getMessage().contains("'" + slow + "' (http://localhost:1080/slow) timed out"));
+        }
+
+        assertEquals("The handles should have been released", 0, util.getPendingRequestCount());
+    }
+
+    @Test
+    public void testWaitForResponsesSharedTimeout() throws Exception {
+
+        // connect first, so the timeout only has to cover the slow responses
+        util.waitForResponses(Arrays.asList(util.startRequest("http://localhost:1080/hello", "GET", null, null)), 0);
+
+        String first = util.startRequest("http://localhost:1080/slow", "GET", null, null);
+        String second = util.startRequest("http://localhost:1080/slow", "GET", null, null);
+
+        long start = System.currentTimeMillis();
+
+        try {
+            util.waitForResponses(Arrays.asList(first, second), MockserverInitialization.SLOW_DELAY - 200);
+            fail("Should have thrown exception");
+        } catch (SourceReadException e) {
+            assertTrue("The first request should time out: " + e.getMessage(), e.getMessage().contains("'" + first + "' (http://localhost:1080/slow) timed out"));
+            assertTrue("The second request should time out when the first used the timeout: " + e.getMessage(), e.getMessage().contains("'" + second + "' (http://localhost:1080/slow) timed out"));
+        }
+
+        long time = System.currentTimeMillis() - start;
+
+        assertTrue("The second request should not have been waited for, took " + time + " ms", time < MockserverInitialization.SLOW_DELAY - 50);
+        assertEquals("The handles should have been released", 0, util.getPendingRequestCount());
+    }
+
+    @Test
+    public void testDiscardPendingResponses() throws Exception {
+
+        String slow = util.startRequest("http://localhost:1080/slow", "GET", null, null);
+        util.startRequest("{ inline: true }", "GET", null, null);
+
+        assertEquals("The requests should be pending", 2, util.getPendingRequestCount());
+        assertEquals("The requests should have been discarded", 2, util.discardPendingResponses());
+        assertEquals("The handles should have been released", 0, util.getPendingRequestCount());
+
+        try {
+            util.waitForResponses(Arrays.asList(slow), 0);
+            fail("Should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue("The handle should be named: " + e.getMessage(), e.getMessage().contains("'" + slow + "'"));
+        }
+
+        assertEquals("Nothing should be left to discard", 0, util.discardPendingResponses());
+    }
+
+    @Test
+    public void testMaxPendingRequests() throws Exception {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(RequestUtil.KEY_USE_URI_CACHE, false);
+        config.setProperty(RequestUtil.KEY_REQUEST_MAX_PENDING, 2);
+
+        RequestUtil bounded = new RequestUtil(config);
+
+        String first = bounded.startRequest("{ id: 1 }", "GET", null, null);
+        String second = bounded.startRequest("{ id: 2 }", "GET", null, null);
+        String third = bounded.startRequest("{ id: 3 }", "GET", null, null);
+
+        assertEquals("Only the newest requests should be kept", 2, bounded.getPendingRequestCount());
+        assertEquals("The kept requests should be returned", Arrays.asList("{ id: 2 }", "{ id: 3 }"), bounded.waitForResponses(Arrays.asList(second, third), 0));
+
+        try {
+            bounded.waitForResponses(Arrays.asList(first), 0);
+            fail("Should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue("The oldest request should have been discarded: " + e.getMessage(), e.getMessage().contains("discarded"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWaitForUnknownHandle() throws Exception {
+        util.waitForResponses(Arrays.asList("request-0"), 0);
+    }
+
+    private static RequestUtil persistent(File directory, PersistentResponseCache.Mode mode) {
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(RequestUtil.KEY_USE_URI_CACHE, false);
+        config.setProperty(PersistentResponseCache.KEY_DISK_MODE, mode.toString());
+        config.setProperty(PersistentResponseCache.KEY_DISK_DIR, directory.getAbsolutePath());
+
+        return new RequestUtil(config);
+    }
+
+    @Test
+    public void testPersistentCacheBetweenRuns() throws IOException {
+
+        File directory = Files.createTempDirectory("response-cache").toFile();
+
+        try {
+            String first = persistent(directory, PersistentResponseCache.Mode.READ_THROUGH).readSource("http://localhost:1080/catalog");
+
+            RequestUtil next = persistent(directory, PersistentResponseCache.Mode.READ_THROUGH);
+
+            assertEquals("The stored response should be used on 304", first, next.readSource("http://localhost:1080/catalog"));
+
+            Map<String, Object> statistics = next.getCacheStatistics();
+
+            assertEquals("The response should have been found from the directory", 1L, statistics.get("disk.hits"));
+            assertEquals("The stored response should have been revalidated", 1L, statistics.get("revalidations"));
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    @Test
+    public void testReplayOnly() throws IOException {
+
+        File directory = Files.createTempDirectory("response-cache").toFile();
+
+        try {
+            persistent(directory, PersistentResponseCache.Mode.READ_THROUGH).readSource("http://localhost:1080/catalog");
+
+            RequestUtil replay = persistent(directory, PersistentResponseCache.Mode.REPLAY_ONLY);
+
+            assertEquals("The recorded response should be replayed", "{ items: [ { id: 1 }, { id: 2 } ] }", replay.readSource("http://localhost:1080/catalog"));
+            assertEquals("The recorded response should not be revalidated", 0L, replay.getCacheStatistics().get("revalidations"));
+            assertNull("A request that was not recorded should not be sent", replay.readSource("http://localhost:1080/hello"));
+
+            try {
+                replay.startRequest("http://localhost:1080/hello", "GET", null, null);
+                fail("Should have thrown exception");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("No recorded response for GET http://localhost:1080/hello"));
+            }
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+}
@@ -1,49 +1,69 @@
 package org.wuokko.robot.restlib.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Map;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 import org.apache.commons.configuration.PropertiesConfiguration;
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.fluent.Executor;
 import org.apache.http.client.fluent.Request;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Answers;
 import org.mockito.InjectMocks;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({ Request.class, RequestUtil.class, FileUtils.class })
+@PowerMockIgnore("javax.net.ssl.*")
+@PrepareForTest({ Request.class, RequestUtil.class, MappedFile.class })
 public class RequestUtilTest {
 
 	@Mock
 	PropertiesConfiguration mockConfiguration;
 	
+	@Mock(answer = Answers.RETURNS_DEEP_STUBS)
+	Executor executor;
+	
 	@InjectMocks
 	RequestUtil util = new RequestUtil(mockConfiguration);
 
     @Before
     public void setUp() throws Exception {
         PowerMockito.mockStatic(Request.class);
-        PowerMockito.mockStatic(FileUtils.class);
+        PowerMockito.mockStatic(MappedFile.class);
+        
+        util.executor = executor;
     }
 
     @Test
@@ -190,7 +210,7 @@ public class RequestUtilTest {
         File mockFile = Mockito.mock(File.class);
         PowerMockito.whenNew(File.class).withArguments(mockURI).thenReturn(mockFile);
         
-        PowerMockito.when(FileUtils.readFileToString(Matchers.eq(mockFile))).thenReturn("FooBar");
+        PowerMockito.when(MappedFile.read(Matchers.eq(mockFile))).thenReturn("FooBar");
 
         String content = util.loadURI(mockURI, "GET", null, null);
 
@@ -224,22 +244,22 @@ public class RequestUtilTest {
         Request mockRequest = mock(Request.class, RETURNS_DEEP_STUBS);
 
         PowerMockito.when(Request.Get(any(URI.class))).thenReturn(mockRequest);
-        Mockito.when(mockRequest.connectTimeout(anyInt()).socketTimeout(anyInt()).execute().returnContent().asString()).thenThrow(IOException.class);
+        Mockito.when(executor.execute(mockRequest).returnResponse()).thenThrow(IOException.class);
 
         String content = util.loadURI(uri, "GET", null, null);
 
         assertNull("The content should be as expected", content);
     }
     
-    @SuppressWarnings("unchecked")
 	@Test
     public void testLoadURIUseCache() throws ClientProtocolException, IOException, URISyntaxException {
     	
-    	Map<URI, String> mockCache = Mockito.mock(Map.class);
+    	ResponseCache mockCache = Mockito.mock(ResponseCache.class);
     	
         System.setProperty("use.uri.cache", "true");
         
         util = new RequestUtil(mockConfiguration);
+        util.executor = executor;
         
         // Set the mock cache
         util.uriCache = mockCache;
@@ -247,26 +267,124 @@ public class RequestUtilTest {
         String expected = "{ \"foo\": bar }";
 
         URI mockURI = PowerMockito.mock(URI.class);
+        
+        RequestKey key = new RequestKey("GET", mockURI, null, null);
+        
+        Mockito.when(mockCache.isCacheable("GET")).thenReturn(Boolean.TRUE);
 
         // Cache hit
-        Mockito.when(mockCache.get(mockURI)).thenReturn(expected);
+        Mockito.when(mockCache.get(key)).thenReturn(new CachedResponse(expected));
         
         String content = util.loadURI(mockURI, "GET", null, null);
 
         assertEquals("The content should be as expected", expected, content);
         
         // No cache hit
-        Mockito.when(mockCache.get(mockURI)).thenReturn(null);
+        Mockito.when(mockCache.get(key)).thenReturn(null);
         
         Request mockRequest = Mockito.mock(Request.class, RETURNS_DEEP_STUBS);
         
-        Mockito.when(mockRequest.connectTimeout(anyInt()).socketTimeout(anyInt()).execute().returnContent().asString()).thenReturn(expected);
+        Mockito.when(executor.execute(mockRequest).returnResponse()).thenReturn(response(200, expected));
         
         PowerMockito.when(Request.Get(mockURI)).thenReturn(mockRequest);
         
         content = util.loadURI(mockURI, "GET", null, null);
 
         assertEquals("The content should be as expected", expected, content);
+        
+        Mockito.verify(mockCache).put(Matchers.eq(key), Matchers.any(CachedResponse.class));
+
+    }
+    
+    @Test
+    public void testLoadURIRevalidate() throws ClientProtocolException, IOException, URISyntaxException {
+    	
+        System.setProperty("use.uri.cache", "true");
+        
+        util = new RequestUtil(mockConfiguration);
+        util.executor = executor;
+        
+        String expected = "{ \"foo\": bar }";
+
+        URI mockURI = PowerMockito.mock(URI.class);
+        
+        Request firstRequest = Mockito.mock(Request.class, RETURNS_DEEP_STUBS);
+        
+        HttpResponse firstResponse = response(200, expected);
+        firstResponse.addHeader(HttpHeaders.ETAG, "\"v1\"");
+        firstResponse.addHeader(HttpHeaders.LAST_MODIFIED, "Wed, 21 Oct 2015 07:28:00 GMT");
+        
+        Mockito.when(executor.execute(firstRequest).returnResponse()).thenReturn(firstResponse);
+        
+        Request secondRequest = Mockito.mock(Request.class, RETURNS_DEEP_STUBS);
+        
+        Mockito.when(executor.execute(secondRequest).returnResponse()).thenReturn(response(304, null));
+        
+        PowerMockito.when(Request.Get(mockURI)).thenReturn(firstRequest, secondRequest);
+        
+        assertEquals("The content should be as expected", expected, util.loadURI(mockURI, "GET", null, null));
+        
+        Mockito.verify(firstRequest, Mockito.times(0)).addHeader(Matchers.anyString(), Matchers.anyString());
+        
+        String content = util.loadURI(mockURI, "GET", null, null);
+        
+        assertEquals("The cached content should be used", expected, content);
+        
+        Mockito.verify(secondRequest).addHeader(HttpHeaders.IF_NONE_MATCH, "\"v1\"");
+        Mockito.verify(secondRequest).addHeader(HttpHeaders.IF_MODIFIED_SINCE, "Wed, 21 Oct 2015 07:28:00 GMT");
+        
+        assertEquals("The revalidation should be counted", 1L, util.getCacheStatistics().get("revalidations"));
+
+    }
+    
+    @Test
+    public void testLoadURIErrorStatus() throws ClientProtocolException, IOException, URISyntaxException {
+
+        URI mockURI = PowerMockito.mock(URI.class);
+
+        Request mockRequest = Mockito.mock(Request.class, RETURNS_DEEP_STUBS);
+        
+        Mockito.when(executor.execute(mockRequest).returnResponse()).thenReturn(response(404, "{ error: 'not found' }"));
+        
+        PowerMockito.when(Request.Get(mockURI)).thenReturn(mockRequest);
+        
+        String content = util.loadURI(mockURI, "GET", null, null);
+
+        assertNull("The content should be null", content);
+    }
+    
+    @Test
+    public void testLoadURIUseCacheNotCacheable() throws ClientProtocolException, IOException, URISyntaxException {
+    	
+    	ResponseCache mockCache = Mockito.mock(ResponseCache.class);
+    	
+        System.setProperty("use.uri.cache", "true");
+        
+        util = new RequestUtil(mockConfiguration);
+        util.executor = executor;
+        
+        util.uriCache = mockCache;
+        
+        String expected = "{ \"foo\": bar }";
+
+        URI mockURI = PowerMockito.mock(URI.class);
+        
+        Mockito.when(mockCache.isCacheable("POST")).thenReturn(Boolean.FALSE);
+
+        Request mockRequest = Mockito.mock(Request.class, RETURNS_DEEP_STUBS);
+        
+        Mockito.when(executor.execute(mockRequest).returnResponse()).thenReturn(response(200, expected));
+        
+        PowerMockito.when(Request.Post(mockURI)).thenReturn(mockRequest);
+        
+        Mockito.when(mockRequest.bodyString(Matchers.eq("data"), Matchers.any(ContentType.class))).thenReturn(mockRequest);
+        
+        String content = util.loadURI(mockURI, "POST", "data", null);
+
+        assertEquals("The content should be as expected", expected, content);
+        
+        Mockito.verify(mockCache, Mockito.times(0)).get(Matchers.any(RequestKey.class));
+        Mockito.verify(mockCache, Mockito.times(0)).put(Matchers.any(RequestKey.class), Matchers.any(CachedResponse.class));
 
     }
     
@@ -280,7 +398,7 @@ public class RequestUtilTest {
 
         Request mockRequest = Mockito.mock(Request.class, RETURNS_DEEP_STUBS);
         
-        Mockito.when(mockRequest.connectTimeout(anyInt()).socketTimeout(anyInt()).execute().returnContent().asString()).thenReturn(expected);
+        Mockito.when(executor.execute(mockRequest).returnResponse()).thenReturn(response(200, expected));
         
         PowerMockito.when(Request.Get(Matchers.eq(mockURI))).thenReturn(mockRequest);
         
@@ -310,7 +428,7 @@ public class RequestUtilTest {
 
         Request mockRequest = Mockito.mock(Request.class, RETURNS_DEEP_STUBS);
         
-        Mockito.when(mockRequest.connectTimeout(anyInt()).socketTimeout(anyInt()).execute().returnContent().asString()).thenReturn(expected);
+        Mockito.when(executor.execute(mockRequest).returnResponse()).thenReturn(response(200, expected));
 
         PowerMockito.when(Request.Post(Matchers.eq(mockURI))).thenReturn(mockRequest);
         
@@ -340,7 +458,7 @@ public class RequestUtilTest {
 
         Request mockRequest = Mockito.mock(Request.class, RETURNS_DEEP_STUBS);
         
-        Mockito.when(mockRequest.connectTimeout(anyInt()).socketTimeout(anyInt()).execute().returnContent().asString()).thenReturn(expected);
+        Mockito.when(executor.execute(mockRequest).returnResponse()).thenReturn(response(200, expected));
 
         PowerMockito.when(Request.Put(Matchers.eq(mockURI))).thenReturn(mockRequest);
         
@@ -370,7 +488,7 @@ public class RequestUtilTest {
 
         Request mockRequest = Mockito.mock(Request.class, RETURNS_DEEP_STUBS);
         
-        Mockito.when(mockRequest.connectTimeout(anyInt()).socketTimeout(anyInt()).execute().returnContent().asString()).thenReturn(expected);
+        Mockito.when(executor.execute(mockRequest).returnResponse()).thenReturn(response(200, expected));
         
         PowerMockito.when(Request.Delete(Matchers.eq(mockURI))).thenReturn(mockRequest);
 
@@ -392,6 +510,7 @@ public class RequestUtilTest {
     public void testLoadURIInvalidRequest() throws ClientProtocolException, IOException, URISyntaxException {
         
         util = new RequestUtil(mockConfiguration);
+        util.executor = executor;
         
         String expected = "{ \"foo\": bar }";
 
@@ -399,7 +518,7 @@ public class RequestUtilTest {
         
         Request mockRequest = Mockito.mock(Request.class, RETURNS_DEEP_STUBS);
         
-        Mockito.when(mockRequest.connectTimeout(anyInt()).socketTimeout(anyInt()).execute().returnContent().asString()).thenReturn(expected);
+        Mockito.when(executor.execute(mockRequest).returnResponse()).thenReturn(response(200, expected));
         
         PowerMockito.when(Request.Get(mockURI)).thenReturn(mockRequest);
         
@@ -408,6 +527,53 @@ public class RequestUtilTest {
         assertNull("The content should be null", content);
     }
     
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStreamSourceCharset() throws IOException, URISyntaxException {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(RequestUtil.KEY_USE_URI_CACHE, false);
+
+        util = new RequestUtil(config);
+        util.executor = executor;
+
+        URI uri = new URI("http://example.com/latin");
+
+        final HttpResponse latin = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "");
+        latin.setEntity(new StringEntity("{ name: 'caf\u00e9' }", ContentType.create("application/json", "ISO-8859-1")));
+
+        Request mockRequest = Mockito.mock(Request.class, RETURNS_DEEP_STUBS);
+
+        PowerMockito.when(Request.Get(uri)).thenReturn(mockRequest);
+
+        Mockito.when(executor.execute(mockRequest).handleResponse(any(ResponseHandler.class))).thenAnswer(new Answer<Object>() {
+
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return ((ResponseHandler<Object>) invocation.getArguments()[0]).handleResponse(latin);
+            }
+        });
+
+        String content = util.streamSource(uri.toString(), "GET", null, null, new SourceHandler<String>() {
+
+            @Override
+            public String handle(InputStream stream, Charset charset) throws IOException {
+                assertEquals("The charset of the response should be given", StandardCharsets.ISO_8859_1, charset);
+                return IOUtils.toString(stream, charset);
+            }
+        });
+
+        assertEquals("The content should be decoded with the charset", "{ name: 'caf\u00e9' }", content);
+    }
+
+    private static HttpResponse response(int status, String body) {
+    	HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "");
+    	if (body != null) {
+    		response.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+    	}
+    	return response;
+    }
+    
     @Test
     public void testGetURI() throws ClientProtocolException, IOException, URISyntaxException {
     
@@ -425,4 +591,33 @@ public class RequestUtilTest {
     	assertEquals("The URI should be as expected", "file:///C:/tmp", uri.toString());
     }
 
+    @Test
+    public void testIsParsedFromStream() throws Exception {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(RequestUtil.KEY_USE_URI_CACHE, false);
+
+        RequestUtil streaming = new RequestUtil(config);
+
+        assertTrue(streaming.isParsedFromStream("http://localhost:1080/hello", "GET"));
+        assertTrue(streaming.isParsedFromStream("https://localhost/hello", "POST"));
+        assertFalse(streaming.isParsedFromStream("{ message: 'hello world' }", "GET"));
+        assertFalse(streaming.isParsedFromStream("file:///tmp/test.json", "GET"));
+        assertFalse(streaming.isParsedFromStream("", "GET"));
+
+        config = new PropertiesConfiguration();
+        config.setProperty(RequestUtil.KEY_USE_URI_CACHE, false);
+        config.setProperty(RequestUtil.KEY_PARSE_FROM_STREAM, false);
+
+        assertFalse(new RequestUtil(config).isParsedFromStream("http://localhost:1080/hello", "GET"));
+
+        config = new PropertiesConfiguration();
+        config.setProperty(RequestUtil.KEY_USE_URI_CACHE, true);
+
+        RequestUtil cached = new RequestUtil(config);
+
+        assertFalse(cached.isParsedFromStream("http://localhost:1080/hello", "GET"));
+        assertTrue(cached.isParsedFromStream("http://localhost:1080/login", "POST"));
+    }
+
 }
@@ -0,0 +1,148 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.net.URI;
+import java.util.Map;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ResponseCacheTest {
+
+    private static final URI URI_FOO = URI.create("http://example.com/foo");
+
+    @Test
+    public void testKeyIncludesRequest() {
+
+        ResponseCache cache = new ResponseCache(null);
+
+        cache.put(new RequestKey("POST", URI_FOO, "{id: 1}", "application/json"), new CachedResponse("first"));
+        cache.put(new RequestKey("POST", URI_FOO, "{id: 2}", "application/json"), new CachedResponse("second"));
+
+        assertEquals("The response should be found by body", "first", cache.get(new RequestKey("POST", URI_FOO, "{id: 1}", "application/json")).getBody());
+        assertEquals("The response should be found by body", "second", cache.get(new RequestKey("POST", URI_FOO, "{id: 2}", "application/json")).getBody());
+        assertNull("The content type should be part of the key", cache.get(new RequestKey("POST", URI_FOO, "{id: 1}", "application/xml")));
+        assertNull("The method should be part of the key", cache.get(new RequestKey("GET", URI_FOO, null, null)));
+    }
+
+    @Test
+    public void testIsCacheable() {
+
+        ResponseCache cache = new ResponseCache(null);
+
+        assertTrue("GET should be cached by default", cache.isCacheable("GET"));
+        assertFalse("POST should not be cached by default", cache.isCacheable("POST"));
+        assertFalse("DELETE should not be cached by default", cache.isCacheable("DELETE"));
+
+        PropertiesConfiguration mockConfiguration = mock(PropertiesConfiguration.class);
+
+        Mockito.when(mockConfiguration.containsKey(ResponseCache.KEY_CACHE_METHODS)).thenReturn(Boolean.TRUE);
+        Mockito.when(mockConfiguration.getStringArray(ResponseCache.KEY_CACHE_METHODS)).thenReturn(new String[] { "get", " POST" });
+
+        cache = new ResponseCache(mockConfiguration);
+
+        assertTrue("GET should be cached", cache.isCacheable("GET"));
+        assertTrue("POST should be cached", cache.isCacheable("post"));
+        assertFalse("PUT should not be cached", cache.isCacheable("PUT"));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+
+        PropertiesConfiguration mockConfiguration = mock(PropertiesConfiguration.class);
+
+        Mockito.when(mockConfiguration.containsKey(ResponseCache.KEY_CACHE_TTL)).thenReturn(Boolean.TRUE);
+        Mockito.when(mockConfiguration.getLong(ResponseCache.KEY_CACHE_TTL)).thenReturn(1L);
+
+        ResponseCache cache = new ResponseCache(mockConfiguration);
+
+        RequestKey key = new RequestKey("GET", URI_FOO, null, null);
+
+        cache.put(key, new CachedResponse("foo"));
+
+        Thread.sleep(10);
+
+        assertNull("The response should have expired", cache.get(key));
+        assertEquals("The expiration should be counted", 1L, cache.getStatistics().get("expirations"));
+        assertEquals("The cache should be empty", 0, cache.size());
+    }
+
+    @Test
+    public void testEvictionByBytes() {
+
+        PropertiesConfiguration mockConfiguration = mock(PropertiesConfiguration.class);
+
+        Mockito.when(mockConfiguration.containsKey(ResponseCache.KEY_CACHE_MAX_BYTES)).thenReturn(Boolean.TRUE);
+        Mockito.when(mockConfiguration.getLong(ResponseCache.KEY_CACHE_MAX_BYTES)).thenReturn(20L);
+
+        ResponseCache cache = new ResponseCache(mockConfiguration);
+
+        RequestKey first = new RequestKey("GET", URI.create("http://example.com/1"), null, null);
+        RequestKey second = new RequestKey("GET", URI.create("http://example.com/2"), null, null);
+        RequestKey third = new RequestKey("GET", URI.create("http://example.com/3"), null, null);
+
+        cache.put(first, new CachedResponse("12345"));
+        cache.put(second, new CachedResponse("12345"));
+
+        // Touch the first so the second is evicted
+        cache.get(first);
+
+        cache.put(third, new CachedResponse("12345"));
+
+        assertEquals("The first should be kept", "12345", cache.get(first).getBody());
+        assertNull("The second should have been evicted", cache.get(second));
+        assertEquals("The third should be kept", "12345", cache.get(third).getBody());
+
+        // Larger than the whole cache
+        cache.put(second, new CachedResponse("12345678901"));
+
+        assertNull("The large response should not be cached", cache.get(second));
+
+        Map<String, Object> statistics = cache.getStatistics();
+
+        assertEquals("The size should be as expected", 2, statistics.get("size"));
+        assertEquals("The bytes should be as expected", 20L, statistics.get("bytes"));
+        assertEquals("The evictions should be as expected", 1L, statistics.get("evictions"));
+        assertEquals("The hits should be as expected", 3L, statistics.get("hits"));
+        assertEquals("The misses should be as expected", 2L, statistics.get("misses"));
+    }
+
+    @Test
+    public void testRevalidation() {
+
+        ResponseCache cache = new ResponseCache(null);
+
+        RequestKey key = new RequestKey("GET", URI_FOO, null, null);
+
+        assertFalse("Response without validators should not be revalidated", cache.shouldRevalidate(new CachedResponse("foo")));
+
+        CachedResponse response = new CachedResponse("foo", "\"v1\"", null);
+
+        assertTrue("Response with ETag should be revalidated", cache.shouldRevalidate(response));
+        assertTrue("Response with Last-Modified should be revalidated", cache.shouldRevalidate(new CachedResponse("foo", null, "Wed, 21 Oct 2015 07:28:00 GMT")));
+
+        cache.put(key, response);
+        cache.revalidated(key, response);
+
+        CachedResponse revalidated = cache.get(key);
+
+        assertEquals("The body should be kept", "foo", revalidated.getBody());
+        assertEquals("The ETag should be kept", "\"v1\"", revalidated.getEtag());
+        assertEquals("The revalidation should be counted", 1L, cache.getStatistics().get("revalidations"));
+        assertEquals("The bytes should not be counted twice", 6L, cache.getStatistics().get("bytes"));
+
+        PropertiesConfiguration mockConfiguration = mock(PropertiesConfiguration.class);
+
+        Mockito.when(mockConfiguration.containsKey(ResponseCache.KEY_CACHE_REVALIDATE)).thenReturn(Boolean.TRUE);
+        Mockito.when(mockConfiguration.getBoolean(ResponseCache.KEY_CACHE_REVALIDATE)).thenReturn(Boolean.FALSE);
+
+        assertFalse("Revalidation should be turned off", new ResponseCache(mockConfiguration).shouldRevalidate(response));
+    }
+
+}
@@ -0,0 +1,125 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wuokko.robot.restlib.util.RobotLog.Level;
+
+public class RobotLogTest {
+
+    private PrintStream out;
+
+    private ByteArrayOutputStream captured;
+
+    @Before
+    public void setUp() {
+        out = System.out;
+        captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+    }
+
+    @After
+    public void tearDown() {
+        System.setOut(out);
+        RobotLog.setLevel(Level.INFO);
+        RobotLog.setMaxLength(2000);
+    }
+
+    private String output() {
+        return new String(captured.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("*DEBUG* Loading http://localhost with GET", RobotLog.format(Level.DEBUG, "Loading {} with {}", "http://localhost", "GET"));
+        assertEquals("*ERROR* No arguments {}", RobotLog.format(Level.ERROR, "No arguments {}"));
+        assertEquals("*INFO* Extra 1", RobotLog.format(Level.INFO, "Extra {}", 1, 2));
+        assertEquals("*WARN* Null null", RobotLog.format(Level.WARN, "Null {}", (Object) null));
+    }
+
+    @Test
+    public void testLevels() {
+
+        RobotLog.setLevel(Level.INFO);
+
+        RobotLog.debug("hidden {}", 1);
+        RobotLog.info("shown {}", 2);
+        RobotLog.error("shown {}", 3);
+
+        String output = output();
+
+        assertFalse(output, output.contains("hidden"));
+        assertTrue(output, output.contains("*INFO* shown 2"));
+        assertTrue(output, output.contains("*ERROR* shown 3"));
+
+        RobotLog.setLevel(Level.NONE);
+
+        RobotLog.error("nothing");
+
+        assertFalse(output().contains("nothing"));
+    }
+
+    @Test
+    public void testDisabledLevelIsNotFormatted() {
+
+        final AtomicInteger formatted = new AtomicInteger();
+
+        Object argument = new Object() {
+            @Override
+            public String toString() {
+                formatted.incrementAndGet();
+                return "argument";
+            }
+        };
+
+        RobotLog.setLevel(Level.INFO);
+        RobotLog.debug("Value {}", argument);
+
+        assertEquals(0, formatted.get());
+
+        RobotLog.setLevel(Level.TRACE);
+        RobotLog.debug("Value {}", argument);
+
+        assertEquals(1, formatted.get());
+    }
+
+    @Test
+    public void testTruncate() {
+
+        RobotLog.setMaxLength(5);
+        RobotLog.setLevel(Level.DEBUG);
+
+        RobotLog.debug("Response: {}", "0123456789");
+
+        assertTrue(output(), output().contains("*DEBUG* Response: 01234... (10 characters)"));
+
+        RobotLog.setMaxLength(0);
+
+        assertEquals("0123456789", RobotLog.truncate("0123456789"));
+    }
+
+    @Test
+    public void testConfigure() {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(RobotLog.KEY_LOG_LEVEL, "debug");
+        config.setProperty(RobotLog.KEY_LOG_MAX_LENGTH, 100);
+
+        RobotLog.configure(config);
+
+        assertEquals(Level.DEBUG, RobotLog.getLevel());
+        assertEquals(100, RobotLog.getMaxLength());
+        assertTrue(RobotLog.isDebugEnabled());
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.Test;
+import org.wuokko.robot.restlib.exception.SourceReadException;
+
+public class SourceFetcherTest {
+
+    private Callable<String> slow(final String value, final long sleep) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Thread.sleep(sleep);
+                return value + " " + Thread.currentThread().getName();
+            }
+        };
+    }
+
+    private Callable<String> failing(final String message) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw new IOException(message);
+            }
+        };
+    }
+
+    private SourceFetcher fetcher(String executor, long timeout) {
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(SourceFetcher.KEY_FETCH_EXECUTOR, executor);
+        config.setProperty(SourceFetcher.KEY_FETCH_TIMEOUT, timeout);
+        return new SourceFetcher(config);
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+
+        Map<String, Callable<String>> tasks = new LinkedHashMap<String, Callable<String>>();
+        tasks.put("from", slow("a", 500));
+        tasks.put("to", slow("b", 500));
+
+        long start = System.currentTimeMillis();
+
+        Map<String, String> results = new SourceFetcher(null).fetchAll(tasks);
+
+        long time = System.currentTimeMillis() - start;
+
+        assertTrue("The sources should have been read concurrently in " + time + " ms", time < 900);
+        assertTrue("The results should be in order", results.get("from").startsWith("a "));
+        assertTrue("The results should be in order", results.get("to").startsWith("b "));
+        assertEquals("The order should be kept", "from", results.keySet().iterator().next());
+    }
+
+    @Test
+    public void testDirect() throws Exception {
+
+        Map<String, Callable<String>> tasks = new LinkedHashMap<String, Callable<String>>();
+        tasks.put("from", slow("a", 0));
+
+        Map<String, String> results = fetcher(SourceFetcher.EXECUTOR_DIRECT, 0).fetchAll(tasks);
+
+        assertEquals("The task should run in the calling thread", "a " + Thread.currentThread().getName(), results.get("from"));
+    }
+
+    @Test
+    public void testFixed() throws Exception {
+
+        Map<String, Callable<String>> tasks = new LinkedHashMap<String, Callable<String>>();
+        tasks.put("from", slow("a", 0));
+
+        Map<String, String> results = fetcher(SourceFetcher.EXECUTOR_FIXED, 0).fetchAll(tasks);
+
+        assertTrue("The task should run in a pool thread: " + results, results.get("from").startsWith("a robot-rest-lib-fetch-"));
+    }
+
+    @Test
+    public void testFailuresPerSource() throws Exception {
+
+        Map<String, Callable<String>> tasks = new LinkedHashMap<String, Callable<String>>();
+        tasks.put("from", slow("a", 0));
+        tasks.put("to", failing("Connection refused"));
+
+        try {
+            new SourceFetcher(null).fetchAll(tasks);
+            fail("Should have thrown exception");
+        } catch (SourceReadException e) {
+            assertTrue("The failed source should be named: " + e.getMessage(), e.getMessage().contains("'to': java.io.IOException: Connection refused"));
+            assertFalse("The successful source should not be named: " + e.getMessage(), e.getMessage().contains("'from'"));
+        }
+    }
+
+    @Test
+    public void testTimeoutPerSource() throws Exception {
+
+        Map<String, Callable<String>> tasks = new LinkedHashMap<String, Callable<String>>();
+        tasks.put("from", slow("a", 5000));
+        tasks.put("to", slow("b", 0));
+
+        long start = System.currentTimeMillis();
+
+        try {
+            fetcher(SourceFetcher.EXECUTOR_CACHED, 200).fetchAll(tasks);
+            fail("Should have thrown exception");
+        } catch (SourceReadException e) {
+            assertTrue("The slow source should be named: " + e.getMessage(), e.getMessage().contains("'from' timed out after 200 ms"));
+            assertFalse("The fast source should not be named: " + e.getMessage(), e.getMessage().contains("'to'"));
+        }
+
+        assertTrue("The fetch should not wait for the slow source", System.currentTimeMillis() - start < 2000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownExecutor() {
+        fetcher("forkjoin", 0);
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.wuokko.robot.restlib.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+public class Utf8ReaderTest {
+
+    private Reader reader(String text) {
+        return new Utf8Reader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testReadCharacters() throws Exception {
+
+        // two, three and four byte sequences cross the block boundaries
+        String text = StringUtils.repeat("a\u00e4\u20ac\ud83d\ude00", 5000);
+
+        Reader reader = reader(text);
+
+        StringBuilder read = new StringBuilder();
+
+        int c;
+        while ((c = reader.read()) != -1) {
+            read.append((char) c);
+        }
+
+        assertEquals(text, read.toString());
+        assertEquals(-1, reader.read());
+    }
+
+    @Test
+    public void testReadArray() throws Exception {
+
+        String text = StringUtils.repeat("{\"name\":\"J\u00f6r\u00f6\"}", 3000);
+
+        assertEquals(text, IOUtils.toString(reader(text)));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        assertEquals(-1, reader("").read());
+    }
+
+    @Test(expected = CharacterCodingException.class)
+    public void testInvalidUtf8() throws Exception {
+        read(new byte[] { '"', (byte) 0xFF, '"' });
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedSequence() throws Exception {
+        read(new byte[] { '"', (byte) 0xC3 });
+    }
+
+    private void read(byte[] bytes) throws IOException {
+        Reader reader = new Utf8Reader(new ByteArrayInputStream(bytes));
+
+        while (reader.read() != -1) {
+            // read until the end or the error
+        }
+    }
+
+}